@@ -0,0 +1,116 @@
+package benchmarks;
+
+import java.io.File;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.List;
+
+/**
+ * Acesso ao ERPController (e ao GeradorDados) a partir dos benchmarks.
+ *
+ * As classes do ERP estão no pacote padrão, que não pode ser importado de um
+ * pacote nomeado (e o JMH não aceita benchmarks no pacote padrão). Por isso os
+ * construtores e métodos usados são resolvidos uma única vez como MethodHandles;
+ * depois do aquecimento, a chamada custa o mesmo que uma chamada direta.
+ */
+final class Aplicacao implements AutoCloseable {
+    private static final MethodHandle NOVO_CONTROLLER;
+    private static final MethodHandle NOVO_CLIENTE;
+    private static final MethodHandle NOVO_PRODUTO;
+    private static final MethodHandle ADICIONAR_CLIENTE;
+    private static final MethodHandle ADICIONAR_PRODUTO;
+    private static final MethodHandle GET_ID_PRODUTO;
+    private static final MethodHandle REMOVER_PRODUTO;
+    private static final MethodHandle GET_PEDIDOS;
+    private static final MethodHandle EXPORTAR_CSV;
+    private static final MethodHandle FECHAR;
+    private static final MethodHandle GERAR_DADOS;
+
+    static {
+        try {
+            Class<?> controller = Class.forName("ERPController");
+            Class<?> cliente = Class.forName("Cliente");
+            Class<?> produto = Class.forName("Produto");
+            Class<?> progresso = Class.forName("ExportadorCSV$Progresso");
+            NOVO_CONTROLLER = construtor(controller, String.class);
+            NOVO_CLIENTE = construtor(cliente, String.class, String.class, String.class, String.class, String.class, String.class, String.class);
+            NOVO_PRODUTO = construtor(produto, String.class, double.class);
+            ADICIONAR_CLIENTE = metodo(controller, "adicionarCliente", cliente);
+            ADICIONAR_PRODUTO = metodo(controller, "adicionarProduto", produto);
+            GET_ID_PRODUTO = metodo(produto, "getId");
+            REMOVER_PRODUTO = metodo(controller, "removerProduto", long.class);
+            GET_PEDIDOS = metodo(controller, "getPedidos");
+            EXPORTAR_CSV = metodo(controller, "exportarRelatorioCSV", File.class, int.class, progresso, java.util.function.BooleanSupplier.class);
+            FECHAR = metodo(controller, "fecharConexao");
+            // Pela linha de comando: Configuracao.ler é package-private, o main é público
+            GERAR_DADOS = metodo(Class.forName("GeradorDados"), "main", String[].class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final Object controller;
+
+    Aplicacao(String urlBanco) throws Throwable {
+        this.controller = NOVO_CONTROLLER.invoke(urlBanco);
+    }
+
+    Object adicionarCliente(String nome, String email) throws Throwable {
+        Object cliente = NOVO_CLIENTE.invoke(nome, email, "11 99999-0000", "Rua A, 1", "São Paulo", "SP", "Brasil");
+        return ADICIONAR_CLIENTE.invoke(controller, cliente);
+    }
+
+    long adicionarProduto(String nome, double preco) throws Throwable {
+        Object produto = ADICIONAR_PRODUTO.invoke(controller, NOVO_PRODUTO.invoke(nome, preco));
+        return (long) GET_ID_PRODUTO.invoke(produto);
+    }
+
+    boolean removerProduto(long id) throws Throwable {
+        return (boolean) REMOVER_PRODUTO.invoke(controller, id);
+    }
+
+    List<?> getPedidos() throws Throwable {
+        return (List<?>) GET_PEDIDOS.invoke(controller);
+    }
+
+    long exportarRelatorioCSV(File arquivo, int paralelismo) throws Throwable {
+        return (long) EXPORTAR_CSV.invoke(controller, arquivo, paralelismo, null, null);
+    }
+
+    /**
+     * Popula o banco com o GeradorDados; 'opcoes' são as da linha de comando dele
+     * (--clientes, --produtos, --pedidos, --zipf, --semente...).
+     */
+    static void gerarDados(String urlBanco, String... opcoes) throws Throwable {
+        String[] args = new String[opcoes.length + 2];
+        args[0] = "--banco";
+        args[1] = urlBanco;
+        System.arraycopy(opcoes, 0, args, 2, opcoes.length);
+        GERAR_DADOS.invoke(args);
+    }
+
+    @Override
+    public void close() throws Exception {
+        try {
+            FECHAR.invoke(controller);
+        } catch (Exception | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    static MethodHandle construtor(Class<?> classe, Class<?>... parametros) throws ReflectiveOperationException {
+        Constructor<?> construtor = classe.getDeclaredConstructor(parametros);
+        construtor.setAccessible(true);
+        return MethodHandles.lookup().unreflectConstructor(construtor);
+    }
+
+    static MethodHandle metodo(Class<?> classe, String nome, Class<?>... parametros) throws ReflectiveOperationException {
+        Method metodo = classe.getMethod(nome, parametros);
+        metodo.setAccessible(true);
+        return MethodHandles.lookup().unreflect(metodo);
+    }
+}
@@ -0,0 +1,40 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ClienteDAO.salvar (via ERPController.adicionarCliente): verificação de email
+ * e inserção numa transação própria, com uma e com várias threads gravando.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClienteDAOBenchmark {
+    // Emails únicos entre iterações e threads
+    private static final AtomicLong SEQUENCIA = new AtomicLong();
+
+    @Benchmark
+    public Object salvar(EstadoBanco banco) throws Throwable {
+        long n = SEQUENCIA.incrementAndGet();
+        return banco.aplicacao.adicionarCliente("Benchmark " + n, "benchmark" + n + "@exemplo.com");
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object salvarConcorrente(EstadoBanco banco) throws Throwable {
+        long n = SEQUENCIA.incrementAndGet();
+        return banco.aplicacao.adicionarCliente("Benchmark " + n, "benchmark" + n + "@exemplo.com");
+    }
+}
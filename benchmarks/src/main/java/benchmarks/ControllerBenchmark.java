@@ -0,0 +1,38 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ERPController.removerProduto: o caminho recusado (produto usado em pedidos: a
+ * exclusão condicional não apaga nada) e a exclusão efetiva de um produto sem pedidos.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ControllerBenchmark {
+    private static final AtomicLong SEQUENCIA = new AtomicLong();
+
+    @Benchmark
+    public boolean removerProdutoEmUso(EstadoBanco banco) throws Throwable {
+        // Todos os produtos gerados aparecem em pedidos: a exclusão é sempre recusada
+        long id = 1 + SEQUENCIA.incrementAndGet() % EstadoBanco.PRODUTOS;
+        return banco.aplicacao.removerProduto(id);
+    }
+
+    @Benchmark
+    public boolean adicionarERemoverProduto(EstadoBanco banco) throws Throwable {
+        long id = banco.aplicacao.adicionarProduto("Benchmark " + SEQUENCIA.incrementAndGet(), 9.9);
+        return banco.aplicacao.removerProduto(id);
+    }
+}
@@ -0,0 +1,62 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Banco gerado para um trial: o ERPController cria o esquema num arquivo
+ * temporário e o GeradorDados o popula com cerca de 'linhasItens' linhas de
+ * itens_pedido (pedidos de 1 a ITENS_MAXIMOS itens, 3 em média), PRODUTOS
+ * produtos de popularidade uniforme e um cliente para cada 20 linhas de item.
+ * Configuração e semente fixas: o mesmo banco em todos os trials.
+ *
+ * Tamanhos: -p linhasItens=10000,1000000,10000000 (padrão: 10000).
+ * Os tamanhos maiores pedem heap maior para buscarTodos (ex.: -jvmArgs -Xmx8g).
+ */
+@State(Scope.Benchmark)
+public class EstadoBanco {
+    static final int PRODUTOS = 1000;
+    private static final int ITENS_MAXIMOS = 5;
+    private static final long SEMENTE = 42;
+
+    @Param({"10000"})
+    public long linhasItens;
+
+    Aplicacao aplicacao;
+    Path diretorio;
+
+    @Setup(Level.Trial)
+    public void criar() throws Throwable {
+        diretorio = Files.createTempDirectory("erp-benchmark-");
+        String url = "jdbc:sqlite:" + diretorio.resolve("erp.db");
+        aplicacao = new Aplicacao(url);
+        // Zipf s=0: todos os produtos aparecem em pedidos (ver ControllerBenchmark.removerProdutoEmUso)
+        Aplicacao.gerarDados(url,
+                "--clientes", String.valueOf(Math.max(100, linhasItens / 20)),
+                "--produtos", String.valueOf(PRODUTOS),
+                "--pedidos", String.valueOf(Math.max(1, linhasItens / ((1 + ITENS_MAXIMOS) / 2))),
+                "--itens-max", String.valueOf(ITENS_MAXIMOS),
+                "--zipf", "0",
+                "--semente", String.valueOf(SEMENTE));
+    }
+
+    @TearDown(Level.Trial)
+    public void remover() throws Exception {
+        aplicacao.close();
+        File[] arquivos = diretorio.toFile().listFiles();
+        if (arquivos != null) {
+            for (File arquivo : arquivos) {
+                Files.deleteIfExists(arquivo.toPath());
+            }
+        }
+        Files.deleteIfExists(diretorio);
+    }
+}
@@ -0,0 +1,36 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ERPController.exportarRelatorioCSV, sequencial e particionado em paralelo,
+ * gravando no diretório temporário do banco.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExportacaoBenchmark {
+
+    @Benchmark
+    public long exportarSequencial(EstadoBanco banco) throws Throwable {
+        File arquivo = banco.diretorio.resolve("relatorio.csv").toFile();
+        return banco.aplicacao.exportarRelatorioCSV(arquivo, 1);
+    }
+
+    @Benchmark
+    public long exportarParalelo(EstadoBanco banco) throws Throwable {
+        File arquivo = banco.diretorio.resolve("relatorio-paralelo.csv").toFile();
+        return banco.aplicacao.exportarRelatorioCSV(arquivo, Runtime.getRuntime().availableProcessors());
+    }
+}
@@ -0,0 +1,131 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.swing.JTable;
+import javax.swing.RowSorter;
+import javax.swing.SortOrder;
+import javax.swing.table.DefaultTableModel;
+import javax.swing.table.TableModel;
+import java.lang.invoke.MethodHandle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Preenchimento da tabela de relatórios com N linhas numa JTable com sorter, sem
+ * ordenação e ordenada pela receita: DefaultTableModel com setRowCount(0) e um
+ * addRow por linha (o modelo anterior do RelatorioPanel) contra
+ * ModeloTabelaRelatorio.definir, que troca as colunas com um único evento.
+ * Não usa banco: as linhas do relatório são geradas uma vez no início.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class ModelosTabelaBenchmark {
+    private static final MethodHandle NOVA_LINHA;
+    private static final MethodHandle NOVO_MODELO;
+    private static final MethodHandle DEFINIR;
+    private static final Object AGRUPAMENTO;
+
+    static {
+        try {
+            Class<?> linha = Class.forName("MotorRelatorios$LinhaRelatorio");
+            Class<?> modelo = Class.forName("ModeloTabelaRelatorio");
+            Class<?> agrupamento = Class.forName("MotorRelatorios$Agrupamento");
+            NOVA_LINHA = Aplicacao.construtor(linha, String.class, long.class, long.class, double.class);
+            NOVO_MODELO = Aplicacao.construtor(modelo);
+            DEFINIR = Aplicacao.metodo(modelo, "definir", agrupamento, List.class);
+            AGRUPAMENTO = agrupamento.getEnumConstants()[0];
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    @Param({"10000", "100000"})
+    public int linhas;
+
+    @Param({"false", "true"})
+    public boolean ordenado;
+
+    // Mesmos dados nos dois formatos: colunas para o DefaultTableModel, LinhaRelatorio para o modelo novo
+    private String[] chaves;
+    private long[] pedidos;
+    private long[] quantidades;
+    private double[] receitas;
+    private List<Object> relatorio;
+
+    private DefaultTableModel modeloPadrao;
+    private JTable tabelaPadrao;
+    private TableModel modeloColunar;
+    private JTable tabelaColunar;
+
+    @Setup(Level.Trial)
+    public void preparar() throws Throwable {
+        Random aleatorio = new Random(42);
+        chaves = new String[linhas];
+        pedidos = new long[linhas];
+        quantidades = new long[linhas];
+        receitas = new double[linhas];
+        relatorio = new ArrayList<>(linhas);
+        for (int i = 0; i < linhas; i++) {
+            chaves[i] = "Cliente " + i;
+            pedidos[i] = 1 + aleatorio.nextInt(50);
+            quantidades[i] = pedidos[i] * (1 + aleatorio.nextInt(8));
+            receitas[i] = aleatorio.nextDouble() * 10_000;
+            relatorio.add(NOVA_LINHA.invoke(chaves[i], pedidos[i], quantidades[i], receitas[i]));
+        }
+
+        modeloPadrao = new DefaultTableModel(new Object[]{"Cliente", "Pedidos", "Itens", "Receita"}, 0);
+        tabelaPadrao = new JTable(modeloPadrao);
+        tabelaPadrao.setAutoCreateRowSorter(true);
+        preencherPadrao();
+
+        modeloColunar = (TableModel) NOVO_MODELO.invoke();
+        tabelaColunar = new JTable(modeloColunar);
+        tabelaColunar.setAutoCreateRowSorter(true);
+        // A primeira carga pode trocar as colunas (e recriar o sorter): ordena depois dela
+        DEFINIR.invoke(modeloColunar, AGRUPAMENTO, relatorio);
+
+        if (ordenado) {
+            List<RowSorter.SortKey> porReceita = List.of(new RowSorter.SortKey(3, SortOrder.DESCENDING));
+            tabelaPadrao.getRowSorter().setSortKeys(porReceita);
+            tabelaColunar.getRowSorter().setSortKeys(porReceita);
+        }
+    }
+
+    @Benchmark
+    public int defaultTableModel() {
+        preencherPadrao();
+        return tabelaPadrao.getRowCount();
+    }
+
+    @Benchmark
+    public int modeloColunar() throws Throwable {
+        DEFINIR.invoke(modeloColunar, AGRUPAMENTO, relatorio);
+        return tabelaColunar.getRowCount();
+    }
+
+    // Como o RelatorioPanel fazia: receita já formatada como texto
+    private void preencherPadrao() {
+        modeloPadrao.setRowCount(0);
+        for (int i = 0; i < linhas; i++) {
+            modeloPadrao.addRow(new Object[]{chaves[i], pedidos[i], quantidades[i], String.format("%.2f", receitas[i])});
+        }
+    }
+}
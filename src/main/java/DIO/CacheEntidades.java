@@ -0,0 +1,279 @@
+/**
+ * Cache de entidades (identity map) com chave primitiva long e despejo LRU.
+ * Usado pelas DAOs de Cliente e Produto para que buscarPorId devolva sempre
+ * a mesma instância por id enquanto ela estiver em cache.
+ *
+ * A tabela de hash usa endereçamento aberto sobre long[], sem boxing das chaves,
+ * e a ordem de uso é mantida numa lista duplamente encadeada por índices (int[]).
+ * Todos os métodos são sincronizados; o custo é irrelevante frente a uma ida ao banco.
+ */
+class CacheEntidades<T> {
+    private static final int VAZIO = -1;
+
+    private final int capacidade;
+    private final int mascara;
+
+    // Tabela de hash: índice do nó ou VAZIO
+    private final int[] tabela;
+
+    // Nós: chave, valor e encadeamento da lista LRU
+    private final long[] chaves;
+    private final Object[] valores;
+    private final int[] anterior;
+    private final int[] proximo;
+
+    private int cabeca = VAZIO; // mais recentemente usado
+    private int cauda = VAZIO;  // menos recentemente usado
+    private int tamanho;
+    private int proximoLivre; // nós ainda não usados
+    private int livres = VAZIO; // lista de nós liberados por invalidação
+
+    // Incrementada a cada alteração confirmada (substituir, invalidar, limpar): valores lidos
+    // do banco antes dela podem ser anteriores à alteração e não são guardados (guardarLido)
+    private long versao;
+
+    private long acertos;
+    private long falhas;
+    private long despejos;
+
+    public CacheEntidades(int capacidade) {
+        if (capacidade <= 0) {
+            throw new IllegalArgumentException("A capacidade do cache deve ser maior que zero: " + capacidade);
+        }
+        this.capacidade = capacidade;
+        // Fator de carga de no máximo 50% para sondagens curtas
+        int tamanhoTabela = Integer.highestOneBit(Math.max(2, capacidade) * 2 - 1) << 1;
+        this.mascara = tamanhoTabela - 1;
+        this.tabela = new int[tamanhoTabela];
+        java.util.Arrays.fill(tabela, VAZIO);
+        this.chaves = new long[capacidade];
+        this.valores = new Object[capacidade];
+        this.anterior = new int[capacidade];
+        this.proximo = new int[capacidade];
+    }
+
+    /**
+     * Busca uma entidade no cache, contabilizando acerto ou falha.
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized T buscar(long id) {
+        int no = localizarNo(id);
+        if (no == VAZIO) {
+            falhas++;
+            return null;
+        }
+        acertos++;
+        moverParaCabeca(no);
+        return (T) valores[no];
+    }
+
+    /**
+     * Insere ou substitui a entidade do id, despejando a menos usada se estiver cheio.
+     */
+    public synchronized void guardar(long id, T valor) {
+        int no = localizarNo(id);
+        if (no != VAZIO) {
+            valores[no] = valor;
+            moverParaCabeca(no);
+            return;
+        }
+        if (tamanho == capacidade) {
+            despejos++;
+            remover(chaves[cauda]);
+        }
+        no = alocarNo();
+        chaves[no] = id;
+        valores[no] = valor;
+        anterior[no] = VAZIO;
+        proximo[no] = cabeca;
+        if (cabeca != VAZIO) {
+            anterior[cabeca] = no;
+        }
+        cabeca = no;
+        if (cauda == VAZIO) {
+            cauda = no;
+        }
+        tabela[slotLivre(id)] = no;
+        tamanho++;
+    }
+
+    /**
+     * Versão atual, a ser lida antes de buscar a entidade no banco (ver guardarLido).
+     */
+    public synchronized long getVersao() {
+        return versao;
+    }
+
+    /**
+     * Guarda uma entidade lida do banco se nenhuma alteração foi confirmada desde
+     * 'versaoLeitura' (getVersao antes da leitura). Senão a leitura, feita num leitor
+     * do pool, pode ter visto a linha anterior ao commit, e guardá-la serviria um
+     * valor desatualizado (ou já excluído) até o despejo.
+     */
+    public synchronized boolean guardarLido(long id, T valor, long versaoLeitura) {
+        if (versao != versaoLeitura) {
+            return false;
+        }
+        guardar(id, valor);
+        return true;
+    }
+
+    /**
+     * Troca a entidade após uma alteração confirmada no banco.
+     */
+    public synchronized void substituir(long id, T valor) {
+        versao++;
+        guardar(id, valor);
+    }
+
+    /**
+     * Remove a entidade do id, se presente. Chamado após a confirmação da alteração.
+     */
+    public synchronized void invalidar(long id) {
+        versao++;
+        remover(id);
+    }
+
+    public synchronized void limpar() {
+        versao++;
+        java.util.Arrays.fill(tabela, VAZIO);
+        java.util.Arrays.fill(valores, null);
+        cabeca = cauda = livres = VAZIO;
+        tamanho = proximoLivre = 0;
+    }
+
+    /**
+     * Entidades em cache da menos para a mais recentemente usada: guardá-las nessa
+     * ordem num cache vazio reproduz a ordem de uso.
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized java.util.List<T> listar() {
+        java.util.List<T> lista = new java.util.ArrayList<>(tamanho);
+        for (int no = cauda; no != VAZIO; no = anterior[no]) {
+            lista.add((T) valores[no]);
+        }
+        return lista;
+    }
+
+    public synchronized long getAcertos() {
+        return acertos;
+    }
+
+    public synchronized long getFalhas() {
+        return falhas;
+    }
+
+    public synchronized long getDespejos() {
+        return despejos;
+    }
+
+    public synchronized int getTamanho() {
+        return tamanho;
+    }
+
+    public int getCapacidade() {
+        return capacidade;
+    }
+
+    @Override
+    public synchronized String toString() {
+        long total = acertos + falhas;
+        return String.format("tamanho=%d/%d acertos=%d falhas=%d despejos=%d taxa=%.1f%%",
+                tamanho, capacidade, acertos, falhas, despejos, total == 0 ? 0.0 : acertos * 100.0 / total);
+    }
+
+    // Espalha os bits do id (ids sequenciais colidiriam nos bits baixos)
+    private static int hash(long id) {
+        long h = id * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private int localizarNo(long id) {
+        int slot = hash(id) & mascara;
+        while (tabela[slot] != VAZIO) {
+            if (chaves[tabela[slot]] == id) {
+                return tabela[slot];
+            }
+            slot = (slot + 1) & mascara;
+        }
+        return VAZIO;
+    }
+
+    private int slotLivre(long id) {
+        int slot = hash(id) & mascara;
+        while (tabela[slot] != VAZIO) {
+            slot = (slot + 1) & mascara;
+        }
+        return slot;
+    }
+
+    private int alocarNo() {
+        if (livres != VAZIO) {
+            int no = livres;
+            livres = proximo[no];
+            return no;
+        }
+        return proximoLivre++;
+    }
+
+    private void remover(long id) {
+        int slot = hash(id) & mascara;
+        while (tabela[slot] != VAZIO && chaves[tabela[slot]] != id) {
+            slot = (slot + 1) & mascara;
+        }
+        if (tabela[slot] == VAZIO) {
+            return;
+        }
+        int no = tabela[slot];
+        desencadear(no);
+        valores[no] = null;
+        proximo[no] = livres;
+        livres = no;
+        tamanho--;
+
+        // Remoção com deslocamento para trás, mantendo as sequências de sondagem válidas
+        int vazio = slot;
+        int atual = (slot + 1) & mascara;
+        while (tabela[atual] != VAZIO) {
+            int ideal = hash(chaves[tabela[atual]]) & mascara;
+            // Move a entrada se o slot vazio estiver entre sua posição ideal e a atual
+            if (((atual - ideal) & mascara) >= ((atual - vazio) & mascara)) {
+                tabela[vazio] = tabela[atual];
+                vazio = atual;
+            }
+            atual = (atual + 1) & mascara;
+        }
+        tabela[vazio] = VAZIO;
+    }
+
+    private void moverParaCabeca(int no) {
+        if (no == cabeca) {
+            return;
+        }
+        desencadear(no);
+        anterior[no] = VAZIO;
+        proximo[no] = cabeca;
+        if (cabeca != VAZIO) {
+            anterior[cabeca] = no;
+        }
+        cabeca = no;
+        if (cauda == VAZIO) {
+            cauda = no;
+        }
+    }
+
+    private void desencadear(int no) {
+        int ant = anterior[no];
+        int prox = proximo[no];
+        if (ant != VAZIO) {
+            proximo[ant] = prox;
+        } else {
+            cabeca = prox;
+        }
+        if (prox != VAZIO) {
+            anterior[prox] = ant;
+        } else {
+            cauda = ant;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cache de PreparedStatements de uma conexão.
+ * As DAOs continuam usando try-with-resources normalmente: o PreparedStatement
+ * devolvido é um proxy cujo close() limpa parâmetros e lote e o devolve ao cache,
+ * em vez de fechá-lo. Assim o SQLite compila cada SQL uma única vez por conexão.
+ *
+ * Se o mesmo SQL já estiver em uso (ex.: chamada reentrante), é criado um
+ * statement avulso, fechado normalmente ao final.
+ */
+class CacheStatements implements AutoCloseable {
+    static final int CAPACIDADE_PADRAO = 64;
+
+    private final Connection connection;
+    private final Map<String, Entrada> entradas;
+    private boolean fechado;
+
+    private long acertos;
+    private long falhas;
+
+    public CacheStatements(Connection connection) {
+        this(connection, CAPACIDADE_PADRAO);
+    }
+
+    public CacheStatements(Connection connection, int capacidade) {
+        this.connection = connection;
+        // LinkedHashMap em ordem de acesso: o mais antigo é despejado ao exceder a capacidade
+        this.entradas = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entrada> eldest) {
+                if (size() <= capacidade) {
+                    return false;
+                }
+                eldest.getValue().despejar();
+                return true;
+            }
+        };
+    }
+
+    public Connection getConnection() {
+        return connection;
+    }
+
+    public PreparedStatement preparar(String sql) throws SQLException {
+        return preparar(sql, Statement.NO_GENERATED_KEYS);
+    }
+
+    /**
+     * Obtém um statement compilado para o SQL, reaproveitando-o se já estiver em cache.
+     */
+    public synchronized PreparedStatement preparar(String sql, int autoGeneratedKeys) throws SQLException {
+        if (fechado) {
+            throw new SQLException("O cache de statements já foi fechado.");
+        }
+        String chave = autoGeneratedKeys == Statement.RETURN_GENERATED_KEYS ? "K:" + sql : sql;
+        Entrada entrada = entradas.get(chave);
+        if (entrada == null) {
+            falhas++;
+            entrada = new Entrada(connection.prepareStatement(sql, autoGeneratedKeys));
+            entradas.put(chave, entrada);
+        } else if (entrada.emUso) {
+            falhas++;
+            return connection.prepareStatement(sql, autoGeneratedKeys);
+        } else {
+            acertos++;
+        }
+        entrada.emUso = true;
+        return entrada.proxy;
+    }
+
+    public synchronized long getAcertos() {
+        return acertos;
+    }
+
+    public synchronized long getFalhas() {
+        return falhas;
+    }
+
+    public synchronized int getTamanho() {
+        return entradas.size();
+    }
+
+    /**
+     * Fecha todos os statements em cache. Deve ser chamado antes de fechar a conexão.
+     */
+    @Override
+    public synchronized void close() {
+        fechado = true;
+        List<Entrada> todas = new ArrayList<>(entradas.values());
+        entradas.clear();
+        for (Entrada entrada : todas) {
+            entrada.despejar();
+        }
+    }
+
+    private synchronized void devolver(Entrada entrada) throws SQLException {
+        if (!entrada.emUso) {
+            return;
+        }
+        entrada.emUso = false;
+        if (entrada.despejado) {
+            entrada.statement.close();
+            return;
+        }
+        entrada.statement.clearParameters();
+        entrada.statement.clearBatch();
+    }
+
+    /**
+     * Statement real e o proxy entregue às DAOs.
+     */
+    private class Entrada implements InvocationHandler {
+        final PreparedStatement statement;
+        final PreparedStatement proxy;
+        boolean emUso;
+        boolean despejado;
+
+        Entrada(PreparedStatement statement) {
+            this.statement = statement;
+            this.proxy = (PreparedStatement) Proxy.newProxyInstance(
+                    PreparedStatement.class.getClassLoader(), new Class<?>[]{PreparedStatement.class}, this);
+        }
+
+        // Fecha agora, ou ao ser devolvido caso ainda esteja em uso
+        void despejar() {
+            despejado = true;
+            if (!emUso) {
+                try {
+                    statement.close();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    devolver(this);
+                    return null;
+                case "isClosed":
+                    return !emUso || statement.isClosed();
+                default:
+                    try {
+                        return method.invoke(statement, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+            }
+        }
+    }
+}
@@ -0,0 +1,327 @@
+import java.sql.SQLException;
+import java.util.List;
+
+// ==============================================================================
+// DAOs medidas: subclasses das DAOs que registram cada chamada pública em
+// Metricas (operação "ClienteDAO.salvar", "PedidoDAO.buscarTodos", ...).
+// O ERPController as usa no lugar das DAOs simples quando as métricas estão ligadas.
+// Chamadas internas (ex.: salvar -> buscarPorEmail) também são contabilizadas.
+// ==============================================================================
+
+/**
+ * ClienteDAO com métricas por operação.
+ */
+class ClienteDAOMedido extends ClienteDAO {
+    private final Metricas metricas;
+    private final Metricas.Operacao opSalvar, opSalvarLote, opBuscarPorId, opBuscarPorEmail, opBuscar, opBuscarTodos,
+            opBuscarPagina, opBuscarIds, opBuscarIdsOrdenados, opBuscarPorIds, opAtualizar, opDeletar, opDeletarSemPedidos;
+
+    public ClienteDAOMedido(GerenciadorConexoes conexoes, int capacidadeCache, Metricas metricas) {
+        super(conexoes, capacidadeCache);
+        this.metricas = metricas;
+        opSalvar = metricas.operacao("ClienteDAO.salvar", Metricas.Tipo.ESCRITA);
+        opSalvarLote = metricas.operacao("ClienteDAO.salvarLote", Metricas.Tipo.ESCRITA);
+        opBuscarPorId = metricas.operacao("ClienteDAO.buscarPorId", Metricas.Tipo.LEITURA);
+        opBuscarPorEmail = metricas.operacao("ClienteDAO.buscarPorEmail", Metricas.Tipo.LEITURA);
+        opBuscar = metricas.operacao("ClienteDAO.buscar", Metricas.Tipo.LEITURA);
+        opBuscarTodos = metricas.operacao("ClienteDAO.buscarTodos", Metricas.Tipo.LEITURA);
+        opBuscarPagina = metricas.operacao("ClienteDAO.buscarPagina", Metricas.Tipo.LEITURA);
+        opBuscarIds = metricas.operacao("ClienteDAO.buscarIds", Metricas.Tipo.LEITURA);
+        opBuscarIdsOrdenados = metricas.operacao("ClienteDAO.buscarIdsOrdenados", Metricas.Tipo.LEITURA);
+        opBuscarPorIds = metricas.operacao("ClienteDAO.buscarPorIds", Metricas.Tipo.LEITURA);
+        opAtualizar = metricas.operacao("ClienteDAO.atualizar", Metricas.Tipo.ESCRITA);
+        opDeletar = metricas.operacao("ClienteDAO.deletar", Metricas.Tipo.ESCRITA);
+        opDeletarSemPedidos = metricas.operacao("ClienteDAO.deletarSemPedidos", Metricas.Tipo.ESCRITA);
+    }
+
+    @Override
+    public Cliente salvar(Cliente cliente) throws SQLException {
+        return metricas.medir(opSalvar, () -> super.salvar(cliente));
+    }
+
+    @Override
+    public boolean[] salvarLote(List<Cliente> clientes) throws SQLException {
+        return metricas.medir(opSalvarLote, () -> super.salvarLote(clientes));
+    }
+
+    @Override
+    public Cliente buscarPorId(long id) throws SQLException {
+        return metricas.medir(opBuscarPorId, () -> super.buscarPorId(id));
+    }
+
+    @Override
+    public Cliente buscarPorEmail(String email) throws SQLException {
+        return metricas.medir(opBuscarPorEmail, () -> super.buscarPorEmail(email));
+    }
+
+    @Override
+    public List<Cliente> buscar(String texto, int limite) throws SQLException {
+        return metricas.medir(opBuscar, () -> super.buscar(texto, limite));
+    }
+
+    @Override
+    public List<Cliente> buscarTodos() throws SQLException {
+        return metricas.medir(opBuscarTodos, super::buscarTodos);
+    }
+
+    @Override
+    public List<Cliente> buscarPagina(long aposId, int limite) throws SQLException {
+        return metricas.medir(opBuscarPagina, () -> super.buscarPagina(aposId, limite));
+    }
+
+    @Override
+    public long[] buscarIds() throws SQLException {
+        return metricas.medir(opBuscarIds, super::buscarIds);
+    }
+
+    @Override
+    public long[] buscarIdsOrdenados(String coluna, boolean crescente) throws SQLException {
+        return metricas.medir(opBuscarIdsOrdenados, () -> super.buscarIdsOrdenados(coluna, crescente));
+    }
+
+    @Override
+    public List<Cliente> buscarPorIds(long[] ids) throws SQLException {
+        return metricas.medir(opBuscarPorIds, () -> super.buscarPorIds(ids));
+    }
+
+    @Override
+    public boolean atualizar(Cliente cliente) throws SQLException {
+        return metricas.medir(opAtualizar, () -> super.atualizar(cliente));
+    }
+
+    @Override
+    public boolean deletar(long id) throws SQLException {
+        return metricas.medir(opDeletar, () -> super.deletar(id));
+    }
+
+    @Override
+    public boolean deletarSemPedidos(long id) throws SQLException {
+        return metricas.medir(opDeletarSemPedidos, () -> super.deletarSemPedidos(id));
+    }
+}
+
+/**
+ * ProdutoDAO com métricas por operação.
+ */
+class ProdutoDAOMedido extends ProdutoDAO {
+    private final Metricas metricas;
+    private final Metricas.Operacao opSalvar, opSalvarLote, opBuscarPorId, opBuscarPorNome, opBuscar, opBuscarTodos,
+            opBuscarPagina, opBuscarIds, opBuscarIdsOrdenados, opBuscarPorIds, opAtualizar, opDeletar, opDeletarSemItens;
+
+    public ProdutoDAOMedido(GerenciadorConexoes conexoes, int capacidadeCache, Metricas metricas) {
+        super(conexoes, capacidadeCache);
+        this.metricas = metricas;
+        opSalvar = metricas.operacao("ProdutoDAO.salvar", Metricas.Tipo.ESCRITA);
+        opSalvarLote = metricas.operacao("ProdutoDAO.salvarLote", Metricas.Tipo.ESCRITA);
+        opBuscarPorId = metricas.operacao("ProdutoDAO.buscarPorId", Metricas.Tipo.LEITURA);
+        opBuscarPorNome = metricas.operacao("ProdutoDAO.buscarPorNome", Metricas.Tipo.LEITURA);
+        opBuscar = metricas.operacao("ProdutoDAO.buscar", Metricas.Tipo.LEITURA);
+        opBuscarTodos = metricas.operacao("ProdutoDAO.buscarTodos", Metricas.Tipo.LEITURA);
+        opBuscarPagina = metricas.operacao("ProdutoDAO.buscarPagina", Metricas.Tipo.LEITURA);
+        opBuscarIds = metricas.operacao("ProdutoDAO.buscarIds", Metricas.Tipo.LEITURA);
+        opBuscarIdsOrdenados = metricas.operacao("ProdutoDAO.buscarIdsOrdenados", Metricas.Tipo.LEITURA);
+        opBuscarPorIds = metricas.operacao("ProdutoDAO.buscarPorIds", Metricas.Tipo.LEITURA);
+        opAtualizar = metricas.operacao("ProdutoDAO.atualizar", Metricas.Tipo.ESCRITA);
+        opDeletar = metricas.operacao("ProdutoDAO.deletar", Metricas.Tipo.ESCRITA);
+        opDeletarSemItens = metricas.operacao("ProdutoDAO.deletarSemItens", Metricas.Tipo.ESCRITA);
+    }
+
+    @Override
+    public Produto salvar(Produto produto) throws SQLException {
+        return metricas.medir(opSalvar, () -> super.salvar(produto));
+    }
+
+    @Override
+    public boolean[] salvarLote(List<Produto> produtos) throws SQLException {
+        return metricas.medir(opSalvarLote, () -> super.salvarLote(produtos));
+    }
+
+    @Override
+    public Produto buscarPorId(long id) throws SQLException {
+        return metricas.medir(opBuscarPorId, () -> super.buscarPorId(id));
+    }
+
+    @Override
+    public Produto buscarPorNome(String nome) throws SQLException {
+        return metricas.medir(opBuscarPorNome, () -> super.buscarPorNome(nome));
+    }
+
+    @Override
+    public List<Produto> buscar(String texto, int limite) throws SQLException {
+        return metricas.medir(opBuscar, () -> super.buscar(texto, limite));
+    }
+
+    @Override
+    public List<Produto> buscarTodos() throws SQLException {
+        return metricas.medir(opBuscarTodos, super::buscarTodos);
+    }
+
+    @Override
+    public List<Produto> buscarPagina(long aposId, int limite) throws SQLException {
+        return metricas.medir(opBuscarPagina, () -> super.buscarPagina(aposId, limite));
+    }
+
+    @Override
+    public long[] buscarIds() throws SQLException {
+        return metricas.medir(opBuscarIds, super::buscarIds);
+    }
+
+    @Override
+    public long[] buscarIdsOrdenados(String coluna, boolean crescente) throws SQLException {
+        return metricas.medir(opBuscarIdsOrdenados, () -> super.buscarIdsOrdenados(coluna, crescente));
+    }
+
+    @Override
+    public List<Produto> buscarPorIds(long[] ids) throws SQLException {
+        return metricas.medir(opBuscarPorIds, () -> super.buscarPorIds(ids));
+    }
+
+    @Override
+    public boolean atualizar(Produto produto) throws SQLException {
+        return metricas.medir(opAtualizar, () -> super.atualizar(produto));
+    }
+
+    @Override
+    public boolean deletar(long id) throws SQLException {
+        return metricas.medir(opDeletar, () -> super.deletar(id));
+    }
+
+    @Override
+    public boolean deletarSemItens(long id) throws SQLException {
+        return metricas.medir(opDeletarSemItens, () -> super.deletarSemItens(id));
+    }
+}
+
+/**
+ * PedidoDAO com métricas por operação.
+ */
+class PedidoDAOMedido extends PedidoDAO {
+    private final Metricas metricas;
+    private final Metricas.Operacao opExistePedidoDoCliente, opExisteItemComProduto, opSalvar, opSalvarLote,
+            opReservarIds, opMaiorIdNoIntervalo, opSalvarLoteComIds, opBuscarPorId, opBuscarTodos, opBuscarPagina, opBuscarResumosPagina, opBuscarIds, opBuscarIdsOrdenados, opBuscarPorIds,
+            opBuscarResumosPorIds, opAtualizar, opDeletar;
+
+    public PedidoDAOMedido(GerenciadorConexoes conexoes, ClienteDAO clienteDAO, ProdutoDAO produtoDAO, Metricas metricas) {
+        super(conexoes, clienteDAO, produtoDAO);
+        this.metricas = metricas;
+        opExistePedidoDoCliente = metricas.operacao("PedidoDAO.existePedidoDoCliente", Metricas.Tipo.LEITURA);
+        opExisteItemComProduto = metricas.operacao("PedidoDAO.existeItemComProduto", Metricas.Tipo.LEITURA);
+        opSalvar = metricas.operacao("PedidoDAO.salvar", Metricas.Tipo.ESCRITA);
+        opSalvarLote = metricas.operacao("PedidoDAO.salvarLote", Metricas.Tipo.ESCRITA);
+        opReservarIds = metricas.operacao("PedidoDAO.reservarIds", Metricas.Tipo.ESCRITA);
+        opMaiorIdNoIntervalo = metricas.operacao("PedidoDAO.maiorIdNoIntervalo", Metricas.Tipo.LEITURA);
+        opSalvarLoteComIds = metricas.operacao("PedidoDAO.salvarLoteComIds", Metricas.Tipo.ESCRITA);
+        opBuscarPorId = metricas.operacao("PedidoDAO.buscarPorId", Metricas.Tipo.LEITURA);
+        opBuscarTodos = metricas.operacao("PedidoDAO.buscarTodos", Metricas.Tipo.LEITURA);
+        opBuscarPagina = metricas.operacao("PedidoDAO.buscarPagina", Metricas.Tipo.LEITURA);
+        opBuscarResumosPagina = metricas.operacao("PedidoDAO.buscarResumosPagina", Metricas.Tipo.LEITURA);
+        opBuscarIds = metricas.operacao("PedidoDAO.buscarIds", Metricas.Tipo.LEITURA);
+        opBuscarIdsOrdenados = metricas.operacao("PedidoDAO.buscarIdsOrdenados", Metricas.Tipo.LEITURA);
+        opBuscarPorIds = metricas.operacao("PedidoDAO.buscarPorIds", Metricas.Tipo.LEITURA);
+        opBuscarResumosPorIds = metricas.operacao("PedidoDAO.buscarResumosPorIds", Metricas.Tipo.LEITURA);
+        opAtualizar = metricas.operacao("PedidoDAO.atualizar", Metricas.Tipo.ESCRITA);
+        opDeletar = metricas.operacao("PedidoDAO.deletar", Metricas.Tipo.ESCRITA);
+    }
+
+    @Override
+    public boolean existePedidoDoCliente(long clienteId) throws SQLException {
+        return metricas.medir(opExistePedidoDoCliente, () -> super.existePedidoDoCliente(clienteId));
+    }
+
+    @Override
+    public boolean existeItemComProduto(long produtoId) throws SQLException {
+        return metricas.medir(opExisteItemComProduto, () -> super.existeItemComProduto(produtoId));
+    }
+
+    @Override
+    public Pedido salvar(Pedido pedido) throws SQLException {
+        return metricas.medir(opSalvar, () -> super.salvar(pedido));
+    }
+
+    @Override
+    public void salvarLote(List<Pedido> pedidos) throws SQLException {
+        // Sem retorno: os registros gravados são os pedidos do lote
+        metricas.medir(opSalvarLote, () -> {
+            super.salvarLote(pedidos);
+            return pedidos;
+        });
+    }
+
+    @Override
+    public long reservarIds(int quantidade) throws SQLException {
+        // O primeiro id do bloco não é uma contagem de registros: fica fora do resultado medido
+        long[] primeiro = new long[1];
+        metricas.medir(opReservarIds, () -> {
+            primeiro[0] = super.reservarIds(quantidade);
+            return null;
+        });
+        return primeiro[0];
+    }
+
+    @Override
+    public long maiorIdNoIntervalo(long inicio, long fim) throws SQLException {
+        // Como em reservarIds, o id devolvido não é uma contagem de registros
+        long[] maior = new long[1];
+        metricas.medir(opMaiorIdNoIntervalo, () -> {
+            maior[0] = super.maiorIdNoIntervalo(inicio, fim);
+            return null;
+        });
+        return maior[0];
+    }
+
+    @Override
+    public int salvarLoteComIds(List<Pedido> pedidos) throws SQLException {
+        // Como Long, o retorno conta como registros gravados
+        return (int) (long) metricas.medir(opSalvarLoteComIds, () -> (long) super.salvarLoteComIds(pedidos));
+    }
+
+    @Override
+    public Pedido buscarPorId(long id) throws SQLException {
+        return metricas.medir(opBuscarPorId, () -> super.buscarPorId(id));
+    }
+
+    @Override
+    public List<Pedido> buscarTodos() throws SQLException {
+        return metricas.medir(opBuscarTodos, super::buscarTodos);
+    }
+
+    @Override
+    public List<Pedido> buscarPagina(long aposId, int limite) throws SQLException {
+        return metricas.medir(opBuscarPagina, () -> super.buscarPagina(aposId, limite));
+    }
+
+    @Override
+    public List<ResumoPedido> buscarResumosPagina(long aposId, int limite) throws SQLException {
+        return metricas.medir(opBuscarResumosPagina, () -> super.buscarResumosPagina(aposId, limite));
+    }
+
+    @Override
+    public long[] buscarIds() throws SQLException {
+        return metricas.medir(opBuscarIds, super::buscarIds);
+    }
+
+    @Override
+    public long[] buscarIdsOrdenados(String coluna, boolean crescente) throws SQLException {
+        return metricas.medir(opBuscarIdsOrdenados, () -> super.buscarIdsOrdenados(coluna, crescente));
+    }
+
+    @Override
+    public List<Pedido> buscarPorIds(long[] ids) throws SQLException {
+        return metricas.medir(opBuscarPorIds, () -> super.buscarPorIds(ids));
+    }
+
+    @Override
+    public List<ResumoPedido> buscarResumosPorIds(long[] ids) throws SQLException {
+        return metricas.medir(opBuscarResumosPorIds, () -> super.buscarResumosPorIds(ids));
+    }
+
+    @Override
+    public boolean atualizar(Pedido pedido) throws SQLException {
+        return metricas.medir(opAtualizar, () -> super.atualizar(pedido));
+    }
+
+    @Override
+    public boolean deletar(long id) throws SQLException {
+        return metricas.medir(opDeletar, () -> super.deletar(id));
+    }
+}
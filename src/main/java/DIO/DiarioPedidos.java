@@ -0,0 +1,582 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * Diário de pedidos (write-ahead log) para picos de gravação.
+ *
+ * registrar() grava o pedido num arquivo mapeado em memória, só de acréscimo, e
+ * retorna assim que o registro está no disco; uma thread aplicadora transfere os
+ * pedidos para o banco com PedidoDAO.salvarLoteComIds, muitos por transação.
+ * Registros gravados ao mesmo tempo compartilham um único force() (group commit):
+ * enquanto uma thread força o disco, as seguintes só acrescentam e esperam.
+ *
+ * Os ids dos pedidos são reservados em blocos no sqlite_sequence
+ * (PedidoDAO.reservarIds), então pedidos gravados por outros caminhos nunca
+ * colidem com os do diário. O bloco corrente fica no cabeçalho: ao reabrir, o
+ * diário continua do primeiro id do bloco que não está no banco nem no arquivo,
+ * em vez de reservar outro bloco a cada início. Até a aplicação, os pedidos
+ * ficam disponíveis em buscarPendente().
+ *
+ * Um registro só é dado como aplicado (e o espaço reaproveitado) depois de um
+ * commit sincronizado no disco (GerenciadorConexoes.escreverDuravel): o commit
+ * normal em WAL pode ser desfeito por uma queda de energia, e o pedido se perderia
+ * depois de confirmado ao cliente.
+ *
+ * Formato do arquivo:
+ *   cabeçalho (TAMANHO_CABECALHO bytes): mágico, versão, época, posição aplicada,
+ *              início e fim (exclusivo) do bloco de ids reservado
+ *   registros: comprimento (int), CRC32C (int), época (long), id do pedido,
+ *              id do cliente, quantidade de itens e (id do produto, quantidade) por item
+ *
+ * O comprimento e o CRC cobrem época e conteúdo. Quando tudo foi aplicado e o arquivo
+ * passou da metade (ou encheu), a escrita volta ao início e a época é incrementada:
+ * registros antigos que sobraram depois do fim deixam de valer. Na abertura,
+ * iniciar() reaplica os registros válidos a partir da posição aplicada; a gravação
+ * com ids explícitos ignora pedidos que já estão no banco, então reaplicar é seguro.
+ */
+class DiarioPedidos implements AutoCloseable {
+    static final int CAPACIDADE_PADRAO = 64 << 20;
+    static final int PEDIDOS_POR_TRANSACAO = 1000;
+    private static final int IDS_POR_RESERVA = 10_000;
+    private static final int MAGICO = 0x45525044; // "ERPD"
+    private static final int VERSAO = 1;
+    private static final int TAMANHO_CABECALHO = 64;
+    private static final int POSICAO_EPOCA = 8;
+    private static final int POSICAO_APLICADO = 16;
+    private static final int POSICAO_RESERVA_INICIO = 24;
+    private static final int POSICAO_RESERVA_FIM = 32;
+    private static final int TAMANHO_MOLDURA = 8; // comprimento + CRC
+
+    /**
+     * Busca uma entidade pelo id; null se não existir.
+     */
+    interface BuscaPorId<T> {
+        T buscar(long id) throws SQLException;
+    }
+
+    /**
+     * Operação executada com o diário drenado e sem aceitar novos registros (ver drenarEExecutar).
+     */
+    interface Operacao<R> {
+        R executar() throws SQLException;
+    }
+
+    // Pedido registrado e ainda não aplicado, com a posição do fim do seu registro
+    private static class Pendente {
+        final Pedido pedido;
+        final int fim;
+
+        Pendente(Pedido pedido, int fim) {
+            this.pedido = pedido;
+            this.fim = fim;
+        }
+    }
+
+    private final FileChannel canal;
+    private final MappedByteBuffer mapa;
+    private final int capacidade;
+    private final GerenciadorConexoes conexoes;
+    private final PedidoDAO pedidoDAO;
+    private final BuscaPorId<Cliente> buscaClientes;
+    private final BuscaPorId<Produto> buscaProdutos;
+    private final Consumer<long[]> aoAplicar;
+
+    private final ReentrantLock trava = new ReentrantLock();
+    private final Condition duravel = trava.newCondition();
+    private final Condition trabalho = trava.newCondition();
+    private final Condition aplicado = trava.newCondition();
+    private final Condition espaco = trava.newCondition();
+    private final Condition liberado = trava.newCondition();
+    // Estado protegido por 'trava'
+    private long epoca;
+    private int escritoAte;
+    private int duravelAte;
+    private int aplicadoAte;
+    private boolean forcando;
+    private int aguardandoEspaco;
+    private int bloqueios; // drenarEExecutar em andamento: registrar() espera
+    private long inicioReserva;
+    private long proximoId;
+    private long fimReserva; // exclusivo
+    private final ArrayDeque<Pendente> pendentes = new ArrayDeque<>();
+    private boolean fechado;
+
+    private final Map<Long, Pedido> pendentesPorId = new ConcurrentHashMap<>();
+    private Thread aplicador;
+    private volatile long descartados;
+
+    /**
+     * @param aoAplicar recebe os ids de cada lote aplicado no banco (sem os descartados)
+     */
+    public DiarioPedidos(Path arquivo, int capacidade, GerenciadorConexoes conexoes, BuscaPorId<Cliente> buscaClientes,
+                         BuscaPorId<Produto> buscaProdutos, PedidoDAO pedidoDAO, Consumer<long[]> aoAplicar) throws IOException {
+        this.capacidade = capacidade;
+        this.conexoes = conexoes;
+        this.buscaClientes = buscaClientes;
+        this.buscaProdutos = buscaProdutos;
+        this.pedidoDAO = pedidoDAO;
+        this.aoAplicar = aoAplicar;
+        this.canal = FileChannel.open(arquivo, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.mapa = canal.map(FileChannel.MapMode.READ_WRITE, 0, capacidade);
+        if (mapa.getInt(0) != MAGICO || mapa.getInt(4) != VERSAO) {
+            // Arquivo novo (ou de outro formato): começa vazio
+            mapa.putInt(0, MAGICO);
+            mapa.putInt(4, VERSAO);
+            mapa.putLong(POSICAO_EPOCA, 1);
+            mapa.putLong(POSICAO_APLICADO, TAMANHO_CABECALHO);
+            mapa.force();
+        }
+        epoca = mapa.getLong(POSICAO_EPOCA);
+        long posicaoAplicada = mapa.getLong(POSICAO_APLICADO);
+        if (posicaoAplicada < TAMANHO_CABECALHO || posicaoAplicada > capacidade) {
+            canal.close();
+            throw new IOException("Diário de pedidos " + arquivo + " corrompido ou criado com outra capacidade");
+        }
+        aplicadoAte = (int) posicaoAplicada;
+        escritoAte = duravelAte = aplicadoAte;
+        // Arquivos anteriores ao bloco no cabeçalho têm zeros aqui: reservam um bloco novo
+        inicioReserva = mapa.getLong(POSICAO_RESERVA_INICIO);
+        fimReserva = mapa.getLong(POSICAO_RESERVA_FIM);
+    }
+
+    /**
+     * Reaplica no banco os registros que ficaram pendentes na última execução e
+     * inicia a thread aplicadora. Devolve quantos pedidos foram reaplicados.
+     */
+    public int iniciar() throws SQLException {
+        List<Pedido> pedidos = new ArrayList<>();
+        long maiorIdRegistrado = 0;
+        int posicao = aplicadoAte;
+        while (true) {
+            ByteBuffer registro = lerRegistro(posicao);
+            if (registro == null) {
+                break;
+            }
+            posicao += TAMANHO_MOLDURA + registro.remaining() + Long.BYTES;
+            maiorIdRegistrado = Math.max(maiorIdRegistrado, registro.getLong(0));
+            Pedido pedido = montar(registro);
+            if (pedido != null) {
+                pedidos.add(pedido);
+            }
+        }
+        for (int inicio = 0; inicio < pedidos.size(); inicio += PEDIDOS_POR_TRANSACAO) {
+            aplicar(pedidos.subList(inicio, Math.min(pedidos.size(), inicio + PEDIDOS_POR_TRANSACAO)));
+        }
+        trava.lock();
+        try {
+            // Continua o bloco reservado depois dos ids já entregues (aplicados ou ainda no arquivo);
+            // ids entregues sem chegar ao disco nunca foram confirmados e podem ser reusados
+            long maiorUsado = Math.max(maiorIdRegistrado, pedidoDAO.maiorIdNoIntervalo(inicioReserva, fimReserva));
+            proximoId = Math.min(fimReserva, Math.max(inicioReserva, maiorUsado + 1));
+            reiniciarArquivo();
+        } finally {
+            trava.unlock();
+        }
+
+        aplicador = new Thread(this::aplicarContinuamente, "erp-diario-pedidos");
+        aplicador.setDaemon(true);
+        aplicador.start();
+        return pedidos.size();
+    }
+
+    /**
+     * Grava o pedido no diário e retorna quando ele está no disco, já com o id definitivo.
+     */
+    public Pedido registrar(Pedido pedido) throws SQLException {
+        int itens = pedido.getItens().size();
+        byte[] registro = new byte[TAMANHO_MOLDURA + Long.BYTES + 2 * Long.BYTES + Integer.BYTES
+                + itens * (Long.BYTES + Integer.BYTES)];
+        long epocaRegistro;
+        int fim;
+
+        trava.lock();
+        try {
+            if (fechado) {
+                throw new SQLException("Diário de pedidos fechado");
+            }
+            if (registro.length > capacidade - TAMANHO_CABECALHO) {
+                throw new SQLException("Pedido grande demais para o diário (" + itens + " itens)");
+            }
+            while (true) {
+                // As duas esperas soltam a trava: volta a verificar ambas antes de gravar
+                if (bloqueios > 0) {
+                    // Uma exclusão que depende do diário vazio está em andamento (ver drenarEExecutar)
+                    try {
+                        liberado.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new SQLException("Interrompido aguardando o diário de pedidos", e);
+                    }
+                } else if (escritoAte + registro.length > capacidade) {
+                    // Arquivo cheio: espera a aplicadora esvaziá-lo e voltar ao início
+                    aguardandoEspaco++;
+                    trabalho.signal();
+                    try {
+                        espaco.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new SQLException("Interrompido aguardando espaço no diário de pedidos", e);
+                    } finally {
+                        aguardandoEspaco--;
+                    }
+                } else {
+                    break;
+                }
+            }
+            if (proximoId == fimReserva) {
+                reservarBloco();
+            }
+            pedido.setId(proximoId++);
+            serializar(pedido, epoca, ByteBuffer.wrap(registro));
+            mapa.put(escritoAte, registro);
+            escritoAte += registro.length;
+            fim = escritoAte;
+            epocaRegistro = epoca;
+            pendentesPorId.put(pedido.getId(), pedido);
+            pendentes.add(new Pendente(pedido, fim));
+        } finally {
+            trava.unlock();
+        }
+
+        try {
+            aguardarDuravel(epocaRegistro, fim);
+        } catch (IOException e) {
+            throw new SQLException("Falha ao gravar no diário de pedidos", e);
+        }
+        trava.lock();
+        try {
+            trabalho.signal();
+        } finally {
+            trava.unlock();
+        }
+        return pedido;
+    }
+
+    /**
+     * Pedido registrado e ainda não aplicado no banco, ou null.
+     */
+    public Pedido buscarPendente(long id) {
+        return pendentesPorId.get(id);
+    }
+
+    /**
+     * Espera todos os pedidos registrados até agora chegarem ao banco (antes de
+     * alterações que dependem deles, como excluir um cliente ou mudar um preço).
+     */
+    public void drenar() throws SQLException {
+        trava.lock();
+        try {
+            while (!pendentes.isEmpty() && aplicador != null && aplicador.isAlive()) {
+                trabalho.signal();
+                aplicado.await(100, TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrompido aguardando a aplicação do diário de pedidos", e);
+        } finally {
+            trava.unlock();
+        }
+    }
+
+    /**
+     * Drena o diário e executa a operação sem aceitar novos registros até ela terminar
+     * (registrar() espera). Para alterações que não podem ver um pedido novo entre a
+     * drenagem e o commit, como excluir um cliente ou produto sem pedidos: o pedido
+     * seria aceito e depois descartado pela aplicadora por violar a chave estrangeira.
+     */
+    public <R> R drenarEExecutar(Operacao<R> operacao) throws SQLException {
+        trava.lock();
+        try {
+            bloqueios++;
+        } finally {
+            trava.unlock();
+        }
+        try {
+            drenar();
+            return operacao.executar();
+        } finally {
+            trava.lock();
+            try {
+                if (--bloqueios == 0) {
+                    liberado.signalAll();
+                }
+            } finally {
+                trava.unlock();
+            }
+        }
+    }
+
+    /**
+     * Pedidos descartados por não poderem ser aplicados (cliente ou produto inexistente).
+     */
+    public long getDescartados() {
+        return descartados;
+    }
+
+    /**
+     * Aplica o que estiver pendente e encerra a thread aplicadora.
+     */
+    @Override
+    public void close() {
+        trava.lock();
+        try {
+            fechado = true;
+            trabalho.signal();
+        } finally {
+            trava.unlock();
+        }
+        if (aplicador != null) {
+            try {
+                aplicador.join(TimeUnit.SECONDS.toMillis(30));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        try {
+            canal.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Group commit: quem encontra o disco livre força tudo o que já foi escrito;
+    // os demais esperam por esse force() ou pelo seguinte
+    private void aguardarDuravel(long epocaRegistro, int fim) throws IOException {
+        trava.lock();
+        try {
+            while (epoca == epocaRegistro && duravelAte < fim) {
+                if (forcando) {
+                    duravel.awaitUninterruptibly();
+                    continue;
+                }
+                forcando = true;
+                int inicio = duravelAte;
+                int alvo = escritoAte;
+                boolean forcado = false;
+                trava.unlock();
+                try {
+                    mapa.force(inicio, alvo - inicio);
+                    forcado = true;
+                } finally {
+                    trava.lock();
+                    forcando = false;
+                    if (forcado) {
+                        duravelAte = alvo;
+                    }
+                    duravel.signalAll();
+                }
+            }
+        } finally {
+            trava.unlock();
+        }
+    }
+
+    private void aplicarContinuamente() {
+        while (true) {
+            List<Pendente> lote = new ArrayList<>();
+            trava.lock();
+            try {
+                while (!fechado && (pendentes.isEmpty() || pendentes.peek().fim > duravelAte)) {
+                    trabalho.await(50, TimeUnit.MILLISECONDS);
+                }
+                if (pendentes.isEmpty()) {
+                    return; // fechado e sem pendências
+                }
+                for (Pendente p : pendentes) {
+                    if (lote.size() == PEDIDOS_POR_TRANSACAO || p.fim > duravelAte) {
+                        break;
+                    }
+                    lote.add(p);
+                }
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                trava.unlock();
+            }
+            if (lote.isEmpty()) {
+                continue; // fechando, à espera do último force()
+            }
+
+            List<Pedido> pedidos = new ArrayList<>(lote.size());
+            for (Pendente p : lote) {
+                pedidos.add(p.pedido);
+            }
+            try {
+                aplicar(pedidos);
+            } catch (SQLException e) {
+                // Falha de banco (não de dados): os pedidos continuam pendentes e são tentados de novo
+                e.printStackTrace();
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException ie) {
+                    return;
+                }
+                continue;
+            }
+
+            trava.lock();
+            try {
+                for (int i = 0; i < lote.size(); i++) {
+                    pendentesPorId.remove(pendentes.poll().pedido.getId());
+                }
+                aplicadoAte = lote.get(lote.size() - 1).fim;
+                // Sem force(): se a posição aplicada se perder, a reaplicação ignora os pedidos já gravados
+                mapa.putLong(POSICAO_APLICADO, aplicadoAte);
+                if (pendentes.isEmpty() && !forcando && duravelAte == escritoAte
+                        && (aguardandoEspaco > 0 || escritoAte > capacidade / 2)) {
+                    reiniciarArquivo();
+                }
+                aplicado.signalAll();
+            } finally {
+                trava.unlock();
+            }
+        }
+    }
+
+    // Grava um lote no banco; se o lote falhar por algum pedido inválido, grava um a um
+    // e descarta (com aviso) os que não podem ser aplicados
+    private void aplicar(List<Pedido> pedidos) throws SQLException {
+        if (pedidos.isEmpty()) {
+            return;
+        }
+        long[] ids = new long[pedidos.size()];
+        int aplicados = 0;
+        try {
+            gravar(pedidos);
+            for (Pedido pedido : pedidos) {
+                ids[aplicados++] = pedido.getId();
+            }
+        } catch (SQLException lote) {
+            if (!violacaoDeRestricao(lote)) { // só violações de restrição são problema dos dados
+                throw lote;
+            }
+            for (Pedido pedido : pedidos) {
+                try {
+                    gravar(List.of(pedido));
+                    ids[aplicados++] = pedido.getId();
+                } catch (SQLException e) {
+                    if (!violacaoDeRestricao(e)) {
+                        throw e;
+                    }
+                    descartados++;
+                    System.err.println("Pedido " + pedido.getId() + " do diário descartado: " + e.getMessage());
+                }
+            }
+        }
+        if (aplicados > 0) {
+            aoAplicar.accept(Arrays.copyOf(ids, aplicados));
+        }
+    }
+
+    // Commit sincronizado: o registro deixa de valer (posição aplicada, volta ao início) logo depois
+    private void gravar(List<Pedido> pedidos) throws SQLException {
+        conexoes.escreverDuravel(statements -> pedidoDAO.salvarLoteComIds(pedidos));
+    }
+
+    // Reserva um bloco novo de ids e o grava no cabeçalho; chamado com a trava
+    private void reservarBloco() throws SQLException {
+        // Sincronizado: se o avanço do sqlite_sequence se perdesse, outros caminhos reusariam os ids do bloco
+        long inicio = conexoes.escreverDuravel(statements -> pedidoDAO.reservarIds(IDS_POR_RESERVA));
+        inicioReserva = proximoId = inicio;
+        fimReserva = inicio + IDS_POR_RESERVA;
+        mapa.putLong(POSICAO_RESERVA_INICIO, inicioReserva);
+        mapa.putLong(POSICAO_RESERVA_FIM, fimReserva);
+        mapa.force(0, TAMANHO_CABECALHO);
+    }
+
+    // SQLITE_CONSTRAINT (19), inclusive códigos estendidos (chave estrangeira, NOT NULL...)
+    private static boolean violacaoDeRestricao(SQLException e) {
+        return (e.getErrorCode() & 0xFF) == 19;
+    }
+
+    // Volta a escrita para o início com uma nova época; exige tudo aplicado e durável
+    private void reiniciarArquivo() {
+        epoca++;
+        escritoAte = duravelAte = aplicadoAte = TAMANHO_CABECALHO;
+        mapa.putLong(POSICAO_EPOCA, epoca);
+        mapa.putLong(POSICAO_APLICADO, aplicadoAte);
+        // A nova época precisa estar no disco antes de qualquer registro dela
+        mapa.force(0, TAMANHO_CABECALHO);
+        espaco.signalAll();
+    }
+
+    private static void serializar(Pedido pedido, long epoca, ByteBuffer destino) {
+        int comprimento = destino.capacity() - TAMANHO_MOLDURA;
+        destino.position(TAMANHO_MOLDURA);
+        destino.putLong(epoca);
+        destino.putLong(pedido.getId());
+        destino.putLong(pedido.getCliente().getId());
+        destino.putInt(pedido.getItens().size());
+        for (ItemPedido item : pedido.getItens()) {
+            destino.putLong(item.getProduto().getId());
+            destino.putInt(item.getQuantidade());
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(destino.array(), TAMANHO_MOLDURA, comprimento);
+        destino.putInt(0, comprimento);
+        destino.putInt(4, (int) crc.getValue());
+    }
+
+    // Conteúdo (após a época) do registro na posição, ou null se não houver registro válido da época atual
+    private ByteBuffer lerRegistro(int posicao) {
+        if (posicao + TAMANHO_MOLDURA + Long.BYTES > capacidade) {
+            return null;
+        }
+        int comprimento = mapa.getInt(posicao);
+        if (comprimento < Long.BYTES || posicao + TAMANHO_MOLDURA + comprimento > capacidade) {
+            return null;
+        }
+        byte[] dados = new byte[comprimento];
+        mapa.get(posicao + TAMANHO_MOLDURA, dados);
+        CRC32C crc = new CRC32C();
+        crc.update(dados);
+        if ((int) crc.getValue() != mapa.getInt(posicao + 4)) {
+            return null;
+        }
+        ByteBuffer registro = ByteBuffer.wrap(dados);
+        if (registro.getLong() != epoca) {
+            return null;
+        }
+        return registro.slice();
+    }
+
+    // Reconstrói o pedido de um registro; null (descartado) se cliente ou produto não existirem mais
+    private Pedido montar(ByteBuffer registro) throws SQLException {
+        long pedidoId = registro.getLong();
+        Cliente cliente = buscaClientes.buscar(registro.getLong());
+        int itens = registro.getInt();
+        Pedido pedido = new Pedido(pedidoId, cliente);
+        for (int i = 0; i < itens; i++) {
+            long produtoId = registro.getLong();
+            int quantidade = registro.getInt();
+            Produto produto = buscaProdutos.buscar(produtoId);
+            if (produto == null) {
+                cliente = null;
+                break;
+            }
+            pedido.adicionarItem(new ItemPedido(produto, quantidade));
+        }
+        if (cliente == null) {
+            descartados++;
+            System.err.println("Pedido " + pedidoId + " do diário descartado: cliente ou produto inexistente");
+            return null;
+        }
+        return pedido;
+    }
+}
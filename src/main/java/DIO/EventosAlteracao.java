@@ -0,0 +1,71 @@
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Barramento de eventos de alteração, interno ao processo. O ERPController publica,
+ * depois de cada gravação confirmada, quais ids foram inseridos, atualizados ou
+ * removidos; os painéis aplicam só essas diferenças aos modelos das tabelas em vez
+ * de recarregá-las inteiras.
+ *
+ * Os ouvintes são chamados na thread que gravou (EDT, executor, servidor HTTP ou a
+ * aplicadora do diário) e devem só repassar o evento (ex.: SwingUtilities.invokeLater).
+ */
+class EventosAlteracao {
+
+    enum Entidade {CLIENTE, PRODUTO, PEDIDO}
+
+    enum Tipo {
+        INSERIDO,
+        ATUALIZADO,
+        REMOVIDO,
+        // Alteração em massa cujos ids não são conhecidos (importações): recarregar tudo
+        EM_MASSA
+    }
+
+    static final class Evento {
+        final Entidade entidade;
+        final Tipo tipo;
+        final long[] ids;
+
+        Evento(Entidade entidade, Tipo tipo, long[] ids) {
+            this.entidade = entidade;
+            this.tipo = tipo;
+            this.ids = ids;
+        }
+
+        @Override
+        public String toString() {
+            return entidade + " " + tipo + " " + Arrays.toString(ids);
+        }
+    }
+
+    interface Ouvinte {
+        void aoAlterar(Evento evento);
+    }
+
+    private final List<Ouvinte> ouvintes = new CopyOnWriteArrayList<>();
+
+    /**
+     * @return ação que cancela a inscrição
+     */
+    public Runnable inscrever(Ouvinte ouvinte) {
+        ouvintes.add(ouvinte);
+        return () -> ouvintes.remove(ouvinte);
+    }
+
+    public void publicar(Entidade entidade, Tipo tipo, long... ids) {
+        if (ouvintes.isEmpty()) {
+            return;
+        }
+        Evento evento = new Evento(entidade, tipo, ids);
+        for (Ouvinte ouvinte : ouvintes) {
+            try {
+                ouvinte.aoAlterar(evento);
+            } catch (RuntimeException e) {
+                // A gravação já foi confirmada: um ouvinte com defeito não a desfaz
+                e.printStackTrace();
+            }
+        }
+    }
+}
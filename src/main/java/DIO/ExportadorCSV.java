@@ -0,0 +1,395 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.text.DecimalFormatSymbols;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Exporta o relatório de itens de pedido para CSV em fluxo contínuo.
+ * As linhas são lidas de um cursor (sem materializar os pedidos) e codificadas
+ * diretamente em UTF-8 num buffer de 1 MiB gravado via FileChannel, sem
+ * String.format: o uso de memória não depende do número de linhas.
+ *
+ * O formato é o mesmo do exportador anterior: "Cliente;Produto;Quantidade;Subtotal",
+ * com o subtotal em duas casas decimais no separador decimal do locale padrão.
+ *
+ * No modo paralelo, os pedidos são divididos em faixas de id; cada faixa é
+ * formatada por uma thread própria, com sua conexão de leitura, num arquivo
+ * temporário. As partes são concatenadas em ordem, de modo que o resultado é
+ * idêntico byte a byte ao da exportação sequencial.
+ */
+class ExportadorCSV {
+    static final String CABECALHO = "Cliente;Produto;Quantidade;Subtotal\n";
+    static final int TAMANHO_BUFFER = 1 << 20;
+    // Intervalo (em linhas) entre avisos de progresso e verificações de cancelamento
+    static final int INTERVALO_PROGRESSO = 8192;
+
+    // Faixas por thread: mais faixas que threads equilibram a carga entre elas
+    static final int FAIXAS_POR_THREAD = 4;
+    static final String ORDEM = " ORDER BY p.id, i.produto_id";
+
+    static final String SQL_ITENS = "SELECT c.nome AS cliente_nome, pr.nome AS produto_nome, i.quantidade, pr.preco " +
+            "FROM pedidos p " +
+            "JOIN clientes c ON c.id = p.cliente_id " +
+            "JOIN itens_pedido i ON i.pedido_id = p.id " +
+            "JOIN produtos pr ON pr.id = i.produto_id";
+
+    /**
+     * Recebe o total de linhas exportadas até o momento e o total esperado.
+     */
+    interface Progresso {
+        void atualizar(long linhas, long total);
+    }
+
+    private final GerenciadorConexoes conexoes;
+
+    public ExportadorCSV(GerenciadorConexoes conexoes) {
+        this.conexoes = conexoes;
+    }
+
+    /**
+     * Exporta todos os itens de pedido. Retorna o número de linhas gravadas.
+     * Se 'cancelado' retornar true, o arquivo parcial é removido e uma
+     * CancellationException é lançada.
+     */
+    public long exportar(File arquivo, Progresso progresso, BooleanSupplier cancelado) throws IOException, SQLException {
+        try (FileChannel canal = FileChannel.open(arquivo.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            SaidaCSV saida = new SaidaCSV(canal);
+            saida.escreverTexto(CABECALHO);
+            long linhas = conexoes.ler(statements -> {
+                long total = progresso != null ? contarItens(statements) : 0;
+                try (PreparedStatement pstmt = statements.preparar(SQL_ITENS + ORDEM);
+                     ResultSet rs = pstmt.executeQuery()) {
+                    return escreverLinhas(rs, saida, progresso, cancelado, total);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            saida.descarregar();
+            return linhas;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } catch (CancellationException e) {
+            Files.deleteIfExists(arquivo.toPath());
+            throw e;
+        }
+    }
+
+    /**
+     * Exporta em paralelo, dividindo os pedidos em faixas de id. Com paralelismo 1
+     * equivale a exportar(). A saída é idêntica à da exportação sequencial.
+     */
+    public long exportarParalelo(File arquivo, int paralelismo, Progresso progresso, BooleanSupplier cancelado)
+            throws IOException, SQLException {
+        if (paralelismo <= 1) {
+            return exportar(arquivo, progresso, cancelado);
+        }
+
+        long[] limites = conexoes.ler(statements -> {
+            try (PreparedStatement pstmt = statements.preparar("SELECT MIN(id), MAX(id) FROM pedidos");
+                 ResultSet rs = pstmt.executeQuery()) {
+                rs.next();
+                return new long[]{rs.getLong(1), rs.getLong(2), rs.wasNull() ? 1 : 0};
+            }
+        });
+        long total = progresso != null ? conexoes.ler(ExportadorCSV::contarItens) : 0;
+        long menorId = limites[0];
+        long maiorId = limites[1];
+        boolean vazio = limites[2] == 1;
+
+        // Faixas [inicio, fim) de tamanho igual sobre o intervalo de ids
+        int faixas = vazio ? 0 : (int) Math.max(1, Math.min((long) paralelismo * FAIXAS_POR_THREAD, maiorId - menorId + 1));
+        long tamanhoFaixa = vazio ? 0 : (maiorId - menorId) / faixas + 1;
+
+        List<Path> partes = new ArrayList<>();
+        AtomicBoolean abortar = new AtomicBoolean();
+        BooleanSupplier interromper = () -> abortar.get() || (cancelado != null && cancelado.getAsBoolean());
+        AtomicLong linhasExportadas = new AtomicLong();
+        ExecutorService executor = Executors.newFixedThreadPool(paralelismo, r -> {
+            Thread t = new Thread(r, "erp-exportacao");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Future<Long>> resultados = new ArrayList<>();
+            for (int f = 0; f < faixas; f++) {
+                long inicio = menorId + f * tamanhoFaixa;
+                long fim = Math.min(maiorId + 1, inicio + tamanhoFaixa);
+                Path parte = Files.createTempFile("erp-exportacao-", ".part");
+                partes.add(parte);
+                resultados.add(executor.submit(() -> exportarFaixa(parte, inicio, fim, interromper, progresso, linhasExportadas, total)));
+            }
+
+            long linhas = 0;
+            for (Future<Long> resultado : resultados) {
+                try {
+                    linhas += resultado.get();
+                } catch (ExecutionException e) {
+                    // Uma faixa falhou: interrompe as demais e propaga a causa original
+                    abortar.set(true);
+                    Throwable causa = e.getCause();
+                    if (causa instanceof SQLException) {
+                        throw (SQLException) causa;
+                    } else if (causa instanceof IOException) {
+                        throw (IOException) causa;
+                    } else if (causa instanceof RuntimeException) {
+                        throw (RuntimeException) causa;
+                    }
+                    throw new IOException(causa);
+                } catch (InterruptedException e) {
+                    abortar.set(true);
+                    Thread.currentThread().interrupt();
+                    throw new CancellationException("Exportação interrompida.");
+                }
+            }
+
+            juntarPartes(arquivo, partes);
+            if (progresso != null) {
+                progresso.atualizar(linhas, Math.max(total, linhas));
+            }
+            return linhas;
+        } catch (CancellationException e) {
+            Files.deleteIfExists(arquivo.toPath());
+            throw e;
+        } finally {
+            executor.shutdownNow();
+            for (Path parte : partes) {
+                Files.deleteIfExists(parte);
+            }
+        }
+    }
+
+    private long exportarFaixa(Path parte, long inicio, long fim, BooleanSupplier cancelado, Progresso progresso,
+                               AtomicLong linhasExportadas, long total) throws IOException, SQLException {
+        // Converte o progresso local da faixa em progresso global da exportação
+        long[] ultimo = new long[1];
+        Progresso progressoFaixa = progresso == null ? null : (linhas, totalFaixa) -> {
+            long acumulado = linhasExportadas.addAndGet(linhas - ultimo[0]);
+            ultimo[0] = linhas;
+            progresso.atualizar(acumulado, total);
+        };
+        try (FileChannel canal = FileChannel.open(parte, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            SaidaCSV saida = new SaidaCSV(canal, TAMANHO_BUFFER / 4);
+            long linhas = conexoes.ler(statements -> {
+                try (PreparedStatement pstmt = statements.preparar(SQL_ITENS + " WHERE p.id >= ? AND p.id < ?" + ORDEM)) {
+                    pstmt.setLong(1, inicio);
+                    pstmt.setLong(2, fim);
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        return escreverLinhas(rs, saida, progressoFaixa, cancelado, total);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            saida.esvaziar();
+            return linhas;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    // Concatena o cabeçalho e as partes, na ordem das faixas, no arquivo final
+    private static void juntarPartes(File arquivo, List<Path> partes) throws IOException {
+        try (FileChannel destino = FileChannel.open(arquivo.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            destino.write(ByteBuffer.wrap(CABECALHO.getBytes(StandardCharsets.UTF_8)));
+            for (Path parte : partes) {
+                try (FileChannel origem = FileChannel.open(parte, StandardOpenOption.READ)) {
+                    long tamanho = origem.size();
+                    long transferido = 0;
+                    while (transferido < tamanho) {
+                        transferido += origem.transferTo(transferido, tamanho - transferido, destino);
+                    }
+                }
+            }
+            destino.force(false);
+        }
+    }
+
+    static long contarItens(CacheStatements statements) throws SQLException {
+        try (PreparedStatement pstmt = statements.preparar("SELECT COUNT(*) FROM itens_pedido");
+             ResultSet rs = pstmt.executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    /**
+     * Grava as linhas do cursor (cliente_nome, produto_nome, quantidade, preco) na saída.
+     */
+    static long escreverLinhas(ResultSet rs, SaidaCSV saida, Progresso progresso, BooleanSupplier cancelado, long total)
+            throws SQLException, IOException {
+        long linhas = 0;
+        if (cancelado != null && cancelado.getAsBoolean()) {
+            throw new CancellationException("Exportação cancelada.");
+        }
+        while (rs.next()) {
+            int quantidade = rs.getInt(3);
+            saida.escreverTexto(rs.getString(1));
+            saida.escreverByte(';');
+            saida.escreverTexto(rs.getString(2));
+            saida.escreverByte(';');
+            saida.escreverLong(quantidade);
+            saida.escreverByte(';');
+            saida.escreverDecimal2(quantidade * rs.getDouble(4));
+            saida.escreverByte('\n');
+
+            if (++linhas % INTERVALO_PROGRESSO == 0) {
+                if (cancelado != null && cancelado.getAsBoolean()) {
+                    throw new CancellationException("Exportação cancelada.");
+                }
+                if (progresso != null) {
+                    progresso.atualizar(linhas, total);
+                }
+            }
+        }
+        if (progresso != null) {
+            progresso.atualizar(linhas, Math.max(total, linhas));
+        }
+        return linhas;
+    }
+
+    /**
+     * Buffer de bytes com codificação UTF-8 e formatação numérica sem alocações.
+     */
+    static class SaidaCSV {
+        private static final int MAX_DIGITOS = 20;
+
+        private final FileChannel canal;
+        private final ByteBuffer buffer;
+        private final byte separadorDecimal;
+        private final byte[] digitos = new byte[MAX_DIGITOS];
+
+        SaidaCSV(FileChannel canal) {
+            this(canal, TAMANHO_BUFFER);
+        }
+
+        SaidaCSV(FileChannel canal, int capacidade) {
+            this.canal = canal;
+            this.buffer = ByteBuffer.allocateDirect(capacidade);
+            // Mesmo separador que String.format("%.2f") usaria
+            char separador = DecimalFormatSymbols.getInstance(Locale.getDefault(Locale.Category.FORMAT)).getDecimalSeparator();
+            this.separadorDecimal = separador < 0x80 ? (byte) separador : (byte) '.';
+        }
+
+        void escreverByte(int b) throws IOException {
+            if (!buffer.hasRemaining()) {
+                esvaziar();
+            }
+            buffer.put((byte) b);
+        }
+
+        void escreverTexto(String texto) throws IOException {
+            if (texto == null) {
+                escreverTexto("null");
+                return;
+            }
+            for (int i = 0; i < texto.length(); i++) {
+                char c = texto.charAt(i);
+                if (c < 0x80) {
+                    escreverByte(c);
+                } else if (c < 0x800) {
+                    escreverByte(0xC0 | (c >> 6));
+                    escreverByte(0x80 | (c & 0x3F));
+                } else if (Character.isHighSurrogate(c) && i + 1 < texto.length() && Character.isLowSurrogate(texto.charAt(i + 1))) {
+                    int cp = Character.toCodePoint(c, texto.charAt(++i));
+                    escreverByte(0xF0 | (cp >> 18));
+                    escreverByte(0x80 | ((cp >> 12) & 0x3F));
+                    escreverByte(0x80 | ((cp >> 6) & 0x3F));
+                    escreverByte(0x80 | (cp & 0x3F));
+                } else if (Character.isSurrogate(c)) {
+                    escreverByte('?'); // surrogate isolado, como faria o encoder padrão
+                } else {
+                    escreverByte(0xE0 | (c >> 12));
+                    escreverByte(0x80 | ((c >> 6) & 0x3F));
+                    escreverByte(0x80 | (c & 0x3F));
+                }
+            }
+        }
+
+        void escreverLong(long valor) throws IOException {
+            if (valor < 0) {
+                escreverByte('-');
+                if (valor == Long.MIN_VALUE) {
+                    escreverTexto("9223372036854775808");
+                    return;
+                }
+                valor = -valor;
+            }
+            int pos = MAX_DIGITOS;
+            do {
+                digitos[--pos] = (byte) ('0' + (valor % 10));
+                valor /= 10;
+            } while (valor != 0);
+            for (; pos < MAX_DIGITOS; pos++) {
+                escreverByte(digitos[pos]);
+            }
+        }
+
+        /**
+         * Equivalente a String.format("%.2f", valor) (arredondamento HALF_UP sobre a
+         * representação decimal mais curta do double), sem alocar no caso comum.
+         */
+        void escreverDecimal2(double valor) throws IOException {
+            if (Double.isNaN(valor) || Double.isInfinite(valor)) {
+                escreverTexto(Double.isNaN(valor) ? "NaN" : (valor > 0 ? "Infinity" : "-Infinity"));
+                return;
+            }
+            double escalado = Math.abs(valor) * 100;
+            if (escalado >= 1e15) {
+                // Magnitudes fora da precisão de centavos: caminho lento, mas exato
+                escreverTexto(String.format("%.2f", valor));
+                return;
+            }
+            long centavos;
+            if (Math.abs(escalado - Math.floor(escalado) - 0.5) > 1e-6) {
+                centavos = (long) Math.floor(escalado + 0.5);
+            } else {
+                // Perto de meio centavo: decide pela representação decimal, como o Formatter
+                centavos = BigDecimal.valueOf(Math.abs(valor)).setScale(2, RoundingMode.HALF_UP).unscaledValue().longValue();
+            }
+            if (valor < 0 || (valor == 0 && 1 / valor < 0)) {
+                escreverByte('-');
+            }
+            escreverLong(centavos / 100);
+            escreverByte(separadorDecimal);
+            long resto = centavos % 100;
+            escreverByte('0' + (int) (resto / 10));
+            escreverByte('0' + (int) (resto % 10));
+        }
+
+        void descarregar() throws IOException {
+            esvaziar();
+            canal.force(false);
+        }
+
+        void esvaziar() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                canal.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
@@ -0,0 +1,315 @@
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Gerador de dados sintéticos para testes de escala: preenche clientes, produtos,
+ * pedidos e itens_pedido em lotes pela conexão de escrita (sem passar pelas DAOs,
+ * que gravam uma linha por transação).
+ *
+ * A popularidade dos produtos segue uma distribuição de Zipf (o produto de posição
+ * k é escolhido com peso 1/k^s, em ordem embaralhada pela semente) e os clientes
+ * são distribuídos entre os estados conforme pesos configuráveis. Com a mesma
+ * configuração e semente o banco gerado é sempre o mesmo. Os ids continuam a
+ * partir dos já existentes, então é possível gerar sobre um banco com dados.
+ *
+ * Uso: java GeradorDados [--banco url] [--clientes n] [--produtos n] [--pedidos n]
+ *      [--itens-max n] [--zipf s] [--estados SP=22,MG=10,...] [--semente n]
+ */
+class GeradorDados {
+    private static final int LINHAS_POR_TRANSACAO = 50_000;
+
+    // Participação aproximada de cada estado na população brasileira (%)
+    static final Map<String, Double> ESTADOS_PADRAO = new LinkedHashMap<>();
+
+    static {
+        String[] estados = {"SP", "MG", "RJ", "BA", "PR", "RS", "PE", "CE", "PA", "SC", "GO", "MA", "AM", "ES",
+                "PB", "MT", "RN", "PI", "AL", "DF", "MS", "SE", "RO", "TO", "AC", "AP", "RR"};
+        double[] pesos = {21.9, 10.0, 7.9, 6.9, 5.6, 5.3, 4.5, 4.3, 4.0, 3.7, 3.5, 3.3, 1.9, 1.9,
+                1.9, 1.8, 1.6, 1.6, 1.5, 1.4, 1.4, 1.1, 0.8, 0.7, 0.4, 0.4, 0.3};
+        for (int i = 0; i < estados.length; i++) {
+            ESTADOS_PADRAO.put(estados[i], pesos[i]);
+        }
+    }
+
+    /**
+     * Volumes, distribuições e semente da geração.
+     */
+    static class Configuracao {
+        long clientes = 10_000;
+        int produtos = 1_000;
+        long pedidos = 100_000;
+        int itensMaximos = 5;
+        double expoenteZipf = 1.0;
+        Map<String, Double> estados = ESTADOS_PADRAO;
+        long semente = 42;
+
+        /**
+         * Lê as opções "--nome valor" conhecidas; as demais são ignoradas (ex.: as do TesteEscala).
+         */
+        static Configuracao ler(String[] args) {
+            Configuracao c = new Configuracao();
+            for (int i = 0; i + 1 < args.length; i += 2) {
+                String valor = args[i + 1];
+                switch (args[i]) {
+                    case "--clientes":
+                        c.clientes = Long.parseLong(valor);
+                        break;
+                    case "--produtos":
+                        c.produtos = Integer.parseInt(valor);
+                        break;
+                    case "--pedidos":
+                        c.pedidos = Long.parseLong(valor);
+                        break;
+                    case "--itens-max":
+                        c.itensMaximos = Integer.parseInt(valor);
+                        break;
+                    case "--zipf":
+                        c.expoenteZipf = Double.parseDouble(valor);
+                        break;
+                    case "--estados":
+                        c.estados = lerEstados(valor);
+                        break;
+                    case "--semente":
+                        c.semente = Long.parseLong(valor);
+                        break;
+                    default:
+                        break;
+                }
+            }
+            if (c.clientes < 1 || c.produtos < 1 || c.pedidos < 0 || c.itensMaximos < 1 || c.expoenteZipf < 0) {
+                throw new IllegalArgumentException("Volumes devem ser positivos e o expoente de Zipf não negativo");
+            }
+            return c;
+        }
+
+        // "SP=40,RJ=20,MG=10"
+        private static Map<String, Double> lerEstados(String texto) {
+            Map<String, Double> estados = new LinkedHashMap<>();
+            for (String par : texto.split(",")) {
+                String[] partes = par.split("=");
+                if (partes.length != 2) {
+                    throw new IllegalArgumentException("Estado inválido: '" + par + "' (use UF=peso)");
+                }
+                estados.put(partes[0].trim().toUpperCase(), Double.parseDouble(partes[1].trim()));
+            }
+            return estados;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%,d clientes, %,d produtos, %,d pedidos (até %d itens), Zipf s=%.2f, semente %d",
+                    clientes, produtos, pedidos, itensMaximos, expoenteZipf, semente);
+        }
+    }
+
+    /**
+     * Quantidade de linhas gravadas em cada tabela.
+     */
+    static class Resultado {
+        long clientes, produtos, pedidos, itens;
+        long produtoMaisPopular; // id do produto de maior peso na distribuição de Zipf
+    }
+
+    private final GerenciadorConexoes conexoes;
+    private final Configuracao configuracao;
+
+    public GeradorDados(GerenciadorConexoes conexoes, Configuracao configuracao) {
+        this.conexoes = conexoes;
+        this.configuracao = configuracao;
+    }
+
+    public Resultado gerar() throws SQLException {
+        Configuracao c = configuracao;
+        SplittableRandom aleatorio = new SplittableRandom(c.semente);
+        Resultado resultado = new Resultado();
+
+        long primeiroProduto = proximoId("produtos");
+        double[] precos = new double[c.produtos];
+        for (int i = 0; i < c.produtos; i++) {
+            precos[i] = 1 + aleatorio.nextInt(50_000) / 100.0;
+        }
+        emLotes(c.produtos, "INSERT INTO produtos (id, nome, preco) VALUES (?, ?, ?)", (pstmt, i) -> {
+            pstmt.setLong(1, primeiroProduto + i);
+            pstmt.setString(2, "Produto " + (primeiroProduto + i));
+            pstmt.setDouble(3, precos[(int) i]);
+        });
+        resultado.produtos = c.produtos;
+
+        long primeiroCliente = proximoId("clientes");
+        String[] estados = c.estados.keySet().toArray(new String[0]);
+        double[] acumuladoEstados = acumulado(c.estados.values().stream().mapToDouble(Double::doubleValue).toArray());
+        emLotes(c.clientes, "INSERT INTO clientes (id, nome, email, telefone, endereco, cidade, estado, pais) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?)", (pstmt, i) -> {
+            long id = primeiroCliente + i;
+            String estado = estados[sortear(acumuladoEstados, aleatorio)];
+            pstmt.setLong(1, id);
+            pstmt.setString(2, "Cliente " + id);
+            pstmt.setString(3, "cliente" + id + "@exemplo.com");
+            pstmt.setString(4, String.format("11 9%04d-%04d", aleatorio.nextInt(10_000), aleatorio.nextInt(10_000)));
+            pstmt.setString(5, "Rua " + (1 + aleatorio.nextInt(500)) + ", " + (1 + aleatorio.nextInt(2_000)));
+            pstmt.setString(6, "Cidade " + estado + " " + (1 + aleatorio.nextInt(20)));
+            pstmt.setString(7, estado);
+            pstmt.setString(8, "Brasil");
+        });
+        resultado.clientes = c.clientes;
+
+        // Posição de popularidade -> produto, embaralhada para os populares não serem sempre os primeiros ids
+        int[] produtoPorPosicao = new int[c.produtos];
+        for (int i = 0; i < c.produtos; i++) {
+            produtoPorPosicao[i] = i;
+        }
+        for (int i = c.produtos - 1; i > 0; i--) {
+            int j = aleatorio.nextInt(i + 1);
+            int troca = produtoPorPosicao[i];
+            produtoPorPosicao[i] = produtoPorPosicao[j];
+            produtoPorPosicao[j] = troca;
+        }
+        double[] pesosZipf = new double[c.produtos];
+        for (int k = 0; k < c.produtos; k++) {
+            pesosZipf[k] = 1 / Math.pow(k + 1, c.expoenteZipf);
+        }
+        double[] acumuladoZipf = acumulado(pesosZipf);
+        resultado.produtoMaisPopular = primeiroProduto + produtoPorPosicao[0];
+
+        long primeiroPedido = proximoId("pedidos");
+        int itensPorPedido = Math.min(c.itensMaximos, c.produtos);
+        for (long inicio = 0; inicio < c.pedidos; inicio += LINHAS_POR_TRANSACAO / itensPorPedido) {
+            long fim = Math.min(c.pedidos, inicio + LINHAS_POR_TRANSACAO / itensPorPedido);
+            long inicioLote = inicio;
+            resultado.itens += conexoes.escrever(statements -> {
+                long itensGravados = 0;
+                int[] produtosDoPedido = new int[itensPorPedido];
+                try (PreparedStatement pstmtPedido = statements.preparar(
+                        "INSERT INTO pedidos (id, cliente_id, total, quantidade_itens) VALUES (?, ?, ?, ?)");
+                     PreparedStatement pstmtItem = statements.preparar(
+                             "INSERT INTO itens_pedido (pedido_id, produto_id, quantidade) VALUES (?, ?, ?)")) {
+                    for (long p = inicioLote; p < fim; p++) {
+                        long pedidoId = primeiroPedido + p;
+                        int itens = sortearProdutos(1 + aleatorio.nextInt(itensPorPedido), acumuladoZipf,
+                                produtoPorPosicao, produtosDoPedido, aleatorio);
+                        double total = 0;
+                        for (int k = 0; k < itens; k++) {
+                            int quantidade = 1 + aleatorio.nextInt(10);
+                            total += quantidade * precos[produtosDoPedido[k]];
+                            pstmtItem.setLong(1, pedidoId);
+                            pstmtItem.setLong(2, primeiroProduto + produtosDoPedido[k]);
+                            pstmtItem.setInt(3, quantidade);
+                            pstmtItem.addBatch();
+                        }
+                        itensGravados += itens;
+                        pstmtPedido.setLong(1, pedidoId);
+                        pstmtPedido.setLong(2, primeiroCliente + aleatorio.nextLong(c.clientes));
+                        pstmtPedido.setDouble(3, total);
+                        pstmtPedido.setInt(4, itens);
+                        pstmtPedido.addBatch();
+                    }
+                    pstmtPedido.executeBatch();
+                    pstmtItem.executeBatch();
+                }
+                return itensGravados;
+            });
+        }
+        resultado.pedidos = c.pedidos;
+
+        // Estatísticas atualizadas para o planejador, como após as migrações
+        conexoes.escrever(statements -> {
+            try (java.sql.Statement stmt = statements.getConnection().createStatement()) {
+                stmt.execute("ANALYZE");
+            }
+            return null;
+        });
+        return resultado;
+    }
+
+    /**
+     * Preenche uma linha do lote; 'i' é a posição da linha (0 a total - 1).
+     */
+    private interface Linha {
+        void preencher(PreparedStatement pstmt, long i) throws SQLException;
+    }
+
+    private void emLotes(long total, String sql, Linha linha) throws SQLException {
+        for (long inicio = 0; inicio < total; inicio += LINHAS_POR_TRANSACAO) {
+            long inicioLote = inicio;
+            long fim = Math.min(total, inicio + LINHAS_POR_TRANSACAO);
+            conexoes.escrever(statements -> {
+                try (PreparedStatement pstmt = statements.preparar(sql)) {
+                    for (long i = inicioLote; i < fim; i++) {
+                        linha.preencher(pstmt, i);
+                        pstmt.addBatch();
+                    }
+                    pstmt.executeBatch();
+                }
+                return null;
+            });
+        }
+    }
+
+    private long proximoId(String tabela) throws SQLException {
+        return conexoes.ler(statements -> {
+            try (PreparedStatement pstmt = statements.preparar("SELECT COALESCE(MAX(id), 0) + 1 FROM " + tabela);
+                 ResultSet rs = pstmt.executeQuery()) {
+                rs.next();
+                return rs.getLong(1);
+            }
+        });
+    }
+
+    // Sorteia até 'quantidade' produtos distintos (índices 0..produtos-1) em 'destino'; devolve quantos
+    private static int sortearProdutos(int quantidade, double[] acumuladoZipf, int[] produtoPorPosicao,
+                                       int[] destino, SplittableRandom aleatorio) {
+        int sorteados = 0;
+        // Com distribuição muito concentrada, repetições são comuns: limita as tentativas
+        for (int tentativa = 0; sorteados < quantidade && tentativa < quantidade * 20; tentativa++) {
+            int produto = produtoPorPosicao[sortear(acumuladoZipf, aleatorio)];
+            boolean repetido = false;
+            for (int k = 0; k < sorteados && !repetido; k++) {
+                repetido = destino[k] == produto;
+            }
+            if (!repetido) {
+                destino[sorteados++] = produto;
+            }
+        }
+        return sorteados;
+    }
+
+    private static double[] acumulado(double[] pesos) {
+        double[] acumulado = new double[pesos.length];
+        double soma = 0;
+        for (int i = 0; i < pesos.length; i++) {
+            soma += pesos[i];
+            acumulado[i] = soma;
+        }
+        return acumulado;
+    }
+
+    // Índice sorteado proporcionalmente aos pesos, por busca binária no acumulado
+    private static int sortear(double[] acumulado, SplittableRandom aleatorio) {
+        double alvo = aleatorio.nextDouble() * acumulado[acumulado.length - 1];
+        int indice = Arrays.binarySearch(acumulado, alvo);
+        return Math.min(acumulado.length - 1, indice >= 0 ? indice + 1 : -indice - 1);
+    }
+
+    public static void main(String[] args) throws SQLException {
+        String url = "jdbc:sqlite:erp_database.db";
+        for (int i = 0; i + 1 < args.length; i++) {
+            if ("--banco".equals(args[i])) {
+                url = args[i + 1];
+            }
+        }
+        Configuracao configuracao = Configuracao.ler(args);
+        System.out.println("Gerando " + configuracao + " em " + url);
+        try (GerenciadorConexoes conexoes = new GerenciadorConexoes(url, 1, CacheStatements.CAPACIDADE_PADRAO)) {
+            new MigracoesEsquema(conexoes).aplicarPendentes();
+            long inicio = System.nanoTime();
+            Resultado r = new GeradorDados(conexoes, configuracao).gerar();
+            System.out.printf("%,d clientes, %,d produtos, %,d pedidos e %,d itens gravados em %.1f s.%n",
+                    r.clientes, r.produtos, r.pedidos, r.itens, (System.nanoTime() - inicio) / 1e9);
+        }
+    }
+}
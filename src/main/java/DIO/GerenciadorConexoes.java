@@ -0,0 +1,307 @@
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Gerencia as conexões com o SQLite em modo WAL.
+ * - Leituras: cada thread obtém sua própria conexão de um pool limitado, pelo tempo da operação.
+ * - Escritas: passam todas por uma única conexão, serializadas por uma trava e
+ *   executadas em transação, com nova tentativa e backoff em caso de SQLITE_BUSY.
+ * Cada conexão tem seu próprio CacheStatements.
+ *
+ * Em WAL, leitores não bloqueiam o escritor nem são bloqueados por ele, então
+ * relatórios e exportações podem rodar enquanto pedidos são gravados.
+ */
+class GerenciadorConexoes implements AutoCloseable {
+
+    /**
+     * Operação executada com os statements de uma conexão.
+     */
+    interface OperacaoSQL<R> {
+        R executar(CacheStatements statements) throws SQLException;
+    }
+
+    static final int TENTATIVAS_MAXIMAS = 8;
+    private static final long ESPERA_INICIAL_MS = 10;
+    private static final long ESPERA_MAXIMA_MS = 1000;
+    private static final long TEMPO_MAXIMO_EMPRESTIMO_S = 30;
+
+    private final String url;
+    private final int capacidadeStatements;
+    private final int maxLeitores;
+
+    private final Connection conexaoEscrita;
+    private final CacheStatements statementsEscrita;
+    private final ReentrantLock travaEscrita = new ReentrantLock();
+    // Ações a executar somente após o commit da transação corrente (protegidas pela trava de escrita)
+    private final List<Runnable> aposConfirmacao = new ArrayList<>();
+
+    private final BlockingQueue<CacheStatements> leitoresLivres;
+    private final List<CacheStatements> leitores = Collections.synchronizedList(new ArrayList<>());
+    private final ThreadLocal<CacheStatements> leitorDaThread = new ThreadLocal<>();
+    private volatile boolean fechado;
+
+    public GerenciadorConexoes(String url, int maxLeitores, int capacidadeStatements) throws SQLException {
+        this.url = url;
+        this.maxLeitores = maxLeitores;
+        this.capacidadeStatements = capacidadeStatements;
+        this.leitoresLivres = new ArrayBlockingQueue<>(maxLeitores);
+
+        Properties propriedades = propriedadesBase();
+        propriedades.setProperty("journal_mode", "WAL");
+        // Em WAL, NORMAL é seguro contra corrupção e evita um fsync por commit
+        propriedades.setProperty("synchronous", "NORMAL");
+        // A transação de escrita reserva o banco já no BEGIN, evitando BUSY ao promover leitura em escrita
+        propriedades.setProperty("transaction_mode", "IMMEDIATE");
+        this.conexaoEscrita = DriverManager.getConnection(url, propriedades);
+        this.statementsEscrita = new CacheStatements(conexaoEscrita, capacidadeStatements);
+    }
+
+    private static Properties propriedadesBase() {
+        Properties propriedades = new Properties();
+        propriedades.setProperty("foreign_keys", "true");
+        propriedades.setProperty("busy_timeout", "5000");
+        return propriedades;
+    }
+
+    /**
+     * Executa uma leitura numa conexão do pool. Dentro de uma escrita da mesma
+     * thread, usa a conexão de escrita para enxergar os dados ainda não confirmados.
+     */
+    public <R> R ler(OperacaoSQL<R> operacao) throws SQLException {
+        if (travaEscrita.isHeldByCurrentThread()) {
+            return operacao.executar(statementsEscrita);
+        }
+        CacheStatements emUso = leitorDaThread.get();
+        if (emUso != null) {
+            // Leitura aninhada: reaproveita a conexão já emprestada a esta thread
+            return operacao.executar(emUso);
+        }
+
+        CacheStatements leitor = emprestarLeitor();
+        leitorDaThread.set(leitor);
+        try {
+            for (int tentativa = 1; ; tentativa++) {
+                try {
+                    return operacao.executar(leitor);
+                } catch (SQLException e) {
+                    if (!ocupado(e) || tentativa >= TENTATIVAS_MAXIMAS) {
+                        throw e;
+                    }
+                    esperar(tentativa);
+                }
+            }
+        } finally {
+            leitorDaThread.remove();
+            leitoresLivres.offer(leitor);
+        }
+    }
+
+    /**
+     * Executa uma escrita na conexão única de escrita, dentro de uma transação.
+     * Escritas aninhadas participam da transação externa. Em SQLITE_BUSY/LOCKED a
+     * transação é desfeita e a operação inteira é repetida com backoff exponencial.
+     */
+    public <R> R escrever(OperacaoSQL<R> operacao) throws SQLException {
+        return escrever(operacao, false);
+    }
+
+    /**
+     * Como escrever(), mas o commit só retorna depois de sincronizado no disco
+     * (synchronous=FULL só nesta transação). Com NORMAL, uma queda de energia pode
+     * desfazer o último commit; use para gravações que não podem ser refeitas a
+     * partir de outra fonte depois do commit (ex.: o diário de pedidos, que descarta
+     * os registros aplicados). Aninhada, participa da transação externa, que decide.
+     */
+    public <R> R escreverDuravel(OperacaoSQL<R> operacao) throws SQLException {
+        return escrever(operacao, true);
+    }
+
+    private <R> R escrever(OperacaoSQL<R> operacao, boolean duravel) throws SQLException {
+        if (travaEscrita.isHeldByCurrentThread()) {
+            return operacao.executar(statementsEscrita);
+        }
+        verificarAberto();
+        travaEscrita.lock();
+        try {
+            // O modo de sincronização não pode mudar dentro de uma transação: troca antes do BEGIN
+            if (duravel) {
+                definirSincronizacao("FULL");
+            }
+            try {
+                return escreverComTentativas(operacao);
+            } finally {
+                if (duravel) {
+                    definirSincronizacao("NORMAL");
+                }
+            }
+        } finally {
+            travaEscrita.unlock();
+        }
+    }
+
+    // Transação com nova tentativa em SQLITE_BUSY/LOCKED; chamado com a trava de escrita
+    private <R> R escreverComTentativas(OperacaoSQL<R> operacao) throws SQLException {
+        for (int tentativa = 1; ; tentativa++) {
+            conexaoEscrita.setAutoCommit(false);
+            try {
+                R resultado = operacao.executar(statementsEscrita);
+                conexaoEscrita.commit();
+                executarAposConfirmacao();
+                return resultado;
+            } catch (SQLException e) {
+                desfazer();
+                if (!ocupado(e) || tentativa >= TENTATIVAS_MAXIMAS) {
+                    throw e;
+                }
+                esperar(tentativa);
+            } catch (RuntimeException e) {
+                desfazer();
+                throw e;
+            } finally {
+                conexaoEscrita.setAutoCommit(true);
+            }
+        }
+    }
+
+    private void definirSincronizacao(String modo) throws SQLException {
+        try (Statement stmt = conexaoEscrita.createStatement()) {
+            stmt.execute("PRAGMA synchronous = " + modo);
+        }
+    }
+
+    /**
+     * Agenda uma ação para depois do commit da escrita corrente (ex.: atualizar caches).
+     * Fora de uma escrita, executa imediatamente. Se a transação for desfeita, a ação é descartada.
+     */
+    public void aoConfirmar(Runnable acao) {
+        if (travaEscrita.isHeldByCurrentThread()) {
+            aposConfirmacao.add(acao);
+        } else {
+            acao.run();
+        }
+    }
+
+    public int getMaxLeitores() {
+        return maxLeitores;
+    }
+
+    public int getLeitoresAbertos() {
+        return leitores.size();
+    }
+
+    /**
+     * Fecha todas as conexões (e seus statements em cache).
+     */
+    @Override
+    public void close() {
+        fechado = true;
+        synchronized (leitores) {
+            for (CacheStatements leitor : leitores) {
+                fechar(leitor);
+            }
+            leitores.clear();
+        }
+        leitoresLivres.clear();
+        travaEscrita.lock();
+        try {
+            fechar(statementsEscrita);
+        } finally {
+            travaEscrita.unlock();
+        }
+    }
+
+    private CacheStatements emprestarLeitor() throws SQLException {
+        verificarAberto();
+        CacheStatements leitor = leitoresLivres.poll();
+        if (leitor != null) {
+            return leitor;
+        }
+        synchronized (leitores) {
+            if (leitores.size() < maxLeitores) {
+                leitor = new CacheStatements(abrirLeitor(), capacidadeStatements);
+                leitores.add(leitor);
+                return leitor;
+            }
+        }
+        // Pool esgotado: aguarda a devolução de uma conexão
+        try {
+            leitor = leitoresLivres.poll(TEMPO_MAXIMO_EMPRESTIMO_S, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrompido aguardando uma conexão de leitura.", e);
+        }
+        if (leitor == null) {
+            throw new SQLException("Tempo esgotado aguardando uma conexão de leitura.");
+        }
+        return leitor;
+    }
+
+    private Connection abrirLeitor() throws SQLException {
+        Connection conexao = DriverManager.getConnection(url, propriedadesBase());
+        try (Statement stmt = conexao.createStatement()) {
+            // Garante que nada seja gravado por uma conexão de leitura
+            stmt.execute("PRAGMA query_only = ON");
+        }
+        return conexao;
+    }
+
+    private void executarAposConfirmacao() {
+        List<Runnable> acoes = new ArrayList<>(aposConfirmacao);
+        aposConfirmacao.clear();
+        for (Runnable acao : acoes) {
+            acao.run();
+        }
+    }
+
+    private void desfazer() {
+        aposConfirmacao.clear();
+        try {
+            conexaoEscrita.rollback();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void verificarAberto() throws SQLException {
+        if (fechado) {
+            throw new SQLException("O gerenciador de conexões já foi fechado.");
+        }
+    }
+
+    // SQLITE_BUSY (5) e SQLITE_LOCKED (6), inclusive códigos estendidos
+    private static boolean ocupado(SQLException e) {
+        int codigo = e.getErrorCode() & 0xFF;
+        return codigo == 5 || codigo == 6;
+    }
+
+    private static void esperar(int tentativa) throws SQLException {
+        long espera = Math.min(ESPERA_MAXIMA_MS, ESPERA_INICIAL_MS << (tentativa - 1));
+        try {
+            // Jitter para que threads concorrentes não tentem novamente ao mesmo tempo
+            Thread.sleep(espera + ThreadLocalRandom.current().nextLong(espera + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrompido durante nova tentativa após SQLITE_BUSY.", e);
+        }
+    }
+
+    private static void fechar(CacheStatements statements) {
+        statements.close();
+        try {
+            statements.getConnection().close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,219 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+/**
+ * Importação em massa de um arquivo CSV (separador ';', UTF-8).
+ * O arquivo é lido em fluxo, em lotes de TAMANHO_LOTE linhas: cada lote é
+ * validado em paralelo e gravado numa única transação com addBatch.
+ * A unicidade é garantida pelo próprio banco (conflitos são ignorados na
+ * inserção), sem um SELECT por linha. Linhas inválidas ou duplicadas vão
+ * para um arquivo de rejeitados ao lado do original.
+ */
+class ImportadorCSV<T> {
+    static final int TAMANHO_LOTE = 10_000;
+    static final String SUFIXO_REJEITADOS = ".rejeitados.csv";
+
+    /**
+     * Converte os campos de uma linha na entidade. Lança IllegalArgumentException
+     * com o motivo quando a linha é inválida.
+     */
+    interface Conversor<T> {
+        T converter(String[] campos);
+    }
+
+    /**
+     * Grava um lote numa transação; retorna, por posição, se a linha foi inserida
+     * (false quando ignorada por conflito de unicidade).
+     */
+    interface GravadorLote<T> {
+        boolean[] gravar(List<T> lote) throws SQLException;
+    }
+
+    /**
+     * Recebe o número de linhas processadas e o percentual aproximado do arquivo lido.
+     */
+    interface Progresso {
+        void atualizar(long linhas, int percentual);
+    }
+
+    /**
+     * Totais de uma importação.
+     */
+    static class Resultado {
+        final long lidas;
+        final long importadas;
+        final long rejeitadas;
+        final File arquivoRejeitados; // null quando não houve rejeição
+
+        Resultado(long lidas, long importadas, long rejeitadas, File arquivoRejeitados) {
+            this.lidas = lidas;
+            this.importadas = importadas;
+            this.rejeitadas = rejeitadas;
+            this.arquivoRejeitados = arquivoRejeitados;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d linhas lidas, %d importadas, %d rejeitadas", lidas, importadas, rejeitadas);
+        }
+    }
+
+    // Linha do arquivo com o resultado da validação
+    private static class Linha<T> {
+        final long numero;
+        final String texto;
+        T entidade;
+        String motivo;
+
+        Linha(long numero, String texto) {
+            this.numero = numero;
+            this.texto = texto;
+        }
+    }
+
+    private final String nomePrimeiraColuna;
+    private final int numeroCampos;
+    private final Conversor<T> conversor;
+    private final GravadorLote<T> gravador;
+
+    /**
+     * @param nomePrimeiraColuna usado para reconhecer (e pular) uma linha de cabeçalho
+     * @param numeroCampos       quantidade mínima de campos esperada por linha
+     */
+    public ImportadorCSV(String nomePrimeiraColuna, int numeroCampos, Conversor<T> conversor, GravadorLote<T> gravador) {
+        this.nomePrimeiraColuna = nomePrimeiraColuna;
+        this.numeroCampos = numeroCampos;
+        this.conversor = conversor;
+        this.gravador = gravador;
+    }
+
+    public Resultado importar(File arquivo, Progresso progresso, BooleanSupplier cancelado) throws IOException, SQLException {
+        File arquivoRejeitados = new File(arquivo.getAbsolutePath() + SUFIXO_REJEITADOS);
+        long tamanhoArquivo = Math.max(1, arquivo.length());
+        long lidas = 0, importadas = 0, rejeitadas = 0, caracteresLidos = 0;
+
+        BufferedWriter rejeitados = null;
+        try (BufferedReader leitor = Files.newBufferedReader(arquivo.toPath(), StandardCharsets.UTF_8)) {
+            List<Linha<T>> lote = new ArrayList<>(TAMANHO_LOTE);
+            String texto;
+            while (true) {
+                texto = leitor.readLine();
+                if (texto != null) {
+                    caracteresLidos += texto.length() + 1;
+                    lidas++;
+                    if (lidas == 1 && texto.startsWith("\uFEFF")) {
+                        texto = texto.substring(1); // BOM de arquivos salvos por planilhas
+                    }
+                    boolean cabecalho = lidas == 1 && texto.trim().toLowerCase().startsWith(nomePrimeiraColuna);
+                    if (!cabecalho && !texto.isBlank()) {
+                        lote.add(new Linha<>(lidas, texto));
+                    }
+                }
+                if (lote.size() == TAMANHO_LOTE || (texto == null && !lote.isEmpty())) {
+                    if (cancelado != null && cancelado.getAsBoolean()) {
+                        throw new CancellationException("Importação cancelada.");
+                    }
+                    validar(lote);
+                    gravar(lote);
+                    for (Linha<T> linha : lote) {
+                        if (linha.motivo == null) {
+                            importadas++;
+                            continue;
+                        }
+                        if (rejeitados == null) {
+                            rejeitados = Files.newBufferedWriter(arquivoRejeitados.toPath(), StandardCharsets.UTF_8);
+                            rejeitados.write("linha;motivo;conteudo\n");
+                        }
+                        rejeitados.write(linha.numero + ";" + linha.motivo.replace(';', ',') + ";" + linha.texto + "\n");
+                        rejeitadas++;
+                    }
+                    lote.clear();
+                    if (progresso != null) {
+                        progresso.atualizar(lidas, (int) Math.min(100, caracteresLidos * 100 / tamanhoArquivo));
+                    }
+                }
+                if (texto == null) {
+                    break;
+                }
+            }
+        } finally {
+            if (rejeitados != null) {
+                rejeitados.close();
+            }
+        }
+        if (rejeitadas == 0) {
+            Files.deleteIfExists(arquivoRejeitados.toPath());
+        }
+        return new Resultado(lidas, importadas, rejeitadas, rejeitadas == 0 ? null : arquivoRejeitados);
+    }
+
+    // Validação (parsing + regras) em paralelo; a ordem das linhas é preservada
+    private void validar(List<Linha<T>> lote) {
+        lote.parallelStream().forEach(linha -> {
+            String[] campos = dividir(linha.texto);
+            if (campos.length < numeroCampos) {
+                linha.motivo = "esperados " + numeroCampos + " campos, encontrados " + campos.length;
+                return;
+            }
+            try {
+                linha.entidade = conversor.converter(campos);
+            } catch (IllegalArgumentException e) {
+                linha.motivo = e.getMessage();
+            }
+        });
+    }
+
+    private void gravar(List<Linha<T>> lote) throws SQLException {
+        List<Linha<T>> validas = lote.stream().filter(l -> l.motivo == null).collect(Collectors.toList());
+        if (validas.isEmpty()) {
+            return;
+        }
+        boolean[] inseridas = gravador.gravar(validas.stream().map(l -> l.entidade).collect(Collectors.toList()));
+        for (int i = 0; i < validas.size(); i++) {
+            if (!inseridas[i]) {
+                validas.get(i).motivo = "registro duplicado";
+            }
+        }
+    }
+
+    /**
+     * Divide uma linha pelo separador ';', aceitando campos entre aspas ("" escapa aspas).
+     */
+    static String[] dividir(String linha) {
+        List<String> campos = new ArrayList<>();
+        StringBuilder atual = new StringBuilder();
+        boolean entreAspas = false;
+        for (int i = 0; i < linha.length(); i++) {
+            char c = linha.charAt(i);
+            if (entreAspas) {
+                if (c == '"' && i + 1 < linha.length() && linha.charAt(i + 1) == '"') {
+                    atual.append('"');
+                    i++;
+                } else if (c == '"') {
+                    entreAspas = false;
+                } else {
+                    atual.append(c);
+                }
+            } else if (c == '"') {
+                entreAspas = true;
+            } else if (c == ';') {
+                campos.add(atual.toString().trim());
+                atual.setLength(0);
+            } else {
+                atual.append(c);
+            }
+        }
+        campos.add(atual.toString().trim());
+        return campos.toArray(new String[0]);
+    }
+}
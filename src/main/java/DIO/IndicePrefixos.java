@@ -0,0 +1,275 @@
+import java.sql.SQLException;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.ObjLongConsumer;
+import java.util.regex.Pattern;
+
+/**
+ * Índice em memória de nomes por prefixo, para as sugestões enquanto se digita
+ * no diálogo de pedidos. Cada nome é indexado pelo texto completo e a partir de
+ * cada palavra ("João da Silva" é encontrado por "jo", "da" e "sil"), sem
+ * acentos e sem diferenciar maiúsculas.
+ *
+ * A base é um array ordenado de entradas, construído uma única vez a partir do
+ * banco (no primeiro uso) e consultado por busca binária. As gravações feitas
+ * depois entram num delta ordenado (TreeSet) e num mapa de nomes alterados, que
+ * invalida as entradas antigas do id; quando o delta cresce, base e delta são
+ * fundidos num novo array. Todos os métodos são sincronizados.
+ */
+class IndicePrefixos {
+    private static final Pattern ACENTOS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARADORES = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final int DELTA_MINIMO_FUSAO = 1024;
+    // Marca, em 'alterados', um id removido
+    private static final String REMOVIDO = new String("");
+
+    /**
+     * Fonte dos pares (nome, id) usados para construir a base.
+     */
+    interface Carregador {
+        void carregar(ObjLongConsumer<String> destino) throws SQLException;
+    }
+
+    private static final class Entrada {
+        final String chave;
+        final long id;
+        final String nome;
+
+        Entrada(String chave, long id, String nome) {
+            this.chave = chave;
+            this.id = id;
+            this.nome = nome;
+        }
+    }
+
+    private static final Comparator<Entrada> ORDEM = Comparator.<Entrada, String>comparing(e -> e.chave)
+            .thenComparingLong(e -> e.id);
+
+    private final Carregador carregador;
+    private Entrada[] base; // null até o primeiro uso ou após invalidar()
+    private long[] idsBase; // ids distintos da base, ordenados
+    private final TreeSet<Entrada> delta = new TreeSet<>(ORDEM);
+    // Nome atual dos ids gravados desde a construção da base (REMOVIDO se excluído)
+    private final Map<Long, String> alterados = new HashMap<>();
+    private int ids; // ids distintos válidos
+
+    public IndicePrefixos(Carregador carregador) {
+        this.carregador = carregador;
+    }
+
+    /**
+     * Ids dos primeiros 'limite' nomes (em ordem alfabética) com alguma palavra
+     * começando por 'prefixo'. Um prefixo vazio devolve os primeiros nomes do índice.
+     */
+    public synchronized long[] buscar(String prefixo, int limite) throws SQLException {
+        garantirCarregado();
+        String chave = normalizar(prefixo);
+        List<Entrada> daBase = coletar(iteradorBase(chave), chave, limite);
+        List<Entrada> doDelta = coletar(delta.tailSet(new Entrada(chave, Long.MIN_VALUE, null), true).iterator(), chave, limite);
+
+        // Funde as duas listas já ordenadas, sem repetir ids
+        long[] resultado = new long[limite];
+        Set<Long> vistos = new HashSet<>();
+        int total = 0, i = 0, j = 0;
+        while (total < limite && (i < daBase.size() || j < doDelta.size())) {
+            Entrada proxima = j >= doDelta.size() || (i < daBase.size() && ORDEM.compare(daBase.get(i), doDelta.get(j)) <= 0)
+                    ? daBase.get(i++) : doDelta.get(j++);
+            if (vistos.add(proxima.id)) {
+                resultado[total++] = proxima.id;
+            }
+        }
+        return Arrays.copyOf(resultado, total);
+    }
+
+    /**
+     * Número de ids distintos no índice.
+     */
+    public synchronized int getTamanho() throws SQLException {
+        garantirCarregado();
+        return ids;
+    }
+
+    /**
+     * Registra um nome novo ou alterado. Ignorado enquanto a base não foi construída,
+     * pois a construção já lerá o nome do banco.
+     */
+    public synchronized void gravar(long id, String nome) {
+        if (base == null) {
+            return;
+        }
+        String anterior = alterados.put(id, nome);
+        if (anterior == null ? Arrays.binarySearch(idsBase, id) < 0 : anterior == REMOVIDO) {
+            ids++;
+        }
+        for (String chave : chaves(nome)) {
+            // Um nome anterior do id com a mesma chave (só acentos ou maiúsculas mudaram)
+            // é igual para o TreeSet: troca a entrada em vez de manter a antiga, já inválida
+            Entrada entrada = new Entrada(chave, id, nome);
+            delta.remove(entrada);
+            delta.add(entrada);
+        }
+        if (delta.size() > Math.max(DELTA_MINIMO_FUSAO, base.length / 8)) {
+            fundir();
+        }
+    }
+
+    public synchronized void remover(long id) {
+        if (base == null) {
+            return;
+        }
+        String anterior = alterados.put(id, REMOVIDO);
+        if (anterior == null ? Arrays.binarySearch(idsBase, id) >= 0 : anterior != REMOVIDO) {
+            ids--;
+        }
+    }
+
+    /**
+     * Descarta o índice; ele será reconstruído do banco no próximo uso (ex.: após importações em lote).
+     */
+    public synchronized void invalidar() {
+        base = null;
+        idsBase = null;
+        delta.clear();
+        alterados.clear();
+        ids = 0;
+    }
+
+    /**
+     * Chave de busca: sem acentos, em minúsculas e com os separadores reduzidos a um espaço.
+     */
+    static String normalizar(String texto) {
+        String semAcentos = ACENTOS.matcher(Normalizer.normalize(texto, Normalizer.Form.NFD)).replaceAll("");
+        return SEPARADORES.matcher(semAcentos.toLowerCase(Locale.ROOT)).replaceAll(" ").stripLeading();
+    }
+
+    // O nome completo e o sufixo a partir de cada palavra seguinte
+    static List<String> chaves(String nome) {
+        List<String> chaves = new ArrayList<>();
+        String chave = normalizar(nome);
+        while (!chave.isEmpty()) {
+            chaves.add(chave);
+            int espaco = chave.indexOf(' ');
+            chave = espaco < 0 ? "" : chave.substring(espaco + 1);
+        }
+        return chaves;
+    }
+
+    private void garantirCarregado() throws SQLException {
+        if (base != null) {
+            return;
+        }
+        List<Entrada> entradas = new ArrayList<>();
+        carregador.carregar((nome, id) -> {
+            for (String chave : chaves(nome)) {
+                entradas.add(new Entrada(chave, id, nome));
+            }
+        });
+        definirBase(entradas.toArray(new Entrada[0]));
+    }
+
+    private void definirBase(Entrada[] entradas) {
+        Arrays.parallelSort(entradas, ORDEM);
+        long[] todosIds = new long[entradas.length];
+        for (int i = 0; i < entradas.length; i++) {
+            todosIds[i] = entradas[i].id;
+        }
+        Arrays.sort(todosIds);
+        int distintos = 0;
+        for (int i = 0; i < todosIds.length; i++) {
+            if (i == 0 || todosIds[i] != todosIds[i - 1]) {
+                todosIds[distintos++] = todosIds[i];
+            }
+        }
+        base = entradas;
+        idsBase = Arrays.copyOf(todosIds, distintos);
+        ids = distintos;
+    }
+
+    private Iterator<Entrada> iteradorBase(String chave) {
+        Entrada[] atual = base;
+        int inicio = primeiraPosicao(atual, chave);
+        return new Iterator<>() {
+            int posicao = inicio;
+
+            public boolean hasNext() {
+                return posicao < atual.length;
+            }
+
+            public Entrada next() {
+                return atual[posicao++];
+            }
+        };
+    }
+
+    // Até 'limite' entradas válidas e de ids distintos cuja chave começa com o prefixo
+    private List<Entrada> coletar(Iterator<Entrada> entradas, String prefixo, int limite) {
+        List<Entrada> coletadas = new ArrayList<>();
+        Set<Long> vistos = new HashSet<>();
+        while (coletadas.size() < limite && entradas.hasNext()) {
+            Entrada entrada = entradas.next();
+            if (!entrada.chave.startsWith(prefixo)) {
+                break;
+            }
+            if (valida(entrada) && vistos.add(entrada.id)) {
+                coletadas.add(entrada);
+            }
+        }
+        return coletadas;
+    }
+
+    private static int primeiraPosicao(Entrada[] entradas, String chave) {
+        int baixo = 0, alto = entradas.length;
+        while (baixo < alto) {
+            int meio = (baixo + alto) >>> 1;
+            if (entradas[meio].chave.compareTo(chave) < 0) {
+                baixo = meio + 1;
+            } else {
+                alto = meio;
+            }
+        }
+        return baixo;
+    }
+
+    // Entradas de um nome que já foi alterado ou removido deixam de valer
+    private boolean valida(Entrada entrada) {
+        String atual = alterados.get(entrada.id);
+        return atual == null || atual != REMOVIDO && atual.equals(entrada.nome);
+    }
+
+    private void fundir() {
+        List<Entrada> fundidas = new ArrayList<>(base.length + delta.size());
+        Iterator<Entrada> doDelta = delta.iterator();
+        Entrada proximaDelta = doDelta.hasNext() ? doDelta.next() : null;
+        for (Entrada entrada : base) {
+            while (proximaDelta != null && ORDEM.compare(proximaDelta, entrada) < 0) {
+                adicionarSeValida(fundidas, proximaDelta);
+                proximaDelta = doDelta.hasNext() ? doDelta.next() : null;
+            }
+            adicionarSeValida(fundidas, entrada);
+        }
+        while (proximaDelta != null) {
+            adicionarSeValida(fundidas, proximaDelta);
+            proximaDelta = doDelta.hasNext() ? doDelta.next() : null;
+        }
+        delta.clear();
+        alterados.clear();
+        // Já ordenadas: a ordenação em definirBase só percorre o array
+        definirBase(fundidas.toArray(new Entrada[0]));
+    }
+
+    private void adicionarSeValida(List<Entrada> destino, Entrada entrada) {
+        if (valida(entrada)) {
+            destino.add(entrada);
+        }
+    }
+}
@@ -0,0 +1,314 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Leitura e escrita de JSON para a API HTTP, sem dependências externas.
+ *
+ * Escrita: Map (objeto), Collection e long[] (array), String, Number, Boolean e null.
+ * Leitura: devolve LinkedHashMap, ArrayList, String, Long (inteiros), Double,
+ * Boolean ou null; texto malformado, ou com objetos e arrays aninhados além de
+ * PROFUNDIDADE_MAXIMA (a leitura é recursiva), gera IllegalArgumentException.
+ */
+final class Json {
+    static final int PROFUNDIDADE_MAXIMA = 64;
+
+    private Json() {
+    }
+
+    public static String escrever(Object valor) {
+        StringBuilder sb = new StringBuilder(256);
+        escrever(sb, valor);
+        return sb.toString();
+    }
+
+    private static void escrever(StringBuilder sb, Object valor) {
+        if (valor == null) {
+            sb.append("null");
+        } else if (valor instanceof String) {
+            escreverTexto(sb, (String) valor);
+        } else if (valor instanceof Double || valor instanceof Float) {
+            double d = ((Number) valor).doubleValue();
+            if (Double.isNaN(d) || Double.isInfinite(d)) {
+                sb.append("null");
+            } else {
+                sb.append(d);
+            }
+        } else if (valor instanceof Number || valor instanceof Boolean) {
+            sb.append(valor);
+        } else if (valor instanceof Map) {
+            sb.append('{');
+            boolean primeiro = true;
+            for (Map.Entry<?, ?> campo : ((Map<?, ?>) valor).entrySet()) {
+                if (!primeiro) {
+                    sb.append(',');
+                }
+                primeiro = false;
+                escreverTexto(sb, String.valueOf(campo.getKey()));
+                sb.append(':');
+                escrever(sb, campo.getValue());
+            }
+            sb.append('}');
+        } else if (valor instanceof Collection) {
+            sb.append('[');
+            boolean primeiro = true;
+            for (Object item : (Collection<?>) valor) {
+                if (!primeiro) {
+                    sb.append(',');
+                }
+                primeiro = false;
+                escrever(sb, item);
+            }
+            sb.append(']');
+        } else if (valor instanceof long[]) {
+            sb.append('[');
+            long[] numeros = (long[]) valor;
+            for (int i = 0; i < numeros.length; i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                sb.append(numeros[i]);
+            }
+            sb.append(']');
+        } else {
+            throw new IllegalArgumentException("Tipo sem representação JSON: " + valor.getClass().getName());
+        }
+    }
+
+    private static void escreverTexto(StringBuilder sb, String texto) {
+        sb.append('"');
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        sb.append('"');
+    }
+
+    public static Object ler(String texto) {
+        Leitor leitor = new Leitor(texto);
+        Object valor = leitor.valor();
+        leitor.pularEspacos();
+        if (leitor.posicao < texto.length()) {
+            throw leitor.erro("conteúdo após o fim do JSON");
+        }
+        return valor;
+    }
+
+    private static final class Leitor {
+        private final String texto;
+        private int posicao;
+        private int profundidade;
+
+        Leitor(String texto) {
+            this.texto = texto;
+        }
+
+        Object valor() {
+            pularEspacos();
+            if (posicao >= texto.length()) {
+                throw erro("fim inesperado");
+            }
+            char c = texto.charAt(posicao);
+            switch (c) {
+                case '{':
+                    return objeto();
+                case '[':
+                    return array();
+                case '"':
+                    return texto();
+                case 't':
+                    return literal("true", Boolean.TRUE);
+                case 'f':
+                    return literal("false", Boolean.FALSE);
+                case 'n':
+                    return literal("null", null);
+                default:
+                    if (c == '-' || (c >= '0' && c <= '9')) {
+                        return numero();
+                    }
+                    throw erro("caractere inesperado '" + c + "'");
+            }
+        }
+
+        private Map<String, Object> objeto() {
+            Map<String, Object> objeto = new LinkedHashMap<>();
+            entrar();
+            posicao++;
+            pularEspacos();
+            if (consumir('}')) {
+                profundidade--;
+                return objeto;
+            }
+            do {
+                pularEspacos();
+                if (posicao >= texto.length() || texto.charAt(posicao) != '"') {
+                    throw erro("nome de campo esperado");
+                }
+                String nome = texto();
+                pularEspacos();
+                if (!consumir(':')) {
+                    throw erro("':' esperado");
+                }
+                objeto.put(nome, valor());
+                pularEspacos();
+            } while (consumir(','));
+            if (!consumir('}')) {
+                throw erro("'}' esperado");
+            }
+            profundidade--;
+            return objeto;
+        }
+
+        private List<Object> array() {
+            List<Object> array = new ArrayList<>();
+            entrar();
+            posicao++;
+            pularEspacos();
+            if (consumir(']')) {
+                profundidade--;
+                return array;
+            }
+            do {
+                array.add(valor());
+                pularEspacos();
+            } while (consumir(','));
+            if (!consumir(']')) {
+                throw erro("']' esperado");
+            }
+            profundidade--;
+            return array;
+        }
+
+        // Erros abandonam a leitura inteira: a profundidade só é desfeita nos retornos normais
+        private void entrar() {
+            if (++profundidade > PROFUNDIDADE_MAXIMA) {
+                throw erro("aninhamento acima de " + PROFUNDIDADE_MAXIMA + " níveis");
+            }
+        }
+
+        private String texto() {
+            StringBuilder sb = new StringBuilder();
+            posicao++;
+            while (posicao < texto.length()) {
+                char c = texto.charAt(posicao++);
+                if (c == '"') {
+                    return sb.toString();
+                }
+                if (c != '\\') {
+                    sb.append(c);
+                    continue;
+                }
+                if (posicao >= texto.length()) {
+                    break;
+                }
+                char escape = texto.charAt(posicao++);
+                switch (escape) {
+                    case '"':
+                    case '\\':
+                    case '/':
+                        sb.append(escape);
+                        break;
+                    case 'b':
+                        sb.append('\b');
+                        break;
+                    case 'f':
+                        sb.append('\f');
+                        break;
+                    case 'n':
+                        sb.append('\n');
+                        break;
+                    case 'r':
+                        sb.append('\r');
+                        break;
+                    case 't':
+                        sb.append('\t');
+                        break;
+                    case 'u':
+                        if (posicao + 4 > texto.length()) {
+                            throw erro("escape \\u incompleto");
+                        }
+                        try {
+                            sb.append((char) Integer.parseInt(texto.substring(posicao, posicao + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw erro("escape \\u inválido");
+                        }
+                        posicao += 4;
+                        break;
+                    default:
+                        throw erro("escape inválido '\\" + escape + "'");
+                }
+            }
+            throw erro("texto sem aspas de fechamento");
+        }
+
+        private Object numero() {
+            int inicio = posicao;
+            boolean decimal = false;
+            while (posicao < texto.length()) {
+                char c = texto.charAt(posicao);
+                if (c == '.' || c == 'e' || c == 'E') {
+                    decimal = true;
+                } else if (!(c == '-' || c == '+' || (c >= '0' && c <= '9'))) {
+                    break;
+                }
+                posicao++;
+            }
+            String numero = texto.substring(inicio, posicao);
+            try {
+                return decimal ? (Object) Double.parseDouble(numero) : (Object) Long.parseLong(numero);
+            } catch (NumberFormatException e) {
+                throw erro("número inválido '" + numero + "'");
+            }
+        }
+
+        private Object literal(String palavra, Object valor) {
+            if (!texto.startsWith(palavra, posicao)) {
+                throw erro("valor inválido");
+            }
+            posicao += palavra.length();
+            return valor;
+        }
+
+        private boolean consumir(char c) {
+            if (posicao < texto.length() && texto.charAt(posicao) == c) {
+                posicao++;
+                return true;
+            }
+            return false;
+        }
+
+        void pularEspacos() {
+            while (posicao < texto.length() && Character.isWhitespace(texto.charAt(posicao))) {
+                posicao++;
+            }
+        }
+
+        IllegalArgumentException erro(String mensagem) {
+            return new IllegalArgumentException("JSON inválido na posição " + posicao + ": " + mensagem);
+        }
+    }
+}
@@ -7,8 +7,20 @@ import java.awt.event.ActionListener;
 import java.io.*;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 // ==============================================================================
@@ -248,6 +260,46 @@ class Pedido implements Serializable {
     }
 }
 
+/**
+ * Resumo de um pedido para as telas de listagem: total e quantidade de itens
+ * vêm gravados na própria linha de pedidos, sem carregar itens_pedido.
+ */
+class ResumoPedido {
+    private final long id;
+    private final long clienteId;
+    private final String clienteNome;
+    private final double total;
+    private final int quantidadeItens;
+
+    public ResumoPedido(long id, long clienteId, String clienteNome, double total, int quantidadeItens) {
+        this.id = id;
+        this.clienteId = clienteId;
+        this.clienteNome = clienteNome;
+        this.total = total;
+        this.quantidadeItens = quantidadeItens;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public long getClienteId() {
+        return clienteId;
+    }
+
+    public String getClienteNome() {
+        return clienteNome;
+    }
+
+    public double getTotal() {
+        return total;
+    }
+
+    public int getQuantidadeItens() {
+        return quantidadeItens;
+    }
+}
+
 // ==============================================================================
 // 2. CLASSES DAO (Data Access Objects)
 //    - Responsáveis por toda a interação com o banco de dados.
@@ -265,9 +317,91 @@ interface DAO<T> {
 
     List<T> buscarTodos() throws SQLException;
 
+    /**
+     * Paginação por chave (keyset): até 'limite' registros com id maior que 'aposId', em ordem de id.
+     */
+    List<T> buscarPagina(long aposId, int limite) throws SQLException;
+
+    /**
+     * Todos os ids em ordem crescente, usados para posicionar as páginas.
+     */
+    long[] buscarIds() throws SQLException;
+
+    /**
+     * Todos os ids na ordem da coluna informada (uma das chaves de ordenação do DAO),
+     * com o id como desempate, para exibir a tabela ordenada sem carregar as linhas.
+     */
+    long[] buscarIdsOrdenados(String coluna, boolean crescente) throws SQLException;
+
+    /**
+     * Registros dos ids informados (poucos, ex.: os de uma página), em qualquer ordem.
+     */
+    List<T> buscarPorIds(long[] ids) throws SQLException;
+
     boolean atualizar(T entity) throws SQLException;
 
     boolean deletar(long id) throws SQLException;
+
+    /**
+     * Lê a primeira coluna do ResultSet como um array de ids, sem boxing.
+     */
+    static long[] lerIds(ResultSet rs) throws SQLException {
+        long[] ids = new long[1024];
+        int total = 0;
+        while (rs.next()) {
+            if (total == ids.length) {
+                ids = Arrays.copyOf(ids, total * 2);
+            }
+            ids[total++] = rs.getLong(1);
+        }
+        return Arrays.copyOf(ids, total);
+    }
+
+    /**
+     * Cláusula ORDER BY para uma das colunas permitidas ('expressoes': chave de
+     * ordenação -> expressão SQL), com o id como desempate no mesmo sentido.
+     * A chave nunca é concatenada ao SQL: só a expressão correspondente.
+     */
+    static String ordenarPor(Map<String, String> expressoes, String coluna, String colunaId, boolean crescente) {
+        String expressao = expressoes.get(coluna);
+        if (expressao == null) {
+            throw new IllegalArgumentException("Coluna de ordenação inválida: " + coluna);
+        }
+        String sentido = crescente ? " ASC" : " DESC";
+        return " ORDER BY " + expressao + sentido + ", " + colunaId + sentido;
+    }
+
+    /**
+     * Marcadores "?, ?, ..." para uma cláusula IN com 'quantidade' parâmetros.
+     */
+    static String marcadores(int quantidade) {
+        return String.join(", ", java.util.Collections.nCopies(quantidade, "?"));
+    }
+
+    /**
+     * Converte o texto digitado numa expressão MATCH do FTS5: cada palavra vira um
+     * prefixo entre aspas ("joa"*), todas obrigatórias. Devolve null se não houver palavras.
+     */
+    static String expressaoBusca(String texto) {
+        StringBuilder expressao = new StringBuilder();
+        for (String palavra : texto.split("[^\\p{L}\\p{N}]+")) {
+            if (!palavra.isEmpty()) {
+                expressao.append(expressao.length() == 0 ? "" : " ").append('"').append(palavra).append("\"*");
+            }
+        }
+        return expressao.length() == 0 ? null : expressao.toString();
+    }
+
+    /**
+     * Converte o resultado de executeBatch em "linha inserida?" por posição.
+     */
+    static boolean[] linhasInseridas(int[] resultados) {
+        boolean[] inseridas = new boolean[resultados.length];
+        for (int i = 0; i < resultados.length; i++) {
+            inseridas[i] = resultados[i] > 0 || resultados[i] == Statement.SUCCESS_NO_INFO;
+        }
+        return inseridas;
+    }
 }
 
 /**
@@ -275,153 +409,299 @@ interface DAO<T> {
  * Gerencia a tabela 'clientes'.
  */
 class ClienteDAO implements DAO<Cliente> {
-    private Connection connection;
+    static final int CAPACIDADE_CACHE_PADRAO = 10_000;
+    // Chaves de ordenação aceitas por buscarIdsOrdenados: as próprias colunas
+    static final Map<String, String> COLUNAS_ORDENACAO = Map.of(
+            "id", "id", "nome", "nome", "email", "email", "telefone", "telefone",
+            "endereco", "endereco", "cidade", "cidade", "estado", "estado", "pais", "pais");
+
+    private GerenciadorConexoes conexoes;
+    private CacheEntidades<Cliente> cache;
+
+    public ClienteDAO(GerenciadorConexoes conexoes) {
+        this(conexoes, CAPACIDADE_CACHE_PADRAO);
+    }
 
-    public ClienteDAO(Connection connection) {
-        this.connection = connection;
+    public ClienteDAO(GerenciadorConexoes conexoes, int capacidadeCache) {
+        this.conexoes = conexoes;
+        this.cache = new CacheEntidades<>(capacidadeCache);
     }
 
     /**
-     * Cria a tabela de clientes. Adicionada a instrução DROP para garantir
-     * que a tabela seja sempre recriada com a estrutura correta.
+     * Cache de clientes por id, com contadores de acertos/falhas para dimensionamento.
      */
-    public void criarTabela() throws SQLException {
-        try (Statement stmt = connection.createStatement()) {
-            // **Aprimoramento:** Remove a tabela existente para evitar
-            // erros de colunas ausentes em atualizações de versão.
-            // **ATENÇÃO:** Isso apaga todos os dados existentes na tabela 'clientes'.
-            stmt.execute("DROP TABLE IF EXISTS clientes");
-
-            stmt.execute("CREATE TABLE IF NOT EXISTS clientes (" +
-                    "id INTEGER PRIMARY KEY AUTOINCREMENT," +
-                    "nome TEXT NOT NULL," +
-                    "email TEXT NOT NULL UNIQUE," +
-                    "telefone TEXT," +
-                    "endereco TEXT," +
-                    "cidade TEXT," +
-                    "estado TEXT," + // Campo 'estado'
-                    "pais TEXT" +
-                    ")");
-        }
+    public CacheEntidades<Cliente> getCache() {
+        return cache;
     }
 
     @Override
     public Cliente salvar(Cliente cliente) throws SQLException {
-        // Verifica se já existe um cliente com o mesmo email
-        if (buscarPorEmail(cliente.getEmail()) != null) {
-            throw new SQLException("Já existe um cliente com o email: " + cliente.getEmail());
-        }
-
-        String sql = "INSERT INTO clientes (nome, email, telefone, endereco, cidade, estado, pais) VALUES (?, ?, ?, ?, ?, ?, ?)";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            pstmt.setString(1, cliente.getNome());
-            pstmt.setString(2, cliente.getEmail());
-            pstmt.setString(3, cliente.getTelefone());
-            pstmt.setString(4, cliente.getEndereco());
-            pstmt.setString(5, cliente.getCidade());
-            pstmt.setString(6, cliente.getEstado());
-            pstmt.setString(7, cliente.getPais());
-            pstmt.executeUpdate();
-            try (ResultSet rs = pstmt.getGeneratedKeys()) {
-                if (rs.next()) {
-                    cliente.setId(rs.getLong(1)); // Define o ID gerado pelo banco
+        return conexoes.escrever(statements -> {
+            // Verifica se já existe um cliente com o mesmo email
+            if (buscarPorEmail(cliente.getEmail()) != null) {
+                throw new SQLException("Já existe um cliente com o email: " + cliente.getEmail());
+            }
+
+            String sql = "INSERT INTO clientes (nome, email, telefone, endereco, cidade, estado, pais) VALUES (?, ?, ?, ?, ?, ?, ?)";
+            try (PreparedStatement pstmt = statements.preparar(sql, Statement.RETURN_GENERATED_KEYS)) {
+                pstmt.setString(1, cliente.getNome());
+                pstmt.setString(2, cliente.getEmail());
+                pstmt.setString(3, cliente.getTelefone());
+                pstmt.setString(4, cliente.getEndereco());
+                pstmt.setString(5, cliente.getCidade());
+                pstmt.setString(6, cliente.getEstado());
+                pstmt.setString(7, cliente.getPais());
+                pstmt.executeUpdate();
+                try (ResultSet rs = pstmt.getGeneratedKeys()) {
+                    if (rs.next()) {
+                        cliente.setId(rs.getLong(1)); // Define o ID gerado pelo banco
+                    }
                 }
             }
-        }
-        return cliente;
+            conexoes.aoConfirmar(() -> cache.guardar(cliente.getId(), cliente));
+            return cliente;
+        });
+    }
+
+    /**
+     * Insere um lote de clientes numa única transação, com addBatch. Emails já
+     * existentes (ou repetidos no lote) são ignorados pelo banco, sem consulta prévia.
+     * Retorna, por posição, se o cliente foi inserido.
+     */
+    public boolean[] salvarLote(List<Cliente> clientes) throws SQLException {
+        String sql = "INSERT INTO clientes (nome, email, telefone, endereco, cidade, estado, pais) VALUES (?, ?, ?, ?, ?, ?, ?) " +
+                "ON CONFLICT (email) DO NOTHING";
+        return conexoes.escrever(statements -> {
+            try (PreparedStatement pstmt = statements.preparar(sql)) {
+                for (Cliente cliente : clientes) {
+                    pstmt.setString(1, cliente.getNome());
+                    pstmt.setString(2, cliente.getEmail());
+                    pstmt.setString(3, cliente.getTelefone());
+                    pstmt.setString(4, cliente.getEndereco());
+                    pstmt.setString(5, cliente.getCidade());
+                    pstmt.setString(6, cliente.getEstado());
+                    pstmt.setString(7, cliente.getPais());
+                    pstmt.addBatch();
+                }
+                return DAO.linhasInseridas(pstmt.executeBatch());
+            }
+        });
     }
 
     @Override
     public Cliente buscarPorId(long id) throws SQLException {
+        Cliente emCache = cache.buscar(id);
+        if (emCache != null) {
+            return emCache;
+        }
+        // Versão lida antes da consulta: uma alteração confirmada durante ela impede guardar o valor lido
+        long versao = cache.getVersao();
+
         String sql = "SELECT * FROM clientes WHERE id = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setLong(1, id);
-            try (ResultSet rs = pstmt.executeQuery()) {
-                if (rs.next()) {
+        Cliente cliente = conexoes.ler(statements -> {
+            try (PreparedStatement pstmt = statements.preparar(sql)) {
+                pstmt.setLong(1, id);
+                try (ResultSet rs = pstmt.executeQuery()) {
                     // Mapeia os dados do ResultSet para um objeto Cliente
-                    return new Cliente(
-                            rs.getLong("id"),
-                            rs.getString("nome"),
-                            rs.getString("email"),
-                            rs.getString("telefone"),
-                            rs.getString("endereco"),
-                            rs.getString("cidade"),
-                            rs.getString("estado"), // Campo 'estado'
-                            rs.getString("pais")
-                    );
+                    return rs.next() ? mapear(rs) : null;
                 }
             }
+        });
+        if (cliente != null) {
+            cache.guardarLido(id, cliente, versao);
         }
-        return null;
+        return cliente;
     }
 
     public Cliente buscarPorEmail(String email) throws SQLException {
         String sql = "SELECT * FROM clientes WHERE email = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setString(1, email);
-            try (ResultSet rs = pstmt.executeQuery()) {
-                if (rs.next()) {
-                    return new Cliente(
-                            rs.getLong("id"),
-                            rs.getString("nome"),
-                            rs.getString("email"),
-                            rs.getString("telefone"),
-                            rs.getString("endereco"),
-                            rs.getString("cidade"),
-                            rs.getString("estado"), // Campo 'estado'
-                            rs.getString("pais")
-                    );
+        return conexoes.ler(statements -> {
+            try (PreparedStatement pstmt = statements.preparar(sql)) {
+                pstmt.setString(1, email);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    return rs.next() ? mapear(rs) : null;
                 }
             }
+        });
+    }
+
+    /**
+     * Busca textual (FTS5) por nome, email, telefone, cidade ou estado, com as palavras
+     * tratadas como prefixos. Até 'limite' clientes, do mais relevante (bm25) ao menos,
+     * com peso maior para nome e email.
+     */
+    public List<Cliente> buscar(String texto, int limite) throws SQLException {
+        String expressao = DAO.expressaoBusca(texto);
+        if (expressao == null) {
+            return new ArrayList<>();
         }
-        return null;
+        String sql = "SELECT c.* FROM clientes_fts f JOIN clientes c ON c.id = f.rowid " +
+                "WHERE clientes_fts MATCH ? ORDER BY bm25(clientes_fts, 10.0, 5.0, 2.0, 1.0, 1.0) LIMIT ?";
+        return conexoes.ler(statements -> {
+            List<Cliente> clientes = new ArrayList<>();
+            try (PreparedStatement pstmt = statements.preparar(sql)) {
+                pstmt.setString(1, expressao);
+                pstmt.setInt(2, limite);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        clientes.add(mapear(rs));
+                    }
+                }
+            }
+            return clientes;
+        });
+    }
+
+    /**
+     * Percorre (nome, id) de todos os clientes, sem montar entidades (construção do IndicePrefixos).
+     */
+    public void lerNomes(java.util.function.ObjLongConsumer<String> destino) throws SQLException {
+        String sql = "SELECT id, nome FROM clientes";
+        conexoes.ler(statements -> {
+            try (PreparedStatement pstmt = statements.preparar(sql);
+                 ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    destino.accept(rs.getString(2), rs.getLong(1));
+                }
+            }
+            return null;
+        });
     }
 
     @Override
     public List<Cliente> buscarTodos() throws SQLException {
-        List<Cliente> clientes = new ArrayList<>();
         String sql = "SELECT * FROM clientes";
-        try (Statement stmt = connection.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-            while (rs.next()) {
-                clientes.add(new Cliente(
-                        rs.getLong("id"),
-                        rs.getString("nome"),
-                        rs.getString("email"),
-                        rs.getString("telefone"),
-                        rs.getString("endereco"),
-                        rs.getString("cidade"),
-                        rs.getString("estado"), // Campo 'estado'
-                        rs.getString("pais")
-                ));
+        return conexoes.ler(statements -> {
+            List<Cliente> clientes = new ArrayList<>();
+            try (PreparedStatement pstmt = statements.preparar(sql);
+                 ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    clientes.add(mapear(rs));
+                }
             }
-        }
-        return clientes;
+            return clientes;
+        });
+    }
+
+    @Override
+    public List<Cliente> buscarPagina(long aposId, int limite) throws SQLException {
+        String sql = "SELECT * FROM clientes WHERE id > ? ORDER BY id LIMIT ?";
+        return conexoes.ler(statements -> {
+            List<Cliente> clientes = new ArrayList<>();
+            try (PreparedStatement pstmt = statements.preparar(sql)) {
+                pstmt.setLong(1, aposId);
+                pstmt.setInt(2, limite);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        clientes.add(mapear(rs));
+                    }
+                }
+            }
+            return clientes;
+        });
+    }
+
+    @Override
+    public long[] buscarIds() throws SQLException {
+        String sql = "SELECT id FROM clientes ORDER BY id";
+        return conexoes.ler(statements -> {
+            try (PreparedStatement pstmt = statements.preparar(sql);
+                 ResultSet rs = pstmt.executeQuery()) {
+                return DAO.lerIds(rs);
+            }
+        });
+    }
+
+    @Override
+    public long[] buscarIdsOrdenados(String coluna, boolean crescente) throws SQLException {
+        String sql = "SELECT id FROM clientes" + DAO.ordenarPor(COLUNAS_ORDENACAO, coluna, "id", crescente);
+        return conexoes.ler(statements -> {
+            try (PreparedStatement pstmt = statements.preparar(sql);
+                 ResultSet rs = pstmt.executeQuery()) {
+                return DAO.lerIds(rs);
+            }
+        });
+    }
+
+    @Override
+    public List<Cliente> buscarPorIds(long[] ids) throws SQLException {
+        String sql = "SELECT * FROM clientes WHERE id IN (" + DAO.marcadores(ids.length) + ")";
+        return conexoes.ler(statements -> {
+            List<Cliente> clientes = new ArrayList<>();
+            try (PreparedStatement pstmt = statements.preparar(sql)) {
+                for (int i = 0; i < ids.length; i++) {
+                    pstmt.setLong(i + 1, ids[i]);
+                }
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        clientes.add(mapear(rs));
+                    }
+                }
+            }
+            return clientes;
+        });
     }
 
     @Override
     public boolean atualizar(Cliente cliente) throws SQLException {
         String sql = "UPDATE clientes SET nome = ?, email = ?, telefone = ?, endereco = ?, cidade = ?, estado = ?, pais = ? WHERE id = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setString(1, cliente.getNome());
-            pstmt.setString(2, cliente.getEmail());
-            pstmt.setString(3, cliente.getTelefone());
-            pstmt.setString(4, cliente.getEndereco());
-            pstmt.setString(5, cliente.getCidade());
-            pstmt.setString(6, cliente.getEstado());
-            pstmt.setString(7, cliente.getPais());
-            pstmt.setLong(8, cliente.getId());
-            return pstmt.executeUpdate() > 0;
-        }
+        return conexoes.escrever(statements -> {
+            try (PreparedStatement pstmt = statements.preparar(sql)) {
+                pstmt.setString(1, cliente.getNome());
+                pstmt.setString(2, cliente.getEmail());
+                pstmt.setString(3, cliente.getTelefone());
+                pstmt.setString(4, cliente.getEndereco());
+                pstmt.setString(5, cliente.getCidade());
+                pstmt.setString(6, cliente.getEstado());
+                pstmt.setString(7, cliente.getPais());
+                pstmt.setLong(8, cliente.getId());
+                boolean atualizado = pstmt.executeUpdate() > 0;
+                // O cache só muda depois do commit, quando os leitores já veem a linha nova
+                conexoes.aoConfirmar(atualizado ? () -> cache.substituir(cliente.getId(), cliente) : () -> cache.invalidar(cliente.getId()));
+                return atualizado;
+            }
+        });
     }
 
     @Override
     public boolean deletar(long id) throws SQLException {
         String sql = "DELETE FROM clientes WHERE id = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setLong(1, id);
-            return pstmt.executeUpdate() > 0;
-        }
+        return conexoes.escrever(statements -> {
+            try (PreparedStatement pstmt = statements.preparar(sql)) {
+                pstmt.setLong(1, id);
+                conexoes.aoConfirmar(() -> cache.invalidar(id));
+                return pstmt.executeUpdate() > 0;
+            }
+        });
+    }
+
+    /**
+     * Exclui o cliente só se ele não tiver pedidos, numa única instrução: um pedido
+     * gravado entre uma verificação separada e a exclusão seria apagado em cascata.
+     */
+    public boolean deletarSemPedidos(long id) throws SQLException {
+        String sql = "DELETE FROM clientes WHERE id = ? AND NOT EXISTS (SELECT 1 FROM pedidos WHERE cliente_id = ?)";
+        return conexoes.escrever(statements -> {
+            try (PreparedStatement pstmt = statements.preparar(sql)) {
+                pstmt.setLong(1, id);
+                pstmt.setLong(2, id);
+                conexoes.aoConfirmar(() -> cache.invalidar(id));
+                return pstmt.executeUpdate() > 0;
+            }
+        });
+    }
+
+    private static Cliente mapear(ResultSet rs) throws SQLException {
+        return new Cliente(
+                rs.getLong("id"),
+                rs.getString("nome"),
+                rs.getString("email"),
+                rs.getString("telefone"),
+                rs.getString("endereco"),
+                rs.getString("cidade"),
+                rs.getString("estado"), // Campo 'estado'
+                rs.getString("pais")
+        );
     }
 }
 
@@ -429,100 +709,274 @@ class ClienteDAO implements DAO<Cliente> {
  * DAO para a entidade Produto.
  */
 class ProdutoDAO implements DAO<Produto> {
-    private Connection connection;
+    static final int CAPACIDADE_CACHE_PADRAO = 10_000;
+    // Chaves de ordenação aceitas por buscarIdsOrdenados: as próprias colunas
+    static final Map<String, String> COLUNAS_ORDENACAO = Map.of("id", "id", "nome", "nome", "preco", "preco");
+
+    private GerenciadorConexoes conexoes;
+    private CacheEntidades<Produto> cache;
 
-    public ProdutoDAO(Connection connection) {
-        this.connection = connection;
+    public ProdutoDAO(GerenciadorConexoes conexoes) {
+        this(conexoes, CAPACIDADE_CACHE_PADRAO);
     }
 
-    public void criarTabela() throws SQLException {
-        try (Statement stmt = connection.createStatement()) {
-            stmt.execute("CREATE TABLE IF NOT EXISTS produtos (" +
-                    "id INTEGER PRIMARY KEY AUTOINCREMENT," +
-                    "nome TEXT NOT NULL UNIQUE," +
-                    "preco REAL NOT NULL" +
-                    ")");
-        }
+    public ProdutoDAO(GerenciadorConexoes conexoes, int capacidadeCache) {
+        this.conexoes = conexoes;
+        this.cache = new CacheEntidades<>(capacidadeCache);
+    }
+
+    /**
+     * Cache de produtos por id, com contadores de acertos/falhas para dimensionamento.
+     */
+    public CacheEntidades<Produto> getCache() {
+        return cache;
     }
 
     @Override
     public Produto salvar(Produto produto) throws SQLException {
-        if (buscarPorNome(produto.getNome()) != null) {
-            throw new SQLException("Já existe um produto com o nome: " + produto.getNome());
-        }
-
-        String sql = "INSERT INTO produtos (nome, preco) VALUES (?, ?)";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            pstmt.setString(1, produto.getNome());
-            pstmt.setDouble(2, produto.getPreco());
-            pstmt.executeUpdate();
-            try (ResultSet rs = pstmt.getGeneratedKeys()) {
-                if (rs.next()) {
-                    produto.setId(rs.getLong(1));
+        return conexoes.escrever(statements -> {
+            if (buscarPorNome(produto.getNome()) != null) {
+                throw new SQLException("Já existe um produto com o nome: " + produto.getNome());
+            }
+
+            String sql = "INSERT INTO produtos (nome, preco) VALUES (?, ?)";
+            try (PreparedStatement pstmt = statements.preparar(sql, Statement.RETURN_GENERATED_KEYS)) {
+                pstmt.setString(1, produto.getNome());
+                pstmt.setDouble(2, produto.getPreco());
+                pstmt.executeUpdate();
+                try (ResultSet rs = pstmt.getGeneratedKeys()) {
+                    if (rs.next()) {
+                        produto.setId(rs.getLong(1));
+                    }
                 }
             }
-        }
-        return produto;
+            conexoes.aoConfirmar(() -> cache.guardar(produto.getId(), produto));
+            return produto;
+        });
+    }
+
+    /**
+     * Insere um lote de produtos numa única transação; nomes já existentes são ignorados.
+     * Retorna, por posição, se o produto foi inserido.
+     */
+    public boolean[] salvarLote(List<Produto> produtos) throws SQLException {
+        String sql = "INSERT INTO produtos (nome, preco) VALUES (?, ?) ON CONFLICT (nome) DO NOTHING";
+        return conexoes.escrever(statements -> {
+            try (PreparedStatement pstmt = statements.preparar(sql)) {
+                for (Produto produto : produtos) {
+                    pstmt.setString(1, produto.getNome());
+                    pstmt.setDouble(2, produto.getPreco());
+                    pstmt.addBatch();
+                }
+                return DAO.linhasInseridas(pstmt.executeBatch());
+            }
+        });
     }
 
     @Override
     public Produto buscarPorId(long id) throws SQLException {
+        Produto emCache = cache.buscar(id);
+        if (emCache != null) {
+            return emCache;
+        }
+        // Versão lida antes da consulta: uma alteração confirmada durante ela impede guardar o valor lido
+        long versao = cache.getVersao();
+
         String sql = "SELECT id, nome, preco FROM produtos WHERE id = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setLong(1, id);
-            try (ResultSet rs = pstmt.executeQuery()) {
-                if (rs.next()) {
-                    return new Produto(rs.getLong("id"), rs.getString("nome"), rs.getDouble("preco"));
+        Produto produto = conexoes.ler(statements -> {
+            try (PreparedStatement pstmt = statements.preparar(sql)) {
+                pstmt.setLong(1, id);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    return rs.next() ? mapear(rs) : null;
                 }
             }
+        });
+        if (produto != null) {
+            cache.guardarLido(id, produto, versao);
         }
-        return null;
+        return produto;
     }
 
     public Produto buscarPorNome(String nome) throws SQLException {
         String sql = "SELECT id, nome, preco FROM produtos WHERE nome = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setString(1, nome);
-            try (ResultSet rs = pstmt.executeQuery()) {
-                if (rs.next()) {
-                    return new Produto(rs.getLong("id"), rs.getString("nome"), rs.getDouble("preco"));
+        return conexoes.ler(statements -> {
+            try (PreparedStatement pstmt = statements.preparar(sql)) {
+                pstmt.setString(1, nome);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    return rs.next() ? mapear(rs) : null;
                 }
             }
+        });
+    }
+
+    /**
+     * Busca textual (FTS5) pelo nome, com as palavras tratadas como prefixos.
+     * Até 'limite' produtos, do mais relevante (bm25) ao menos.
+     */
+    public List<Produto> buscar(String texto, int limite) throws SQLException {
+        String expressao = DAO.expressaoBusca(texto);
+        if (expressao == null) {
+            return new ArrayList<>();
         }
-        return null;
+        String sql = "SELECT p.id, p.nome, p.preco FROM produtos_fts f JOIN produtos p ON p.id = f.rowid " +
+                "WHERE produtos_fts MATCH ? ORDER BY rank LIMIT ?";
+        return conexoes.ler(statements -> {
+            List<Produto> produtos = new ArrayList<>();
+            try (PreparedStatement pstmt = statements.preparar(sql)) {
+                pstmt.setString(1, expressao);
+                pstmt.setInt(2, limite);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        produtos.add(mapear(rs));
+                    }
+                }
+            }
+            return produtos;
+        });
+    }
+
+    /**
+     * Percorre (nome, id) de todos os produtos, sem montar entidades (construção do IndicePrefixos).
+     */
+    public void lerNomes(java.util.function.ObjLongConsumer<String> destino) throws SQLException {
+        String sql = "SELECT id, nome FROM produtos";
+        conexoes.ler(statements -> {
+            try (PreparedStatement pstmt = statements.preparar(sql);
+                 ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    destino.accept(rs.getString(2), rs.getLong(1));
+                }
+            }
+            return null;
+        });
     }
 
     @Override
     public List<Produto> buscarTodos() throws SQLException {
-        List<Produto> produtos = new ArrayList<>();
         String sql = "SELECT id, nome, preco FROM produtos";
-        try (Statement stmt = connection.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-            while (rs.next()) {
-                produtos.add(new Produto(rs.getLong("id"), rs.getString("nome"), rs.getDouble("preco")));
+        return conexoes.ler(statements -> {
+            List<Produto> produtos = new ArrayList<>();
+            try (PreparedStatement pstmt = statements.preparar(sql);
+                 ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    produtos.add(mapear(rs));
+                }
             }
-        }
-        return produtos;
+            return produtos;
+        });
+    }
+
+    @Override
+    public List<Produto> buscarPagina(long aposId, int limite) throws SQLException {
+        String sql = "SELECT id, nome, preco FROM produtos WHERE id > ? ORDER BY id LIMIT ?";
+        return conexoes.ler(statements -> {
+            List<Produto> produtos = new ArrayList<>();
+            try (PreparedStatement pstmt = statements.preparar(sql)) {
+                pstmt.setLong(1, aposId);
+                pstmt.setInt(2, limite);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        produtos.add(mapear(rs));
+                    }
+                }
+            }
+            return produtos;
+        });
+    }
+
+    @Override
+    public long[] buscarIds() throws SQLException {
+        String sql = "SELECT id FROM produtos ORDER BY id";
+        return conexoes.ler(statements -> {
+            try (PreparedStatement pstmt = statements.preparar(sql);
+                 ResultSet rs = pstmt.executeQuery()) {
+                return DAO.lerIds(rs);
+            }
+        });
+    }
+
+    @Override
+    public long[] buscarIdsOrdenados(String coluna, boolean crescente) throws SQLException {
+        String sql = "SELECT id FROM produtos" + DAO.ordenarPor(COLUNAS_ORDENACAO, coluna, "id", crescente);
+        return conexoes.ler(statements -> {
+            try (PreparedStatement pstmt = statements.preparar(sql);
+                 ResultSet rs = pstmt.executeQuery()) {
+                return DAO.lerIds(rs);
+            }
+        });
+    }
+
+    @Override
+    public List<Produto> buscarPorIds(long[] ids) throws SQLException {
+        String sql = "SELECT id, nome, preco FROM produtos WHERE id IN (" + DAO.marcadores(ids.length) + ")";
+        return conexoes.ler(statements -> {
+            List<Produto> produtos = new ArrayList<>();
+            try (PreparedStatement pstmt = statements.preparar(sql)) {
+                for (int i = 0; i < ids.length; i++) {
+                    pstmt.setLong(i + 1, ids[i]);
+                }
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        produtos.add(mapear(rs));
+                    }
+                }
+            }
+            return produtos;
+        });
     }
 
     @Override
     public boolean atualizar(Produto produto) throws SQLException {
         String sql = "UPDATE produtos SET nome = ?, preco = ? WHERE id = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setString(1, produto.getNome());
-            pstmt.setDouble(2, produto.getPreco());
-            pstmt.setLong(3, produto.getId());
-            return pstmt.executeUpdate() > 0;
-        }
+        return conexoes.escrever(statements -> {
+            try (PreparedStatement pstmt = statements.preparar(sql)) {
+                pstmt.setString(1, produto.getNome());
+                pstmt.setDouble(2, produto.getPreco());
+                pstmt.setLong(3, produto.getId());
+                boolean atualizado = pstmt.executeUpdate() > 0;
+                if (atualizado) {
+                    // Mantém os totais gravados dos pedidos que usam o produto (mesma transação)
+                    try (PreparedStatement pstmtTotais = statements.preparar(PedidoDAO.SQL_RECALCULAR_TOTAIS_DO_PRODUTO)) {
+                        pstmtTotais.setLong(1, produto.getId());
+                        pstmtTotais.executeUpdate();
+                    }
+                }
+                conexoes.aoConfirmar(atualizado ? () -> cache.substituir(produto.getId(), produto) : () -> cache.invalidar(produto.getId()));
+                return atualizado;
+            }
+        });
     }
 
     @Override
     public boolean deletar(long id) throws SQLException {
         String sql = "DELETE FROM produtos WHERE id = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setLong(1, id);
-            return pstmt.executeUpdate() > 0;
-        }
+        return conexoes.escrever(statements -> {
+            try (PreparedStatement pstmt = statements.preparar(sql)) {
+                pstmt.setLong(1, id);
+                conexoes.aoConfirmar(() -> cache.invalidar(id));
+                return pstmt.executeUpdate() > 0;
+            }
+        });
+    }
+
+    /**
+     * Exclui o produto só se ele não for usado em pedidos, numa única instrução
+     * (ver ClienteDAO.deletarSemPedidos).
+     */
+    public boolean deletarSemItens(long id) throws SQLException {
+        String sql = "DELETE FROM produtos WHERE id = ? AND NOT EXISTS (SELECT 1 FROM itens_pedido WHERE produto_id = ?)";
+        return conexoes.escrever(statements -> {
+            try (PreparedStatement pstmt = statements.preparar(sql)) {
+                pstmt.setLong(1, id);
+                pstmt.setLong(2, id);
+                conexoes.aoConfirmar(() -> cache.invalidar(id));
+                return pstmt.executeUpdate() > 0;
+            }
+        });
+    }
+
+    private static Produto mapear(ResultSet rs) throws SQLException {
+        return new Produto(rs.getLong("id"), rs.getString("nome"), rs.getDouble("preco"));
     }
 }
 
@@ -530,175 +984,411 @@ class ProdutoDAO implements DAO<Produto> {
  * DAO para a entidade Pedido.
  */
 class PedidoDAO implements DAO<Pedido> {
-    private Connection connection;
+    // Chaves de ordenação da listagem (resumos) e suas expressões sobre pedidos p JOIN clientes c
+    static final Map<String, String> COLUNAS_ORDENACAO = Map.of(
+            "id", "p.id", "cliente", "c.nome", "quantidade_itens", "p.quantidade_itens", "total", "p.total");
+
+    // Expressões que recalculam, a partir dos itens, as colunas total e quantidade_itens de pedidos
+    static final String SQL_TOTAL_ITENS = "COALESCE((SELECT SUM(i.quantidade * pr.preco) FROM itens_pedido i " +
+            "JOIN produtos pr ON pr.id = i.produto_id WHERE i.pedido_id = pedidos.id), 0)";
+    static final String SQL_QUANTIDADE_ITENS = "(SELECT COUNT(*) FROM itens_pedido i WHERE i.pedido_id = pedidos.id)";
+
+    /**
+     * Recalcula os totais dos pedidos que contêm o produto informado (após mudança de preço).
+     */
+    static final String SQL_RECALCULAR_TOTAIS_DO_PRODUTO = "UPDATE pedidos SET total = " + SQL_TOTAL_ITENS +
+            " WHERE id IN (SELECT pedido_id FROM itens_pedido WHERE produto_id = ?)";
+
+    /**
+     * Grava o total e a quantidade de itens de um pedido a partir dos itens e dos preços
+     * atuais no banco, na transação que gravou os itens (e não dos preços em memória,
+     * que podem estar desatualizados).
+     */
+    static final String SQL_RECALCULAR_TOTAIS = "UPDATE pedidos SET total = " + SQL_TOTAL_ITENS +
+            ", quantidade_itens = " + SQL_QUANTIDADE_ITENS + " WHERE id = ?";
+
+    private GerenciadorConexoes conexoes;
     private ClienteDAO clienteDAO;
     private ProdutoDAO produtoDAO;
 
-    public PedidoDAO(Connection connection, ClienteDAO clienteDAO, ProdutoDAO produtoDAO) {
-        this.connection = connection;
+    public PedidoDAO(GerenciadorConexoes conexoes, ClienteDAO clienteDAO, ProdutoDAO produtoDAO) {
+        this.conexoes = conexoes;
         this.clienteDAO = clienteDAO;
         this.produtoDAO = produtoDAO;
     }
 
     /**
-     * Cria as tabelas de pedidos e itens_pedido.
+     * Verifica, via índice idx_pedidos_cliente_totais, se o cliente possui algum pedido.
      */
-    public void criarTabelas() throws SQLException {
-        try (Statement stmt = connection.createStatement()) {
-            // Tabela de pedidos com chave estrangeira para clientes
-            stmt.execute("CREATE TABLE IF NOT EXISTS pedidos (" +
-                    "id INTEGER PRIMARY KEY AUTOINCREMENT," +
-                    "cliente_id INTEGER NOT NULL," +
-                    "FOREIGN KEY (cliente_id) REFERENCES clientes(id) ON DELETE CASCADE" +
-                    ")");
-            // Tabela de itens_pedido com chaves estrangeiras para pedidos e produtos
-            stmt.execute("CREATE TABLE IF NOT EXISTS itens_pedido (" +
-                    "pedido_id INTEGER NOT NULL," +
-                    "produto_id INTEGER NOT NULL," +
-                    "quantidade INTEGER NOT NULL," +
-                    "PRIMARY KEY (pedido_id, produto_id)," +
-                    "FOREIGN KEY (pedido_id) REFERENCES pedidos(id) ON DELETE CASCADE," +
-                    "FOREIGN KEY (produto_id) REFERENCES produtos(id)" +
-                    ")");
-        }
+    public boolean existePedidoDoCliente(long clienteId) throws SQLException {
+        return existe("SELECT 1 FROM pedidos WHERE cliente_id = ? LIMIT 1", clienteId);
     }
 
-    @Override
-    public Pedido salvar(Pedido pedido) throws SQLException {
-        // Salva o pedido principal e obtém o ID
-        String sqlPedido = "INSERT INTO pedidos (cliente_id) VALUES (?)";
-        try (PreparedStatement pstmtPedido = connection.prepareStatement(sqlPedido, Statement.RETURN_GENERATED_KEYS)) {
-            pstmtPedido.setLong(1, pedido.getCliente().getId());
-            pstmtPedido.executeUpdate();
-            try (ResultSet rs = pstmtPedido.getGeneratedKeys()) {
-                if (rs.next()) {
-                    pedido.setId(rs.getLong(1));
-                }
-            }
-        }
+    /**
+     * Verifica, via índice idx_itens_pedido_produto_quantidade, se o produto é usado em algum pedido.
+     */
+    public boolean existeItemComProduto(long produtoId) throws SQLException {
+        return existe("SELECT 1 FROM itens_pedido WHERE produto_id = ? LIMIT 1", produtoId);
+    }
 
-        // Salva cada item do pedido
-        String sqlItem = "INSERT INTO itens_pedido (pedido_id, produto_id, quantidade) VALUES (?, ?, ?)";
-        try (PreparedStatement pstmtItem = connection.prepareStatement(sqlItem)) {
-            for (ItemPedido item : pedido.getItens()) {
-                pstmtItem.setLong(1, pedido.getId());
-                pstmtItem.setLong(2, item.getProduto().getId());
-                pstmtItem.setInt(3, item.getQuantidade());
-                pstmtItem.addBatch(); // Adiciona ao lote para execução em massa
+    private boolean existe(String sql, long id) throws SQLException {
+        return conexoes.ler(statements -> {
+            try (PreparedStatement pstmt = statements.preparar(sql)) {
+                pstmt.setLong(1, id);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    return rs.next();
+                }
             }
-            pstmtItem.executeBatch(); // Executa todos os inserts de uma vez
-        }
-        return pedido;
+        });
     }
 
     @Override
-    public Pedido buscarPorId(long id) throws SQLException {
-        // Busca o pedido principal
-        String sqlPedido = "SELECT id, cliente_id FROM pedidos WHERE id = ?";
-        Pedido pedido = null;
-        try (PreparedStatement pstmtPedido = connection.prepareStatement(sqlPedido)) {
-            pstmtPedido.setLong(1, id);
-            try (ResultSet rsPedido = pstmtPedido.executeQuery()) {
-                if (rsPedido.next()) {
-                    long clienteId = rsPedido.getLong("cliente_id");
-                    Cliente cliente = clienteDAO.buscarPorId(clienteId);
-                    if (cliente != null) {
-                        pedido = new Pedido(rsPedido.getLong("id"), cliente);
+    public Pedido salvar(Pedido pedido) throws SQLException {
+        // Pedido e itens são gravados na mesma transação
+        return conexoes.escrever(statements -> {
+            // Salva o pedido principal e obtém o ID
+            // O total e a quantidade de itens são calculados depois dos itens (recalcularTotais)
+            String sqlPedido = "INSERT INTO pedidos (cliente_id, total, quantidade_itens) VALUES (?, 0, 0)";
+            try (PreparedStatement pstmtPedido = statements.preparar(sqlPedido, Statement.RETURN_GENERATED_KEYS)) {
+                pstmtPedido.setLong(1, pedido.getCliente().getId());
+                pstmtPedido.executeUpdate();
+                try (ResultSet rs = pstmtPedido.getGeneratedKeys()) {
+                    if (rs.next()) {
+                        pedido.setId(rs.getLong(1));
                     }
                 }
             }
-        }
 
-        // Busca os itens se o pedido foi encontrado
-        if (pedido != null) {
-            String sqlItens = "SELECT produto_id, quantidade FROM itens_pedido WHERE pedido_id = ?";
-            try (PreparedStatement pstmtItens = connection.prepareStatement(sqlItens)) {
-                pstmtItens.setLong(1, pedido.getId());
-                try (ResultSet rsItens = pstmtItens.executeQuery()) {
-                    while (rsItens.next()) {
-                        long produtoId = rsItens.getLong("produto_id");
-                        int quantidade = rsItens.getInt("quantidade");
-                        Produto produto = produtoDAO.buscarPorId(produtoId);
-                        if (produto != null) {
-                            pedido.adicionarItem(new ItemPedido(produto, quantidade));
+            // Salva cada item do pedido
+            inserirItens(statements, pedido);
+            recalcularTotais(statements, pedido.getId());
+            return pedido;
+        });
+    }
+
+    /**
+     * Grava vários pedidos numa única transação: os cabeçalhos um a um (para obter
+     * os ids gerados) e os itens de todos os pedidos num só lote.
+     */
+    public void salvarLote(List<Pedido> pedidos) throws SQLException {
+        String sqlPedido = "INSERT INTO pedidos (cliente_id, total, quantidade_itens) VALUES (?, 0, 0)";
+        String sqlItem = "INSERT INTO itens_pedido (pedido_id, produto_id, quantidade) VALUES (?, ?, ?)";
+        conexoes.escrever(statements -> {
+            try (PreparedStatement pstmtPedido = statements.preparar(sqlPedido, Statement.RETURN_GENERATED_KEYS)) {
+                for (Pedido pedido : pedidos) {
+                    pstmtPedido.setLong(1, pedido.getCliente().getId());
+                    pstmtPedido.executeUpdate();
+                    try (ResultSet rs = pstmtPedido.getGeneratedKeys()) {
+                        if (rs.next()) {
+                            pedido.setId(rs.getLong(1));
                         }
                     }
                 }
             }
-        }
-        return pedido;
+            try (PreparedStatement pstmtItem = statements.preparar(sqlItem)) {
+                for (Pedido pedido : pedidos) {
+                    for (ItemPedido item : pedido.getItens()) {
+                        pstmtItem.setLong(1, pedido.getId());
+                        pstmtItem.setLong(2, item.getProduto().getId());
+                        pstmtItem.setInt(3, item.getQuantidade());
+                        pstmtItem.addBatch();
+                    }
+                }
+                pstmtItem.executeBatch();
+            }
+            recalcularTotais(statements, pedidos.stream().mapToLong(Pedido::getId).toArray());
+            return null;
+        });
+    }
+
+    /**
+     * Reserva 'quantidade' ids consecutivos de pedido avançando o sqlite_sequence:
+     * inserções sem id explícito passam a receber ids depois do bloco. Devolve o primeiro id.
+     */
+    public long reservarIds(int quantidade) throws SQLException {
+        return conexoes.escrever(statements -> {
+            try (PreparedStatement pstmt = statements.preparar("INSERT INTO sqlite_sequence (name, seq) " +
+                    "SELECT 'pedidos', 0 WHERE NOT EXISTS (SELECT 1 FROM sqlite_sequence WHERE name = 'pedidos')")) {
+                pstmt.executeUpdate();
+            }
+            try (PreparedStatement pstmt = statements.preparar("UPDATE sqlite_sequence " +
+                    "SET seq = MAX(seq, (SELECT COALESCE(MAX(id), 0) FROM pedidos)) + ? WHERE name = 'pedidos'")) {
+                pstmt.setInt(1, quantidade);
+                pstmt.executeUpdate();
+            }
+            try (PreparedStatement pstmt = statements.preparar("SELECT seq FROM sqlite_sequence WHERE name = 'pedidos'");
+                 ResultSet rs = pstmt.executeQuery()) {
+                rs.next();
+                return rs.getLong(1) - quantidade + 1;
+            }
+        });
+    }
+
+    /**
+     * Maior id de pedido gravado em [inicio, fim); 0 se nenhum. Usado para continuar um bloco
+     * de reservarIds depois de reiniciar.
+     */
+    public long maiorIdNoIntervalo(long inicio, long fim) throws SQLException {
+        return conexoes.ler(statements -> {
+            try (PreparedStatement pstmt = statements.preparar("SELECT COALESCE(MAX(id), 0) FROM pedidos WHERE id >= ? AND id < ?")) {
+                pstmt.setLong(1, inicio);
+                pstmt.setLong(2, fim);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    rs.next();
+                    return rs.getLong(1);
+                }
+            }
+        });
+    }
+
+    /**
+     * Grava numa única transação pedidos que já têm id (reservado com reservarIds).
+     * Pedidos cujo id já existe são ignorados, o que torna a gravação repetível.
+     * Devolve quantos pedidos foram inseridos.
+     */
+    public int salvarLoteComIds(List<Pedido> pedidos) throws SQLException {
+        String sqlPedido = "INSERT OR IGNORE INTO pedidos (id, cliente_id, total, quantidade_itens) VALUES (?, ?, 0, 0)";
+        String sqlItem = "INSERT INTO itens_pedido (pedido_id, produto_id, quantidade) VALUES (?, ?, ?)";
+        return conexoes.escrever(statements -> {
+            long[] novos = new long[pedidos.size()];
+            int inseridos = 0;
+            try (PreparedStatement pstmtPedido = statements.preparar(sqlPedido);
+                 PreparedStatement pstmtItem = statements.preparar(sqlItem)) {
+                for (Pedido pedido : pedidos) {
+                    pstmtPedido.setLong(1, pedido.getId());
+                    pstmtPedido.setLong(2, pedido.getCliente().getId());
+                    if (pstmtPedido.executeUpdate() == 0) {
+                        continue; // já gravado
+                    }
+                    novos[inseridos++] = pedido.getId();
+                    for (ItemPedido item : pedido.getItens()) {
+                        pstmtItem.setLong(1, pedido.getId());
+                        pstmtItem.setLong(2, item.getProduto().getId());
+                        pstmtItem.setInt(3, item.getQuantidade());
+                        pstmtItem.addBatch();
+                    }
+                }
+                pstmtItem.executeBatch();
+            }
+            recalcularTotais(statements, Arrays.copyOf(novos, inseridos));
+            return inseridos;
+        });
+    }
+
+    @Override
+    public Pedido buscarPorId(long id) throws SQLException {
+        // Usa o mesmo caminho de carga do buscarTodos, restrito a um único pedido
+        List<Pedido> pedidos = carregarPedidos(" WHERE p.id = ?", id);
+        return pedidos.isEmpty() ? null : pedidos.get(0);
     }
 
     @Override
     public List<Pedido> buscarTodos() throws SQLException {
-        List<Pedido> pedidos = new ArrayList<>();
-        String sql = "SELECT id, cliente_id FROM pedidos";
-        try (Statement stmt = connection.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-            while (rs.next()) {
-                // Para cada pedido, busca o cliente e os itens associados
-                long clienteId = rs.getLong("cliente_id");
-                Cliente cliente = clienteDAO.buscarPorId(clienteId);
-                if (cliente != null) {
-                    Pedido pedido = new Pedido(rs.getLong("id"), cliente);
-                    String sqlItens = "SELECT produto_id, quantidade FROM itens_pedido WHERE pedido_id = ?";
-                    try (PreparedStatement pstmtItens = connection.prepareStatement(sqlItens)) {
-                        pstmtItens.setLong(1, pedido.getId());
-                        try (ResultSet rsItens = pstmtItens.executeQuery()) {
-                            while (rsItens.next()) {
-                                long produtoId = rsItens.getLong("produto_id");
-                                int quantidade = rsItens.getInt("quantidade");
-                                Produto produto = produtoDAO.buscarPorId(produtoId);
-                                if (produto != null) {
-                                    pedido.adicionarItem(new ItemPedido(produto, quantidade));
-                                }
+        return carregarPedidos("");
+    }
+
+    @Override
+    public List<Pedido> buscarPagina(long aposId, int limite) throws SQLException {
+        // A página é delimitada sobre a tabela pedidos; os itens vêm todos no mesmo cursor
+        return carregarPedidos(" WHERE p.id IN (SELECT id FROM pedidos WHERE id > ? ORDER BY id LIMIT ?)", aposId, limite);
+    }
+
+    /**
+     * Página de resumos (id, cliente, total, quantidade de itens) lida apenas de
+     * pedidos e clientes, sem tocar em itens_pedido.
+     */
+    public List<ResumoPedido> buscarResumosPagina(long aposId, int limite) throws SQLException {
+        String sql = "SELECT p.id, p.cliente_id, c.nome, p.total, p.quantidade_itens FROM pedidos p " +
+                "JOIN clientes c ON c.id = p.cliente_id WHERE p.id > ? ORDER BY p.id LIMIT ?";
+        return conexoes.ler(statements -> {
+            List<ResumoPedido> resumos = new ArrayList<>();
+            try (PreparedStatement pstmt = statements.preparar(sql)) {
+                pstmt.setLong(1, aposId);
+                pstmt.setInt(2, limite);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        resumos.add(new ResumoPedido(rs.getLong(1), rs.getLong(2), rs.getString(3), rs.getDouble(4), rs.getInt(5)));
+                    }
+                }
+            }
+            return resumos;
+        });
+    }
+
+    @Override
+    public long[] buscarIds() throws SQLException {
+        String sql = "SELECT id FROM pedidos ORDER BY id";
+        return conexoes.ler(statements -> {
+            try (PreparedStatement pstmt = statements.preparar(sql);
+                 ResultSet rs = pstmt.executeQuery()) {
+                return DAO.lerIds(rs);
+            }
+        });
+    }
+
+    @Override
+    public long[] buscarIdsOrdenados(String coluna, boolean crescente) throws SQLException {
+        String sql = "SELECT p.id FROM pedidos p JOIN clientes c ON c.id = p.cliente_id" +
+                DAO.ordenarPor(COLUNAS_ORDENACAO, coluna, "p.id", crescente);
+        return conexoes.ler(statements -> {
+            try (PreparedStatement pstmt = statements.preparar(sql);
+                 ResultSet rs = pstmt.executeQuery()) {
+                return DAO.lerIds(rs);
+            }
+        });
+    }
+
+    @Override
+    public List<Pedido> buscarPorIds(long[] ids) throws SQLException {
+        return carregarPedidos(" WHERE p.id IN (" + DAO.marcadores(ids.length) + ")", ids);
+    }
+
+    /**
+     * Resumos dos pedidos informados (ex.: uma página da tabela ordenada), em qualquer ordem.
+     */
+    public List<ResumoPedido> buscarResumosPorIds(long[] ids) throws SQLException {
+        String sql = "SELECT p.id, p.cliente_id, c.nome, p.total, p.quantidade_itens FROM pedidos p " +
+                "JOIN clientes c ON c.id = p.cliente_id WHERE p.id IN (" + DAO.marcadores(ids.length) + ")";
+        return conexoes.ler(statements -> {
+            List<ResumoPedido> resumos = new ArrayList<>();
+            try (PreparedStatement pstmt = statements.preparar(sql)) {
+                for (int i = 0; i < ids.length; i++) {
+                    pstmt.setLong(i + 1, ids[i]);
+                }
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        resumos.add(new ResumoPedido(rs.getLong(1), rs.getLong(2), rs.getString(3), rs.getDouble(4), rs.getInt(5)));
+                    }
+                }
+            }
+            return resumos;
+        });
+    }
+
+    /**
+     * Monta o grafo Pedido/ItemPedido/Cliente/Produto a partir de um único cursor
+     * (pedidos JOIN clientes LEFT JOIN itens_pedido/produtos), ordenado por pedido.
+     * Cada Cliente e Produto é instanciado uma única vez por id durante a carga.
+     * Pedidos sem cliente e itens sem produto são ignorados, como antes.
+     */
+    private List<Pedido> carregarPedidos(String filtro, long... parametros) throws SQLException {
+        String sql = "SELECT p.id AS pedido_id, c.id AS cliente_id, c.nome AS cliente_nome, c.email, c.telefone, " +
+                "c.endereco, c.cidade, c.estado, c.pais, " +
+                "i.quantidade, pr.id AS produto_id, pr.nome AS produto_nome, pr.preco " +
+                "FROM pedidos p " +
+                "JOIN clientes c ON c.id = p.cliente_id " +
+                "LEFT JOIN itens_pedido i ON i.pedido_id = p.id " +
+                "LEFT JOIN produtos pr ON pr.id = i.produto_id" +
+                filtro +
+                " ORDER BY p.id";
+
+        return conexoes.ler(statements -> {
+            List<Pedido> pedidos = new ArrayList<>();
+            Map<Long, Cliente> clientes = new HashMap<>();
+            Map<Long, Produto> produtos = new HashMap<>();
+            try (PreparedStatement pstmt = statements.preparar(sql)) {
+                for (int i = 0; i < parametros.length; i++) {
+                    pstmt.setLong(i + 1, parametros[i]);
+                }
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    Pedido atual = null;
+                    while (rs.next()) {
+                        long pedidoId = rs.getLong("pedido_id");
+                        // As linhas chegam agrupadas por pedido: um novo id inicia um novo Pedido
+                        if (atual == null || atual.getId() != pedidoId) {
+                            long clienteId = rs.getLong("cliente_id");
+                            Cliente cliente = clientes.get(clienteId);
+                            if (cliente == null) {
+                                cliente = new Cliente(
+                                        clienteId,
+                                        rs.getString("cliente_nome"),
+                                        rs.getString("email"),
+                                        rs.getString("telefone"),
+                                        rs.getString("endereco"),
+                                        rs.getString("cidade"),
+                                        rs.getString("estado"),
+                                        rs.getString("pais")
+                                );
+                                clientes.put(clienteId, cliente);
                             }
+                            atual = new Pedido(pedidoId, cliente);
+                            pedidos.add(atual);
                         }
+
+                        // Pedido sem itens ou item cujo produto não existe mais
+                        long produtoId = rs.getLong("produto_id");
+                        if (rs.wasNull()) {
+                            continue;
+                        }
+                        Produto produto = produtos.get(produtoId);
+                        if (produto == null) {
+                            produto = new Produto(produtoId, rs.getString("produto_nome"), rs.getDouble("preco"));
+                            produtos.put(produtoId, produto);
+                        }
+                        atual.adicionarItem(new ItemPedido(produto, rs.getInt("quantidade")));
                     }
-                    pedidos.add(pedido);
                 }
             }
-        }
-        return pedidos;
+            return pedidos;
+        });
     }
 
     @Override
     public boolean atualizar(Pedido pedido) throws SQLException {
-        // Atualiza os dados do pedido principal
-        String sqlPedido = "UPDATE pedidos SET cliente_id = ? WHERE id = ?";
-        try (PreparedStatement pstmtPedido = connection.prepareStatement(sqlPedido)) {
-            pstmtPedido.setLong(1, pedido.getCliente().getId());
-            pstmtPedido.setLong(2, pedido.getId());
-            pstmtPedido.executeUpdate();
-        }
+        return conexoes.escrever(statements -> {
+            // Atualiza os dados do pedido principal
+            String sqlPedido = "UPDATE pedidos SET cliente_id = ? WHERE id = ?";
+            try (PreparedStatement pstmtPedido = statements.preparar(sqlPedido)) {
+                pstmtPedido.setLong(1, pedido.getCliente().getId());
+                pstmtPedido.setLong(2, pedido.getId());
+                pstmtPedido.executeUpdate();
+            }
+
+            // Deleta todos os itens antigos e insere os novos
+            String sqlDeleteItens = "DELETE FROM itens_pedido WHERE pedido_id = ?";
+            try (PreparedStatement pstmtDelete = statements.preparar(sqlDeleteItens)) {
+                pstmtDelete.setLong(1, pedido.getId());
+                pstmtDelete.executeUpdate();
+            }
+
+            inserirItens(statements, pedido);
+            recalcularTotais(statements, pedido.getId());
+            return true;
+        });
+    }
 
-        // Deleta todos os itens antigos e insere os novos
-        String sqlDeleteItens = "DELETE FROM itens_pedido WHERE pedido_id = ?";
-        try (PreparedStatement pstmtDelete = connection.prepareStatement(sqlDeleteItens)) {
-            pstmtDelete.setLong(1, pedido.getId());
-            pstmtDelete.executeUpdate();
+    private void recalcularTotais(CacheStatements statements, long... ids) throws SQLException {
+        try (PreparedStatement pstmt = statements.preparar(SQL_RECALCULAR_TOTAIS)) {
+            for (long id : ids) {
+                pstmt.setLong(1, id);
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
         }
+    }
 
-        String sqlInsertItem = "INSERT INTO itens_pedido (pedido_id, produto_id, quantidade) VALUES (?, ?, ?)";
-        try (PreparedStatement pstmtInsert = connection.prepareStatement(sqlInsertItem)) {
+    private void inserirItens(CacheStatements statements, Pedido pedido) throws SQLException {
+        String sqlItem = "INSERT INTO itens_pedido (pedido_id, produto_id, quantidade) VALUES (?, ?, ?)";
+        try (PreparedStatement pstmtItem = statements.preparar(sqlItem)) {
             for (ItemPedido item : pedido.getItens()) {
-                pstmtInsert.setLong(1, pedido.getId());
-                pstmtInsert.setLong(2, item.getProduto().getId());
-                pstmtInsert.setInt(3, item.getQuantidade());
-                pstmtInsert.addBatch();
+                pstmtItem.setLong(1, pedido.getId());
+                pstmtItem.setLong(2, item.getProduto().getId());
+                pstmtItem.setInt(3, item.getQuantidade());
+                pstmtItem.addBatch(); // Adiciona ao lote para execução em massa
             }
-            pstmtInsert.executeBatch();
+            pstmtItem.executeBatch(); // Executa todos os inserts de uma vez
         }
-        return true;
     }
 
     @Override
     public boolean deletar(long id) throws SQLException {
         String sql = "DELETE FROM pedidos WHERE id = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setLong(1, id);
-            return pstmt.executeUpdate() > 0;
-        }
+        return conexoes.escrever(statements -> {
+            try (PreparedStatement pstmt = statements.preparar(sql)) {
+                pstmt.setLong(1, id);
+                return pstmt.executeUpdate() > 0;
+            }
+        });
     }
 }
 
@@ -712,180 +1402,871 @@ class PedidoDAO implements DAO<Pedido> {
  * Gerencia as operações de alto nível da aplicação e as DAOs.
  */
 class ERPController {
-    private Connection connection;
+    /**
+     * Operação do controlador executada fora da EDT.
+     */
+    interface Tarefa<T> {
+        T executar() throws Exception;
+    }
+
+    private GerenciadorConexoes conexoes;
     private ClienteDAO clienteDAO;
     private ProdutoDAO produtoDAO;
     private PedidoDAO pedidoDAO;
+    private MotorRelatorios motorRelatorios;
+    private SnapshotVendas snapshotVendas;
+    // Índices de nomes para as sugestões do diálogo de pedidos, construídos no primeiro uso
+    private IndicePrefixos indiceClientes;
+    private IndicePrefixos indiceProdutos;
+    // null quando desligadas com -Derp.metricas=false
+    private Metricas metricas;
+    // Diário de pedidos, ligado com -Derp.diario=true (null quando desligado)
+    private DiarioPedidos diarioPedidos;
+    // Snapshot dos caches de clientes e produtos, ligado com -Derp.snapshot=true (null quando desligado)
+    private java.nio.file.Path arquivoSnapshot;
+    // Ids alterados por cada gravação confirmada, para os painéis
+    private final EventosAlteracao eventos = new EventosAlteracao();
+
+    // Executor limitado das operações assíncronas (threads daemon, não impedem o encerramento)
+    private final ExecutorService executor = Executors.newFixedThreadPool(
+            Integer.getInteger("erp.executor.threads", Math.max(2, Runtime.getRuntime().availableProcessors())),
+            new java.util.concurrent.ThreadFactory() {
+                private final AtomicInteger contador = new AtomicInteger();
+
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "erp-worker-" + contador.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
 
     public ERPController() {
+        this("jdbc:sqlite:erp_database.db");
+    }
+
+    /**
+     * @param urlBanco URL JDBC do banco SQLite (ex.: bancos gerados para benchmarks)
+     */
+    public ERPController(String urlBanco) {
         try {
             // Carrega o driver JDBC para SQLite
             Class.forName("org.sqlite.JDBC");
-            // Conecta ao banco de dados (o arquivo será criado se não existir)
-            connection = DriverManager.getConnection("jdbc:sqlite:erp_database.db");
-            // Habilita chaves estrangeiras no SQLite
-            connection.createStatement().execute("PRAGMA foreign_keys = ON");
+            // Conecta ao banco de dados (o arquivo será criado se não existir) em modo WAL:
+            // um pool de conexões de leitura e uma única conexão de escrita, cada uma com seu
+            // cache de statements. Tamanhos configuráveis via -Derp.pool.leitores / -Derp.cache.statements
+            conexoes = new GerenciadorConexoes(urlBanco,
+                    Integer.getInteger("erp.pool.leitores", Math.max(2, Runtime.getRuntime().availableProcessors())),
+                    Integer.getInteger("erp.cache.statements", CacheStatements.CAPACIDADE_PADRAO));
 
             // Instancia as DAOs
-            clienteDAO = new ClienteDAO(connection);
-            produtoDAO = new ProdutoDAO(connection);
-            pedidoDAO = new PedidoDAO(connection, clienteDAO, produtoDAO);
+            // Capacidade dos caches de entidades configurável via -Derp.cache.clientes / -Derp.cache.produtos
+            int capacidadeClientes = Integer.getInteger("erp.cache.clientes", ClienteDAO.CAPACIDADE_CACHE_PADRAO);
+            int capacidadeProdutos = Integer.getInteger("erp.cache.produtos", ProdutoDAO.CAPACIDADE_CACHE_PADRAO);
+            if (Boolean.parseBoolean(System.getProperty("erp.metricas", "true"))) {
+                // DAOs medidas: métricas por operação via JMX e, com -Derp.metricas.arquivo, num arquivo texto
+                metricas = new Metricas();
+                String arquivoMetricas = System.getProperty("erp.metricas.arquivo");
+                if (arquivoMetricas != null) {
+                    metricas.iniciarExportacao(java.nio.file.Paths.get(arquivoMetricas), Long.getLong("erp.metricas.intervalo", 15));
+                }
+                clienteDAO = new ClienteDAOMedido(conexoes, capacidadeClientes, metricas);
+                produtoDAO = new ProdutoDAOMedido(conexoes, capacidadeProdutos, metricas);
+                pedidoDAO = new PedidoDAOMedido(conexoes, clienteDAO, produtoDAO, metricas);
+            } else {
+                clienteDAO = new ClienteDAO(conexoes, capacidadeClientes);
+                produtoDAO = new ProdutoDAO(conexoes, capacidadeProdutos);
+                pedidoDAO = new PedidoDAO(conexoes, clienteDAO, produtoDAO);
+            }
+            motorRelatorios = new MotorRelatorios(conexoes);
+            indiceClientes = new IndicePrefixos(clienteDAO::lerNomes);
+            indiceProdutos = new IndicePrefixos(produtoDAO::lerNomes);
+            snapshotVendas = new SnapshotVendas(conexoes);
+
+            // Cria ou atualiza o esquema aplicando só as migrações pendentes (ver MigracoesEsquema)
+            new MigracoesEsquema(conexoes).aplicarPendentes();
+
+            if (Boolean.getBoolean("erp.diario")) {
+                // Pedidos novos confirmados no diário e aplicados no banco em lotes; arquivo e
+                // capacidade (MB) via -Derp.diario.arquivo / -Derp.diario.capacidade
+                diarioPedidos = new DiarioPedidos(java.nio.file.Paths.get(System.getProperty("erp.diario.arquivo", "erp_pedidos.diario")),
+                        Integer.getInteger("erp.diario.capacidade", DiarioPedidos.CAPACIDADE_PADRAO >> 20) << 20, conexoes,
+                        clienteDAO::buscarPorId, produtoDAO::buscarPorId, pedidoDAO, ids -> {
+                            snapshotVendas.pedidosGravados(Arrays.stream(ids).min().getAsLong());
+                            eventos.publicar(EventosAlteracao.Entidade.PEDIDO, EventosAlteracao.Tipo.INSERIDO, ids);
+                        });
+                int reaplicados = diarioPedidos.iniciar();
+                if (reaplicados > 0) {
+                    System.out.println(reaplicados + " pedido(s) reaplicado(s) do diário de pedidos.");
+                }
+            }
 
-            // Cria as tabelas se não existirem
-            clienteDAO.criarTabela();
-            produtoDAO.criarTabela();
-            pedidoDAO.criarTabelas();
+            if (Boolean.getBoolean("erp.snapshot")) {
+                // Caches de clientes e produtos gravados no encerramento e recarregados aqui,
+                // arquivo via -Derp.snapshot.arquivo (ver SnapshotEntidades)
+                arquivoSnapshot = java.nio.file.Paths.get(System.getProperty("erp.snapshot.arquivo", "erp_entidades.snap"));
+                aquecerCaches();
+            }
 
-        } catch (SQLException | ClassNotFoundException e) {
+        } catch (SQLException | ClassNotFoundException | IOException e) {
             e.printStackTrace();
-            JOptionPane.showMessageDialog(null, "Erro ao inicializar o banco de dados: " + e.getMessage(), "Erro de Banco de Dados", JOptionPane.ERROR_MESSAGE);
+            if (!java.awt.GraphicsEnvironment.isHeadless()) {
+                JOptionPane.showMessageDialog(null, "Erro ao inicializar o banco de dados: " + e.getMessage(), "Erro de Banco de Dados", JOptionPane.ERROR_MESSAGE);
+            }
             System.exit(1);
         }
     }
 
     // Métodos de negócio para Clientes
     public Cliente adicionarCliente(Cliente c) throws SQLException {
-        return clienteDAO.salvar(c);
+        return medir("ERPController.adicionarCliente", Metricas.Tipo.ESCRITA, () -> {
+            Cliente salvo = clienteDAO.salvar(c);
+            indiceClientes.gravar(salvo.getId(), salvo.getNome());
+            eventos.publicar(EventosAlteracao.Entidade.CLIENTE, EventosAlteracao.Tipo.INSERIDO, salvo.getId());
+            return salvo;
+        });
     }
 
     public boolean atualizarCliente(Cliente c) throws SQLException {
-        return clienteDAO.atualizar(c);
+        return medir("ERPController.atualizarCliente", Metricas.Tipo.ESCRITA, () -> {
+            boolean atualizado = conexoes.escrever(statements -> invalidarVendasSe(clienteDAO.atualizar(c)));
+            if (atualizado) {
+                indiceClientes.gravar(c.getId(), c.getNome());
+                eventos.publicar(EventosAlteracao.Entidade.CLIENTE, EventosAlteracao.Tipo.ATUALIZADO, c.getId());
+            }
+            return atualizado;
+        });
     }
 
     public boolean removerCliente(long id) throws SQLException {
-        // Lógica de negócio: impede a exclusão de um cliente com pedidos associados
-        boolean clienteTemPedidos = pedidoDAO.buscarTodos().stream()
-                .anyMatch(p -> p.getCliente().getId() == id);
-        if (clienteTemPedidos) {
-            return false;
-        }
-        return clienteDAO.deletar(id);
+        return medir("ERPController.removerCliente", Metricas.Tipo.ESCRITA, () -> {
+            // Lógica de negócio: impede a exclusão de um cliente com pedidos associados.
+            // Verificação e exclusão na mesma instrução, na conexão de escrita
+            boolean removido = semNovosPedidos(() -> conexoes.escrever(statements -> invalidarVendasSe(clienteDAO.deletarSemPedidos(id))));
+            if (removido) {
+                indiceClientes.remover(id);
+                eventos.publicar(EventosAlteracao.Entidade.CLIENTE, EventosAlteracao.Tipo.REMOVIDO, id);
+            }
+            return removido;
+        });
     }
 
     public List<Cliente> getClientes() throws SQLException {
-        return clienteDAO.buscarTodos();
+        return medir("ERPController.getClientes", Metricas.Tipo.LEITURA, clienteDAO::buscarTodos);
+    }
+
+    /**
+     * Importa clientes de um CSV "nome;email;telefone;endereco;cidade;estado;pais".
+     * Nome, email e telefone são obrigatórios, como no cadastro manual.
+     */
+    public ImportadorCSV.Resultado importarClientesCSV(File arquivo, ImportadorCSV.Progresso progresso, BooleanSupplier cancelado) throws IOException, SQLException {
+        ImportadorCSV<Cliente> importador = new ImportadorCSV<>("nome", 3, campos -> {
+            String nome = campos[0], email = campos[1], telefone = campos[2];
+            if (nome.isEmpty() || email.isEmpty() || telefone.isEmpty()) {
+                throw new IllegalArgumentException("nome, email e telefone são obrigatórios");
+            }
+            return new Cliente(nome, email, telefone,
+                    campos.length > 3 ? campos[3] : "",
+                    campos.length > 4 ? campos[4] : "",
+                    campos.length > 5 ? campos[5] : "",
+                    campos.length > 6 ? campos[6] : "");
+        }, clienteDAO::salvarLote);
+        try {
+            return medirArquivo("ERPController.importarClientesCSV", Metricas.Tipo.ESCRITA,
+                    () -> importador.importar(arquivo, progresso, cancelado));
+        } finally {
+            // Os lotes não devolvem os ids gerados: o índice de nomes é reconstruído no próximo uso
+            indiceClientes.invalidar();
+            eventos.publicar(EventosAlteracao.Entidade.CLIENTE, EventosAlteracao.Tipo.EM_MASSA);
+        }
+    }
+
+    /**
+     * Busca textual de clientes, ordenada por relevância.
+     */
+    public List<Cliente> buscarClientes(String texto, int limite) throws SQLException {
+        return medir("ERPController.buscarClientes", Metricas.Tipo.LEITURA, () -> clienteDAO.buscar(texto, limite));
+    }
+
+    /**
+     * Sugestões para o diálogo de pedidos: até 'limite' clientes cujo nome tem uma palavra
+     * começando por 'prefixo', em ordem alfabética, pelo índice em memória. As entidades
+     * vêm do cache de clientes.
+     */
+    public List<Cliente> sugerirClientes(String prefixo, int limite) throws SQLException {
+        return medir("ERPController.sugerirClientes", Metricas.Tipo.LEITURA, () -> {
+            List<Cliente> clientes = new ArrayList<>();
+            for (long id : indiceClientes.buscar(prefixo, limite)) {
+                Cliente c = clienteDAO.buscarPorId(id);
+                if (c != null) {
+                    clientes.add(c);
+                }
+            }
+            return clientes;
+        });
+    }
+
+    public Cliente buscarCliente(long id) throws SQLException {
+        return medir("ERPController.buscarCliente", Metricas.Tipo.LEITURA, () -> clienteDAO.buscarPorId(id));
+    }
+
+    public List<Cliente> getClientesPagina(long aposId, int limite) throws SQLException {
+        return medir("ERPController.getClientesPagina", Metricas.Tipo.LEITURA, () -> clienteDAO.buscarPagina(aposId, limite));
+    }
+
+    public long[] getIdsClientes() throws SQLException {
+        return medir("ERPController.getIdsClientes", Metricas.Tipo.LEITURA, clienteDAO::buscarIds);
+    }
+
+    public long[] getIdsClientes(String coluna, boolean crescente) throws SQLException {
+        return medir("ERPController.getIdsClientesOrdenados", Metricas.Tipo.LEITURA, () -> clienteDAO.buscarIdsOrdenados(coluna, crescente));
+    }
+
+    public List<Cliente> getClientesPorIds(long[] ids) throws SQLException {
+        return medir("ERPController.getClientesPorIds", Metricas.Tipo.LEITURA, () -> clienteDAO.buscarPorIds(ids));
     }
 
     // Métodos de negócio para Produtos
     public Produto adicionarProduto(Produto p) throws SQLException {
-        return produtoDAO.salvar(p);
+        return medir("ERPController.adicionarProduto", Metricas.Tipo.ESCRITA, () -> {
+            Produto salvo = produtoDAO.salvar(p);
+            indiceProdutos.gravar(salvo.getId(), salvo.getNome());
+            eventos.publicar(EventosAlteracao.Entidade.PRODUTO, EventosAlteracao.Tipo.INSERIDO, salvo.getId());
+            return salvo;
+        });
     }
 
     public boolean atualizarProduto(Produto p) throws SQLException {
-        return produtoDAO.atualizar(p);
+        return medir("ERPController.atualizarProduto", Metricas.Tipo.ESCRITA, () -> {
+            // Os totais dos pedidos ainda no diário também precisam ser recalculados
+            drenarDiario();
+            boolean atualizado = conexoes.escrever(statements -> invalidarVendasSe(produtoDAO.atualizar(p)));
+            if (atualizado) {
+                indiceProdutos.gravar(p.getId(), p.getNome());
+                eventos.publicar(EventosAlteracao.Entidade.PRODUTO, EventosAlteracao.Tipo.ATUALIZADO, p.getId());
+            }
+            return atualizado;
+        });
+    }
+
+    public boolean removerProduto(long id) throws SQLException {
+        return medir("ERPController.removerProduto", Metricas.Tipo.ESCRITA, () -> {
+            // Lógica de negócio: impede a exclusão de um produto usado em pedidos (atômica, como em removerCliente)
+            boolean removido = semNovosPedidos(() -> conexoes.escrever(statements -> invalidarVendasSe(produtoDAO.deletarSemItens(id))));
+            if (removido) {
+                indiceProdutos.remover(id);
+                eventos.publicar(EventosAlteracao.Entidade.PRODUTO, EventosAlteracao.Tipo.REMOVIDO, id);
+            }
+            return removido;
+        });
+    }
+
+    public List<Produto> getProdutos() throws SQLException {
+        return medir("ERPController.getProdutos", Metricas.Tipo.LEITURA, produtoDAO::buscarTodos);
     }
 
-    public boolean removerProduto(long id) throws SQLException {
-        // Lógica de negócio: impede a exclusão de um produto usado em pedidos
-        boolean produtoUsadoEmPedido = pedidoDAO.buscarTodos().stream()
-                .anyMatch(p -> p.getItens().stream()
-                        .anyMatch(item -> item.getProduto().getId() == id));
-        if (produtoUsadoEmPedido) {
-            return false;
-        }
-        return produtoDAO.deletar(id);
+    /**
+     * Importa produtos de um CSV "nome;preco". O preço aceita vírgula ou ponto decimal.
+     */
+    public ImportadorCSV.Resultado importarProdutosCSV(File arquivo, ImportadorCSV.Progresso progresso, BooleanSupplier cancelado) throws IOException, SQLException {
+        ImportadorCSV<Produto> importador = new ImportadorCSV<>("nome", 2, campos -> {
+            if (campos[0].isEmpty()) {
+                throw new IllegalArgumentException("nome é obrigatório");
+            }
+            double preco;
+            try {
+                preco = Double.parseDouble(campos[1].replace(',', '.'));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("preço inválido: " + campos[1]);
+            }
+            if (!(preco > 0)) {
+                throw new IllegalArgumentException("o preço deve ser maior que zero");
+            }
+            return new Produto(campos[0], preco);
+        }, produtoDAO::salvarLote);
+        try {
+            return medirArquivo("ERPController.importarProdutosCSV", Metricas.Tipo.ESCRITA,
+                    () -> importador.importar(arquivo, progresso, cancelado));
+        } finally {
+            indiceProdutos.invalidar();
+            eventos.publicar(EventosAlteracao.Entidade.PRODUTO, EventosAlteracao.Tipo.EM_MASSA);
+        }
+    }
+
+    /**
+     * Busca textual de produtos pelo nome, ordenada por relevância.
+     */
+    public List<Produto> buscarProdutos(String texto, int limite) throws SQLException {
+        return medir("ERPController.buscarProdutos", Metricas.Tipo.LEITURA, () -> produtoDAO.buscar(texto, limite));
+    }
+
+    /**
+     * Sugestões de produtos para o diálogo de pedidos (ver sugerirClientes).
+     */
+    public List<Produto> sugerirProdutos(String prefixo, int limite) throws SQLException {
+        return medir("ERPController.sugerirProdutos", Metricas.Tipo.LEITURA, () -> {
+            List<Produto> produtos = new ArrayList<>();
+            for (long id : indiceProdutos.buscar(prefixo, limite)) {
+                Produto p = produtoDAO.buscarPorId(id);
+                if (p != null) {
+                    produtos.add(p);
+                }
+            }
+            return produtos;
+        });
+    }
+
+    /**
+     * Há ao menos um cliente e um produto? Respondido pelos índices de nomes, sem listar as tabelas.
+     */
+    public boolean existemClientesEProdutos() throws SQLException {
+        return indiceClientes.getTamanho() > 0 && indiceProdutos.getTamanho() > 0;
+    }
+
+    public Produto buscarProduto(long id) throws SQLException {
+        return medir("ERPController.buscarProduto", Metricas.Tipo.LEITURA, () -> produtoDAO.buscarPorId(id));
+    }
+
+    public List<Produto> getProdutosPagina(long aposId, int limite) throws SQLException {
+        return medir("ERPController.getProdutosPagina", Metricas.Tipo.LEITURA, () -> produtoDAO.buscarPagina(aposId, limite));
+    }
+
+    public long[] getIdsProdutos() throws SQLException {
+        return medir("ERPController.getIdsProdutos", Metricas.Tipo.LEITURA, produtoDAO::buscarIds);
+    }
+
+    public long[] getIdsProdutos(String coluna, boolean crescente) throws SQLException {
+        return medir("ERPController.getIdsProdutosOrdenados", Metricas.Tipo.LEITURA, () -> produtoDAO.buscarIdsOrdenados(coluna, crescente));
+    }
+
+    public List<Produto> getProdutosPorIds(long[] ids) throws SQLException {
+        return medir("ERPController.getProdutosPorIds", Metricas.Tipo.LEITURA, () -> produtoDAO.buscarPorIds(ids));
+    }
+
+    // Métodos de negócio para Pedidos
+    public Pedido adicionarPedido(Pedido p) throws SQLException {
+        return medir("ERPController.adicionarPedido", Metricas.Tipo.ESCRITA, () -> {
+            if (diarioPedidos != null) {
+                // O evento é publicado quando o diário aplica o pedido no banco
+                return diarioPedidos.registrar(p);
+            }
+            Pedido salvo = pedidoDAO.salvar(p);
+            eventos.publicar(EventosAlteracao.Entidade.PEDIDO, EventosAlteracao.Tipo.INSERIDO, salvo.getId());
+            return salvo;
+        });
+    }
+
+    public boolean atualizarPedido(Pedido p) throws SQLException {
+        return medir("ERPController.atualizarPedido", Metricas.Tipo.ESCRITA, () -> {
+            drenarDiario();
+            boolean atualizado = conexoes.escrever(statements -> invalidarVendasSe(pedidoDAO.atualizar(p)));
+            if (atualizado) {
+                eventos.publicar(EventosAlteracao.Entidade.PEDIDO, EventosAlteracao.Tipo.ATUALIZADO, p.getId());
+            }
+            return atualizado;
+        });
+    }
+
+    public boolean removerPedido(long id) throws SQLException {
+        return medir("ERPController.removerPedido", Metricas.Tipo.ESCRITA, () -> {
+            drenarDiario();
+            boolean removido = conexoes.escrever(statements -> invalidarVendasSe(pedidoDAO.deletar(id)));
+            if (removido) {
+                eventos.publicar(EventosAlteracao.Entidade.PEDIDO, EventosAlteracao.Tipo.REMOVIDO, id);
+            }
+            return removido;
+        });
+    }
+
+    public List<Pedido> getPedidos() throws SQLException {
+        return medir("ERPController.getPedidos", Metricas.Tipo.LEITURA, pedidoDAO::buscarTodos);
+    }
+
+    /**
+     * Ingestão de um arquivo de pedidos "referencia;email_cliente;nome_produto;quantidade"
+     * pelo PipelinePedidos. Número de threads de validação via -Derp.ingestao.validadores.
+     */
+    public PipelinePedidos.Resultado importarPedidosCSV(File arquivo, PipelinePedidos.Monitor monitor, BooleanSupplier cancelado) throws IOException, SQLException {
+        PipelinePedidos pipeline = new PipelinePedidos(clienteDAO::buscarPorEmail, produtoDAO::buscarPorNome, pedidoDAO,
+                Integer.getInteger("erp.ingestao.validadores", Math.max(1, Runtime.getRuntime().availableProcessors() - 1)));
+        try {
+            return medirArquivo("ERPController.importarPedidosCSV", Metricas.Tipo.ESCRITA,
+                    () -> pipeline.importar(arquivo, monitor, cancelado));
+        } finally {
+            eventos.publicar(EventosAlteracao.Entidade.PEDIDO, EventosAlteracao.Tipo.EM_MASSA);
+        }
+    }
+
+    public Pedido buscarPedido(long id) throws SQLException {
+        return medir("ERPController.buscarPedido", Metricas.Tipo.LEITURA, () -> {
+            // Pedidos confirmados no diário e ainda não aplicados no banco
+            Pedido pendente = diarioPedidos != null ? diarioPedidos.buscarPendente(id) : null;
+            return pendente != null ? pendente : pedidoDAO.buscarPorId(id);
+        });
+    }
+
+    public List<Pedido> getPedidosPagina(long aposId, int limite) throws SQLException {
+        return medir("ERPController.getPedidosPagina", Metricas.Tipo.LEITURA, () -> pedidoDAO.buscarPagina(aposId, limite));
+    }
+
+    public List<ResumoPedido> getResumosPedidosPagina(long aposId, int limite) throws SQLException {
+        return medir("ERPController.getResumosPedidosPagina", Metricas.Tipo.LEITURA, () -> pedidoDAO.buscarResumosPagina(aposId, limite));
+    }
+
+    public long[] getIdsPedidos() throws SQLException {
+        return medir("ERPController.getIdsPedidos", Metricas.Tipo.LEITURA, pedidoDAO::buscarIds);
+    }
+
+    public long[] getIdsPedidos(String coluna, boolean crescente) throws SQLException {
+        return medir("ERPController.getIdsPedidosOrdenados", Metricas.Tipo.LEITURA, () -> pedidoDAO.buscarIdsOrdenados(coluna, crescente));
+    }
+
+    public List<ResumoPedido> getResumosPedidosPorIds(long[] ids) throws SQLException {
+        return medir("ERPController.getResumosPedidosPorIds", Metricas.Tipo.LEITURA, () -> pedidoDAO.buscarResumosPorIds(ids));
+    }
+
+    public EventosAlteracao getEventos() {
+        return eventos;
+    }
+
+    // Relatórios agregados no banco
+    public List<MotorRelatorios.LinhaRelatorio> getRelatorio(MotorRelatorios.Agrupamento agrupamento, int limite) throws SQLException {
+        return medir("ERPController.getRelatorio", Metricas.Tipo.LEITURA, () -> motorRelatorios.agregar(agrupamento, limite));
+    }
+
+    public MotorRelatorios.LinhaRelatorio getTotalGeral() throws SQLException {
+        return medir("ERPController.getTotalGeral", Metricas.Tipo.LEITURA, motorRelatorios::totalGeral);
+    }
+
+    /**
+     * Snapshot colunar de vendas, atualizado com os pedidos novos antes de ser devolvido.
+     */
+    public SnapshotVendas getSnapshotVendas() throws SQLException {
+        return medir("ERPController.getSnapshotVendas", Metricas.Tipo.LEITURA, () -> {
+            snapshotVendas.atualizar();
+            return snapshotVendas;
+        });
+    }
+
+    // Método para exportar o relatório para um arquivo CSV
+    public void exportarRelatorioCSV(File arquivo) throws IOException, SQLException {
+        exportarRelatorioCSV(arquivo, null, null);
+    }
+
+    /**
+     * Exporta em fluxo contínuo (memória constante), com aviso de progresso e cancelamento opcionais.
+     */
+    public long exportarRelatorioCSV(File arquivo, ExportadorCSV.Progresso progresso, BooleanSupplier cancelado) throws IOException, SQLException {
+        return medirArquivo("ERPController.exportarRelatorioCSV", Metricas.Tipo.LEITURA,
+                () -> new ExportadorCSV(conexoes).exportar(arquivo, progresso, cancelado));
+    }
+
+    /**
+     * Exporta em paralelo por faixas de id de pedido; o arquivo gerado é idêntico ao sequencial.
+     */
+    public long exportarRelatorioCSV(File arquivo, int paralelismo, ExportadorCSV.Progresso progresso, BooleanSupplier cancelado) throws IOException, SQLException {
+        return medirArquivo("ERPController.exportarRelatorioCSVParalelo", Metricas.Tipo.LEITURA,
+                () -> new ExportadorCSV(conexoes).exportarParalelo(arquivo, Math.min(paralelismo, conexoes.getMaxLeitores()), progresso, cancelado));
+    }
+
+    /**
+     * Métricas das operações, ou null se desligadas (-Derp.metricas=false).
+     */
+    public Metricas getMetricas() {
+        return metricas;
+    }
+
+    // Alterações que dependem dos pedidos existentes esperam o diário chegar ao banco
+    private void drenarDiario() throws SQLException {
+        if (diarioPedidos != null) {
+            diarioPedidos.drenar();
+        }
+    }
+
+    // Chamado dentro da escrita: invalida o snapshot de vendas só depois do commit e só se algo mudou.
+    // Antes do commit, uma atualização concorrente do snapshot recarregaria os dados antigos e os manteria
+    private boolean invalidarVendasSe(boolean alterou) {
+        if (alterou) {
+            conexoes.aoConfirmar(snapshotVendas::invalidar);
+        }
+        return alterou;
+    }
+
+    // Exclusões verificadas contra os pedidos: com o diário drenado e sem aceitar pedidos novos até o commit,
+    // senão um pedido aceito no intervalo seria descartado na aplicação (chave estrangeira)
+    private <R> R semNovosPedidos(DiarioPedidos.Operacao<R> operacao) throws SQLException {
+        return diarioPedidos != null ? diarioPedidos.drenarEExecutar(operacao) : operacao.executar();
+    }
+
+    // Mede uma operação do controlador; sem custo além da chamada quando as métricas estão desligadas
+    private <R, E extends Exception> R medir(String operacao, Metricas.Tipo tipo, Metricas.Chamada<R, E> chamada) throws E {
+        if (metricas == null) {
+            return chamada.executar();
+        }
+        return metricas.medir(metricas.operacao(operacao, tipo), chamada);
+    }
+
+    private <R> R medirArquivo(String operacao, Metricas.Tipo tipo, Metricas.ChamadaArquivo<R> chamada) throws IOException, SQLException {
+        if (metricas == null) {
+            return chamada.executar();
+        }
+        return metricas.medirArquivo(metricas.operacao(operacao, tipo), chamada);
+    }
+
+    // Versões assíncronas: executam no executor do controlador e nunca na EDT.
+    // Use SwingAsync para receber o resultado de volta na EDT.
+    public <T> CompletableFuture<T> executarAsync(Tarefa<T> tarefa) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return tarefa.executar();
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    public CompletableFuture<List<Cliente>> getClientesAsync() {
+        return executarAsync(this::getClientes);
+    }
+
+    public CompletableFuture<List<Produto>> getProdutosAsync() {
+        return executarAsync(this::getProdutos);
+    }
+
+    public CompletableFuture<List<Pedido>> getPedidosAsync() {
+        return executarAsync(this::getPedidos);
+    }
+
+    public CompletableFuture<Long> exportarRelatorioCSVAsync(File arquivo, int paralelismo, ExportadorCSV.Progresso progresso, BooleanSupplier cancelado) {
+        return executarAsync(() -> exportarRelatorioCSV(arquivo, paralelismo, progresso, cancelado));
+    }
+
+    /**
+     * Carrega o snapshot nos caches se a assinatura (quantidade e maior id de clientes e
+     * produtos) confere com o banco. Alterações feitas por outro processo que não mudem a
+     * assinatura não são detectadas. Um snapshot ilegível é ignorado.
+     */
+    private void aquecerCaches() throws SQLException {
+        if (!java.nio.file.Files.exists(arquivoSnapshot)) {
+            return;
+        }
+        SnapshotEntidades.Conteudo conteudo;
+        try {
+            conteudo = SnapshotEntidades.ler(arquivoSnapshot);
+        } catch (IOException e) {
+            System.err.println("Snapshot de entidades ignorado: " + e.getMessage());
+            return;
+        } finally {
+            // Vale para uma única carga: só o encerramento normal grava outro. Após uma queda, um
+            // snapshot antigo com a mesma assinatura (ex.: só atualizações) traria dados obsoletos
+            try {
+                java.nio.file.Files.deleteIfExists(arquivoSnapshot);
+            } catch (IOException e) {
+                conteudo = null;
+                System.err.println("Snapshot de entidades ignorado: não foi possível removê-lo (" + e.getMessage() + ")");
+            }
+        }
+        if (conteudo == null) {
+            return;
+        }
+        if (!java.util.Arrays.equals(conteudo.assinatura, assinaturaBanco())) {
+            System.err.println("Snapshot de entidades ignorado: o banco mudou desde a gravação.");
+            return;
+        }
+        // Na ordem do arquivo (menos para mais usado), reproduzindo a ordem LRU
+        for (Cliente c : conteudo.clientes) {
+            clienteDAO.getCache().guardar(c.getId(), c);
+        }
+        for (Produto p : conteudo.produtos) {
+            produtoDAO.getCache().guardar(p.getId(), p);
+        }
+    }
+
+    private void gravarSnapshot() {
+        try {
+            SnapshotEntidades.Conteudo conteudo = new SnapshotEntidades.Conteudo();
+            conteudo.clientes.addAll(clienteDAO.getCache().listar());
+            conteudo.produtos.addAll(produtoDAO.getCache().listar());
+            System.arraycopy(assinaturaBanco(), 0, conteudo.assinatura, 0, conteudo.assinatura.length);
+            SnapshotEntidades.gravar(arquivoSnapshot, conteudo);
+        } catch (SQLException | IOException e) {
+            System.err.println("Erro ao gravar o snapshot de entidades: " + e.getMessage());
+        }
+    }
+
+    private long[] assinaturaBanco() throws SQLException {
+        String sql = "SELECT (SELECT COUNT(*) FROM clientes), (SELECT COALESCE(MAX(id), 0) FROM clientes), "
+                + "(SELECT COUNT(*) FROM produtos), (SELECT COALESCE(MAX(id), 0) FROM produtos)";
+        return conexoes.ler(statements -> {
+            try (PreparedStatement pstmt = statements.preparar(sql);
+                 ResultSet rs = pstmt.executeQuery()) {
+                rs.next();
+                return new long[]{rs.getLong(1), rs.getLong(2), rs.getLong(3), rs.getLong(4)};
+            }
+        });
+    }
+
+    // Fecha a conexão com o banco de dados
+    public void fecharConexao() {
+        // Aguarda brevemente as tarefas em andamento antes de fechar as conexões
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Aplica os pedidos que ainda estão no diário antes de fechar o banco
+        if (diarioPedidos != null) {
+            diarioPedidos.close();
+        }
+        if (arquivoSnapshot != null) {
+            gravarSnapshot();
+        }
+        // Fecha todas as conexões do pool, cada uma com seus statements em cache
+        if (conexoes != null) {
+            conexoes.close();
+        }
+        // Grava o arquivo de métricas uma última vez e remove os MBeans
+        if (metricas != null) {
+            metricas.close();
+        }
+    }
+}
+
+
+// ==============================================================================
+// 4. CLASSES DA VISÃO (Painéis da Interface Gráfica)
+//    - Representam a interface de usuário (View) e interagem com o Controller.
+// ==============================================================================
+
+/**
+ * Utilitário para formatar strings.
+ */
+class StringUtils {
+    public static String capitalize(String str) {
+        if (str == null || str.isEmpty()) {
+            return str;
+        }
+        return str.substring(0, 1).toUpperCase() + str.substring(1);
+    }
+}
+
+
+/**
+ * Utilitário para consumir operações assíncronas do controlador na EDT.
+ */
+class SwingAsync {
+    /**
+     * Cria uma barra de progresso indeterminada, inicialmente oculta.
+     */
+    public static JProgressBar criarBarraProgresso() {
+        JProgressBar barra = new JProgressBar();
+        barra.setIndeterminate(true);
+        barra.setVisible(false);
+        return barra;
+    }
+
+    /**
+     * Exibe a barra enquanto a operação executa e entrega o resultado (ou a falha) na EDT.
+     */
+    public static <T> void executar(CompletableFuture<T> futuro, JProgressBar progresso, Consumer<T> sucesso, Consumer<Throwable> falha) {
+        progresso.setVisible(true);
+        futuro.whenComplete((resultado, erro) -> SwingUtilities.invokeLater(() -> {
+            progresso.setVisible(false);
+            if (erro == null) {
+                sucesso.accept(resultado);
+            } else {
+                falha.accept(erro instanceof CompletionException && erro.getCause() != null ? erro.getCause() : erro);
+            }
+        }));
+    }
+
+    /**
+     * Chama 'acao' na EDT quando o usuário para de digitar no campo por 'esperaMs'.
+     */
+    public static void aoDigitar(JTextField campo, int esperaMs, Runnable acao) {
+        Timer timer = new Timer(esperaMs, e -> acao.run());
+        timer.setRepeats(false);
+        campo.getDocument().addDocumentListener(new javax.swing.event.DocumentListener() {
+            public void insertUpdate(javax.swing.event.DocumentEvent e) {
+                timer.restart();
+            }
+
+            public void removeUpdate(javax.swing.event.DocumentEvent e) {
+                timer.restart();
+            }
+
+            public void changedUpdate(javax.swing.event.DocumentEvent e) {
+                timer.restart();
+            }
+        });
     }
+}
 
-    public List<Produto> getProdutos() throws SQLException {
-        return produtoDAO.buscarTodos();
-    }
+/**
+ * JComboBox editável com sugestões enquanto se digita: a cada pausa na digitação
+ * busca (fora da EDT) as primeiras entidades que casam com o texto e mostra só
+ * elas na lista, em vez de carregar todas as entidades no combo.
+ */
+class ComboSugestoes<T> extends JComboBox<T> {
+    static final int LIMITE_SUGESTOES = 15;
 
-    // Métodos de negócio para Pedidos
-    public Pedido adicionarPedido(Pedido p) throws SQLException {
-        return pedidoDAO.salvar(p);
+    /**
+     * Busca até 'limite' sugestões para o texto digitado.
+     */
+    interface Fonte<T> {
+        List<T> sugerir(String texto, int limite) throws Exception;
     }
 
-    public boolean atualizarPedido(Pedido p) throws SQLException {
-        return pedidoDAO.atualizar(p);
+    private final ERPController controller;
+    private final Fonte<T> fonte;
+    private final DefaultComboBoxModel<T> modelo = new DefaultComboBoxModel<>();
+    private final JTextField editor;
+    private String ultimaBusca;
+    private int geracao; // descarta respostas de buscas já superadas
+
+    public ComboSugestoes(ERPController controller, Fonte<T> fonte) {
+        this.controller = controller;
+        this.fonte = fonte;
+        setModel(modelo);
+        setEditable(true);
+        editor = (JTextField) getEditor().getEditorComponent();
+        editor.setColumns(18);
+        SwingAsync.aoDigitar(editor, 120, () -> buscar(editor.getText()));
+        buscar("");
     }
 
-    public boolean removerPedido(long id) throws SQLException {
-        return pedidoDAO.deletar(id);
+    /**
+     * Entidade escolhida: a da lista cujo texto é o do campo ou, se só restou uma sugestão, ela.
+     */
+    @SuppressWarnings("unchecked")
+    public T getEntidadeSelecionada() {
+        String texto = editor.getText().trim();
+        for (int i = 0; i < modelo.getSize(); i++) {
+            T item = modelo.getElementAt(i);
+            if (item.toString().equalsIgnoreCase(texto)) {
+                return item;
+            }
+        }
+        Object selecionado = modelo.getSelectedItem();
+        if (selecionado != null && !(selecionado instanceof String) && selecionado.toString().equals(texto)) {
+            return (T) selecionado;
+        }
+        return modelo.getSize() == 1 ? modelo.getElementAt(0) : null;
     }
 
-    public List<Pedido> getPedidos() throws SQLException {
-        return pedidoDAO.buscarTodos();
+    /**
+     * Seleciona uma entidade já conhecida (ex.: o cliente de um pedido em edição).
+     */
+    public void selecionar(T entidade) {
+        if (modelo.getIndexOf(entidade) < 0) {
+            modelo.addElement(entidade);
+        }
+        modelo.setSelectedItem(entidade);
+        ultimaBusca = editor.getText();
+        geracao++; // uma busca ainda pendente não substitui a seleção
     }
 
-    // Método para exportar o relatório para um arquivo CSV
-    public void exportarRelatorioCSV(File arquivo) throws IOException, SQLException {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(arquivo))) {
-            writer.write("Cliente;Produto;Quantidade;Subtotal\n");
-
-            for (Pedido p : pedidoDAO.buscarTodos()) {
-                for (ItemPedido item : p.getItens()) {
-                    writer.write(String.format("%s;%s;%d;%.2f\n",
-                            p.getCliente().getNome(),
-                            item.getProduto().getNome(),
-                            item.getQuantidade(),
-                            item.getSubtotal()));
-                }
-            }
+    private void buscar(String texto) {
+        // Texto igual à última busca ou a uma sugestão escolhida: nada a buscar
+        if (texto.equals(ultimaBusca) || ehSugestao(texto)) {
+            return;
         }
+        ultimaBusca = texto;
+        int pedido = ++geracao;
+        controller.executarAsync(() -> fonte.sugerir(texto.trim(), LIMITE_SUGESTOES))
+                .whenComplete((sugestoes, erro) -> SwingUtilities.invokeLater(() -> {
+                    if (pedido != geracao) {
+                        return;
+                    }
+                    if (erro != null) {
+                        erro.printStackTrace();
+                        return;
+                    }
+                    exibir(sugestoes);
+                }));
     }
 
-    // Fecha a conexão com o banco de dados
-    public void fecharConexao() {
-        try {
-            if (connection != null && !connection.isClosed()) {
-                connection.close();
+    private boolean ehSugestao(String texto) {
+        for (int i = 0; i < modelo.getSize(); i++) {
+            if (modelo.getElementAt(i).toString().equals(texto)) {
+                return true;
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
         }
+        return false;
     }
-}
-
-
-// ==============================================================================
-// 4. CLASSES DA VISÃO (Painéis da Interface Gráfica)
-//    - Representam a interface de usuário (View) e interagem com o Controller.
-// ==============================================================================
 
-/**
- * Utilitário para formatar strings.
- */
-class StringUtils {
-    public static String capitalize(String str) {
-        if (str == null || str.isEmpty()) {
-            return str;
+    // Troca os itens da lista preservando o texto digitado, que o combo reescreveria ao mudar o modelo
+    private void exibir(List<T> sugestoes) {
+        String digitado = editor.getText();
+        int cursor = editor.getCaretPosition();
+        modelo.removeAllElements();
+        for (T sugestao : sugestoes) {
+            modelo.addElement(sugestao);
+        }
+        modelo.setSelectedItem(null);
+        editor.setText(digitado);
+        editor.setCaretPosition(Math.min(cursor, digitado.length()));
+        if (editor.isFocusOwner() && !sugestoes.isEmpty()) {
+            hidePopup();
+            showPopup();
         }
-        return str.substring(0, 1).toUpperCase() + str.substring(1);
     }
 }
 
-
 /**
  * Painel da interface para gerenciar Clientes.
  * Inclui campos de texto, botões e uma tabela.
  */
 class ClientesPanel extends JPanel {
+    static final int LIMITE_BUSCA = 200;
+
     private ERPController controller;
-    private DefaultTableModel modeloClientes;
+    private ModeloTabelaPaginada<Cliente> modeloClientes;
     private JTable tabela;
     private JTextField txtNome, txtEmail, txtTelefone, txtEndereco, txtCidade, txtEstado, txtPais;
+    private JTextField txtBusca = new JTextField();
     private JButton btnSalvar, btnExcluir, btnEditar;
+    private JProgressBar barraProgresso = SwingAsync.criarBarraProgresso();
+    private int geracaoCarga; // descarta resultados de cargas já superadas
+    private boolean carregado; // depois da primeira carga, a tabela segue os eventos do controller
 
     public ClientesPanel(ERPController controller) {
         this.controller = controller;
         setLayout(new BorderLayout());
 
-        // Define o modelo da tabela com as colunas do cliente
-        modeloClientes = new DefaultTableModel(new Object[]{"ID", "Nome", "Email", "Telefone", "Endereço", "Cidade", "Estado", "País"}, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false; // Torna as células da tabela não editáveis
-            }
-        };
+        // Define o modelo da tabela com as colunas do cliente. O modelo é virtual:
+        // só as páginas visíveis são buscadas no banco, conforme a rolagem.
+        modeloClientes = new ModeloTabelaPaginada<>(controller,
+                new String[]{"ID", "Nome", "Email", "Telefone", "Endereço", "Cidade", "Estado", "País"},
+                controller::getClientesPagina, Cliente::getId,
+                c -> new Object[]{
+                        c.getId(),
+                        c.getNome(),
+                        c.getEmail(),
+                        c.getTelefone(),
+                        c.getEndereco(),
+                        c.getCidade(),
+                        c.getEstado(), // Campo 'estado'
+                        c.getPais()
+                });
         tabela = new JTable(modeloClientes);
-        tabela.setAutoCreateRowSorter(true); // Permite ordenar a tabela
+        // Ordenação pelo cabeçalho feita pelo banco: só os ids são relidos na nova ordem
+        tabela.setRowSorter(modeloClientes.criarOrdenador(
+                new String[]{"id", "nome", "email", "telefone", "endereco", "cidade", "estado", "pais"},
+                controller::getClientesPorIds, this::carregarClientesNaTabela));
         JScrollPane scrollPane = new JScrollPane(tabela);
         add(scrollPane, BorderLayout.CENTER);
+        add(criarPainelBusca(txtBusca, barraProgresso, "Nome, email, telefone, cidade ou estado"), BorderLayout.NORTH);
+        // Busca textual enquanto se digita; com o campo vazio volta à lista completa
+        SwingAsync.aoDigitar(txtBusca, 150, this::carregarClientesNaTabela);
 
-        // Listener para carregar os dados sempre que o painel for exibido
+        // Carrega os dados na primeira exibição; depois, só as alterações publicadas pelo controller
+        controller.getEventos().inscrever(evento -> SwingUtilities.invokeLater(() -> aoAlterar(evento)));
         this.addAncestorListener(new AncestorListener() {
             public void ancestorAdded(AncestorEvent evt) {
-                carregarClientesNaTabela();
+                if (!carregado) {
+                    carregarClientesNaTabela();
+                }
             }
 
             public void ancestorRemoved(AncestorEvent evt) {
@@ -942,28 +2323,63 @@ class ClientesPanel extends JPanel {
         btnExcluir.addActionListener(e -> excluirCliente());
     }
 
+    /**
+     * Campo de busca com a barra de progresso logo abaixo, para o topo dos painéis de cadastro.
+     */
+    static JPanel criarPainelBusca(JTextField campo, JProgressBar barraProgresso, String dica) {
+        campo.setToolTipText(dica);
+        JPanel painel = new JPanel(new BorderLayout(5, 5));
+        painel.add(new JLabel("Buscar:"), BorderLayout.WEST);
+        painel.add(campo, BorderLayout.CENTER);
+        painel.add(barraProgresso, BorderLayout.SOUTH);
+        return painel;
+    }
+
+    /**
+     * Aplica à tabela os clientes inseridos, atualizados ou removidos; resultados de
+     * busca e importações em massa são recarregados.
+     */
+    private void aoAlterar(EventosAlteracao.Evento evento) {
+        if (evento.entidade == EventosAlteracao.Entidade.CLIENTE && carregado && !modeloClientes.aplicar(evento)) {
+            carregarClientesNaTabela();
+        }
+    }
+
     /**
      * Carrega os dados dos clientes do banco e exibe na tabela.
+     * Com texto no campo de busca, exibe só os clientes encontrados, por relevância.
      */
     private void carregarClientesNaTabela() {
-        modeloClientes.setRowCount(0); // Limpa a tabela
-        try {
-            for (Cliente c : controller.getClientes()) {
-                modeloClientes.addRow(new Object[]{
-                        c.getId(),
-                        c.getNome(),
-                        c.getEmail(),
-                        c.getTelefone(),
-                        c.getEndereco(),
-                        c.getCidade(),
-                        c.getEstado(), // Campo 'estado'
-                        c.getPais()
-                });
+        int geracao = ++geracaoCarga;
+        carregado = true;
+        String busca = txtBusca.getText().trim();
+        if (!busca.isEmpty()) {
+            SwingAsync.executar(controller.executarAsync(() -> controller.buscarClientes(busca, LIMITE_BUSCA)), barraProgresso, clientes -> {
+                if (geracao != geracaoCarga) {
+                    return;
+                }
+                modeloClientes.definirEntidades(clientes);
+            }, ex -> {
+                JOptionPane.showMessageDialog(this, StringUtils.capitalize("erro ao buscar clientes: " + ex.getMessage()), StringUtils.capitalize("Erro de BD"), JOptionPane.ERROR_MESSAGE);
+                ex.printStackTrace();
+            });
+            return;
+        }
+        // A consulta roda fora da EDT; a tabela é preenchida ao final, já na EDT
+        // Carrega apenas os ids; as linhas são buscadas por página ao serem exibidas
+        modeloClientes.iniciarCarga();
+        String coluna = modeloClientes.getChaveOrdenacao();
+        boolean crescente = modeloClientes.isCrescente();
+        SwingAsync.executar(controller.executarAsync(() -> coluna == null ? controller.getIdsClientes() : controller.getIdsClientes(coluna, crescente)), barraProgresso, ids -> {
+            if (geracao != geracaoCarga) {
+                return;
             }
-        } catch (SQLException ex) {
+            modeloClientes.definirIds(ids);
+        }, ex -> {
+            carregado = false; // tenta de novo na próxima exibição
             JOptionPane.showMessageDialog(this, StringUtils.capitalize("Erro ao carregar clientes: " + ex.getMessage()), StringUtils.capitalize("Erro de BD"), JOptionPane.ERROR_MESSAGE);
             ex.printStackTrace();
-        }
+        });
     }
 
     /**
@@ -985,27 +2401,33 @@ class ClientesPanel extends JPanel {
             return;
         }
 
-        try {
-            if (isUpdate) {
-                // Se for uma atualização, obtém o ID da linha selecionada
-                int row = tabela.getSelectedRow();
-                if (row == -1) {
-                    JOptionPane.showMessageDialog(this, StringUtils.capitalize("selecione um cliente para editar"));
-                    btnSalvar.setText("Cadastrar");
-                    return;
-                }
-                long id = (long) modeloClientes.getValueAt(tabela.convertRowIndexToModel(row), 0);
-                Cliente c = new Cliente(id, nome, email, telefone, endereco, cidade, estado, pais);
-                if (controller.atualizarCliente(c)) {
-                    JOptionPane.showMessageDialog(this, StringUtils.capitalize("cliente atualizado com sucesso!"));
-                } else {
-                    JOptionPane.showMessageDialog(this, StringUtils.capitalize("erro ao atualizar cliente."), StringUtils.capitalize("Erro"), JOptionPane.ERROR_MESSAGE);
-                }
-            } else {
-                // Se for um novo cadastro
-                Cliente c = new Cliente(nome, email, telefone, endereco, cidade, estado, pais);
-                controller.adicionarCliente(c);
+        Cliente c;
+        if (isUpdate) {
+            // Se for uma atualização, obtém o ID da linha selecionada
+            int row = tabela.getSelectedRow();
+            if (row == -1) {
+                JOptionPane.showMessageDialog(this, StringUtils.capitalize("selecione um cliente para editar"));
+                btnSalvar.setText("Cadastrar");
+                return;
+            }
+            long id = modeloClientes.getId(tabela.convertRowIndexToModel(row));
+            c = new Cliente(id, nome, email, telefone, endereco, cidade, estado, pais);
+        } else {
+            // Se for um novo cadastro
+            c = new Cliente(nome, email, telefone, endereco, cidade, estado, pais);
+        }
+
+        // A gravação roda fora da EDT; as mensagens e a limpeza dos campos, ao final, já na EDT
+        btnSalvar.setEnabled(false);
+        SwingAsync.executar(controller.executarAsync(() -> isUpdate ? controller.atualizarCliente(c) : controller.adicionarCliente(c) != null),
+                barraProgresso, gravado -> {
+            btnSalvar.setEnabled(true);
+            if (!isUpdate) {
                 JOptionPane.showMessageDialog(this, StringUtils.capitalize("cliente cadastrado com sucesso"));
+            } else if (gravado) {
+                JOptionPane.showMessageDialog(this, StringUtils.capitalize("cliente atualizado com sucesso!"));
+            } else {
+                JOptionPane.showMessageDialog(this, StringUtils.capitalize("erro ao atualizar cliente."), StringUtils.capitalize("Erro"), JOptionPane.ERROR_MESSAGE);
             }
 
             // Limpa os campos após a operação
@@ -1017,11 +2439,11 @@ class ClientesPanel extends JPanel {
             txtEstado.setText("");
             txtPais.setText("");
             btnSalvar.setText("Cadastrar");
-            carregarClientesNaTabela();
-        } catch (SQLException ex) {
+        }, ex -> {
+            btnSalvar.setEnabled(true);
             JOptionPane.showMessageDialog(this, StringUtils.capitalize("erro ao salvar/atualizar cliente: " + ex.getMessage()), StringUtils.capitalize("Erro de BD"), JOptionPane.ERROR_MESSAGE);
             ex.printStackTrace();
-        }
+        });
     }
 
     /**
@@ -1034,14 +2456,18 @@ class ClientesPanel extends JPanel {
             return;
         }
 
-        int modelRow = tabela.convertRowIndexToModel(row);
-        txtNome.setText((String) modeloClientes.getValueAt(modelRow, 1));
-        txtEmail.setText((String) modeloClientes.getValueAt(modelRow, 2));
-        txtTelefone.setText((String) modeloClientes.getValueAt(modelRow, 3));
-        txtEndereco.setText((String) modeloClientes.getValueAt(modelRow, 4));
-        txtCidade.setText((String) modeloClientes.getValueAt(modelRow, 5));
-        txtEstado.setText((String) modeloClientes.getValueAt(modelRow, 6));
-        txtPais.setText((String) modeloClientes.getValueAt(modelRow, 7));
+        Cliente c = modeloClientes.getEntidade(tabela.convertRowIndexToModel(row));
+        if (c == null) {
+            // Página da linha ainda em carregamento
+            return;
+        }
+        txtNome.setText(c.getNome());
+        txtEmail.setText(c.getEmail());
+        txtTelefone.setText(c.getTelefone());
+        txtEndereco.setText(c.getEndereco());
+        txtCidade.setText(c.getCidade());
+        txtEstado.setText(c.getEstado());
+        txtPais.setText(c.getPais());
 
         btnSalvar.setText("Atualizar");
 
@@ -1063,22 +2489,24 @@ class ClientesPanel extends JPanel {
         }
 
         int modelRow = tabela.convertRowIndexToModel(row);
-        long id = (long) modeloClientes.getValueAt(modelRow, 0);
+        long id = modeloClientes.getId(modelRow);
         String nome = (String) modeloClientes.getValueAt(modelRow, 1);
 
         int confirm = JOptionPane.showConfirmDialog(this, StringUtils.capitalize("tem certeza que deseja excluir o cliente " + nome + "?\n(Esta ação pode falhar se houver pedidos associados)"), StringUtils.capitalize("confirmar exclusão"), JOptionPane.YES_NO_OPTION);
         if (confirm == JOptionPane.YES_OPTION) {
-            try {
-                if (controller.removerCliente(id)) {
+            btnExcluir.setEnabled(false);
+            SwingAsync.executar(controller.executarAsync(() -> controller.removerCliente(id)), barraProgresso, removido -> {
+                btnExcluir.setEnabled(true);
+                if (removido) {
                     JOptionPane.showMessageDialog(this, StringUtils.capitalize("cliente excluído com sucesso!"));
-                    carregarClientesNaTabela();
                 } else {
                     JOptionPane.showMessageDialog(this, StringUtils.capitalize("não foi possível excluir o cliente. ele está associado a um ou mais pedidos."), StringUtils.capitalize("Erro de exclusão"), JOptionPane.ERROR_MESSAGE);
                 }
-            } catch (SQLException ex) {
+            }, ex -> {
+                btnExcluir.setEnabled(true);
                 JOptionPane.showMessageDialog(this, StringUtils.capitalize("erro ao excluir cliente: " + ex.getMessage()), StringUtils.capitalize("Erro de BD"), JOptionPane.ERROR_MESSAGE);
                 ex.printStackTrace();
-            }
+            });
         }
     }
 }
@@ -1087,30 +2515,39 @@ class ClientesPanel extends JPanel {
  * Painel da interface para gerenciar Produtos.
  */
 class ProdutosPanel extends JPanel {
+    static final int LIMITE_BUSCA = 200;
+
     private ERPController controller;
-    private DefaultTableModel modeloProdutos;
+    private ModeloTabelaPaginada<Produto> modeloProdutos;
     private JTable tabela;
     private JTextField txtNome, txtPreco;
+    private JTextField txtBusca = new JTextField();
     private JButton btnSalvar, btnExcluir, btnEditar;
+    private JProgressBar barraProgresso = SwingAsync.criarBarraProgresso();
+    private int geracaoCarga;
+    private boolean carregado;
 
     public ProdutosPanel(ERPController controller) {
         this.controller = controller;
         setLayout(new BorderLayout());
 
-        modeloProdutos = new DefaultTableModel(new Object[]{"ID", "Nome", "Preço"}, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
-            }
-        };
+        modeloProdutos = new ModeloTabelaPaginada<>(controller, new String[]{"ID", "Nome", "Preço"},
+                controller::getProdutosPagina, Produto::getId,
+                p -> new Object[]{p.getId(), p.getNome(), p.getPreco()});
         tabela = new JTable(modeloProdutos);
-        tabela.setAutoCreateRowSorter(true);
+        tabela.setRowSorter(modeloProdutos.criarOrdenador(new String[]{"id", "nome", "preco"},
+                controller::getProdutosPorIds, this::carregarProdutosNaTabela));
         JScrollPane scrollPane = new JScrollPane(tabela);
         add(scrollPane, BorderLayout.CENTER);
+        add(ClientesPanel.criarPainelBusca(txtBusca, barraProgresso, "Nome do produto"), BorderLayout.NORTH);
+        SwingAsync.aoDigitar(txtBusca, 150, this::carregarProdutosNaTabela);
 
+        controller.getEventos().inscrever(evento -> SwingUtilities.invokeLater(() -> aoAlterar(evento)));
         this.addAncestorListener(new AncestorListener() {
             public void ancestorAdded(AncestorEvent evt) {
-                carregarProdutosNaTabela();
+                if (!carregado) {
+                    carregarProdutosNaTabela();
+                }
             }
 
             public void ancestorRemoved(AncestorEvent evt) {
@@ -1142,16 +2579,41 @@ class ProdutosPanel extends JPanel {
         btnExcluir.addActionListener(e -> excluirProduto());
     }
 
+    private void aoAlterar(EventosAlteracao.Evento evento) {
+        if (evento.entidade == EventosAlteracao.Entidade.PRODUTO && carregado && !modeloProdutos.aplicar(evento)) {
+            carregarProdutosNaTabela();
+        }
+    }
+
     private void carregarProdutosNaTabela() {
-        modeloProdutos.setRowCount(0);
-        try {
-            for (Produto p : controller.getProdutos()) {
-                modeloProdutos.addRow(new Object[]{p.getId(), p.getNome(), p.getPreco()});
+        int geracao = ++geracaoCarga;
+        carregado = true;
+        String busca = txtBusca.getText().trim();
+        if (!busca.isEmpty()) {
+            SwingAsync.executar(controller.executarAsync(() -> controller.buscarProdutos(busca, LIMITE_BUSCA)), barraProgresso, produtos -> {
+                if (geracao != geracaoCarga) {
+                    return;
+                }
+                modeloProdutos.definirEntidades(produtos);
+            }, ex -> {
+                JOptionPane.showMessageDialog(this, StringUtils.capitalize("erro ao buscar produtos: " + ex.getMessage()), StringUtils.capitalize("Erro de BD"), JOptionPane.ERROR_MESSAGE);
+                ex.printStackTrace();
+            });
+            return;
+        }
+        modeloProdutos.iniciarCarga();
+        String coluna = modeloProdutos.getChaveOrdenacao();
+        boolean crescente = modeloProdutos.isCrescente();
+        SwingAsync.executar(controller.executarAsync(() -> coluna == null ? controller.getIdsProdutos() : controller.getIdsProdutos(coluna, crescente)), barraProgresso, ids -> {
+            if (geracao != geracaoCarga) {
+                return;
             }
-        } catch (SQLException ex) {
+            modeloProdutos.definirIds(ids);
+        }, ex -> {
+            carregado = false; // tenta de novo na próxima exibição
             JOptionPane.showMessageDialog(this, StringUtils.capitalize("erro ao carregar produtos: " + ex.getMessage()), StringUtils.capitalize("Erro de BD"), JOptionPane.ERROR_MESSAGE);
             ex.printStackTrace();
-        }
+        });
     }
 
     private void cadastrarOuAtualizarProduto(boolean isUpdate) {
@@ -1162,42 +2624,51 @@ class ProdutosPanel extends JPanel {
             return;
         }
 
+        double preco;
         try {
-            double preco = Double.parseDouble(precoStr);
-            if (preco <= 0) {
-                JOptionPane.showMessageDialog(this, StringUtils.capitalize("o preço deve ser maior que zero."));
+            preco = Double.parseDouble(precoStr);
+        } catch (NumberFormatException ex) {
+            JOptionPane.showMessageDialog(this, StringUtils.capitalize("preço inválido. use números."));
+            return;
+        }
+        if (preco <= 0) {
+            JOptionPane.showMessageDialog(this, StringUtils.capitalize("o preço deve ser maior que zero."));
+            return;
+        }
+
+        Produto p;
+        if (isUpdate) {
+            int row = tabela.getSelectedRow();
+            if (row == -1) {
+                JOptionPane.showMessageDialog(this, StringUtils.capitalize("selecione um produto para editar"));
+                btnSalvar.setText("Cadastrar");
                 return;
             }
+            long id = modeloProdutos.getId(tabela.convertRowIndexToModel(row));
+            p = new Produto(id, nome, preco);
+        } else {
+            p = new Produto(nome, preco);
+        }
 
-            if (isUpdate) {
-                int row = tabela.getSelectedRow();
-                if (row == -1) {
-                    JOptionPane.showMessageDialog(this, StringUtils.capitalize("selecione um produto para editar"));
-                    btnSalvar.setText("Cadastrar");
-                    return;
-                }
-                long id = (long) modeloProdutos.getValueAt(tabela.convertRowIndexToModel(row), 0);
-                Produto p = new Produto(id, nome, preco);
-                if (controller.atualizarProduto(p)) {
-                    JOptionPane.showMessageDialog(this, StringUtils.capitalize("produto atualizado com sucesso!"));
-                } else {
-                    JOptionPane.showMessageDialog(this, StringUtils.capitalize("erro ao atualizar produto."), StringUtils.capitalize("Erro"), JOptionPane.ERROR_MESSAGE);
-                }
-            } else {
-                Produto p = new Produto(nome, preco);
-                controller.adicionarProduto(p);
+        btnSalvar.setEnabled(false);
+        SwingAsync.executar(controller.executarAsync(() -> isUpdate ? controller.atualizarProduto(p) : controller.adicionarProduto(p) != null),
+                barraProgresso, gravado -> {
+            btnSalvar.setEnabled(true);
+            if (!isUpdate) {
                 JOptionPane.showMessageDialog(this, StringUtils.capitalize("produto cadastrado com sucesso"));
+            } else if (gravado) {
+                JOptionPane.showMessageDialog(this, StringUtils.capitalize("produto atualizado com sucesso!"));
+            } else {
+                JOptionPane.showMessageDialog(this, StringUtils.capitalize("erro ao atualizar produto."), StringUtils.capitalize("Erro"), JOptionPane.ERROR_MESSAGE);
             }
             txtNome.setText("");
             txtPreco.setText("");
             btnSalvar.setText("Cadastrar");
-            carregarProdutosNaTabela();
-        } catch (NumberFormatException ex) {
-            JOptionPane.showMessageDialog(this, StringUtils.capitalize("preço inválido. use números."));
-        } catch (SQLException ex) {
+        }, ex -> {
+            btnSalvar.setEnabled(true);
             JOptionPane.showMessageDialog(this, StringUtils.capitalize("erro ao salvar/atualizar produto: " + ex.getMessage()), StringUtils.capitalize("Erro de BD"), JOptionPane.ERROR_MESSAGE);
             ex.printStackTrace();
-        }
+        });
     }
 
     private void carregarProdutoParaEdicao() {
@@ -1207,9 +2678,12 @@ class ProdutosPanel extends JPanel {
             return;
         }
 
-        int modelRow = tabela.convertRowIndexToModel(row);
-        txtNome.setText((String) modeloProdutos.getValueAt(modelRow, 1));
-        txtPreco.setText(String.valueOf(modeloProdutos.getValueAt(modelRow, 2)));
+        Produto p = modeloProdutos.getEntidade(tabela.convertRowIndexToModel(row));
+        if (p == null) {
+            return;
+        }
+        txtNome.setText(p.getNome());
+        txtPreco.setText(String.valueOf(p.getPreco()));
         btnSalvar.setText("Atualizar");
 
         for (ActionListener al : btnSalvar.getActionListeners()) {
@@ -1226,22 +2700,24 @@ class ProdutosPanel extends JPanel {
         }
 
         int modelRow = tabela.convertRowIndexToModel(row);
-        long id = (long) modeloProdutos.getValueAt(modelRow, 0);
+        long id = modeloProdutos.getId(modelRow);
         String nome = (String) modeloProdutos.getValueAt(modelRow, 1);
 
         int confirm = JOptionPane.showConfirmDialog(this, StringUtils.capitalize("tem certeza que deseja excluir o produto " + nome + "?"), StringUtils.capitalize("Confirmar exclusão"), JOptionPane.YES_NO_OPTION);
         if (confirm == JOptionPane.YES_OPTION) {
-            try {
-                if (controller.removerProduto(id)) {
+            btnExcluir.setEnabled(false);
+            SwingAsync.executar(controller.executarAsync(() -> controller.removerProduto(id)), barraProgresso, removido -> {
+                btnExcluir.setEnabled(true);
+                if (removido) {
                     JOptionPane.showMessageDialog(this, StringUtils.capitalize("produto excluído com sucesso!"));
-                    carregarProdutosNaTabela();
                 } else {
                     JOptionPane.showMessageDialog(this, StringUtils.capitalize("não foi possível excluir o produto. ele está associado a um ou mais pedidos."), StringUtils.capitalize("Erro de exclusão"), JOptionPane.ERROR_MESSAGE);
                 }
-            } catch (SQLException ex) {
+            }, ex -> {
+                btnExcluir.setEnabled(true);
                 JOptionPane.showMessageDialog(this, StringUtils.capitalize("erro ao excluir produto: " + ex.getMessage()), StringUtils.capitalize("Erro de BD"), JOptionPane.ERROR_MESSAGE);
                 ex.printStackTrace();
-            }
+            });
         }
     }
 }
@@ -1251,30 +2727,36 @@ class ProdutosPanel extends JPanel {
  */
 class PedidosPanel extends JPanel {
     private ERPController controller;
-    private DefaultTableModel modeloPedidos;
+    private ModeloTabelaPaginada<ResumoPedido> modeloPedidos;
     private JTable tabela;
     private JButton btnNovo, btnExcluir, btnEditar;
     private JFrame parentFrame;
+    private JProgressBar barraProgresso = SwingAsync.criarBarraProgresso();
+    private int geracaoCarga;
+    private boolean carregado;
 
     public PedidosPanel(ERPController controller, JFrame parentFrame) {
         this.controller = controller;
         this.parentFrame = parentFrame;
         setLayout(new BorderLayout());
 
-        modeloPedidos = new DefaultTableModel(new Object[]{"ID", "Cliente", "Total"}, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
-            }
-        };
+        // A listagem usa os totais gravados em pedidos; os itens só são lidos ao editar
+        modeloPedidos = new ModeloTabelaPaginada<>(controller, new String[]{"ID", "Cliente", "Itens", "Total"},
+                controller::getResumosPedidosPagina, ResumoPedido::getId,
+                p -> new Object[]{p.getId(), p.getClienteNome(), p.getQuantidadeItens(), String.format("%.2f", p.getTotal())});
         tabela = new JTable(modeloPedidos);
-        tabela.setAutoCreateRowSorter(true);
+        tabela.setRowSorter(modeloPedidos.criarOrdenador(new String[]{"id", "cliente", "quantidade_itens", "total"},
+                controller::getResumosPedidosPorIds, this::carregarPedidosNaTabela));
         JScrollPane scrollPane = new JScrollPane(tabela);
         add(scrollPane, BorderLayout.CENTER);
+        add(barraProgresso, BorderLayout.NORTH);
 
+        controller.getEventos().inscrever(evento -> SwingUtilities.invokeLater(() -> aoAlterar(evento)));
         this.addAncestorListener(new AncestorListener() {
             public void ancestorAdded(AncestorEvent evt) {
-                carregarPedidosNaTabela();
+                if (!carregado) {
+                    carregarPedidosNaTabela();
+                }
             }
 
             public void ancestorRemoved(AncestorEvent evt) {
@@ -1300,47 +2782,67 @@ class PedidosPanel extends JPanel {
         btnExcluir.addActionListener(e -> excluirPedido());
     }
 
+    /**
+     * Aplica os pedidos alterados. Clientes e produtos atualizados mudam nomes e totais
+     * exibidos, então só as páginas carregadas são buscadas de novo.
+     */
+    private void aoAlterar(EventosAlteracao.Evento evento) {
+        if (!carregado) {
+            return;
+        }
+        if (evento.entidade == EventosAlteracao.Entidade.PEDIDO) {
+            if (!modeloPedidos.aplicar(evento)) {
+                carregarPedidosNaTabela();
+            }
+        } else if (evento.tipo == EventosAlteracao.Tipo.ATUALIZADO && !modeloPedidos.invalidarPaginas()) {
+            // Ordenada por outra coluna, a posição dos pedidos pode ter mudado (nome do cliente, total)
+            carregarPedidosNaTabela();
+        }
+    }
+
     private void carregarPedidosNaTabela() {
-        modeloPedidos.setRowCount(0);
-        try {
-            for (Pedido p : controller.getPedidos()) {
-                modeloPedidos.addRow(new Object[]{p.getId(), p.getCliente().getNome(), String.format("%.2f", p.getTotal())});
+        int geracao = ++geracaoCarga;
+        carregado = true;
+        modeloPedidos.iniciarCarga();
+        String coluna = modeloPedidos.getChaveOrdenacao();
+        boolean crescente = modeloPedidos.isCrescente();
+        SwingAsync.executar(controller.executarAsync(() -> coluna == null ? controller.getIdsPedidos() : controller.getIdsPedidos(coluna, crescente)), barraProgresso, ids -> {
+            if (geracao != geracaoCarga) {
+                return;
             }
-        } catch (SQLException ex) {
+            modeloPedidos.definirIds(ids);
+        }, ex -> {
+            carregado = false; // tenta de novo na próxima exibição
             JOptionPane.showMessageDialog(this, StringUtils.capitalize("erro ao carregar pedidos: " + ex.getMessage()), StringUtils.capitalize("Erro de BD"), JOptionPane.ERROR_MESSAGE);
             ex.printStackTrace();
-        }
+        });
     }
 
     /**
      * Abre um diálogo para criar ou editar um pedido.
      */
     private void abrirDialogoNovoPedido(Pedido pedidoParaEditar) {
-        try {
-            if (controller.getClientes().isEmpty() || controller.getProdutos().isEmpty()) {
+        // A verificação (e, na primeira vez, a construção dos índices de nomes) roda fora da EDT
+        SwingAsync.executar(controller.executarAsync(controller::existemClientesEProdutos), barraProgresso, existem -> {
+            if (!existem) {
                 JOptionPane.showMessageDialog(this, StringUtils.capitalize("cadastre clientes e produtos antes de criar pedidos"));
                 return;
             }
-        } catch (SQLException ex) {
+            exibirDialogoPedido(pedidoParaEditar);
+        }, ex -> {
             JOptionPane.showMessageDialog(this, StringUtils.capitalize("erro ao verificar clientes/produtos: " + ex.getMessage()), StringUtils.capitalize("Erro de BD"), JOptionPane.ERROR_MESSAGE);
             ex.printStackTrace();
-            return;
-        }
+        });
+    }
 
+    private void exibirDialogoPedido(Pedido pedidoParaEditar) {
         JDialog dialogo = new JDialog(parentFrame, (pedidoParaEditar == null ? "Novo Pedido" : "Editar Pedido"), true);
         dialogo.setSize(700, 400);
         dialogo.setLayout(new BorderLayout());
 
-        // Componentes do formulário do pedido
-        JComboBox<Cliente> comboClientes = new JComboBox<>();
-        try {
-            for (Cliente c : controller.getClientes()) comboClientes.addItem(c);
-        } catch (SQLException ex) { /* Tratamento de erro */ }
-
-        JComboBox<Produto> comboProdutos = new JComboBox<>();
-        try {
-            for (Produto p : controller.getProdutos()) comboProdutos.addItem(p);
-        } catch (SQLException ex) { /* Tratamento de erro */ }
+        // Componentes do formulário do pedido: combos com sugestões pelo nome, conforme a digitação
+        ComboSugestoes<Cliente> comboClientes = new ComboSugestoes<>(controller, controller::sugerirClientes);
+        ComboSugestoes<Produto> comboProdutos = new ComboSugestoes<>(controller, controller::sugerirProdutos);
 
         JTextField txtQtd = new JTextField(3);
         DefaultTableModel modeloItens = new DefaultTableModel(new Object[]{"ID Produto", "Produto", "Qtd", "Subtotal"}, 0);
@@ -1361,13 +2863,18 @@ class PedidosPanel extends JPanel {
 
         dialogo.add(form, BorderLayout.NORTH);
         dialogo.add(new JScrollPane(tabelaItens), BorderLayout.CENTER);
-        dialogo.add(btnSalvar, BorderLayout.SOUTH);
+        // A barra do painel fica atrás do diálogo modal: a gravação usa uma própria
+        JProgressBar progressoDialogo = SwingAsync.criarBarraProgresso();
+        JPanel rodape = new JPanel(new BorderLayout());
+        rodape.add(progressoDialogo, BorderLayout.NORTH);
+        rodape.add(btnSalvar, BorderLayout.CENTER);
+        dialogo.add(rodape, BorderLayout.SOUTH);
 
         List<ItemPedido> itensTemp = new ArrayList<>();
 
         // Se for uma edição, preenche o diálogo com os dados do pedido existente
         if (pedidoParaEditar != null) {
-            comboClientes.setSelectedItem(pedidoParaEditar.getCliente());
+            comboClientes.selecionar(pedidoParaEditar.getCliente());
             comboClientes.setEnabled(false); // Impede a alteração do cliente em um pedido existente
             itensTemp.addAll(pedidoParaEditar.getItens());
             for (ItemPedido item : pedidoParaEditar.getItens()) {
@@ -1378,7 +2885,7 @@ class PedidosPanel extends JPanel {
         // Lógica para adicionar um item à lista temporária
         btnAdicionar.addActionListener(ev -> {
             try {
-                Produto prod = (Produto) comboProdutos.getSelectedItem();
+                Produto prod = comboProdutos.getEntidadeSelecionada();
                 if (prod == null) {
                     JOptionPane.showMessageDialog(dialogo, StringUtils.capitalize("selecione um produto."));
                     return;
@@ -1421,30 +2928,33 @@ class PedidosPanel extends JPanel {
                 return;
             }
 
-            Cliente cliente = (Cliente) comboClientes.getSelectedItem();
+            Cliente cliente = comboClientes.getEntidadeSelecionada();
             if (cliente == null) {
                 JOptionPane.showMessageDialog(dialogo, StringUtils.capitalize("selecione um cliente."));
                 return;
             }
 
-            try {
-                if (pedidoParaEditar == null) {
-                    Pedido pedido = new Pedido(cliente);
-                    for (ItemPedido item : itensTemp) pedido.adicionarItem(item);
-                    controller.adicionarPedido(pedido);
-                    JOptionPane.showMessageDialog(dialogo, StringUtils.capitalize(String.format("pedido salvo com sucesso! total: R$ %.2f", pedido.getTotal())));
-                } else {
-                    pedidoParaEditar.getItens().clear(); // Limpa os itens antigos e adiciona os novos
-                    for (ItemPedido item : itensTemp) pedidoParaEditar.adicionarItem(item);
-                    controller.atualizarPedido(pedidoParaEditar);
-                    JOptionPane.showMessageDialog(dialogo, StringUtils.capitalize(String.format("pedido atualizado com sucesso! total: R$ %.2f", pedidoParaEditar.getTotal())));
-                }
-                carregarPedidosNaTabela();
+            Pedido pedido;
+            if (pedidoParaEditar == null) {
+                pedido = new Pedido(cliente);
+            } else {
+                pedido = pedidoParaEditar;
+                pedido.getItens().clear(); // Limpa os itens antigos e adiciona os novos
+            }
+            for (ItemPedido item : itensTemp) pedido.adicionarItem(item);
+
+            // A gravação roda fora da EDT; o diálogo segue aberto (e o botão desabilitado) até o fim
+            btnSalvar.setEnabled(false);
+            SwingAsync.executar(controller.executarAsync(() -> pedidoParaEditar == null ? controller.adicionarPedido(pedido) : controller.atualizarPedido(pedido)),
+                    progressoDialogo, resultado -> {
+                String mensagem = pedidoParaEditar == null ? "pedido salvo com sucesso! total: R$ %.2f" : "pedido atualizado com sucesso! total: R$ %.2f";
+                JOptionPane.showMessageDialog(dialogo, StringUtils.capitalize(String.format(mensagem, pedido.getTotal())));
                 dialogo.dispose();
-            } catch (SQLException ex) {
+            }, ex -> {
+                btnSalvar.setEnabled(true);
                 JOptionPane.showMessageDialog(dialogo, StringUtils.capitalize("erro ao salvar/atualizar pedido: " + ex.getMessage()), StringUtils.capitalize("Erro de BD"), JOptionPane.ERROR_MESSAGE);
                 ex.printStackTrace();
-            }
+            });
         });
 
         dialogo.setLocationRelativeTo(this);
@@ -1462,26 +2972,19 @@ class PedidosPanel extends JPanel {
         }
 
         int modelRow = tabela.convertRowIndexToModel(row);
-        long pedidoId = (long) modeloPedidos.getValueAt(modelRow, 0);
+        long pedidoId = modeloPedidos.getId(modelRow);
 
-        try {
-            Pedido pedido = null;
-            // Busca o pedido completo na lista do controller
-            for (Pedido p : controller.getPedidos()) {
-                if (p.getId() == pedidoId) {
-                    pedido = p;
-                    break;
-                }
-            }
+        // Busca o pedido completo pelo id, sem carregar os demais (fora da EDT)
+        SwingAsync.executar(controller.executarAsync(() -> controller.buscarPedido(pedidoId)), barraProgresso, pedido -> {
             if (pedido != null) {
                 abrirDialogoNovoPedido(pedido);
             } else {
                 JOptionPane.showMessageDialog(this, StringUtils.capitalize("pedido não encontrado no sistema."), StringUtils.capitalize("Erro"), JOptionPane.ERROR_MESSAGE);
             }
-        } catch (SQLException ex) {
+        }, ex -> {
             JOptionPane.showMessageDialog(this, StringUtils.capitalize("erro ao carregar pedido para edição: " + ex.getMessage()), StringUtils.capitalize("Erro de BD"), JOptionPane.ERROR_MESSAGE);
             ex.printStackTrace();
-        }
+        });
     }
 
     /**
@@ -1495,22 +2998,119 @@ class PedidosPanel extends JPanel {
         }
 
         int modelRow = tabela.convertRowIndexToModel(row);
-        long id = (long) modeloPedidos.getValueAt(modelRow, 0);
+        long id = modeloPedidos.getId(modelRow);
 
         int confirm = JOptionPane.showConfirmDialog(this, StringUtils.capitalize("tem certeza que deseja excluir este pedido? (esta ação é irreversível)"), StringUtils.capitalize("Confirmar exclusão"), JOptionPane.YES_NO_OPTION);
         if (confirm == JOptionPane.YES_OPTION) {
-            try {
-                if (controller.removerPedido(id)) {
+            btnExcluir.setEnabled(false);
+            SwingAsync.executar(controller.executarAsync(() -> controller.removerPedido(id)), barraProgresso, removido -> {
+                btnExcluir.setEnabled(true);
+                if (removido) {
                     JOptionPane.showMessageDialog(this, StringUtils.capitalize("pedido excluído com sucesso!"));
-                    carregarPedidosNaTabela();
                 } else {
                     JOptionPane.showMessageDialog(this, StringUtils.capitalize("erro ao excluir o pedido."), StringUtils.capitalize("Erro"), JOptionPane.ERROR_MESSAGE);
                 }
-            } catch (SQLException ex) {
+            }, ex -> {
+                btnExcluir.setEnabled(true);
                 JOptionPane.showMessageDialog(this, StringUtils.capitalize("erro ao excluir pedido: " + ex.getMessage()), StringUtils.capitalize("Erro de BD"), JOptionPane.ERROR_MESSAGE);
                 ex.printStackTrace();
-            }
+            });
+        }
+    }
+}
+
+/**
+ * Painel para importação em massa de clientes e produtos a partir de CSV.
+ */
+class ImportacaoPanel extends JPanel {
+    private ERPController controller;
+    private JComboBox<String> comboTipo;
+    private JButton btnImportar, btnCancelar;
+    private JTextArea txtResultado;
+    private JProgressBar barraProgresso = SwingAsync.criarBarraProgresso();
+    private AtomicBoolean importacaoCancelada;
+
+    public ImportacaoPanel(ERPController controller) {
+        this.controller = controller;
+        setLayout(new BorderLayout());
+
+        txtResultado = new JTextArea();
+        txtResultado.setEditable(false);
+        txtResultado.setText("Formatos aceitos (separador ';', UTF-8, cabeçalho opcional):\n" +
+                "  Clientes: nome;email;telefone;endereco;cidade;estado;pais\n" +
+                "  Produtos: nome;preco\n" +
+                "  Pedidos:  referencia;email_cliente;nome_produto;quantidade (uma linha por item)\n" +
+                "Linhas rejeitadas são gravadas em <arquivo>" + ImportadorCSV.SUFIXO_REJEITADOS + "\n");
+        add(new JScrollPane(txtResultado), BorderLayout.CENTER);
+        add(barraProgresso, BorderLayout.NORTH);
+
+        JPanel botoes = new JPanel();
+        comboTipo = new JComboBox<>(new String[]{"Clientes", "Produtos", "Pedidos"});
+        btnImportar = new JButton("Importar CSV...");
+        btnCancelar = new JButton("Cancelar Importação");
+        btnCancelar.setVisible(false);
+        botoes.add(new JLabel("Tipo:"));
+        botoes.add(comboTipo);
+        botoes.add(btnImportar);
+        botoes.add(btnCancelar);
+        add(botoes, BorderLayout.SOUTH);
+
+        btnImportar.addActionListener(e -> importar());
+        btnCancelar.addActionListener(e -> importacaoCancelada.set(true));
+    }
+
+    private void importar() {
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setDialogTitle("Selecionar arquivo CSV");
+        if (fileChooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
         }
+        File arquivo = fileChooser.getSelectedFile();
+        int tipo = comboTipo.getSelectedIndex();
+        importacaoCancelada = new AtomicBoolean();
+        btnImportar.setEnabled(false);
+        btnCancelar.setVisible(true);
+
+        ImportadorCSV.Progresso progresso = (linhas, percentual) -> SwingUtilities.invokeLater(() -> {
+            barraProgresso.setIndeterminate(false);
+            barraProgresso.setStringPainted(true);
+            barraProgresso.setValue(percentual);
+            barraProgresso.setString(linhas + " linhas");
+        });
+        // Pedidos: vazão e profundidade das filas de validação e gravação do pipeline
+        PipelinePedidos.Monitor monitor = (gravados, porSegundo, percentual, filaValidacao, filaGravacao) -> SwingUtilities.invokeLater(() -> {
+            barraProgresso.setIndeterminate(false);
+            barraProgresso.setStringPainted(true);
+            barraProgresso.setValue(percentual);
+            barraProgresso.setString(String.format("%d pedidos (%.0f/s) - filas: validação %d, gravação %d",
+                    gravados, porSegundo, filaValidacao, filaGravacao));
+        });
+        SwingAsync.executar(controller.executarAsync(() -> tipo == 0
+                ? controller.importarClientesCSV(arquivo, progresso, importacaoCancelada::get)
+                : tipo == 1
+                ? controller.importarProdutosCSV(arquivo, progresso, importacaoCancelada::get)
+                : controller.importarPedidosCSV(arquivo, monitor, importacaoCancelada::get)), barraProgresso, resultado -> {
+            finalizarImportacao();
+            txtResultado.append("\n" + arquivo.getName() + ": " + resultado);
+            if (resultado.arquivoRejeitados != null) {
+                txtResultado.append("\n  rejeitados em: " + resultado.arquivoRejeitados.getAbsolutePath());
+            }
+        }, ex -> {
+            finalizarImportacao();
+            if (ex instanceof java.util.concurrent.CancellationException) {
+                txtResultado.append("\n" + arquivo.getName() + ": importação cancelada (lotes já gravados foram mantidos)");
+                return;
+            }
+            JOptionPane.showMessageDialog(this, StringUtils.capitalize("erro ao importar: " + ex.getMessage()), StringUtils.capitalize("Erro"), JOptionPane.ERROR_MESSAGE);
+            ex.printStackTrace();
+        });
+    }
+
+    private void finalizarImportacao() {
+        btnImportar.setEnabled(true);
+        btnCancelar.setVisible(false);
+        barraProgresso.setIndeterminate(true);
+        barraProgresso.setStringPainted(false);
     }
 }
 
@@ -1519,28 +3119,84 @@ class PedidosPanel extends JPanel {
  */
 class RelatorioPanel extends JPanel {
     private ERPController controller;
-    private DefaultTableModel modeloRelatorio;
+    private ModeloTabelaRelatorio modeloRelatorio;
     private JTable tabelaRelatorio;
-    private JButton btnGerar, btnExportarCSV;
+    private JButton btnGerar, btnExportarCSV, btnCancelarExportacao;
+    private JComboBox<MotorRelatorios.Agrupamento> comboVisao;
+    private JSpinner spinnerLimite;
+    private JLabel lblTotalGeral;
+    private JCheckBox chkSnapshot;
+    private JComboBox<String> comboFiltroEstado;
+    private JCheckBox chkExportacaoParalela;
+    private AtomicBoolean exportacaoCancelada;
+    private JProgressBar barraProgresso = SwingAsync.criarBarraProgresso();
+    private int geracaoCarga;
+    // Alguma gravação desde o último relatório (ou nenhum relatório ainda)
+    private boolean desatualizado = true;
+
+    // Total geral e linhas da visão, carregados juntos fora da EDT
+    private static class ResultadoRelatorio {
+        final MotorRelatorios.LinhaRelatorio total;
+        final List<MotorRelatorios.LinhaRelatorio> linhas;
+        final SnapshotVendas snapshot; // null quando a visão veio do banco
+
+        ResultadoRelatorio(MotorRelatorios.LinhaRelatorio total, List<MotorRelatorios.LinhaRelatorio> linhas, SnapshotVendas snapshot) {
+            this.total = total;
+            this.linhas = linhas;
+            this.snapshot = snapshot;
+        }
+    }
 
     public RelatorioPanel(ERPController controller) {
         this.controller = controller;
         setLayout(new BorderLayout());
 
-        modeloRelatorio = new DefaultTableModel(new Object[]{"Cliente", "Produto", "Qtd", "Subtotal"}, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
-            }
-        };
+        // Modelo em colunas primitivas; pedidos, quantidade e receita ordenam como números
+        modeloRelatorio = new ModeloTabelaRelatorio();
         tabelaRelatorio = new JTable(modeloRelatorio);
+        tabelaRelatorio.setDefaultRenderer(Double.class, new ModeloTabelaRelatorio.Renderizador());
         tabelaRelatorio.setAutoCreateRowSorter(true);
         add(new JScrollPane(tabelaRelatorio), BorderLayout.CENTER);
 
-        // Gera o relatório automaticamente ao abrir a aba
+        // Visão agregada (calculada pelo banco), limite de linhas (top-N) e total geral
+        JPanel visaoPainel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        comboVisao = new JComboBox<>(MotorRelatorios.Agrupamento.values());
+        spinnerLimite = new JSpinner(new SpinnerNumberModel(50, 1, 100_000, 10));
+        lblTotalGeral = new JLabel();
+        // Snapshot em memória: permite fatiar por estado sem novas consultas ao banco
+        chkSnapshot = new JCheckBox("Snapshot em memória");
+        comboFiltroEstado = new JComboBox<>(new String[]{"Todos os estados"});
+        comboFiltroEstado.setEnabled(false);
+        visaoPainel.add(new JLabel("Visão:"));
+        visaoPainel.add(comboVisao);
+        visaoPainel.add(new JLabel("Top:"));
+        visaoPainel.add(spinnerLimite);
+        visaoPainel.add(chkSnapshot);
+        visaoPainel.add(comboFiltroEstado);
+        visaoPainel.add(lblTotalGeral);
+        JPanel topo = new JPanel(new BorderLayout());
+        topo.add(visaoPainel, BorderLayout.CENTER);
+        topo.add(barraProgresso, BorderLayout.SOUTH);
+        add(topo, BorderLayout.NORTH);
+        comboVisao.addActionListener(e -> gerarRelatorio());
+        spinnerLimite.addChangeListener(e -> gerarRelatorio());
+        chkSnapshot.addActionListener(e -> {
+            comboFiltroEstado.setEnabled(chkSnapshot.isSelected());
+            gerarRelatorio();
+        });
+        comboFiltroEstado.addActionListener(e -> {
+            if (comboFiltroEstado.isEnabled()) {
+                gerarRelatorio();
+            }
+        });
+
+        // Gera o relatório ao abrir a aba, se algo foi gravado desde o último
+        controller.getEventos().inscrever(evento -> SwingUtilities.invokeLater(() -> desatualizado = true));
         this.addAncestorListener(new AncestorListener() {
             public void ancestorAdded(AncestorEvent evt) {
-                gerarRelatorio();
+                if (desatualizado) {
+                    gerarRelatorio();
+                }
             }
 
             public void ancestorRemoved(AncestorEvent evt) {
@@ -1553,35 +3209,76 @@ class RelatorioPanel extends JPanel {
         JPanel botoesPainel = new JPanel(new FlowLayout(FlowLayout.CENTER));
         btnGerar = new JButton("Atualizar Relatório");
         btnExportarCSV = new JButton("Exportar para CSV");
+        btnCancelarExportacao = new JButton("Cancelar Exportação");
+        btnCancelarExportacao.setVisible(false);
+        chkExportacaoParalela = new JCheckBox("Exportação paralela", true);
 
         botoesPainel.add(btnGerar);
         botoesPainel.add(btnExportarCSV);
+        botoesPainel.add(chkExportacaoParalela);
+        botoesPainel.add(btnCancelarExportacao);
 
         add(botoesPainel, BorderLayout.SOUTH);
 
         btnGerar.addActionListener(e -> gerarRelatorio());
         btnExportarCSV.addActionListener(e -> exportarCSV());
+        btnCancelarExportacao.addActionListener(e -> exportacaoCancelada.set(true));
     }
 
     /**
-     * Gera e exibe o relatório na tabela.
+     * Gera e exibe o relatório na tabela. A agregação roda no banco e só as
+     * linhas resultantes (no máximo o limite escolhido) chegam à tela.
      */
     private void gerarRelatorio() {
-        modeloRelatorio.setRowCount(0);
-        double totalGeral = 0;
-        try {
-            // Itera sobre todos os pedidos e seus itens para popular a tabela
-            for (Pedido p : controller.getPedidos()) {
-                for (ItemPedido item : p.getItens()) {
-                    modeloRelatorio.addRow(new Object[]{p.getCliente().getNome(), item.getProduto().getNome(), item.getQuantidade(), item.getSubtotal()});
-                    totalGeral += item.getSubtotal();
-                }
+        int geracao = ++geracaoCarga;
+        desatualizado = false;
+        MotorRelatorios.Agrupamento agrupamento = (MotorRelatorios.Agrupamento) comboVisao.getSelectedItem();
+        int limite = (Integer) spinnerLimite.getValue();
+        btnGerar.setEnabled(false);
+        boolean usarSnapshot = chkSnapshot.isSelected();
+        SnapshotVendas.Filtro filtro = new SnapshotVendas.Filtro();
+        if (comboFiltroEstado.getSelectedIndex() > 0) {
+            filtro.estado = (String) comboFiltroEstado.getSelectedItem();
+        }
+        SwingAsync.executar(controller.executarAsync(() -> {
+            if (!usarSnapshot) {
+                return new ResultadoRelatorio(controller.getTotalGeral(), controller.getRelatorio(agrupamento, limite), null);
+            }
+            SnapshotVendas snapshot = controller.getSnapshotVendas();
+            return new ResultadoRelatorio(controller.getTotalGeral(), snapshot.agregar(agrupamento, filtro, limite), snapshot);
+        }), barraProgresso, resultado -> {
+            btnGerar.setEnabled(true);
+            if (geracao != geracaoCarga) {
+                return;
             }
-            JOptionPane.showMessageDialog(this, StringUtils.capitalize(String.format("total geral de todos os pedidos: R$ %.2f", totalGeral)));
-        } catch (SQLException ex) {
+            MotorRelatorios.LinhaRelatorio total = resultado.total;
+            List<MotorRelatorios.LinhaRelatorio> linhas = resultado.linhas;
+
+            lblTotalGeral.setText(String.format("Total geral: R$ %.2f em %d pedidos", total.receita, total.pedidos)
+                    + (resultado.snapshot == null ? "" : " | snapshot: " + resultado.snapshot));
+            if (resultado.snapshot != null) {
+                atualizarFiltroEstados(resultado.snapshot.getEstados());
+            }
+            modeloRelatorio.definir(agrupamento, linhas);
+        }, ex -> {
+            btnGerar.setEnabled(true);
             JOptionPane.showMessageDialog(this, StringUtils.capitalize("erro ao gerar relatório: " + ex.getMessage()), StringUtils.capitalize("Erro de BD"), JOptionPane.ERROR_MESSAGE);
             ex.printStackTrace();
+        });
+    }
+
+    // Repõe as opções de estado sem disparar uma nova geração do relatório
+    private void atualizarFiltroEstados(List<String> estados) {
+        if (comboFiltroEstado.getItemCount() == estados.size() + 1) {
+            return;
         }
+        Object selecionado = comboFiltroEstado.getSelectedItem();
+        comboFiltroEstado.setEnabled(false);
+        comboFiltroEstado.removeAllItems();
+        comboFiltroEstado.addItem("Todos os estados");
+        estados.stream().sorted().forEach(comboFiltroEstado::addItem);
+        comboFiltroEstado.setSelectedItem(selecionado);
+        comboFiltroEstado.setEnabled(chkSnapshot.isSelected());
     }
 
     /**
@@ -1596,15 +3293,40 @@ class RelatorioPanel extends JPanel {
             if (!fileToSave.getAbsolutePath().endsWith(".csv")) {
                 fileToSave = new File(fileToSave.getAbsolutePath() + ".csv");
             }
-            try {
-                controller.exportarRelatorioCSV(fileToSave);
-                JOptionPane.showMessageDialog(this, StringUtils.capitalize("relatório exportado com sucesso para:\n" + fileToSave.getAbsolutePath()));
-            } catch (IOException | SQLException ex) {
+            File arquivo = fileToSave;
+            exportacaoCancelada = new AtomicBoolean();
+            btnExportarCSV.setEnabled(false);
+            btnCancelarExportacao.setVisible(true);
+
+            // O progresso chega da thread de exportação e é repassado à barra na EDT
+            ExportadorCSV.Progresso progresso = (linhas, total) -> SwingUtilities.invokeLater(() -> {
+                barraProgresso.setIndeterminate(false);
+                barraProgresso.setStringPainted(true);
+                barraProgresso.setValue(total == 0 ? 100 : (int) (linhas * 100 / total));
+                barraProgresso.setString(linhas + " / " + total + " linhas");
+            });
+            int paralelismo = chkExportacaoParalela.isSelected() ? Runtime.getRuntime().availableProcessors() : 1;
+            SwingAsync.executar(controller.exportarRelatorioCSVAsync(arquivo, paralelismo, progresso, exportacaoCancelada::get), barraProgresso, linhas -> {
+                finalizarExportacao();
+                JOptionPane.showMessageDialog(this, StringUtils.capitalize("relatório exportado com sucesso para:\n" + arquivo.getAbsolutePath() + "\n(" + linhas + " linhas)"));
+            }, ex -> {
+                finalizarExportacao();
+                if (ex instanceof java.util.concurrent.CancellationException) {
+                    JOptionPane.showMessageDialog(this, StringUtils.capitalize("exportação cancelada."));
+                    return;
+                }
                 JOptionPane.showMessageDialog(this, StringUtils.capitalize("erro ao exportar o relatório: " + ex.getMessage()), StringUtils.capitalize("Erro"), JOptionPane.ERROR_MESSAGE);
                 ex.printStackTrace();
-            }
+            });
         }
     }
+
+    private void finalizarExportacao() {
+        btnExportarCSV.setEnabled(true);
+        btnCancelarExportacao.setVisible(false);
+        barraProgresso.setIndeterminate(true);
+        barraProgresso.setStringPainted(false);
+    }
 }
 
 // ==============================================================================
@@ -1642,17 +3364,37 @@ public class Main extends JFrame {
         abas.addTab("Produtos", new ProdutosPanel(controller));
         abas.addTab("Pedidos", new PedidosPanel(controller, this));
         abas.addTab("Relatório", new RelatorioPanel(controller));
+        abas.addTab("Importação", new ImportacaoPanel(controller));
 
         add(abas);
     }
 
     /**
      * Método main, ponto de partida da aplicação.
+     * Com --servidor [porta] sobe só a API HTTP (ServidorHTTP), sem interface gráfica.
      */
-    public static void main(String[] args) {
+    public static void main(String[] args) throws java.io.IOException {
+        if (args.length > 0 && "--servidor".equals(args[0])) {
+            iniciarServidor(args.length > 1 ? Integer.parseInt(args[1]) : ServidorHTTP.PORTA_PADRAO);
+            return;
+        }
         // Inicia a aplicação na thread de despacho de eventos (EDT) do Swing
         SwingUtilities.invokeLater(() -> {
             new Main().setVisible(true);
         });
     }
+
+    // Modo sem interface: a thread do HttpServer mantém a JVM ativa até o encerramento (Ctrl+C)
+    private static void iniciarServidor(int porta) throws java.io.IOException {
+        ERPController controller = new ERPController();
+        ServidorHTTP servidor = new ServidorHTTP(controller, porta,
+                Integer.getInteger("erp.http.requisicoes", ServidorHTTP.REQUISICOES_PADRAO));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            servidor.close();
+            controller.fecharConexao();
+            System.out.println("Servidor encerrado e conexão com o banco de dados fechada.");
+        }));
+        servidor.iniciar();
+        System.out.println("API HTTP do ERP ouvindo na porta " + servidor.getPorta() + ".");
+    }
 }
\ No newline at end of file
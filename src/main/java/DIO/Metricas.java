@@ -0,0 +1,492 @@
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Registro de métricas das operações das DAOs e do ERPController: chamadas,
+ * erros, registros lidos/gravados e histograma de latência (p50/p99/p999).
+ *
+ * Cada operação é exposta como MBean (DIO.ERP:type=Operacao,name=...) e o
+ * conjunto pode ser gravado periodicamente num arquivo texto no formato de
+ * exposição do Prometheus (-Derp.metricas.arquivo / -Derp.metricas.intervalo).
+ *
+ * O custo por chamada é duas leituras de System.nanoTime e alguns incrementos
+ * atômicos sem trava; os percentis só são calculados na leitura.
+ */
+class Metricas implements AutoCloseable {
+    static final String DOMINIO_JMX = "DIO.ERP";
+
+    enum Tipo {
+        LEITURA, ESCRITA
+    }
+
+    /**
+     * Chamada medida; E é a exceção verificada que ela propaga.
+     */
+    interface Chamada<R, E extends Exception> {
+        R executar() throws E;
+    }
+
+    /**
+     * Chamada que lê ou grava arquivos além do banco (importações e exportações).
+     */
+    interface ChamadaArquivo<R> {
+        R executar() throws IOException, SQLException;
+    }
+
+    private final Map<String, Operacao> operacoes = new ConcurrentHashMap<>();
+    private final MBeanServer servidorJmx;
+    private ScheduledExecutorService exportador;
+    private Path arquivo;
+
+    public Metricas() {
+        this(ManagementFactory.getPlatformMBeanServer());
+    }
+
+    /**
+     * @param servidorJmx servidor onde as operações são registradas, ou null para não usar JMX
+     */
+    public Metricas(MBeanServer servidorJmx) {
+        this.servidorJmx = servidorJmx;
+    }
+
+    /**
+     * Devolve (criando e registrando no JMX na primeira vez) a operação com o nome dado.
+     */
+    public Operacao operacao(String nome, Tipo tipo) {
+        return operacoes.computeIfAbsent(nome, n -> {
+            Operacao operacao = new Operacao(n, tipo);
+            registrarJmx(operacao);
+            return operacao;
+        });
+    }
+
+    /**
+     * Executa a chamada contabilizando latência, erro e registros do resultado (ver contarRegistros).
+     */
+    public <R, E extends Exception> R medir(Operacao operacao, Chamada<R, E> chamada) throws E {
+        long inicio = System.nanoTime();
+        R resultado;
+        try {
+            resultado = chamada.executar();
+        } catch (Exception | Error e) {
+            operacao.registrar(System.nanoTime() - inicio, 0, true);
+            throw e;
+        }
+        operacao.registrar(System.nanoTime() - inicio, contarRegistros(resultado), false);
+        return resultado;
+    }
+
+    /**
+     * Como medir, para chamadas que também propagam IOException.
+     */
+    public <R> R medirArquivo(Operacao operacao, ChamadaArquivo<R> chamada) throws IOException, SQLException {
+        long inicio = System.nanoTime();
+        R resultado;
+        try {
+            resultado = chamada.executar();
+        } catch (IOException | SQLException | RuntimeException | Error e) {
+            operacao.registrar(System.nanoTime() - inicio, 0, true);
+            throw e;
+        }
+        operacao.registrar(System.nanoTime() - inicio, contarRegistros(resultado), false);
+        return resultado;
+    }
+
+    /**
+     * Registros representados por um resultado: tamanho de listas e arrays de ids,
+     * linhas afetadas (true) de lotes, 1/0 para entidades e confirmações, e o
+     * número de importadas/exportadas em importações e exportações.
+     */
+    static long contarRegistros(Object resultado) {
+        if (resultado == null) {
+            return 0;
+        }
+        if (resultado instanceof Collection) {
+            return ((Collection<?>) resultado).size();
+        }
+        if (resultado instanceof Boolean) {
+            return (Boolean) resultado ? 1 : 0;
+        }
+        if (resultado instanceof Long) {
+            return (Long) resultado;
+        }
+        if (resultado instanceof long[]) {
+            return ((long[]) resultado).length;
+        }
+        if (resultado instanceof boolean[]) {
+            long total = 0;
+            for (boolean b : (boolean[]) resultado) {
+                if (b) {
+                    total++;
+                }
+            }
+            return total;
+        }
+        if (resultado instanceof ImportadorCSV.Resultado) {
+            return ((ImportadorCSV.Resultado) resultado).importadas;
+        }
+        return 1;
+    }
+
+    public List<Operacao> getOperacoes() {
+        List<Operacao> lista = new ArrayList<>(operacoes.values());
+        lista.sort((a, b) -> a.nome.compareTo(b.nome));
+        return lista;
+    }
+
+    /**
+     * Todas as operações no formato texto de exposição do Prometheus.
+     */
+    public String formatarTexto() {
+        StringBuilder sb = new StringBuilder(4096);
+        List<Operacao> lista = getOperacoes();
+        sb.append("# TYPE erp_operacao_chamadas_total counter\n");
+        for (Operacao op : lista) {
+            linha(sb, "erp_operacao_chamadas_total", op, null, op.getChamadas());
+        }
+        sb.append("# TYPE erp_operacao_erros_total counter\n");
+        for (Operacao op : lista) {
+            linha(sb, "erp_operacao_erros_total", op, null, op.getErros());
+        }
+        sb.append("# TYPE erp_operacao_registros_lidos_total counter\n");
+        for (Operacao op : lista) {
+            linha(sb, "erp_operacao_registros_lidos_total", op, null, op.getRegistrosLidos());
+        }
+        sb.append("# TYPE erp_operacao_registros_gravados_total counter\n");
+        for (Operacao op : lista) {
+            linha(sb, "erp_operacao_registros_gravados_total", op, null, op.getRegistrosGravados());
+        }
+        sb.append("# TYPE erp_operacao_latencia_segundos summary\n");
+        for (Operacao op : lista) {
+            linha(sb, "erp_operacao_latencia_segundos", op, "0.5", op.histograma.percentil(0.5) / 1e9);
+            linha(sb, "erp_operacao_latencia_segundos", op, "0.99", op.histograma.percentil(0.99) / 1e9);
+            linha(sb, "erp_operacao_latencia_segundos", op, "0.999", op.histograma.percentil(0.999) / 1e9);
+            linha(sb, "erp_operacao_latencia_segundos_sum", op, null, op.histograma.getSomaNanos() / 1e9);
+            linha(sb, "erp_operacao_latencia_segundos_count", op, null, op.histograma.getTotal());
+        }
+        return sb.toString();
+    }
+
+    private static void linha(StringBuilder sb, String metrica, Operacao op, String quantil, double valor) {
+        sb.append(metrica).append("{operacao=\"").append(op.nome).append('"');
+        if (quantil != null) {
+            sb.append(",quantile=\"").append(quantil).append('"');
+        }
+        sb.append("} ");
+        if (valor == Math.rint(valor) && Math.abs(valor) < 1e15) {
+            sb.append((long) valor);
+        } else {
+            sb.append(String.format(Locale.ROOT, "%.9f", valor));
+        }
+        sb.append('\n');
+    }
+
+    /**
+     * Grava formatarTexto() no arquivo a cada 'intervaloSegundos' (e uma última vez no close).
+     * A gravação passa por um arquivo temporário e uma troca atômica, para que o
+     * coletor nunca leia um arquivo pela metade.
+     */
+    public synchronized void iniciarExportacao(Path arquivo, long intervaloSegundos) {
+        if (exportador != null) {
+            throw new IllegalStateException("A exportação de métricas já foi iniciada.");
+        }
+        this.arquivo = arquivo;
+        exportador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "erp-metricas");
+            t.setDaemon(true);
+            return t;
+        });
+        exportador.scheduleWithFixedDelay(this::gravarArquivo, intervaloSegundos, intervaloSegundos, TimeUnit.SECONDS);
+    }
+
+    private void gravarArquivo() {
+        try {
+            Path temporario = arquivo.resolveSibling(arquivo.getFileName() + ".tmp");
+            try (Writer out = Files.newBufferedWriter(temporario, StandardCharsets.UTF_8)) {
+                out.write(formatarTexto());
+            }
+            Files.move(temporario, arquivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Encerra a exportação (gravando o arquivo uma última vez) e remove os MBeans.
+     */
+    @Override
+    public synchronized void close() {
+        if (exportador != null) {
+            exportador.shutdownNow();
+            exportador = null;
+            gravarArquivo();
+        }
+        if (servidorJmx != null) {
+            for (Operacao operacao : operacoes.values()) {
+                try {
+                    servidorJmx.unregisterMBean(operacao.nomeJmx);
+                } catch (InstanceNotFoundException e) {
+                    // Já substituído por outro registro (ex.: outro controlador na mesma JVM)
+                } catch (JMException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    private void registrarJmx(Operacao operacao) {
+        if (servidorJmx == null) {
+            return;
+        }
+        try {
+            // Um registro mais novo na mesma JVM substitui o anterior
+            if (servidorJmx.isRegistered(operacao.nomeJmx)) {
+                servidorJmx.unregisterMBean(operacao.nomeJmx);
+            }
+            servidorJmx.registerMBean(operacao, operacao.nomeJmx);
+        } catch (JMException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Contadores de uma operação, expostos também como MBean dinâmico (somente leitura).
+     */
+    static class Operacao implements DynamicMBean {
+        private static final String[] ATRIBUTOS = {"Chamadas", "Erros", "RegistrosLidos", "RegistrosGravados",
+                "LatenciaMediaMicros", "LatenciaP50Micros", "LatenciaP99Micros", "LatenciaP999Micros", "LatenciaMaximaMicros"};
+
+        final String nome;
+        final Tipo tipo;
+        final ObjectName nomeJmx;
+        private final LongAdder erros = new LongAdder();
+        private final LongAdder registros = new LongAdder();
+        private final Histograma histograma = new Histograma();
+
+        Operacao(String nome, Tipo tipo) {
+            this.nome = nome;
+            this.tipo = tipo;
+            try {
+                this.nomeJmx = new ObjectName(DOMINIO_JMX + ":type=Operacao,name=" + ObjectName.quote(nome));
+            } catch (JMException e) {
+                throw new IllegalArgumentException("Nome de operação inválido: " + nome, e);
+            }
+        }
+
+        /**
+         * Contabiliza uma chamada. Os registros contam como lidos ou gravados conforme o tipo.
+         */
+        public void registrar(long duracaoNanos, long registros, boolean erro) {
+            histograma.registrar(duracaoNanos);
+            if (erro) {
+                erros.increment();
+            } else if (registros != 0) {
+                this.registros.add(registros);
+            }
+        }
+
+        public long getChamadas() {
+            return histograma.getTotal();
+        }
+
+        public long getErros() {
+            return erros.sum();
+        }
+
+        public long getRegistrosLidos() {
+            return tipo == Tipo.LEITURA ? registros.sum() : 0;
+        }
+
+        public long getRegistrosGravados() {
+            return tipo == Tipo.ESCRITA ? registros.sum() : 0;
+        }
+
+        public Histograma getHistograma() {
+            return histograma;
+        }
+
+        @Override
+        public Object getAttribute(String atributo) throws AttributeNotFoundException {
+            switch (atributo) {
+                case "Chamadas":
+                    return getChamadas();
+                case "Erros":
+                    return getErros();
+                case "RegistrosLidos":
+                    return getRegistrosLidos();
+                case "RegistrosGravados":
+                    return getRegistrosGravados();
+                case "LatenciaMediaMicros":
+                    long total = histograma.getTotal();
+                    return total == 0 ? 0.0 : histograma.getSomaNanos() / 1000.0 / total;
+                case "LatenciaP50Micros":
+                    return histograma.percentil(0.5) / 1000.0;
+                case "LatenciaP99Micros":
+                    return histograma.percentil(0.99) / 1000.0;
+                case "LatenciaP999Micros":
+                    return histograma.percentil(0.999) / 1000.0;
+                case "LatenciaMaximaMicros":
+                    return histograma.getMaximoNanos() / 1000.0;
+                default:
+                    throw new AttributeNotFoundException(atributo);
+            }
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] atributos) {
+            AttributeList lista = new AttributeList();
+            for (String atributo : atributos) {
+                try {
+                    lista.add(new Attribute(atributo, getAttribute(atributo)));
+                } catch (AttributeNotFoundException e) {
+                    // Atributos desconhecidos são omitidos, como pede a especificação
+                }
+            }
+            return lista;
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException("Atributo somente leitura: " + attribute.getName());
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) {
+            throw new UnsupportedOperationException(actionName);
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            MBeanAttributeInfo[] info = new MBeanAttributeInfo[ATRIBUTOS.length];
+            for (int i = 0; i < ATRIBUTOS.length; i++) {
+                String tipoAtributo = ATRIBUTOS[i].startsWith("Latencia") ? "double" : "long";
+                info[i] = new MBeanAttributeInfo(ATRIBUTOS[i], tipoAtributo, ATRIBUTOS[i], true, false, false);
+            }
+            return new MBeanInfo(Operacao.class.getName(), "Operação " + nome, info, null, null, null);
+        }
+    }
+
+    /**
+     * Histograma de latências em nanossegundos, com baldes log-lineares: cada
+     * potência de 2 é dividida em 16 baldes, o que limita o erro relativo dos
+     * percentis a 1/16 (~6%). Valores a partir de 2^41 ns (~36 min) vão para o último balde.
+     */
+    static class Histograma {
+        private static final int SUBBALDES_BITS = 4;
+        private static final int SUBBALDES = 1 << SUBBALDES_BITS;
+        private static final int MAXIMO_BITS = 40;
+        private static final int BALDES = (MAXIMO_BITS - SUBBALDES_BITS + 2) * SUBBALDES;
+
+        private final AtomicLongArray contagens = new AtomicLongArray(BALDES);
+        private final LongAdder total = new LongAdder();
+        private final LongAdder somaNanos = new LongAdder();
+        private final AtomicLong maximo = new AtomicLong();
+
+        public void registrar(long nanos) {
+            if (nanos < 0) {
+                nanos = 0;
+            }
+            contagens.incrementAndGet(indice(nanos));
+            total.increment();
+            somaNanos.add(nanos);
+            long atual = maximo.get();
+            while (nanos > atual && !maximo.compareAndSet(atual, nanos)) {
+                atual = maximo.get();
+            }
+        }
+
+        // Valores abaixo de 16 ns têm balde exato; acima, o expoente escolhe o grupo e os 4 bits seguintes o balde
+        static int indice(long nanos) {
+            if (nanos < SUBBALDES) {
+                return (int) nanos;
+            }
+            int expoente = 63 - Long.numberOfLeadingZeros(nanos);
+            if (expoente > MAXIMO_BITS) {
+                return BALDES - 1;
+            }
+            int grupo = expoente - SUBBALDES_BITS + 1;
+            int sub = (int) (nanos >>> (expoente - SUBBALDES_BITS)) & (SUBBALDES - 1);
+            return grupo * SUBBALDES + sub;
+        }
+
+        // Maior valor que cai no balde (o percentil é reportado pelo limite superior)
+        static long limiteSuperior(int indice) {
+            if (indice < SUBBALDES) {
+                return indice;
+            }
+            int grupo = indice / SUBBALDES;
+            int sub = indice % SUBBALDES;
+            int deslocamento = grupo - 1;
+            return ((long) (SUBBALDES + sub + 1) << deslocamento) - 1;
+        }
+
+        /**
+         * Percentil (0 < p <= 1) em nanossegundos; 0 se nada foi registrado.
+         */
+        public long percentil(double p) {
+            long[] copia = new long[BALDES];
+            long soma = 0;
+            for (int i = 0; i < BALDES; i++) {
+                copia[i] = contagens.get(i);
+                soma += copia[i];
+            }
+            if (soma == 0) {
+                return 0;
+            }
+            long alvo = Math.max(1, (long) Math.ceil(p * soma));
+            long acumulado = 0;
+            for (int i = 0; i < BALDES; i++) {
+                acumulado += copia[i];
+                if (acumulado >= alvo) {
+                    return Math.min(limiteSuperior(i), maximo.get());
+                }
+            }
+            return maximo.get();
+        }
+
+        public long getTotal() {
+            return total.sum();
+        }
+
+        public long getSomaNanos() {
+            return somaNanos.sum();
+        }
+
+        public long getMaximoNanos() {
+            return maximo.get();
+        }
+    }
+}
@@ -0,0 +1,220 @@
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Migrações versionadas do esquema do banco.
+ *
+ * A tabela versao_esquema guarda as versões já aplicadas; na inicialização do
+ * ERPController só as migrações pendentes são executadas, em ordem, cada uma
+ * na sua própria transação junto com o registro da versão. Se alguma migração
+ * foi aplicada, as estatísticas do planejador são atualizadas com ANALYZE.
+ *
+ * Bancos criados antes desta classe não têm versao_esquema: por isso as
+ * migrações são idempotentes (IF NOT EXISTS, verificação de colunas) e podem
+ * rodar sobre tabelas que já existem sem perder dados.
+ *
+ * Novas alterações de esquema entram como uma nova Migracao no fim da lista;
+ * migrações já publicadas não devem ser alteradas.
+ */
+class MigracoesEsquema {
+
+    /**
+     * Passo de uma migração, executado dentro da transação de escrita.
+     */
+    interface Passo {
+        void aplicar(Statement stmt) throws SQLException;
+    }
+
+    static class Migracao {
+        final int versao;
+        final String descricao;
+        final Passo passo;
+
+        Migracao(int versao, String descricao, Passo passo) {
+            this.versao = versao;
+            this.descricao = descricao;
+            this.passo = passo;
+        }
+    }
+
+    static final List<Migracao> MIGRACOES = List.of(
+            new Migracao(1, "Tabelas clientes, produtos, pedidos e itens_pedido", stmt -> {
+                stmt.execute("CREATE TABLE IF NOT EXISTS clientes (" +
+                        "id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                        "nome TEXT NOT NULL," +
+                        "email TEXT NOT NULL UNIQUE," +
+                        "telefone TEXT," +
+                        "endereco TEXT," +
+                        "cidade TEXT," +
+                        "estado TEXT," +
+                        "pais TEXT" +
+                        ")");
+                stmt.execute("CREATE TABLE IF NOT EXISTS produtos (" +
+                        "id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                        "nome TEXT NOT NULL UNIQUE," +
+                        "preco REAL NOT NULL" +
+                        ")");
+                // Tabela de pedidos com chave estrangeira para clientes
+                stmt.execute("CREATE TABLE IF NOT EXISTS pedidos (" +
+                        "id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                        "cliente_id INTEGER NOT NULL," +
+                        "FOREIGN KEY (cliente_id) REFERENCES clientes(id) ON DELETE CASCADE" +
+                        ")");
+                // Tabela de itens_pedido com chaves estrangeiras para pedidos e produtos
+                stmt.execute("CREATE TABLE IF NOT EXISTS itens_pedido (" +
+                        "pedido_id INTEGER NOT NULL," +
+                        "produto_id INTEGER NOT NULL," +
+                        "quantidade INTEGER NOT NULL," +
+                        "PRIMARY KEY (pedido_id, produto_id)," +
+                        "FOREIGN KEY (pedido_id) REFERENCES pedidos(id) ON DELETE CASCADE," +
+                        "FOREIGN KEY (produto_id) REFERENCES produtos(id)" +
+                        ")");
+            }),
+            new Migracao(2, "Colunas total e quantidade_itens em pedidos", stmt -> {
+                // Bancos que já tinham as colunas (criadas antes do versionamento) são mantidos como estão
+                if (!possuiColuna(stmt, "pedidos", "total")) {
+                    stmt.execute("ALTER TABLE pedidos ADD COLUMN total REAL NOT NULL DEFAULT 0");
+                    stmt.execute("ALTER TABLE pedidos ADD COLUMN quantidade_itens INTEGER NOT NULL DEFAULT 0");
+                    stmt.execute("UPDATE pedidos SET total = " + PedidoDAO.SQL_TOTAL_ITENS +
+                            ", quantidade_itens = " + PedidoDAO.SQL_QUANTIDADE_ITENS);
+                }
+            }),
+            new Migracao(3, "Índices secundários de clientes, pedidos e itens_pedido", stmt -> {
+                // clientes.email e produtos.nome já têm o índice da restrição UNIQUE (sqlite_autoindex_*)
+                stmt.execute("CREATE INDEX IF NOT EXISTS idx_clientes_nome ON clientes (nome)");
+                // Índices de cobertura com pedidos.cliente_id e itens_pedido.produto_id à esquerda:
+                // atendem às verificações de referência (cliente/produto em uso) e às
+                // agregações do MotorRelatorios sem ler as tabelas
+                stmt.execute("CREATE INDEX IF NOT EXISTS idx_pedidos_cliente_totais ON pedidos (cliente_id, total, quantidade_itens)");
+                stmt.execute("CREATE INDEX IF NOT EXISTS idx_itens_pedido_produto_quantidade ON itens_pedido (produto_id, quantidade)");
+                // Substituídos pelos índices de cobertura acima
+                stmt.execute("DROP INDEX IF EXISTS idx_pedidos_cliente_id");
+                stmt.execute("DROP INDEX IF EXISTS idx_itens_pedido_produto_id");
+            }),
+            new Migracao(4, "Índices de busca textual (FTS5) de clientes e produtos", stmt -> {
+                // Tabelas FTS5 de conteúdo externo: guardam só o índice invertido e leem o
+                // texto das tabelas de origem. Acentos são ignorados ("sao" encontra "São") e
+                // os índices de prefixo de 2 e 3 letras atendem à busca enquanto se digita.
+                stmt.execute("CREATE VIRTUAL TABLE IF NOT EXISTS clientes_fts USING fts5(" +
+                        "nome, email, telefone, cidade, estado, content='clientes', content_rowid='id', " +
+                        "tokenize='unicode61 remove_diacritics 2', prefix='2 3')");
+                stmt.execute("CREATE VIRTUAL TABLE IF NOT EXISTS produtos_fts USING fts5(" +
+                        "nome, content='produtos', content_rowid='id', " +
+                        "tokenize='unicode61 remove_diacritics 2', prefix='2 3')");
+
+                // Gatilhos que mantêm os índices em sincronia com as tabelas
+                stmt.execute("CREATE TRIGGER IF NOT EXISTS clientes_fts_insercao AFTER INSERT ON clientes BEGIN " +
+                        "INSERT INTO clientes_fts (rowid, nome, email, telefone, cidade, estado) " +
+                        "VALUES (new.id, new.nome, new.email, new.telefone, new.cidade, new.estado); END");
+                stmt.execute("CREATE TRIGGER IF NOT EXISTS clientes_fts_exclusao AFTER DELETE ON clientes BEGIN " +
+                        "INSERT INTO clientes_fts (clientes_fts, rowid, nome, email, telefone, cidade, estado) " +
+                        "VALUES ('delete', old.id, old.nome, old.email, old.telefone, old.cidade, old.estado); END");
+                stmt.execute("CREATE TRIGGER IF NOT EXISTS clientes_fts_atualizacao AFTER UPDATE ON clientes BEGIN " +
+                        "INSERT INTO clientes_fts (clientes_fts, rowid, nome, email, telefone, cidade, estado) " +
+                        "VALUES ('delete', old.id, old.nome, old.email, old.telefone, old.cidade, old.estado); " +
+                        "INSERT INTO clientes_fts (rowid, nome, email, telefone, cidade, estado) " +
+                        "VALUES (new.id, new.nome, new.email, new.telefone, new.cidade, new.estado); END");
+                stmt.execute("CREATE TRIGGER IF NOT EXISTS produtos_fts_insercao AFTER INSERT ON produtos BEGIN " +
+                        "INSERT INTO produtos_fts (rowid, nome) VALUES (new.id, new.nome); END");
+                stmt.execute("CREATE TRIGGER IF NOT EXISTS produtos_fts_exclusao AFTER DELETE ON produtos BEGIN " +
+                        "INSERT INTO produtos_fts (produtos_fts, rowid, nome) VALUES ('delete', old.id, old.nome); END");
+                stmt.execute("CREATE TRIGGER IF NOT EXISTS produtos_fts_atualizacao AFTER UPDATE OF nome ON produtos BEGIN " +
+                        "INSERT INTO produtos_fts (produtos_fts, rowid, nome) VALUES ('delete', old.id, old.nome); " +
+                        "INSERT INTO produtos_fts (rowid, nome) VALUES (new.id, new.nome); END");
+
+                // Indexa as linhas já existentes
+                stmt.execute("INSERT INTO clientes_fts (clientes_fts) VALUES ('rebuild')");
+                stmt.execute("INSERT INTO produtos_fts (produtos_fts) VALUES ('rebuild')");
+            })
+    );
+
+    private final GerenciadorConexoes conexoes;
+
+    public MigracoesEsquema(GerenciadorConexoes conexoes) {
+        this.conexoes = conexoes;
+    }
+
+    /**
+     * Aplica as migrações pendentes e devolve quantas foram aplicadas.
+     */
+    public int aplicarPendentes() throws SQLException {
+        conexoes.escrever(statements -> {
+            try (Statement stmt = statements.getConnection().createStatement()) {
+                stmt.execute("CREATE TABLE IF NOT EXISTS versao_esquema (" +
+                        "versao INTEGER PRIMARY KEY," +
+                        "descricao TEXT NOT NULL," +
+                        "aplicada_em TEXT NOT NULL DEFAULT CURRENT_TIMESTAMP," +
+                        "duracao_ms INTEGER NOT NULL" +
+                        ")");
+            }
+            return null;
+        });
+
+        int atual = getVersaoAtual();
+        List<Migracao> pendentes = new ArrayList<>();
+        for (Migracao migracao : MIGRACOES) {
+            if (migracao.versao > atual) {
+                pendentes.add(migracao);
+            }
+        }
+
+        for (Migracao migracao : pendentes) {
+            long inicio = System.nanoTime();
+            conexoes.escrever(statements -> {
+                try (Statement stmt = statements.getConnection().createStatement()) {
+                    migracao.passo.aplicar(stmt);
+                }
+                try (PreparedStatement pstmt = statements.preparar(
+                        "INSERT INTO versao_esquema (versao, descricao, duracao_ms) VALUES (?, ?, ?)")) {
+                    pstmt.setInt(1, migracao.versao);
+                    pstmt.setString(2, migracao.descricao);
+                    pstmt.setLong(3, (System.nanoTime() - inicio) / 1_000_000);
+                    pstmt.executeUpdate();
+                }
+                return null;
+            });
+            System.out.printf("Migração %d (%s) aplicada em %d ms.%n",
+                    migracao.versao, migracao.descricao, (System.nanoTime() - inicio) / 1_000_000);
+        }
+
+        if (!pendentes.isEmpty()) {
+            // Estatísticas dos índices para o planejador de consultas do SQLite
+            long inicio = System.nanoTime();
+            conexoes.escrever(statements -> {
+                try (Statement stmt = statements.getConnection().createStatement()) {
+                    stmt.execute("ANALYZE");
+                }
+                return null;
+            });
+            System.out.printf("ANALYZE executado em %d ms.%n", (System.nanoTime() - inicio) / 1_000_000);
+        }
+        return pendentes.size();
+    }
+
+    /**
+     * Maior versão aplicada, ou 0 num banco sem migrações.
+     */
+    public int getVersaoAtual() throws SQLException {
+        return conexoes.ler(statements -> {
+            try (PreparedStatement pstmt = statements.preparar("SELECT COALESCE(MAX(versao), 0) FROM versao_esquema");
+                 ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        });
+    }
+
+    private static boolean possuiColuna(Statement stmt, String tabela, String coluna) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery("PRAGMA table_info(" + tabela + ")")) {
+            while (rs.next()) {
+                if (coluna.equals(rs.getString("name"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
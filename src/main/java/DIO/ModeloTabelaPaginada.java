@@ -0,0 +1,558 @@
+import javax.swing.RowSorter;
+import javax.swing.SortOrder;
+import javax.swing.SwingUtilities;
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Modelo de tabela virtual: mantém em memória apenas os ids (long[]) e as
+ * páginas de linhas efetivamente exibidas, carregadas sob demanda por
+ * paginação por chave (keyset) conforme o usuário rola a tabela.
+ *
+ * Uma página ainda não carregada aparece vazia e é buscada em segundo plano,
+ * junto com as páginas vizinhas (margem de pré-carga). As páginas ficam num
+ * LRU limitado. Todo o estado é acessado somente na EDT.
+ *
+ * Alterações publicadas pelo controller (EventosAlteracao) são aplicadas como
+ * diferenças: ids inseridos ou removidos mudam só o long[] e as páginas a partir
+ * da primeira linha afetada; ids atualizados descartam só as páginas deles.
+ *
+ * A ordenação pelo cabeçalho (criarOrdenador) é feita pelo banco: o painel relê
+ * só os ids, na ordem (coluna, id), e as páginas passam a ser buscadas pelos ids
+ * que contêm, já conhecidos. Fora da ordem por id as diferenças não têm como ser
+ * posicionadas e aplicar() pede a recarga dos ids.
+ */
+class ModeloTabelaPaginada<T> extends AbstractTableModel {
+    static final int TAMANHO_PAGINA = 200;
+    static final int PAGINAS_PRE_CARGA = 1;
+    static final int MAX_PAGINAS_EM_MEMORIA = 32;
+
+    /**
+     * Busca até 'limite' entidades com id maior que 'aposId'.
+     */
+    interface CarregadorPagina<T> {
+        List<T> carregar(long aposId, int limite) throws Exception;
+    }
+
+    /**
+     * Busca as entidades dos ids dados, em qualquer ordem (páginas fora da ordem por id).
+     */
+    interface CarregadorIds<T> {
+        List<T> carregar(long[] ids) throws Exception;
+    }
+
+    private final ERPController controller;
+    private final String[] colunas;
+    private final CarregadorPagina<T> carregador;
+    private final ToLongFunction<T> extratorId;
+    private final Function<T, Object[]> extratorLinha;
+
+    private long[] ids = new long[0];
+    private int geracao; // invalida páginas pedidas antes da última recarga ou alteração
+    private boolean fixo; // lista fixa de definirEntidades: páginas nunca buscadas no banco
+    private List<T> entidadesFixas; // lista fixa na ordem recebida, reordenada em memória
+
+    // Ordenação: chave do DAO por coluna (null se não ordenável) e coluna escolhida (-1: nenhuma)
+    private String[] chavesOrdenacao;
+    private CarregadorIds<T> carregadorIds;
+    private int colunaOrdenada = -1;
+    private boolean crescente = true;
+
+    // Eventos recebidos enquanto uma carga de ids está em andamento, reaplicados sobre o resultado
+    private List<EventosAlteracao.Evento> eventosDuranteCarga;
+    private final Set<Integer> paginasPendentes = new HashSet<>();
+    private final Map<Integer, Pagina<T>> paginas = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Pagina<T>> eldest) {
+            return size() > MAX_PAGINAS_EM_MEMORIA;
+        }
+    };
+
+    private static class Pagina<T> {
+        final Object[] entidades = new Object[TAMANHO_PAGINA];
+        final Object[][] linhas = new Object[TAMANHO_PAGINA][];
+    }
+
+    public ModeloTabelaPaginada(ERPController controller, String[] colunas, CarregadorPagina<T> carregador,
+                                ToLongFunction<T> extratorId, Function<T, Object[]> extratorLinha) {
+        this.controller = controller;
+        this.colunas = colunas;
+        this.carregador = carregador;
+        this.extratorId = extratorId;
+        this.extratorLinha = extratorLinha;
+    }
+
+    /**
+     * Avisa que uma carga de ids (ordenados) começou: eventos aplicados até o
+     * definirIds seguinte são reaplicados sobre os ids carregados, que podem ter
+     * sido lidos antes dessas gravações.
+     */
+    public void iniciarCarga() {
+        eventosDuranteCarga = new ArrayList<>();
+    }
+
+    /**
+     * Habilita a ordenação pelo cabeçalho: devolve o RowSorter a instalar na JTable.
+     * 'chaves' dá, por coluna, a chave de ordenação do DAO (null se não ordenável).
+     * A cada mudança de ordem o painel é avisado (aoOrdenar) para recarregar os ids
+     * conforme getChaveOrdenacao/isCrescente; listas fixas são reordenadas aqui mesmo.
+     */
+    public RowSorter<ModeloTabelaPaginada<T>> criarOrdenador(String[] chaves, CarregadorIds<T> carregadorIds, Runnable aoOrdenar) {
+        if (chaves.length != colunas.length) {
+            throw new IllegalArgumentException("Uma chave de ordenação por coluna: " + chaves.length + " != " + colunas.length);
+        }
+        this.chavesOrdenacao = chaves;
+        this.carregadorIds = carregadorIds;
+        return new Ordenador(aoOrdenar);
+    }
+
+    /**
+     * Chave do DAO da coluna ordenada, ou null na ordem natural (por id, crescente),
+     * em que os ids vêm de buscarIds e as páginas por chave.
+     */
+    public String getChaveOrdenacao() {
+        return ordemNatural() ? null : chavesOrdenacao[colunaOrdenada];
+    }
+
+    public boolean isCrescente() {
+        return crescente;
+    }
+
+    private boolean ordemNatural() {
+        return colunaOrdenada < 0 || colunaOrdenada == 0 && crescente;
+    }
+
+    /**
+     * Substitui o conjunto de ids exibido (em ordem crescente, ou na ordem de
+     * getChaveOrdenacao se houver) e descarta as páginas carregadas.
+     */
+    public void definirIds(long[] novosIds) {
+        ids = novosIds;
+        fixo = false;
+        entidadesFixas = null;
+        descartarPaginas();
+        fireTableDataChanged();
+        List<EventosAlteracao.Evento> eventos = eventosDuranteCarga;
+        eventosDuranteCarga = null;
+        if (eventos != null) {
+            for (EventosAlteracao.Evento evento : eventos) {
+                aplicar(evento);
+            }
+        }
+    }
+
+    /**
+     * Exibe uma lista fixa de entidades (ex.: resultado de uma busca), na ordem dada
+     * ou, com uma coluna ordenada, na ordem dela. As páginas são montadas na hora e
+     * nunca buscadas no banco; por isso a lista é limitada ao que cabe nas páginas em memória.
+     */
+    public void definirEntidades(List<T> lista) {
+        if (lista.size() > MAX_PAGINAS_EM_MEMORIA * TAMANHO_PAGINA) {
+            throw new IllegalArgumentException("Entidades demais para exibição fixa: " + lista.size());
+        }
+        entidadesFixas = lista;
+        List<T> entidades = ordenarFixas(lista);
+        long[] novosIds = new long[entidades.size()];
+        for (int i = 0; i < novosIds.length; i++) {
+            novosIds[i] = extratorId.applyAsLong(entidades.get(i));
+        }
+        ids = novosIds;
+        fixo = true;
+        eventosDuranteCarga = null;
+        descartarPaginas();
+        for (int inicio = 0; inicio < novosIds.length; inicio += TAMANHO_PAGINA) {
+            Pagina<T> pagina = new Pagina<>();
+            for (int i = inicio; i < Math.min(inicio + TAMANHO_PAGINA, novosIds.length); i++) {
+                pagina.entidades[i - inicio] = entidades.get(i);
+                pagina.linhas[i - inicio] = extratorLinha.apply(entidades.get(i));
+            }
+            paginas.put(inicio / TAMANHO_PAGINA, pagina);
+        }
+        fireTableDataChanged();
+    }
+
+    /**
+     * Aplica um evento da entidade exibida. Retorna false quando ele não pode ser
+     * aplicado como diferença (lista fixa ou alteração em massa) e a tabela precisa
+     * ser recarregada. Reaplicar o mesmo evento não tem efeito.
+     */
+    public boolean aplicar(EventosAlteracao.Evento evento) {
+        if (fixo || evento.tipo == EventosAlteracao.Tipo.EM_MASSA || !ordemNatural()) {
+            return false;
+        }
+        if (eventosDuranteCarga != null) {
+            eventosDuranteCarga.add(evento);
+        }
+        switch (evento.tipo) {
+            case INSERIDO:
+                inserirIds(evento.ids);
+                break;
+            case REMOVIDO:
+                removerIds(evento.ids);
+                break;
+            default:
+                recarregarLinhas(evento.ids);
+        }
+        return true;
+    }
+
+    /**
+     * Descarta todas as páginas mantendo os ids, para quando dados exibidos mudaram
+     * em outra entidade (ex.: o nome do cliente na lista de pedidos). Só as páginas
+     * visíveis voltam a ser buscadas. Com uma coluna ordenada a ordem dos ids pode ter
+     * mudado: devolve false e a tabela precisa ser recarregada.
+     */
+    public boolean invalidarPaginas() {
+        if (fixo || !ordemNatural()) {
+            return false;
+        }
+        descartarPaginas();
+        if (ids.length > 0) {
+            fireTableRowsUpdated(0, ids.length - 1);
+        }
+        return true;
+    }
+
+    private void inserirIds(long[] inseridos) {
+        long[] novos = Arrays.stream(inseridos).sorted().distinct()
+                .filter(id -> Arrays.binarySearch(ids, id) < 0).toArray();
+        if (novos.length == 0) {
+            return;
+        }
+        // Intercala os ids novos (já ordenados) com os atuais
+        long[] resultado = new long[ids.length + novos.length];
+        int[] linhas = new int[novos.length];
+        int i = 0, j = 0, k = 0;
+        while (j < novos.length) {
+            if (i < ids.length && ids[i] < novos[j]) {
+                resultado[k++] = ids[i++];
+            } else {
+                linhas[j] = k;
+                resultado[k++] = novos[j++];
+            }
+        }
+        System.arraycopy(ids, i, resultado, k, ids.length - i);
+        ids = resultado;
+        descartarPaginasAPartirDe(linhas[0] / TAMANHO_PAGINA);
+        // Um evento por faixa contínua (um lote do diário vira um só), em ordem crescente
+        for (int inicio = 0, fim; inicio < linhas.length; inicio = fim) {
+            fim = fimDaFaixa(linhas, inicio);
+            fireTableRowsInserted(linhas[inicio], linhas[fim - 1]);
+        }
+    }
+
+    private void removerIds(long[] removidos) {
+        int[] linhas = Arrays.stream(removidos).map(id -> Arrays.binarySearch(ids, id))
+                .filter(linha -> linha >= 0).mapToInt(linha -> (int) linha).sorted().distinct().toArray();
+        if (linhas.length == 0) {
+            return;
+        }
+        long[] resultado = new long[ids.length - linhas.length];
+        int k = 0, proxima = 0;
+        for (int i = 0; i < ids.length; i++) {
+            if (proxima < linhas.length && linhas[proxima] == i) {
+                proxima++;
+            } else {
+                resultado[k++] = ids[i];
+            }
+        }
+        ids = resultado;
+        descartarPaginasAPartirDe(linhas[0] / TAMANHO_PAGINA);
+        // Da última faixa para a primeira, para os índices continuarem válidos
+        for (int fim = linhas.length, inicio; fim > 0; fim = inicio) {
+            inicio = fim - 1;
+            while (inicio > 0 && linhas[inicio - 1] == linhas[inicio] - 1) {
+                inicio--;
+            }
+            fireTableRowsDeleted(linhas[inicio], linhas[fim - 1]);
+        }
+    }
+
+    // Fim (exclusivo) da faixa de linhas consecutivas que começa em 'inicio'
+    private static int fimDaFaixa(int[] linhas, int inicio) {
+        int fim = inicio + 1;
+        while (fim < linhas.length && linhas[fim] == linhas[fim - 1] + 1) {
+            fim++;
+        }
+        return fim;
+    }
+
+    private void recarregarLinhas(long[] atualizados) {
+        for (long id : atualizados) {
+            int linha = Arrays.binarySearch(ids, id);
+            if (linha >= 0) {
+                paginas.remove(linha / TAMANHO_PAGINA);
+                // Uma página pedida antes da gravação pode trazer a versão antiga
+                geracao++;
+                paginasPendentes.clear();
+                fireTableRowsUpdated(linha, linha);
+            }
+        }
+    }
+
+    private void descartarPaginas() {
+        geracao++;
+        paginas.clear();
+        paginasPendentes.clear();
+    }
+
+    // Páginas anteriores à primeira linha afetada continuam válidas
+    private void descartarPaginasAPartirDe(int primeira) {
+        geracao++;
+        paginas.keySet().removeIf(numero -> numero >= primeira);
+        paginasPendentes.clear();
+    }
+
+    @Override
+    public int getRowCount() {
+        return ids.length;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return colunas.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return colunas[column];
+    }
+
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        return false;
+    }
+
+    /**
+     * Id da linha, disponível mesmo antes de a página ser carregada.
+     */
+    public long getId(int row) {
+        return ids[row];
+    }
+
+    /**
+     * Entidade da linha, ou null se a página ainda não foi carregada.
+     */
+    @SuppressWarnings("unchecked")
+    public T getEntidade(int row) {
+        Pagina<T> pagina = obterPagina(row / TAMANHO_PAGINA);
+        return pagina == null ? null : (T) pagina.entidades[row % TAMANHO_PAGINA];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        // A primeira coluna é sempre o id, conhecido sem ir ao banco
+        if (column == 0) {
+            return ids[row];
+        }
+        Pagina<T> pagina = obterPagina(row / TAMANHO_PAGINA);
+        if (pagina == null) {
+            return null;
+        }
+        Object[] linha = pagina.linhas[row % TAMANHO_PAGINA];
+        return linha == null ? null : linha[column];
+    }
+
+    private Pagina<T> obterPagina(int numero) {
+        Pagina<T> pagina = paginas.get(numero);
+        if (pagina == null) {
+            solicitar(numero);
+        }
+        // Pré-carrega as páginas vizinhas para a rolagem não exibir linhas vazias
+        for (int vizinha = numero - PAGINAS_PRE_CARGA; vizinha <= numero + PAGINAS_PRE_CARGA; vizinha++) {
+            if (vizinha != numero && !paginas.containsKey(vizinha)) {
+                solicitar(vizinha);
+            }
+        }
+        return pagina;
+    }
+
+    private void solicitar(int numero) {
+        int inicio = numero * TAMANHO_PAGINA;
+        if (numero < 0 || inicio >= ids.length || !paginasPendentes.add(numero)) {
+            return;
+        }
+        int fim = Math.min(inicio + TAMANHO_PAGINA, ids.length);
+        long[] idsPagina = ids;
+        int geracaoPedido = geracao;
+        // Na ordem natural a página são os próximos ids após o anterior ao primeiro; nas
+        // demais, os ids da página não são contíguos e são buscados um a um (IN)
+        boolean porChave = ordemNatural();
+        controller.executarAsync(() -> porChave
+                        ? carregador.carregar(idsPagina[inicio] - 1, fim - inicio)
+                        : carregadorIds.carregar(Arrays.copyOfRange(idsPagina, inicio, fim)))
+                .whenComplete((entidades, erro) -> SwingUtilities.invokeLater(() -> {
+                    if (geracaoPedido != geracao) {
+                        return;
+                    }
+                    paginasPendentes.remove(numero);
+                    if (erro != null) {
+                        erro.printStackTrace();
+                        return;
+                    }
+                    paginas.put(numero, montarPagina(idsPagina, inicio, fim, entidades));
+                    fireTableRowsUpdated(inicio, fim - 1);
+                }));
+    }
+
+    // Casa as entidades retornadas (em qualquer ordem) com os ids da página; ids removidos nesse meio tempo ficam vazios
+    private Pagina<T> montarPagina(long[] idsPagina, int inicio, int fim, List<T> entidades) {
+        Map<Long, T> porId = new HashMap<>();
+        for (T entidade : entidades) {
+            porId.put(extratorId.applyAsLong(entidade), entidade);
+        }
+        Pagina<T> pagina = new Pagina<>();
+        for (int i = inicio; i < fim; i++) {
+            T entidade = porId.get(idsPagina[i]);
+            if (entidade != null) {
+                pagina.entidades[i - inicio] = entidade;
+                pagina.linhas[i - inicio] = extratorLinha.apply(entidade);
+            }
+        }
+        return pagina;
+    }
+
+    // A lista fixa na ordem da coluna escolhida (valores exibidos, id como desempate)
+    private List<T> ordenarFixas(List<T> lista) {
+        if (colunaOrdenada < 0) {
+            return lista;
+        }
+        int coluna = colunaOrdenada;
+        Comparator<T> ordem = Comparator.<T, Object>comparing(e -> extratorLinha.apply(e)[coluna], ModeloTabelaPaginada::compararValores)
+                .thenComparingLong(extratorId);
+        List<T> ordenadas = new ArrayList<>(lista);
+        ordenadas.sort(crescente ? ordem : ordem.reversed());
+        return ordenadas;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compararValores(Object a, Object b) {
+        if (a == null || b == null) {
+            return a == null ? (b == null ? 0 : -1) : 1;
+        }
+        if (a instanceof Number && b instanceof Number) {
+            return Double.compare(((Number) a).doubleValue(), ((Number) b).doubleValue());
+        }
+        if (a instanceof Comparable && a.getClass() == b.getClass()) {
+            return ((Comparable) a).compareTo(b);
+        }
+        return a.toString().compareTo(b.toString());
+    }
+
+    private void definirOrdenacao(int coluna, boolean crescente, Ordenador ordenador, Runnable aoOrdenar) {
+        if (coluna == colunaOrdenada && (coluna < 0 || crescente == this.crescente)) {
+            return;
+        }
+        colunaOrdenada = coluna;
+        this.crescente = crescente;
+        ordenador.avisarMudanca();
+        if (fixo) {
+            definirEntidades(entidadesFixas);
+        } else {
+            aoOrdenar.run();
+        }
+    }
+
+    /**
+     * RowSorter que não reordena linhas (a visão é sempre a ordem do modelo): só
+     * guarda a coluna escolhida no cabeçalho, para a seta de ordenação, e repassa
+     * a mudança ao modelo, que é reordenado pelo banco.
+     */
+    private class Ordenador extends RowSorter<ModeloTabelaPaginada<T>> {
+        private final Runnable aoOrdenar;
+
+        Ordenador(Runnable aoOrdenar) {
+            this.aoOrdenar = aoOrdenar;
+        }
+
+        void avisarMudanca() {
+            fireSortOrderChanged();
+        }
+
+        @Override
+        public ModeloTabelaPaginada<T> getModel() {
+            return ModeloTabelaPaginada.this;
+        }
+
+        // Como no DefaultRowSorter: coluna nova começa crescente, a mesma inverte o sentido
+        @Override
+        public void toggleSortOrder(int column) {
+            if (chavesOrdenacao[column] == null) {
+                return;
+            }
+            definirOrdenacao(column, column != colunaOrdenada || !crescente, this, aoOrdenar);
+        }
+
+        @Override
+        public void setSortKeys(List<? extends SortKey> keys) {
+            SortKey chave = keys == null || keys.isEmpty() ? null : keys.get(0);
+            if (chave == null || chave.getSortOrder() == SortOrder.UNSORTED || chavesOrdenacao[chave.getColumn()] == null) {
+                definirOrdenacao(-1, true, this, aoOrdenar);
+            } else {
+                definirOrdenacao(chave.getColumn(), chave.getSortOrder() == SortOrder.ASCENDING, this, aoOrdenar);
+            }
+        }
+
+        @Override
+        public List<? extends SortKey> getSortKeys() {
+            return colunaOrdenada < 0 ? Collections.emptyList()
+                    : List.of(new SortKey(colunaOrdenada, crescente ? SortOrder.ASCENDING : SortOrder.DESCENDING));
+        }
+
+        @Override
+        public int convertRowIndexToModel(int index) {
+            return index;
+        }
+
+        @Override
+        public int convertRowIndexToView(int index) {
+            return index;
+        }
+
+        @Override
+        public int getViewRowCount() {
+            return getRowCount();
+        }
+
+        @Override
+        public int getModelRowCount() {
+            return getRowCount();
+        }
+
+        // As linhas já chegam na ordem escolhida: nada a refazer nas alterações do modelo
+        @Override
+        public void modelStructureChanged() {
+        }
+
+        @Override
+        public void allRowsChanged() {
+        }
+
+        @Override
+        public void rowsInserted(int firstRow, int endRow) {
+        }
+
+        @Override
+        public void rowsDeleted(int firstRow, int endRow) {
+        }
+
+        @Override
+        public void rowsUpdated(int firstRow, int endRow) {
+        }
+
+        @Override
+        public void rowsUpdated(int firstRow, int endRow, int column) {
+        }
+    }
+}
@@ -0,0 +1,107 @@
+import javax.swing.SwingConstants;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.DefaultTableCellRenderer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Modelo da tabela de relatórios em colunas (String[], long[], double[]), sem o
+ * Vector de Object por linha do DefaultTableModel: os valores só viram objetos
+ * quando a tabela ou o sorter os pedem.
+ *
+ * definir() troca todas as linhas com um único evento, em vez de um por addRow.
+ * Se as colunas não mudam (mesmo agrupamento), o evento é de dados e o sorter
+ * mantém a ordenação escolhida. Pedidos, quantidade e receita são Long/Double,
+ * ordenados numericamente; a receita é formatada só na exibição (Renderizador).
+ */
+class ModeloTabelaRelatorio extends AbstractTableModel {
+    private static final Class<?>[] CLASSES = {String.class, Long.class, Long.class, Double.class};
+
+    private String[] colunas = {"Cliente", "Pedidos", "Itens", "Receita"};
+    private int linhas;
+    private String[] chaves = new String[0];
+    private long[] pedidos = new long[0];
+    private long[] quantidades = new long[0];
+    private double[] receitas = new double[0];
+
+    /**
+     * Exibe as linhas de um relatório do agrupamento dado, substituindo as atuais.
+     */
+    public void definir(MotorRelatorios.Agrupamento agrupamento, List<MotorRelatorios.LinhaRelatorio> novas) {
+        int n = novas.size();
+        // Reaproveita as colunas entre relatórios; realoca ao crescer ou se sobrar muito espaço
+        if (n > chaves.length || chaves.length > Math.max(1024, 4 * n)) {
+            chaves = new String[n];
+            pedidos = new long[n];
+            quantidades = new long[n];
+            receitas = new double[n];
+        } else if (n < linhas) {
+            Arrays.fill(chaves, n, linhas, null);
+        }
+        for (int i = 0; i < n; i++) {
+            MotorRelatorios.LinhaRelatorio linha = novas.get(i);
+            chaves[i] = linha.chave;
+            pedidos[i] = linha.pedidos;
+            quantidades[i] = linha.quantidade;
+            receitas[i] = linha.receita;
+        }
+        linhas = n;
+
+        String[] novasColunas = {agrupamento.colunaChave, "Pedidos", agrupamento.colunaQuantidade, "Receita"};
+        if (Arrays.equals(colunas, novasColunas)) {
+            fireTableDataChanged();
+        } else {
+            colunas = novasColunas;
+            fireTableStructureChanged();
+        }
+    }
+
+    @Override
+    public int getRowCount() {
+        return linhas;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return colunas.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return colunas[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return CLASSES[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        switch (column) {
+            case 0:
+                return chaves[row];
+            case 1:
+                return pedidos[row];
+            case 2:
+                return quantidades[row];
+            default:
+                return receitas[row];
+        }
+    }
+
+    /**
+     * Exibe valores Double com duas casas, alinhados à direita; registrado por classe
+     * (setDefaultRenderer), continua valendo quando as colunas são recriadas.
+     */
+    static class Renderizador extends DefaultTableCellRenderer {
+        Renderizador() {
+            setHorizontalAlignment(SwingConstants.RIGHT);
+        }
+
+        @Override
+        protected void setValue(Object valor) {
+            setText(valor == null ? "" : String.format("%.2f", (Double) valor));
+        }
+    }
+}
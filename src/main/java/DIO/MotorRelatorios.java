@@ -0,0 +1,134 @@
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Relatórios agregados calculados pelo próprio SQLite: receita por cliente,
+ * por produto, por estado/cidade/país e os produtos mais vendidos.
+ *
+ * As agregações por cliente e por região partem das colunas total e
+ * quantidade_itens de pedidos (sem ler itens_pedido), agrupadas primeiro por
+ * cliente_id num índice de cobertura. As agregações por produto leem apenas o
+ * índice de cobertura (produto_id, quantidade) de itens_pedido. Em ambos os
+ * casos só as linhas já agregadas chegam ao Java.
+ */
+class MotorRelatorios {
+
+    /**
+     * Visões disponíveis. A coluna "quantidade" é o número de itens (linhas de
+     * pedido) nas visões por cliente/região e o número de unidades nas por produto.
+     */
+    enum Agrupamento {
+        CLIENTE("Receita por cliente", "Cliente", "Itens"),
+        ESTADO("Receita por estado", "Estado", "Itens"),
+        CIDADE("Receita por cidade", "Cidade", "Itens"),
+        PAIS("Receita por país", "País", "Itens"),
+        PRODUTO("Receita por produto", "Produto", "Unidades"),
+        MAIS_VENDIDOS("Produtos mais vendidos", "Produto", "Unidades");
+
+        final String titulo;
+        final String colunaChave;
+        final String colunaQuantidade;
+
+        Agrupamento(String titulo, String colunaChave, String colunaQuantidade) {
+            this.titulo = titulo;
+            this.colunaChave = colunaChave;
+            this.colunaQuantidade = colunaQuantidade;
+        }
+
+        @Override
+        public String toString() {
+            return titulo;
+        }
+    }
+
+    /**
+     * Uma linha agregada do relatório.
+     */
+    static class LinhaRelatorio {
+        final String chave;
+        final long pedidos;
+        final long quantidade;
+        final double receita;
+
+        LinhaRelatorio(String chave, long pedidos, long quantidade, double receita) {
+            this.chave = chave;
+            this.pedidos = pedidos;
+            this.quantidade = quantidade;
+            this.receita = receita;
+        }
+    }
+
+    // Totais por cliente, lidos do índice de cobertura idx_pedidos_cliente_totais (ver MigracoesEsquema)
+    private static final String SQL_POR_CLIENTE_ID = "SELECT cliente_id, COUNT(*) AS pedidos, " +
+            "SUM(quantidade_itens) AS quantidade, SUM(total) AS receita FROM pedidos GROUP BY cliente_id";
+
+    // Totais por produto, lidos do índice de cobertura idx_itens_pedido_produto_quantidade
+    private static final String SQL_POR_PRODUTO_ID = "SELECT produto_id, COUNT(*) AS pedidos, " +
+            "SUM(quantidade) AS quantidade FROM itens_pedido GROUP BY produto_id";
+
+    private final GerenciadorConexoes conexoes;
+
+    public MotorRelatorios(GerenciadorConexoes conexoes) {
+        this.conexoes = conexoes;
+    }
+
+    /**
+     * Executa a visão pedida, ordenada pela receita (ou pelas unidades, em
+     * MAIS_VENDIDOS) em ordem decrescente, limitada às 'limite' primeiras linhas.
+     */
+    public List<LinhaRelatorio> agregar(Agrupamento agrupamento, int limite) throws SQLException {
+        String sql;
+        switch (agrupamento) {
+            case CLIENTE:
+                sql = "SELECT c.nome, t.pedidos, t.quantidade, t.receita FROM (" + SQL_POR_CLIENTE_ID + ") t " +
+                        "JOIN clientes c ON c.id = t.cliente_id ORDER BY t.receita DESC LIMIT ?";
+                break;
+            case ESTADO:
+            case CIDADE:
+            case PAIS:
+                String coluna = agrupamento == Agrupamento.ESTADO ? "estado" : agrupamento == Agrupamento.CIDADE ? "cidade" : "pais";
+                sql = "SELECT COALESCE(NULLIF(c." + coluna + ", ''), '(não informado)') AS chave, SUM(t.pedidos) AS pedidos, " +
+                        "SUM(t.quantidade) AS quantidade, SUM(t.receita) AS receita FROM (" + SQL_POR_CLIENTE_ID + ") t " +
+                        "JOIN clientes c ON c.id = t.cliente_id GROUP BY chave ORDER BY receita DESC LIMIT ?";
+                break;
+            case PRODUTO:
+            case MAIS_VENDIDOS:
+                // Receita a preço corrente, como ItemPedido.getSubtotal
+                sql = "SELECT pr.nome, t.pedidos, t.quantidade, t.quantidade * pr.preco AS receita FROM (" + SQL_POR_PRODUTO_ID + ") t " +
+                        "JOIN produtos pr ON pr.id = t.produto_id ORDER BY " +
+                        (agrupamento == Agrupamento.PRODUTO ? "receita DESC" : "t.quantidade DESC, receita DESC") + " LIMIT ?";
+                break;
+            default:
+                throw new IllegalArgumentException("Agrupamento desconhecido: " + agrupamento);
+        }
+        return conexoes.ler(statements -> {
+            List<LinhaRelatorio> linhas = new ArrayList<>();
+            try (PreparedStatement pstmt = statements.preparar(sql)) {
+                pstmt.setInt(1, limite);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        linhas.add(new LinhaRelatorio(rs.getString(1), rs.getLong(2), rs.getLong(3), rs.getDouble(4)));
+                    }
+                }
+            }
+            return linhas;
+        });
+    }
+
+    /**
+     * Número de pedidos, de itens e receita total, a partir dos totais gravados em pedidos.
+     */
+    public LinhaRelatorio totalGeral() throws SQLException {
+        String sql = "SELECT COUNT(*), COALESCE(SUM(quantidade_itens), 0), COALESCE(SUM(total), 0) FROM pedidos";
+        return conexoes.ler(statements -> {
+            try (PreparedStatement pstmt = statements.preparar(sql);
+                 ResultSet rs = pstmt.executeQuery()) {
+                rs.next();
+                return new LinhaRelatorio("Total geral", rs.getLong(1), rs.getLong(2), rs.getDouble(3));
+            }
+        });
+    }
+}
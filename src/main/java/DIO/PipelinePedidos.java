@@ -0,0 +1,351 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Ingestão em massa de pedidos a partir de arquivo CSV, em estágios ligados por
+ * filas limitadas:
+ *
+ *   leitura (1 thread) -> resolução/validação (N threads) -> gravação (thread chamadora)
+ *
+ * Formato: "referencia;email_cliente;nome_produto;quantidade", uma linha por item;
+ * linhas consecutivas com a mesma referência formam um pedido.
+ *
+ * A leitura agrupa as linhas em pedidos brutos; a validação resolve cliente e
+ * produtos (com cache compartilhado entre as threads, inclusive para chaves
+ * inexistentes) e aplica as regras; a gravação junta vários pedidos numa única
+ * transação com PedidoDAO.salvarLote. As filas limitadas fazem um estágio mais
+ * rápido esperar o mais lento, mantendo a memória constante.
+ * Pedidos são gravados na ordem em que terminam a validação, não necessariamente
+ * na ordem do arquivo.
+ */
+class PipelinePedidos {
+    static final int CAPACIDADE_FILA = 1024;
+    static final int PEDIDOS_POR_TRANSACAO = 500;
+    private static final long INTERVALO_MONITOR_MS = 250;
+
+    /**
+     * Busca uma entidade pela chave natural (email do cliente, nome do produto); null se não existir.
+     */
+    interface Resolvedor<T> {
+        T buscar(String chave) throws SQLException;
+    }
+
+    /**
+     * Recebe periodicamente a vazão e a profundidade de cada fila do pipeline.
+     */
+    interface Monitor {
+        void atualizar(long pedidosGravados, double pedidosPorSegundo, int percentualLido,
+                       int filaValidacao, int filaGravacao);
+    }
+
+    /**
+     * Totais da ingestão, com a vazão média de gravação.
+     */
+    static class Resultado extends ImportadorCSV.Resultado {
+        final long duracaoMs;
+
+        Resultado(long lidas, long importadas, long rejeitadas, File arquivoRejeitados, long duracaoMs) {
+            super(lidas, importadas, rejeitadas, arquivoRejeitados);
+            this.duracaoMs = duracaoMs;
+        }
+
+        double getPedidosPorSegundo() {
+            return importadas * 1000.0 / Math.max(1, duracaoMs);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d linhas lidas, %d pedidos importados, %d rejeitados em %.1f s (%.0f pedidos/s)",
+                    lidas, importadas, rejeitadas, duracaoMs / 1000.0, getPedidosPorSegundo());
+        }
+    }
+
+    // Linhas de um pedido como vieram do arquivo
+    private static class PedidoBruto {
+        final String referencia;
+        final List<Long> numerosLinha = new ArrayList<>();
+        final List<String> textos = new ArrayList<>();
+        final List<String[]> campos = new ArrayList<>();
+
+        PedidoBruto(String referencia) {
+            this.referencia = referencia;
+        }
+    }
+
+    // Pedido pronto para gravar, ou o motivo da rejeição
+    private static class PedidoValidado {
+        final PedidoBruto bruto;
+        final Pedido pedido;
+        final String motivo;
+
+        PedidoValidado(PedidoBruto bruto, Pedido pedido, String motivo) {
+            this.bruto = bruto;
+            this.pedido = pedido;
+            this.motivo = motivo;
+        }
+    }
+
+    // Marcadores de fim de fluxo
+    private static final PedidoBruto FIM_LEITURA = new PedidoBruto(null);
+    private static final PedidoValidado FIM_VALIDACAO = new PedidoValidado(null, null, null);
+
+    private final Resolvedor<Cliente> resolvedorClientes;
+    private final Resolvedor<Produto> resolvedorProdutos;
+    private final PedidoDAO pedidoDAO;
+    private final int validadores;
+
+    public PipelinePedidos(Resolvedor<Cliente> resolvedorClientes, Resolvedor<Produto> resolvedorProdutos,
+                           PedidoDAO pedidoDAO, int validadores) {
+        this.resolvedorClientes = resolvedorClientes;
+        this.resolvedorProdutos = resolvedorProdutos;
+        this.pedidoDAO = pedidoDAO;
+        this.validadores = Math.max(1, validadores);
+    }
+
+    public Resultado importar(File arquivo, Monitor monitor, BooleanSupplier cancelado) throws IOException, SQLException {
+        long inicio = System.nanoTime();
+        BlockingQueue<PedidoBruto> filaValidacao = new ArrayBlockingQueue<>(CAPACIDADE_FILA);
+        BlockingQueue<PedidoValidado> filaGravacao = new ArrayBlockingQueue<>(CAPACIDADE_FILA);
+        AtomicReference<Exception> falha = new AtomicReference<>();
+        AtomicLong linhasLidas = new AtomicLong();
+        AtomicLong caracteresLidos = new AtomicLong();
+
+        Map<String, Optional<Cliente>> clientes = new ConcurrentHashMap<>();
+        Map<String, Optional<Produto>> produtos = new ConcurrentHashMap<>();
+
+        List<Thread> threads = new ArrayList<>();
+        threads.add(new Thread(() -> ler(arquivo, filaValidacao, linhasLidas, caracteresLidos, falha, cancelado), "erp-pedidos-leitura"));
+        for (int i = 1; i <= validadores; i++) {
+            threads.add(new Thread(() -> validar(filaValidacao, filaGravacao, clientes, produtos, falha),
+                    "erp-pedidos-validacao-" + i));
+        }
+        for (Thread thread : threads) {
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        File arquivoRejeitados = new File(arquivo.getAbsolutePath() + ImportadorCSV.SUFIXO_REJEITADOS);
+        long tamanhoArquivo = Math.max(1, arquivo.length());
+        long importados = 0, rejeitados = 0, ultimoMonitor = 0;
+        BufferedWriter saidaRejeitados = null;
+        try {
+            List<PedidoValidado> recebidos = new ArrayList<>(PEDIDOS_POR_TRANSACAO);
+            List<Pedido> lote = new ArrayList<>(PEDIDOS_POR_TRANSACAO);
+            int validadoresAtivos = validadores;
+            while (validadoresAtivos > 0) {
+                if (falha.get() != null) {
+                    break;
+                }
+                if (cancelado != null && cancelado.getAsBoolean()) {
+                    throw new CancellationException("Importação cancelada.");
+                }
+                PedidoValidado primeiro = filaGravacao.poll(INTERVALO_MONITOR_MS, TimeUnit.MILLISECONDS);
+                if (primeiro != null) {
+                    recebidos.add(primeiro);
+                    filaGravacao.drainTo(recebidos, PEDIDOS_POR_TRANSACAO - 1);
+                }
+                for (PedidoValidado validado : recebidos) {
+                    if (validado == FIM_VALIDACAO) {
+                        validadoresAtivos--;
+                    } else if (validado.motivo == null) {
+                        lote.add(validado.pedido);
+                    } else {
+                        if (saidaRejeitados == null) {
+                            saidaRejeitados = Files.newBufferedWriter(arquivoRejeitados.toPath(), StandardCharsets.UTF_8);
+                            saidaRejeitados.write("linha;motivo;conteudo\n");
+                        }
+                        escreverRejeitado(saidaRejeitados, validado);
+                        rejeitados++;
+                    }
+                }
+                recebidos.clear();
+                if (!lote.isEmpty()) {
+                    // Vários pedidos por transação: um commit a cada PEDIDOS_POR_TRANSACAO pedidos
+                    pedidoDAO.salvarLote(lote);
+                    importados += lote.size();
+                    lote.clear();
+                }
+                long agora = System.nanoTime();
+                if (monitor != null && (agora - ultimoMonitor >= TimeUnit.MILLISECONDS.toNanos(INTERVALO_MONITOR_MS) || validadoresAtivos == 0)) {
+                    ultimoMonitor = agora;
+                    double segundos = Math.max(1e-9, (agora - inicio) / 1e9);
+                    monitor.atualizar(importados, importados / segundos,
+                            (int) Math.min(100, caracteresLidos.get() * 100 / tamanhoArquivo),
+                            filaValidacao.size(), filaGravacao.size());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Importação interrompida.");
+        } finally {
+            // Encerra os estágios que ainda estejam bloqueados nas filas (erro ou cancelamento)
+            for (Thread thread : threads) {
+                thread.interrupt();
+            }
+            if (saidaRejeitados != null) {
+                saidaRejeitados.close();
+            }
+        }
+        Exception erro = falha.get();
+        if (erro instanceof IOException) {
+            throw (IOException) erro;
+        } else if (erro instanceof SQLException) {
+            throw (SQLException) erro;
+        } else if (erro instanceof RuntimeException) {
+            throw (RuntimeException) erro;
+        } else if (erro != null) {
+            throw new IllegalStateException(erro);
+        }
+        if (rejeitados == 0) {
+            Files.deleteIfExists(arquivoRejeitados.toPath());
+        }
+        long duracaoMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio);
+        return new Resultado(linhasLidas.get(), importados, rejeitados, rejeitados == 0 ? null : arquivoRejeitados, duracaoMs);
+    }
+
+    // Estágio 1: lê o arquivo e agrupa linhas consecutivas de mesma referência
+    private void ler(File arquivo, BlockingQueue<PedidoBruto> saida, AtomicLong linhasLidas, AtomicLong caracteresLidos,
+                     AtomicReference<Exception> falha, BooleanSupplier cancelado) {
+        try (BufferedReader leitor = Files.newBufferedReader(arquivo.toPath(), StandardCharsets.UTF_8)) {
+            PedidoBruto atual = null;
+            String texto;
+            long numero = 0;
+            while ((texto = leitor.readLine()) != null) {
+                numero++;
+                caracteresLidos.addAndGet(texto.length() + 1);
+                if (numero == 1 && texto.startsWith("\uFEFF")) {
+                    texto = texto.substring(1);
+                }
+                if (texto.isBlank() || (numero == 1 && texto.trim().toLowerCase().startsWith("referencia"))) {
+                    continue;
+                }
+                String[] campos = ImportadorCSV.dividir(texto);
+                if (atual == null || !atual.referencia.equals(campos[0])) {
+                    if (atual != null) {
+                        saida.put(atual);
+                    }
+                    if (cancelado != null && cancelado.getAsBoolean()) {
+                        return;
+                    }
+                    atual = new PedidoBruto(campos[0]);
+                }
+                atual.numerosLinha.add(numero);
+                atual.textos.add(texto);
+                atual.campos.add(campos);
+                linhasLidas.set(numero);
+            }
+            if (atual != null) {
+                saida.put(atual);
+            }
+        } catch (IOException | RuntimeException e) {
+            // Qualquer falha é registrada: a thread de gravação para ao vê-la (sem o fim da leitura,
+            // os validadores e a gravação esperariam para sempre)
+            falha.compareAndSet(null, e);
+        } catch (InterruptedException e) {
+            return; // pipeline encerrado pela thread de gravação
+        }
+        try {
+            // Um marcador por validador, para que todos encerrem
+            for (int i = 0; i < validadores; i++) {
+                saida.put(FIM_LEITURA);
+            }
+        } catch (InterruptedException e) {
+            // Pipeline encerrado pela thread de gravação
+        }
+    }
+
+    // Estágio 2: resolve cliente e produtos e valida o pedido
+    private void validar(BlockingQueue<PedidoBruto> entrada, BlockingQueue<PedidoValidado> saida,
+                         Map<String, Optional<Cliente>> clientes, Map<String, Optional<Produto>> produtos,
+                         AtomicReference<Exception> falha) {
+        try {
+            PedidoBruto bruto;
+            while ((bruto = entrada.take()) != FIM_LEITURA) {
+                saida.put(montarPedido(bruto, clientes, produtos));
+            }
+            saida.put(FIM_VALIDACAO);
+        } catch (SQLException | RuntimeException e) {
+            // Sem FIM_VALIDACAO a gravação esperaria este validador para sempre: para pela falha
+            falha.compareAndSet(null, e);
+        } catch (InterruptedException e) {
+            // Pipeline encerrado pela thread de gravação
+        }
+    }
+
+    private PedidoValidado montarPedido(PedidoBruto bruto, Map<String, Optional<Cliente>> clientes,
+                                        Map<String, Optional<Produto>> produtos) throws SQLException {
+        String email = null;
+        // Quantidades somadas por produto: itens_pedido tem um registro por (pedido, produto)
+        Map<Produto, Integer> quantidades = new LinkedHashMap<>();
+        for (String[] campos : bruto.campos) {
+            if (campos.length < 4) {
+                return rejeitar(bruto, "esperados 4 campos, encontrados " + campos.length);
+            }
+            if (email == null) {
+                email = campos[1];
+            } else if (!email.equalsIgnoreCase(campos[1])) {
+                return rejeitar(bruto, "linhas do mesmo pedido com clientes diferentes");
+            }
+            int quantidade;
+            try {
+                quantidade = Integer.parseInt(campos[3]);
+            } catch (NumberFormatException e) {
+                return rejeitar(bruto, "quantidade inválida: " + campos[3]);
+            }
+            if (quantidade <= 0) {
+                return rejeitar(bruto, "a quantidade deve ser maior que zero");
+            }
+            Produto produto = resolver(produtos, campos[2], resolvedorProdutos);
+            if (produto == null) {
+                return rejeitar(bruto, "produto não encontrado: " + campos[2]);
+            }
+            quantidades.merge(produto, quantidade, Integer::sum);
+        }
+        Cliente cliente = resolver(clientes, email, resolvedorClientes);
+        if (cliente == null) {
+            return rejeitar(bruto, "cliente não encontrado: " + email);
+        }
+        Pedido pedido = new Pedido(cliente);
+        quantidades.forEach((produto, quantidade) -> pedido.adicionarItem(new ItemPedido(produto, quantidade)));
+        return new PedidoValidado(bruto, pedido, null);
+    }
+
+    // Consulta o banco uma única vez por chave, guardando também as chaves inexistentes
+    private static <T> T resolver(Map<String, Optional<T>> cache, String chave, Resolvedor<T> resolvedor) throws SQLException {
+        Optional<T> encontrado = cache.get(chave);
+        if (encontrado == null) {
+            encontrado = Optional.ofNullable(resolvedor.buscar(chave));
+            cache.putIfAbsent(chave, encontrado);
+        }
+        return encontrado.orElse(null);
+    }
+
+    private static PedidoValidado rejeitar(PedidoBruto bruto, String motivo) {
+        return new PedidoValidado(bruto, null, motivo);
+    }
+
+    private static void escreverRejeitado(BufferedWriter saida, PedidoValidado validado) throws IOException {
+        String motivo = validado.motivo.replace(';', ',');
+        for (int i = 0; i < validado.bruto.textos.size(); i++) {
+            saida.write(validado.bruto.numerosLinha.get(i) + ";" + motivo + ";" + validado.bruto.textos.get(i) + "\n");
+        }
+    }
+}
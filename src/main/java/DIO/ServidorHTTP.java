@@ -0,0 +1,631 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * API HTTP/JSON do ERP para o modo sem interface (java Main --servidor [porta]).
+ * Expõe as operações do ERPController sobre clientes, produtos, pedidos e relatórios:
+ *
+ * <pre>
+ * GET    /clientes?aposId=0&amp;limite=100   página por id (também /produtos e /pedidos)
+ * GET    /clientes/busca?q=texto&amp;limite=20 busca textual (também /produtos/busca)
+ * GET    /clientes/{id}                   (também /produtos/{id} e /pedidos/{id})
+ * POST   /clientes                        corpo: {"nome", "email", "telefone", ...}
+ * PUT    /clientes/{id}
+ * DELETE /clientes/{id}                   409 se houver pedidos do cliente
+ * POST   /produtos                        corpo: {"nome", "preco"}
+ * POST   /pedidos                         corpo: {"clienteId", "itens": [{"produtoId", "quantidade"}]}
+ * GET    /relatorios/{agrupamento}?limite=20   agrupamento de MotorRelatorios.Agrupamento
+ * GET    /relatorios/total
+ * GET    /metricas                        formato texto do Prometheus
+ * </pre>
+ *
+ * Cada requisição roda numa thread virtual quando a JVM oferece (Java 21+); nas
+ * versões anteriores, num pool limitado de threads de plataforma. No máximo
+ * -Derp.http.requisicoes requisições (padrão 256) são atendidas ao mesmo tempo:
+ * a vaga é reservada na thread do HttpServer, antes de entregar a requisição ao
+ * executor, e as excedentes recebem 503 com Retry-After na hora, atendidas por
+ * poucas threads próprias, em vez de acumular fila. Se até essa fila encher, o
+ * HttpServer fecha a conexão.
+ *
+ * Corpos acima de CORPO_MAXIMO bytes recebem 413; JSON malformado ou aninhado
+ * demais (Json.PROFUNDIDADE_MAXIMA), 400; outras falhas inesperadas, 500.
+ */
+class ServidorHTTP implements AutoCloseable {
+    static final int PORTA_PADRAO = 8080;
+    static final int REQUISICOES_PADRAO = 256;
+    private static final int LIMITE_PAGINA_PADRAO = 100;
+    private static final int LIMITE_PAGINA_MAXIMO = 1000;
+    private static final int CORPO_MAXIMO = 1 << 20;
+    private static final int THREADS_RECUSA = 2;
+
+    // Marca a thread que executa uma requisição com vaga reservada (ver despachar)
+    private static final ThreadLocal<Boolean> COM_VAGA = new ThreadLocal<>();
+
+    /**
+     * Erro da requisição, respondido com o status indicado e {"erro": mensagem}.
+     */
+    static class ErroHTTP extends RuntimeException {
+        final int status;
+
+        ErroHTTP(int status, String mensagem) {
+            super(mensagem);
+            this.status = status;
+        }
+    }
+
+    // Corpo e status de uma resposta; corpo null responde 204 sem conteúdo
+    private static class Resposta {
+        final int status;
+        final Object corpo;
+        final boolean texto;
+
+        Resposta(int status, Object corpo, boolean texto) {
+            this.status = status;
+            this.corpo = corpo;
+            this.texto = texto;
+        }
+
+        static Resposta json(int status, Object corpo) {
+            return new Resposta(status, corpo, false);
+        }
+    }
+
+    private final ERPController controller;
+    private final HttpServer servidor;
+    private final ExecutorService executor;
+    private final ExecutorService recusas;
+    private final Semaphore vagas;
+
+    public ServidorHTTP(ERPController controller, int porta, int maxRequisicoes) throws IOException {
+        this.controller = controller;
+        this.vagas = new Semaphore(maxRequisicoes);
+        this.executor = criarExecutor(maxRequisicoes);
+        this.recusas = criarPool("erp-http-recusa-", THREADS_RECUSA, new ArrayBlockingQueue<>(maxRequisicoes));
+        this.servidor = HttpServer.create(new InetSocketAddress(porta), Integer.getInteger("erp.http.backlog", 0));
+        servidor.createContext("/", this::atender);
+        servidor.setExecutor(this::despachar);
+    }
+
+    public void iniciar() {
+        servidor.start();
+    }
+
+    public int getPorta() {
+        return servidor.getAddress().getPort();
+    }
+
+    /**
+     * Para de aceitar conexões e aguarda até 5 segundos as requisições em andamento.
+     */
+    @Override
+    public void close() {
+        servidor.stop(0);
+        executor.shutdown();
+        recusas.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Thread virtual por requisição quando disponível (Executors.newVirtualThreadPerTaskExecutor,
+    // Java 21+, procurado por reflexão pois o projeto compila para Java 17)
+    private static ExecutorService criarExecutor(int maxRequisicoes) {
+        try {
+            Method virtual = java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) virtual.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            // Uma thread por vaga; só recebe requisições com vaga reservada, então a fila
+            // nunca passa de maxRequisicoes (só cobre a liberação da vaga antes da thread)
+            return criarPool("erp-http-", maxRequisicoes, new LinkedBlockingQueue<>());
+        }
+    }
+
+    // Threads daemon; fila cheia rejeita a tarefa (AbortPolicy)
+    private static ThreadPoolExecutor criarPool(String prefixo, int threads, java.util.concurrent.BlockingQueue<Runnable> fila) {
+        AtomicInteger contador = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, fila, r -> {
+            Thread t = new Thread(r, prefixo + contador.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    // Executor do HttpServer, chamado na thread que aceita as conexões: não pode esperar.
+    // Sem vaga, a requisição vai para o pool de recusas, que responde 503; se ele também
+    // rejeitar, o HttpServer fecha a conexão
+    private void despachar(Runnable requisicao) {
+        if (!vagas.tryAcquire()) {
+            recusas.execute(requisicao);
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                COM_VAGA.set(Boolean.TRUE);
+                try {
+                    requisicao.run();
+                } finally {
+                    COM_VAGA.remove();
+                    vagas.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            vagas.release();
+            throw e;
+        }
+    }
+
+    private void atender(HttpExchange troca) {
+        try {
+            if (COM_VAGA.get() == null) {
+                troca.getResponseHeaders().set("Retry-After", "1");
+                responder(troca, Resposta.json(503, erro("Servidor ocupado, tente novamente")));
+                return;
+            }
+            responder(troca, tratar(troca));
+        } catch (IOException e) {
+            // Cliente desconectou antes de receber a resposta
+        } finally {
+            troca.close();
+        }
+    }
+
+    private Resposta tratar(HttpExchange troca) throws IOException {
+        try {
+            String metodo = troca.getRequestMethod();
+            String[] caminho = segmentos(troca.getRequestURI().getRawPath());
+            Map<String, String> parametros = parametros(troca.getRequestURI().getRawQuery());
+            if (caminho.length == 0) {
+                throw new ErroHTTP(404, "Recurso não encontrado");
+            }
+            switch (caminho[0]) {
+                case "clientes":
+                    return clientes(metodo, caminho, parametros, troca);
+                case "produtos":
+                    return produtos(metodo, caminho, parametros, troca);
+                case "pedidos":
+                    return pedidos(metodo, caminho, parametros, troca);
+                case "relatorios":
+                    return relatorios(metodo, caminho, parametros);
+                case "metricas":
+                    exigirMetodo(metodo, "GET");
+                    Metricas metricas = controller.getMetricas();
+                    if (metricas == null) {
+                        throw new ErroHTTP(404, "Métricas desligadas (-Derp.metricas=false)");
+                    }
+                    return new Resposta(200, metricas.formatarTexto(), true);
+                default:
+                    throw new ErroHTTP(404, "Recurso não encontrado");
+            }
+        } catch (ErroHTTP e) {
+            return Resposta.json(e.status, erro(e.getMessage()));
+        } catch (IllegalArgumentException | ClassCastException e) {
+            return Resposta.json(400, erro(e.getMessage()));
+        } catch (SQLException e) {
+            // Código 0: regra de negócio das DAOs (ex.: e-mail repetido); 19: restrição do SQLite
+            if (e.getErrorCode() == 0 || (e.getErrorCode() & 0xFF) == 19) {
+                return Resposta.json(409, erro(e.getMessage()));
+            }
+            e.printStackTrace();
+            return Resposta.json(500, erro("Erro de banco de dados: " + e.getMessage()));
+        } catch (StackOverflowError e) {
+            // Json.ler limita o aninhamento; qualquer outra recursão sem fim vem da entrada
+            return Resposta.json(400, erro("Requisição aninhada demais"));
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            return Resposta.json(500, erro("Erro interno do servidor"));
+        }
+    }
+
+    // ==================== Recursos ====================
+
+    private Resposta clientes(String metodo, String[] caminho, Map<String, String> parametros, HttpExchange troca)
+            throws IOException, SQLException {
+        if (caminho.length == 1) {
+            if ("POST".equals(metodo)) {
+                Cliente salvo = controller.adicionarCliente(lerCliente(0, lerCorpo(troca)));
+                return Resposta.json(201, jsonCliente(salvo));
+            }
+            exigirMetodo(metodo, "GET");
+            List<Map<String, Object>> pagina = new ArrayList<>();
+            for (Cliente c : controller.getClientesPagina(aposId(parametros), limite(parametros, LIMITE_PAGINA_PADRAO))) {
+                pagina.add(jsonCliente(c));
+            }
+            return Resposta.json(200, pagina);
+        }
+        if (caminho.length == 2 && "busca".equals(caminho[1])) {
+            exigirMetodo(metodo, "GET");
+            List<Map<String, Object>> encontrados = new ArrayList<>();
+            for (Cliente c : controller.buscarClientes(parametros.getOrDefault("q", ""), limite(parametros, 20))) {
+                encontrados.add(jsonCliente(c));
+            }
+            return Resposta.json(200, encontrados);
+        }
+        long id = id(caminho);
+        switch (metodo) {
+            case "GET":
+                return Resposta.json(200, jsonCliente(existente(controller.buscarCliente(id), "Cliente", id)));
+            case "PUT":
+                Cliente cliente = lerCliente(id, lerCorpo(troca));
+                if (!controller.atualizarCliente(cliente)) {
+                    throw naoEncontrado("Cliente", id);
+                }
+                return Resposta.json(200, jsonCliente(cliente));
+            case "DELETE":
+                existente(controller.buscarCliente(id), "Cliente", id);
+                if (!controller.removerCliente(id)) {
+                    throw new ErroHTTP(409, "O cliente " + id + " possui pedidos e não pode ser excluído");
+                }
+                return Resposta.json(204, null);
+            default:
+                throw metodoNaoPermitido(metodo);
+        }
+    }
+
+    private Resposta produtos(String metodo, String[] caminho, Map<String, String> parametros, HttpExchange troca)
+            throws IOException, SQLException {
+        if (caminho.length == 1) {
+            if ("POST".equals(metodo)) {
+                Produto salvo = controller.adicionarProduto(lerProduto(0, lerCorpo(troca)));
+                return Resposta.json(201, jsonProduto(salvo));
+            }
+            exigirMetodo(metodo, "GET");
+            List<Map<String, Object>> pagina = new ArrayList<>();
+            for (Produto p : controller.getProdutosPagina(aposId(parametros), limite(parametros, LIMITE_PAGINA_PADRAO))) {
+                pagina.add(jsonProduto(p));
+            }
+            return Resposta.json(200, pagina);
+        }
+        if (caminho.length == 2 && "busca".equals(caminho[1])) {
+            exigirMetodo(metodo, "GET");
+            List<Map<String, Object>> encontrados = new ArrayList<>();
+            for (Produto p : controller.buscarProdutos(parametros.getOrDefault("q", ""), limite(parametros, 20))) {
+                encontrados.add(jsonProduto(p));
+            }
+            return Resposta.json(200, encontrados);
+        }
+        long id = id(caminho);
+        switch (metodo) {
+            case "GET":
+                return Resposta.json(200, jsonProduto(existente(controller.buscarProduto(id), "Produto", id)));
+            case "PUT":
+                Produto produto = lerProduto(id, lerCorpo(troca));
+                if (!controller.atualizarProduto(produto)) {
+                    throw naoEncontrado("Produto", id);
+                }
+                return Resposta.json(200, jsonProduto(produto));
+            case "DELETE":
+                existente(controller.buscarProduto(id), "Produto", id);
+                if (!controller.removerProduto(id)) {
+                    throw new ErroHTTP(409, "O produto " + id + " está em pedidos e não pode ser excluído");
+                }
+                return Resposta.json(204, null);
+            default:
+                throw metodoNaoPermitido(metodo);
+        }
+    }
+
+    private Resposta pedidos(String metodo, String[] caminho, Map<String, String> parametros, HttpExchange troca)
+            throws IOException, SQLException {
+        if (caminho.length == 1) {
+            if ("POST".equals(metodo)) {
+                Pedido salvo = controller.adicionarPedido(lerPedido(0, lerCorpo(troca)));
+                return Resposta.json(201, jsonPedido(salvo));
+            }
+            exigirMetodo(metodo, "GET");
+            // Listagem por resumos: total e itens sem carregar os itens de cada pedido
+            List<Map<String, Object>> pagina = new ArrayList<>();
+            for (ResumoPedido r : controller.getResumosPedidosPagina(aposId(parametros), limite(parametros, LIMITE_PAGINA_PADRAO))) {
+                Map<String, Object> json = new LinkedHashMap<>();
+                json.put("id", r.getId());
+                json.put("clienteId", r.getClienteId());
+                json.put("clienteNome", r.getClienteNome());
+                json.put("total", r.getTotal());
+                json.put("quantidadeItens", r.getQuantidadeItens());
+                pagina.add(json);
+            }
+            return Resposta.json(200, pagina);
+        }
+        long id = id(caminho);
+        switch (metodo) {
+            case "GET":
+                return Resposta.json(200, jsonPedido(existente(controller.buscarPedido(id), "Pedido", id)));
+            case "PUT":
+                // PedidoDAO.atualizar não distingue pedido inexistente: verifica antes
+                existente(controller.buscarPedido(id), "Pedido", id);
+                Pedido pedido = lerPedido(id, lerCorpo(troca));
+                controller.atualizarPedido(pedido);
+                return Resposta.json(200, jsonPedido(pedido));
+            case "DELETE":
+                if (!controller.removerPedido(id)) {
+                    throw naoEncontrado("Pedido", id);
+                }
+                return Resposta.json(204, null);
+            default:
+                throw metodoNaoPermitido(metodo);
+        }
+    }
+
+    private Resposta relatorios(String metodo, String[] caminho, Map<String, String> parametros) throws SQLException {
+        exigirMetodo(metodo, "GET");
+        if (caminho.length != 2) {
+            throw new ErroHTTP(404, "Use /relatorios/{agrupamento} ou /relatorios/total");
+        }
+        if ("total".equals(caminho[1])) {
+            return Resposta.json(200, jsonLinha(controller.getTotalGeral()));
+        }
+        MotorRelatorios.Agrupamento agrupamento;
+        try {
+            agrupamento = MotorRelatorios.Agrupamento.valueOf(caminho[1].toUpperCase(Locale.ROOT).replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            throw new ErroHTTP(404, "Agrupamento desconhecido: " + caminho[1]);
+        }
+        List<Map<String, Object>> linhas = new ArrayList<>();
+        for (MotorRelatorios.LinhaRelatorio linha : controller.getRelatorio(agrupamento, limite(parametros, 20))) {
+            linhas.add(jsonLinha(linha));
+        }
+        return Resposta.json(200, linhas);
+    }
+
+    // ==================== Conversões ====================
+
+    private static Map<String, Object> jsonCliente(Cliente c) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("id", c.getId());
+        json.put("nome", c.getNome());
+        json.put("email", c.getEmail());
+        json.put("telefone", c.getTelefone());
+        json.put("endereco", c.getEndereco());
+        json.put("cidade", c.getCidade());
+        json.put("estado", c.getEstado());
+        json.put("pais", c.getPais());
+        return json;
+    }
+
+    private static Map<String, Object> jsonProduto(Produto p) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("id", p.getId());
+        json.put("nome", p.getNome());
+        json.put("preco", p.getPreco());
+        return json;
+    }
+
+    private static Map<String, Object> jsonPedido(Pedido p) {
+        List<Map<String, Object>> itens = new ArrayList<>();
+        for (ItemPedido item : p.getItens()) {
+            Map<String, Object> json = new LinkedHashMap<>();
+            json.put("produto", jsonProduto(item.getProduto()));
+            json.put("quantidade", item.getQuantidade());
+            json.put("subtotal", item.getSubtotal());
+            itens.add(json);
+        }
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("id", p.getId());
+        json.put("cliente", jsonCliente(p.getCliente()));
+        json.put("itens", itens);
+        json.put("total", p.getTotal());
+        return json;
+    }
+
+    private static Map<String, Object> jsonLinha(MotorRelatorios.LinhaRelatorio linha) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("chave", linha.chave);
+        json.put("pedidos", linha.pedidos);
+        json.put("quantidade", linha.quantidade);
+        json.put("receita", linha.receita);
+        return json;
+    }
+
+    private static Cliente lerCliente(long id, Map<String, Object> json) {
+        return new Cliente(id, obrigatorio(json, "nome"), obrigatorio(json, "email"), texto(json, "telefone"),
+                texto(json, "endereco"), texto(json, "cidade"), texto(json, "estado"), texto(json, "pais"));
+    }
+
+    private static Produto lerProduto(long id, Map<String, Object> json) {
+        Object preco = json.get("preco");
+        if (!(preco instanceof Number) || ((Number) preco).doubleValue() < 0) {
+            throw new ErroHTTP(400, "Campo 'preco' deve ser um número não negativo");
+        }
+        return new Produto(id, obrigatorio(json, "nome"), ((Number) preco).doubleValue());
+    }
+
+    private Pedido lerPedido(long id, Map<String, Object> json) throws SQLException {
+        long clienteId = numero(json, "clienteId");
+        Cliente cliente = controller.buscarCliente(clienteId);
+        if (cliente == null) {
+            throw new ErroHTTP(400, "Cliente " + clienteId + " não existe");
+        }
+        Object itens = json.get("itens");
+        if (!(itens instanceof List) || ((List<?>) itens).isEmpty()) {
+            throw new ErroHTTP(400, "Campo 'itens' deve ser uma lista não vazia");
+        }
+        Pedido pedido = id == 0 ? new Pedido(cliente) : new Pedido(id, cliente);
+        for (Object item : (List<?>) itens) {
+            if (!(item instanceof Map)) {
+                throw new ErroHTTP(400, "Cada item deve ser um objeto {\"produtoId\", \"quantidade\"}");
+            }
+            @SuppressWarnings("unchecked")
+            Map<String, Object> campos = (Map<String, Object>) item;
+            long produtoId = numero(campos, "produtoId");
+            long quantidade = numero(campos, "quantidade");
+            if (quantidade <= 0 || quantidade > Integer.MAX_VALUE) {
+                throw new ErroHTTP(400, "Quantidade inválida para o produto " + produtoId);
+            }
+            Produto produto = controller.buscarProduto(produtoId);
+            if (produto == null) {
+                throw new ErroHTTP(400, "Produto " + produtoId + " não existe");
+            }
+            pedido.adicionarItem(new ItemPedido(produto, (int) quantidade));
+        }
+        return pedido;
+    }
+
+    private static String obrigatorio(Map<String, Object> json, String campo) {
+        String valor = texto(json, campo);
+        if (valor == null || valor.trim().isEmpty()) {
+            throw new ErroHTTP(400, "Campo '" + campo + "' é obrigatório");
+        }
+        return valor.trim();
+    }
+
+    private static String texto(Map<String, Object> json, String campo) {
+        Object valor = json.get(campo);
+        if (valor != null && !(valor instanceof String)) {
+            throw new ErroHTTP(400, "Campo '" + campo + "' deve ser texto");
+        }
+        return (String) valor;
+    }
+
+    private static long numero(Map<String, Object> json, String campo) {
+        Object valor = json.get(campo);
+        if (!(valor instanceof Long)) {
+            throw new ErroHTTP(400, "Campo '" + campo + "' deve ser um número inteiro");
+        }
+        return (Long) valor;
+    }
+
+    // ==================== HTTP ====================
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> lerCorpo(HttpExchange troca) throws IOException {
+        String corpo;
+        try (InputStream in = troca.getRequestBody()) {
+            // Um byte além do limite distingue o corpo grande demais do que tem exatamente o limite
+            byte[] bytes = in.readNBytes(CORPO_MAXIMO + 1);
+            if (bytes.length > CORPO_MAXIMO) {
+                throw new ErroHTTP(413, "Corpo maior que " + CORPO_MAXIMO + " bytes");
+            }
+            corpo = new String(bytes, StandardCharsets.UTF_8);
+        }
+        Object json = Json.ler(corpo);
+        if (!(json instanceof Map)) {
+            throw new ErroHTTP(400, "O corpo deve ser um objeto JSON");
+        }
+        return (Map<String, Object>) json;
+    }
+
+    private static void responder(HttpExchange troca, Resposta resposta) throws IOException {
+        if (resposta.corpo == null) {
+            troca.sendResponseHeaders(resposta.status, -1);
+            return;
+        }
+        byte[] bytes = (resposta.texto ? (String) resposta.corpo : Json.escrever(resposta.corpo))
+                .getBytes(StandardCharsets.UTF_8);
+        troca.getResponseHeaders().set("Content-Type",
+                resposta.texto ? "text/plain; version=0.0.4; charset=utf-8" : "application/json; charset=utf-8");
+        troca.sendResponseHeaders(resposta.status, bytes.length);
+        try (OutputStream out = troca.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static String[] segmentos(String caminho) {
+        List<String> segmentos = new ArrayList<>();
+        for (String s : caminho.split("/")) {
+            if (!s.isEmpty()) {
+                segmentos.add(URLDecoder.decode(s, StandardCharsets.UTF_8));
+            }
+        }
+        return segmentos.toArray(new String[0]);
+    }
+
+    private static Map<String, String> parametros(String query) {
+        Map<String, String> parametros = new HashMap<>();
+        if (query == null) {
+            return parametros;
+        }
+        for (String par : query.split("&")) {
+            int igual = par.indexOf('=');
+            String nome = igual < 0 ? par : par.substring(0, igual);
+            String valor = igual < 0 ? "" : par.substring(igual + 1);
+            parametros.put(URLDecoder.decode(nome, StandardCharsets.UTF_8), URLDecoder.decode(valor, StandardCharsets.UTF_8));
+        }
+        return parametros;
+    }
+
+    private static long id(String[] caminho) {
+        if (caminho.length != 2) {
+            throw new ErroHTTP(404, "Recurso não encontrado");
+        }
+        try {
+            return Long.parseLong(caminho[1]);
+        } catch (NumberFormatException e) {
+            throw new ErroHTTP(404, "Id inválido: " + caminho[1]);
+        }
+    }
+
+    private static long aposId(Map<String, String> parametros) {
+        return inteiro(parametros, "aposId", 0);
+    }
+
+    private static int limite(Map<String, String> parametros, int padrao) {
+        long limite = inteiro(parametros, "limite", padrao);
+        if (limite <= 0) {
+            throw new ErroHTTP(400, "Parâmetro 'limite' deve ser positivo");
+        }
+        return (int) Math.min(limite, LIMITE_PAGINA_MAXIMO);
+    }
+
+    private static long inteiro(Map<String, String> parametros, String nome, long padrao) {
+        String valor = parametros.get(nome);
+        if (valor == null || valor.isEmpty()) {
+            return padrao;
+        }
+        try {
+            return Long.parseLong(valor);
+        } catch (NumberFormatException e) {
+            throw new ErroHTTP(400, "Parâmetro '" + nome + "' deve ser um número inteiro");
+        }
+    }
+
+    private static <T> T existente(T entidade, String tipo, long id) {
+        if (entidade == null) {
+            throw naoEncontrado(tipo, id);
+        }
+        return entidade;
+    }
+
+    private static ErroHTTP naoEncontrado(String tipo, long id) {
+        return new ErroHTTP(404, tipo + " " + id + " não encontrado");
+    }
+
+    private static void exigirMetodo(String metodo, String esperado) {
+        if (!esperado.equals(metodo)) {
+            throw metodoNaoPermitido(metodo);
+        }
+    }
+
+    private static ErroHTTP metodoNaoPermitido(String metodo) {
+        return new ErroHTTP(405, "Método " + metodo + " não permitido");
+    }
+
+    private static Map<String, Object> erro(String mensagem) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("erro", mensagem);
+        return json;
+    }
+}
@@ -0,0 +1,521 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/**
+ * Snapshot binário de clientes, produtos e pedidos, usado para aquecer os caches
+ * das DAOs na inicialização (-Derp.snapshot=true) e para converter o antigo
+ * erp_data.ser (serialização Java) com "--converter".
+ *
+ * Formato (versão 1), gravado e lido por FileChannel mapeado em memória:
+ *
+ *   mágico "ERPS" (int), versão (varint)
+ *   assinatura do banco: quantidade e maior id de clientes e de produtos (4 varints)
+ *   dicionário: quantidade (varint) e textos
+ *   clientes: quantidade; por cliente: delta do id (zigzag), nome, email, telefone,
+ *             endereço (textos) e cidade, estado, país (índices no dicionário)
+ *   produtos: quantidade; por produto: delta do id (zigzag), nome, preço (8 bytes)
+ *   pedidos:  quantidade; por pedido: delta do id (zigzag), id do cliente,
+ *             quantidade de itens e (id do produto, quantidade) por item
+ *   CRC32C de todos os bytes anteriores (int)
+ *
+ * Textos são varint (comprimento + 1) seguido dos bytes UTF-8, com 0 para null;
+ * índices no dicionário são varint (índice + 1), também com 0 para null. Os
+ * deltas de id em zigzag mantêm a ordem das entidades (a dos caches, da menos
+ * para a mais usada) e ocupam um byte quando os ids são sequenciais.
+ */
+class SnapshotEntidades {
+    static final int VERSAO = 1;
+    private static final int MAGICO = 0x45525053; // "ERPS"
+
+    /**
+     * Entidades do snapshot e a assinatura do banco de onde vieram.
+     */
+    static class Conteudo {
+        final List<Cliente> clientes = new ArrayList<>();
+        final List<Produto> produtos = new ArrayList<>();
+        final List<Pedido> pedidos = new ArrayList<>();
+        // Quantidade e maior id de clientes e de produtos; zeros quando não vem de um banco
+        final long[] assinatura = new long[4];
+    }
+
+    private SnapshotEntidades() {
+    }
+
+    // ==================== Gravação ====================
+
+    /**
+     * Grava o snapshot: primeiro num arquivo temporário, depois movido sobre o destino.
+     */
+    public static void gravar(Path arquivo, Conteudo conteudo) throws IOException {
+        Map<String, Integer> dicionario = new HashMap<>();
+        List<String> textos = new ArrayList<>();
+        for (Cliente c : conteudo.clientes) {
+            for (String valor : new String[]{c.getCidade(), c.getEstado(), c.getPais()}) {
+                if (valor != null && dicionario.putIfAbsent(valor, textos.size()) == null) {
+                    textos.add(valor);
+                }
+            }
+        }
+
+        // Duas passagens pelo mesmo código: a primeira só mede, a segunda grava no mapa
+        Medidor medidor = new Medidor();
+        escrever(medidor, conteudo, dicionario, textos);
+        long tamanho = medidor.tamanho + Integer.BYTES;
+        if (tamanho > Integer.MAX_VALUE) {
+            throw new IOException("Snapshot grande demais para um único mapeamento: " + tamanho + " bytes");
+        }
+
+        Path temporario = arquivo.resolveSibling(arquivo.getFileName() + ".tmp");
+        try (FileChannel canal = FileChannel.open(temporario, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer mapa = canal.map(FileChannel.MapMode.READ_WRITE, 0, tamanho);
+            escrever(new Escritor(mapa), conteudo, dicionario, textos);
+            if (mapa.position() != tamanho - Integer.BYTES) {
+                // Medição e codificação divergiram: o CRC não ficaria no fim do arquivo
+                throw new IllegalStateException("Tamanho medido (" + (tamanho - Integer.BYTES)
+                        + ") difere do gravado (" + mapa.position() + ")");
+            }
+            CRC32C crc = new CRC32C();
+            crc.update(mapa.duplicate().position(0).limit(mapa.position()));
+            mapa.putInt((int) crc.getValue());
+            mapa.force();
+        }
+        Files.move(temporario, arquivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void escrever(Saida saida, Conteudo conteudo, Map<String, Integer> dicionario, List<String> textos) {
+        saida.inteiro(MAGICO);
+        saida.varint(VERSAO);
+        for (long valor : conteudo.assinatura) {
+            saida.varint(valor);
+        }
+        saida.varint(textos.size());
+        for (String texto : textos) {
+            saida.texto(texto);
+        }
+
+        saida.varint(conteudo.clientes.size());
+        long anterior = 0;
+        for (Cliente c : conteudo.clientes) {
+            saida.varint(zigzag(c.getId() - anterior));
+            anterior = c.getId();
+            saida.texto(c.getNome());
+            saida.texto(c.getEmail());
+            saida.texto(c.getTelefone());
+            saida.texto(c.getEndereco());
+            saida.varint(indice(dicionario, c.getCidade()));
+            saida.varint(indice(dicionario, c.getEstado()));
+            saida.varint(indice(dicionario, c.getPais()));
+        }
+
+        saida.varint(conteudo.produtos.size());
+        anterior = 0;
+        for (Produto p : conteudo.produtos) {
+            saida.varint(zigzag(p.getId() - anterior));
+            anterior = p.getId();
+            saida.texto(p.getNome());
+            saida.longo(Double.doubleToLongBits(p.getPreco()));
+        }
+
+        saida.varint(conteudo.pedidos.size());
+        anterior = 0;
+        for (Pedido p : conteudo.pedidos) {
+            saida.varint(zigzag(p.getId() - anterior));
+            anterior = p.getId();
+            saida.varint(p.getCliente().getId());
+            saida.varint(p.getItens().size());
+            for (ItemPedido item : p.getItens()) {
+                saida.varint(item.getProduto().getId());
+                saida.varint(item.getQuantidade());
+            }
+        }
+    }
+
+    private static long indice(Map<String, Integer> dicionario, String valor) {
+        return valor == null ? 0 : dicionario.get(valor) + 1;
+    }
+
+    private static long zigzag(long valor) {
+        return (valor << 1) ^ (valor >> 63);
+    }
+
+    private static long desfazerZigzag(long valor) {
+        return (valor >>> 1) ^ -(valor & 1);
+    }
+
+    // Destino das passagens de gravação
+    private interface Saida {
+        void inteiro(int valor);
+
+        void longo(long valor);
+
+        void varint(long valor);
+
+        void texto(String texto);
+    }
+
+    // Primeira passagem: soma os tamanhos sem gerar bytes
+    private static final class Medidor implements Saida {
+        long tamanho;
+
+        public void inteiro(int valor) {
+            tamanho += Integer.BYTES;
+        }
+
+        public void longo(long valor) {
+            tamanho += Long.BYTES;
+        }
+
+        public void varint(long valor) {
+            tamanho += tamanhoVarint(valor);
+        }
+
+        public void texto(String texto) {
+            if (texto == null) {
+                tamanho += 1;
+                return;
+            }
+            int bytes = tamanhoUtf8(texto);
+            tamanho += tamanhoVarint(bytes + 1L) + bytes;
+        }
+    }
+
+    private static final class Escritor implements Saida {
+        private final ByteBuffer destino;
+
+        Escritor(ByteBuffer destino) {
+            this.destino = destino;
+        }
+
+        public void inteiro(int valor) {
+            destino.putInt(valor);
+        }
+
+        public void longo(long valor) {
+            destino.putLong(valor);
+        }
+
+        public void varint(long valor) {
+            if (valor < 0) {
+                throw new IllegalArgumentException("Valor negativo em varint: " + valor);
+            }
+            while ((valor & ~0x7FL) != 0) {
+                destino.put((byte) ((valor & 0x7F) | 0x80));
+                valor >>>= 7;
+            }
+            destino.put((byte) valor);
+        }
+
+        public void texto(String texto) {
+            if (texto == null) {
+                destino.put((byte) 0);
+                return;
+            }
+            byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+            varint(bytes.length + 1L);
+            destino.put(bytes);
+        }
+    }
+
+    private static int tamanhoVarint(long valor) {
+        int bytes = 1;
+        while ((valor & ~0x7FL) != 0) {
+            valor >>>= 7;
+            bytes++;
+        }
+        return bytes;
+    }
+
+    // Tamanho em UTF-8 sem codificar (pares substitutos ocupam 4 bytes)
+    private static int tamanhoUtf8(String texto) {
+        int bytes = 0;
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            if (c < 0x80) {
+                bytes += 1;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < texto.length() && Character.isLowSurrogate(texto.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                bytes += 1; // substituto isolado: getBytes(UTF_8) grava '?'
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    // ==================== Leitura ====================
+
+    public static Conteudo ler(Path arquivo) throws IOException {
+        try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.READ)) {
+            long tamanho = canal.size();
+            if (tamanho < Integer.BYTES * 2 || tamanho > Integer.MAX_VALUE) {
+                throw new IOException("Arquivo de snapshot inválido: " + arquivo);
+            }
+            MappedByteBuffer mapa = canal.map(FileChannel.MapMode.READ_ONLY, 0, tamanho);
+            CRC32C crc = new CRC32C();
+            crc.update(mapa.duplicate().limit((int) tamanho - Integer.BYTES));
+            if ((int) crc.getValue() != mapa.getInt((int) tamanho - Integer.BYTES)) {
+                throw new IOException("Snapshot corrompido (CRC não confere): " + arquivo);
+            }
+            if (mapa.getInt() != MAGICO) {
+                throw new IOException("Não é um snapshot do ERP: " + arquivo);
+            }
+            long versao = lerVarint(mapa);
+            if (versao != VERSAO) {
+                throw new IOException("Versão de snapshot não suportada: " + versao);
+            }
+            try {
+                return lerConteudo(mapa);
+            } catch (RuntimeException e) {
+                // Estrutura inconsistente apesar do CRC (ex.: gravado por versão com defeito)
+                throw new IOException("Snapshot inválido: " + arquivo, e);
+            }
+        }
+    }
+
+    private static Conteudo lerConteudo(ByteBuffer origem) throws IOException {
+        Conteudo conteudo = new Conteudo();
+        for (int i = 0; i < conteudo.assinatura.length; i++) {
+            conteudo.assinatura[i] = lerVarint(origem);
+        }
+        String[] dicionario = new String[quantidade(origem)];
+        for (int i = 0; i < dicionario.length; i++) {
+            dicionario[i] = lerTexto(origem);
+        }
+
+        int clientes = quantidade(origem);
+        long id = 0;
+        for (int i = 0; i < clientes; i++) {
+            id += desfazerZigzag(lerVarint(origem));
+            Cliente c = new Cliente(id, lerTexto(origem), lerTexto(origem), lerTexto(origem), lerTexto(origem),
+                    doDicionario(dicionario, origem), doDicionario(dicionario, origem), doDicionario(dicionario, origem));
+            conteudo.clientes.add(c);
+        }
+
+        int produtos = quantidade(origem);
+        id = 0;
+        for (int i = 0; i < produtos; i++) {
+            id += desfazerZigzag(lerVarint(origem));
+            conteudo.produtos.add(new Produto(id, lerTexto(origem), Double.longBitsToDouble(origem.getLong())));
+        }
+
+        int pedidos = quantidade(origem);
+        // Índices por id só quando há pedidos (o snapshot dos caches não os tem)
+        Map<Long, Cliente> clientesPorId = new HashMap<>();
+        Map<Long, Produto> produtosPorId = new HashMap<>();
+        if (pedidos > 0) {
+            conteudo.clientes.forEach(c -> clientesPorId.put(c.getId(), c));
+            conteudo.produtos.forEach(p -> produtosPorId.put(p.getId(), p));
+        }
+        id = 0;
+        for (int i = 0; i < pedidos; i++) {
+            id += desfazerZigzag(lerVarint(origem));
+            long clienteId = lerVarint(origem);
+            Cliente cliente = clientesPorId.get(clienteId);
+            if (cliente == null) {
+                throw new IOException("Pedido " + id + " referencia cliente ausente do snapshot: " + clienteId);
+            }
+            Pedido pedido = new Pedido(id, cliente);
+            int itens = quantidade(origem);
+            for (int k = 0; k < itens; k++) {
+                long produtoId = lerVarint(origem);
+                Produto produto = produtosPorId.get(produtoId);
+                if (produto == null) {
+                    throw new IOException("Pedido " + id + " referencia produto ausente do snapshot: " + produtoId);
+                }
+                pedido.adicionarItem(new ItemPedido(produto, (int) lerVarint(origem)));
+            }
+            conteudo.pedidos.add(pedido);
+        }
+        return conteudo;
+    }
+
+    private static long lerVarint(ByteBuffer origem) throws IOException {
+        long valor = 0;
+        for (int deslocamento = 0; deslocamento < 64; deslocamento += 7) {
+            byte b = origem.get();
+            valor |= (long) (b & 0x7F) << deslocamento;
+            if (b >= 0) {
+                return valor;
+            }
+        }
+        throw new IOException("Varint longo demais no snapshot");
+    }
+
+    private static int quantidade(ByteBuffer origem) throws IOException {
+        long valor = lerVarint(origem);
+        if (valor > origem.remaining()) {
+            throw new IOException("Quantidade inválida no snapshot: " + valor);
+        }
+        return (int) valor;
+    }
+
+    private static String lerTexto(ByteBuffer origem) throws IOException {
+        int comprimento = quantidade(origem);
+        if (comprimento == 0) {
+            return null;
+        }
+        byte[] bytes = new byte[comprimento - 1];
+        origem.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String doDicionario(String[] dicionario, ByteBuffer origem) throws IOException {
+        long indice = lerVarint(origem);
+        if (indice > dicionario.length) {
+            throw new IOException("Índice de dicionário inválido no snapshot: " + indice);
+        }
+        return indice == 0 ? null : dicionario[(int) indice - 1];
+    }
+
+    // ==================== Conversão do erp_data.ser ====================
+
+    // Formato das classes gravadas no erp_data.ser (ERPController com as listas em memória).
+    // Os campos precisam ter os mesmos nomes e tipos dos gravados no arquivo.
+    private static final class LegadoERP implements Serializable {
+        List<LegadoCliente> clientes;
+        List<LegadoPedido> pedidos;
+        List<LegadoProduto> produtos;
+    }
+
+    private static final class LegadoCliente implements Serializable {
+        String email;
+        String nome;
+    }
+
+    private static final class LegadoProduto implements Serializable {
+        double preco;
+        String nome;
+    }
+
+    private static final class LegadoPedido implements Serializable {
+        LegadoCliente cliente;
+        List<LegadoItemPedido> itens;
+    }
+
+    private static final class LegadoItemPedido implements Serializable {
+        int quantidade;
+        LegadoProduto produto;
+    }
+
+    private static final Map<String, Class<?>> CLASSES_LEGADAS = Map.of(
+            "ERPController", LegadoERP.class,
+            "Cliente", LegadoCliente.class,
+            "Produto", LegadoProduto.class,
+            "Pedido", LegadoPedido.class,
+            "ItemPedido", LegadoItemPedido.class);
+
+    /**
+     * Lê um erp_data.ser antigo. Os ids são atribuídos na ordem das listas; clientes e
+     * produtos repetidos (a mesma instância no arquivo) recebem o mesmo id.
+     */
+    public static Conteudo converterLegado(Path arquivoSer) throws IOException {
+        LegadoERP legado;
+        try (InputStream entrada = Files.newInputStream(arquivoSer);
+             ObjectInputStream objetos = new ObjectInputStream(entrada) {
+                 // Troca a descrição das classes antigas pela das classes Legado*, de mesmos campos
+                 @Override
+                 protected ObjectStreamClass readClassDescriptor() throws IOException, ClassNotFoundException {
+                     ObjectStreamClass lida = super.readClassDescriptor();
+                     Class<?> legada = CLASSES_LEGADAS.get(lida.getName());
+                     return legada != null ? ObjectStreamClass.lookup(legada) : lida;
+                 }
+             }) {
+            // Só as classes esperadas: o arquivo não pode instanciar nada além delas
+            objetos.setObjectInputFilter(ObjectInputFilter.Config.createFilter(
+                    SnapshotEntidades.class.getName() + "$Legado*;java.util.ArrayList;java.lang.Object;java.lang.String;maxarray=10000000;!*"));
+            legado = (LegadoERP) objetos.readObject();
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException("Formato de erp_data.ser não reconhecido: " + arquivoSer, e);
+        }
+
+        Conteudo conteudo = new Conteudo();
+        Map<LegadoCliente, Cliente> clientes = new IdentityHashMap<>();
+        Map<LegadoProduto, Produto> produtos = new IdentityHashMap<>();
+        if (legado.clientes != null) {
+            for (LegadoCliente c : legado.clientes) {
+                converterCliente(c, clientes, conteudo);
+            }
+        }
+        if (legado.produtos != null) {
+            for (LegadoProduto p : legado.produtos) {
+                converterProduto(p, produtos, conteudo);
+            }
+        }
+        if (legado.pedidos != null) {
+            for (LegadoPedido p : legado.pedidos) {
+                Pedido pedido = new Pedido(conteudo.pedidos.size() + 1, converterCliente(p.cliente, clientes, conteudo));
+                if (p.itens != null) {
+                    for (LegadoItemPedido item : p.itens) {
+                        pedido.adicionarItem(new ItemPedido(converterProduto(item.produto, produtos, conteudo), item.quantidade));
+                    }
+                }
+                conteudo.pedidos.add(pedido);
+            }
+        }
+        return conteudo;
+    }
+
+    private static Cliente converterCliente(LegadoCliente legado, Map<LegadoCliente, Cliente> convertidos, Conteudo conteudo) {
+        return convertidos.computeIfAbsent(legado, c -> {
+            Cliente cliente = new Cliente(conteudo.clientes.size() + 1, c.nome, c.email, null, null, null, null, null);
+            conteudo.clientes.add(cliente);
+            return cliente;
+        });
+    }
+
+    private static Produto converterProduto(LegadoProduto legado, Map<LegadoProduto, Produto> convertidos, Conteudo conteudo) {
+        return convertidos.computeIfAbsent(legado, p -> {
+            Produto produto = new Produto(conteudo.produtos.size() + 1, p.nome, p.preco);
+            conteudo.produtos.add(produto);
+            return produto;
+        });
+    }
+
+    /**
+     * Uso: java SnapshotEntidades --converter erp_data.ser erp_data.snap
+     *      java SnapshotEntidades --info arquivo.snap
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 3 && "--converter".equals(args[0])) {
+            long inicio = System.nanoTime();
+            Conteudo conteudo = converterLegado(Paths.get(args[1]));
+            gravar(Paths.get(args[2]), conteudo);
+            System.out.printf("%d clientes, %d produtos e %d pedidos convertidos para %s em %d ms.%n",
+                    conteudo.clientes.size(), conteudo.produtos.size(), conteudo.pedidos.size(), args[2],
+                    (System.nanoTime() - inicio) / 1_000_000);
+        } else if (args.length == 2 && "--info".equals(args[0])) {
+            long inicio = System.nanoTime();
+            Conteudo conteudo = ler(Paths.get(args[1]));
+            System.out.printf("Snapshot versão %d: %d clientes, %d produtos, %d pedidos (lido em %d ms).%n",
+                    VERSAO, conteudo.clientes.size(), conteudo.produtos.size(), conteudo.pedidos.size(),
+                    (System.nanoTime() - inicio) / 1_000_000);
+        } else {
+            System.err.println("Uso: SnapshotEntidades --converter erp_data.ser destino.snap | --info arquivo.snap");
+            System.exit(2);
+        }
+    }
+}
@@ -0,0 +1,452 @@
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.IntStream;
+
+/**
+ * Cópia em memória, em formato colunar, das linhas de itens_pedido com os dados
+ * de pedido, cliente e produto já resolvidos, para fatiamentos interativos no
+ * Relatório sem ir ao banco.
+ *
+ * Cada coluna é um array primitivo indexado pela linha: ids de pedido (long),
+ * códigos de dicionário (int) para cliente, produto, estado, cidade e país,
+ * quantidades (int) e valor da linha em centavos (long). As varreduras de
+ * filtro e agregação são laços contados sobre esses arrays, sem objetos por
+ * linha, divididos em blocos processados em paralelo.
+ *
+ * A atualização é incremental: só os pedidos com id maior que o último
+ * carregado são lidos. Alterações em pedidos, clientes ou produtos já
+ * carregados exigem recarga completa (ver invalidar()). Os valores refletem os
+ * preços do momento da carga.
+ */
+class SnapshotVendas {
+    static final int LINHAS_POR_BLOCO = 1 << 16;
+    private static final int CAPACIDADE_INICIAL = 1024;
+    static final String NAO_INFORMADO = "(não informado)";
+
+    /**
+     * Filtro de uma consulta; campos nulos (ou ids negativos) não restringem.
+     */
+    static class Filtro {
+        String estado;
+        String cidade;
+        String pais;
+        long clienteId = -1;
+        long produtoId = -1;
+    }
+
+    // Dicionário de valores textuais: código denso -> valor
+    private static class Dicionario {
+        final Map<String, Integer> codigos = new HashMap<>();
+        final List<String> valores = new ArrayList<>();
+
+        int codificar(String valor) {
+            String chave = valor == null || valor.isEmpty() ? NAO_INFORMADO : valor;
+            Integer codigo = codigos.get(chave);
+            if (codigo == null) {
+                codigo = valores.size();
+                codigos.put(chave, codigo);
+                valores.add(chave);
+            }
+            return codigo;
+        }
+
+        // -1 quando o valor não existe no dicionário (o filtro não casa com nenhuma linha)
+        int buscar(String valor) {
+            Integer codigo = codigos.get(valor.isEmpty() ? NAO_INFORMADO : valor);
+            return codigo == null ? -1 : codigo;
+        }
+
+        long bytesEstimados() {
+            long bytes = 0;
+            for (String valor : valores) {
+                bytes += 40 + 2L * valor.length() + 48; // String + entrada do HashMap
+            }
+            return bytes;
+        }
+    }
+
+    // Acumuladores de um bloco, indexados pelo código do grupo
+    private static class Parcial {
+        final long[] pedidos;
+        final long[] quantidades;
+        final long[] centavos;
+
+        Parcial(int grupos) {
+            pedidos = new long[grupos];
+            quantidades = new long[grupos];
+            centavos = new long[grupos];
+        }
+
+        Parcial somar(Parcial outro) {
+            for (int g = 0; g < pedidos.length; g++) {
+                pedidos[g] += outro.pedidos[g];
+                quantidades[g] += outro.quantidades[g];
+                centavos[g] += outro.centavos[g];
+            }
+            return this;
+        }
+    }
+
+    private final GerenciadorConexoes conexoes;
+    private final ReentrantReadWriteLock trava = new ReentrantReadWriteLock();
+
+    // Colunas (as 'linhas' primeiras posições são válidas), ordenadas por pedido
+    private int linhas;
+    private long[] pedidoId = new long[CAPACIDADE_INICIAL];
+    private int[] cliente = new int[CAPACIDADE_INICIAL];
+    private int[] produto = new int[CAPACIDADE_INICIAL];
+    private int[] estado = new int[CAPACIDADE_INICIAL];
+    private int[] cidade = new int[CAPACIDADE_INICIAL];
+    private int[] pais = new int[CAPACIDADE_INICIAL];
+    private int[] quantidade = new int[CAPACIDADE_INICIAL];
+    private long[] centavos = new long[CAPACIDADE_INICIAL];
+
+    // Dimensões: código por id de cliente/produto e atributos do cliente por código
+    private final Map<Long, Integer> codigoCliente = new HashMap<>();
+    private final Map<Long, Integer> codigoProduto = new HashMap<>();
+    private final List<String> nomesClientes = new ArrayList<>();
+    private final List<String> nomesProdutos = new ArrayList<>();
+    private int[] estadoDoCliente = new int[CAPACIDADE_INICIAL];
+    private int[] cidadeDoCliente = new int[CAPACIDADE_INICIAL];
+    private int[] paisDoCliente = new int[CAPACIDADE_INICIAL];
+    private final Dicionario estados = new Dicionario();
+    private final Dicionario cidades = new Dicionario();
+    private final Dicionario paises = new Dicionario();
+
+    private long ultimoPedido;
+    private long ultimoCliente;
+    private long ultimoProduto;
+    private volatile boolean invalido = true;
+
+    public SnapshotVendas(GerenciadorConexoes conexoes) {
+        this.conexoes = conexoes;
+    }
+
+    /**
+     * Marca o snapshot para recarga completa na próxima atualização
+     * (pedido, cliente ou produto existente alterado ou removido).
+     */
+    public void invalidar() {
+        invalido = true;
+    }
+
+    /**
+     * Avisa que foram gravados pedidos com ids a partir de 'menorId' fora da ordem dos
+     * ids (aplicados pelo DiarioPedidos depois de pedidos com ids maiores). Se o
+     * snapshot já passou desse id, a atualização incremental não os veria: recarrega tudo.
+     */
+    public void pedidosGravados(long menorId) {
+        trava.readLock().lock();
+        try {
+            if (menorId <= ultimoPedido) {
+                invalido = true;
+            }
+        } finally {
+            trava.readLock().unlock();
+        }
+    }
+
+    /**
+     * Carrega os pedidos novos desde a última atualização (ou tudo, se invalidado).
+     * Retorna o número de linhas acrescentadas.
+     */
+    public int atualizar() throws SQLException {
+        trava.writeLock().lock();
+        try {
+            if (invalido) {
+                limpar();
+                invalido = false;
+            }
+            int antes = linhas;
+            conexoes.ler(statements -> {
+                carregarDimensoes(statements);
+                String sql = "SELECT i.pedido_id, p.cliente_id, i.produto_id, i.quantidade, pr.preco FROM itens_pedido i " +
+                        "JOIN pedidos p ON p.id = i.pedido_id JOIN produtos pr ON pr.id = i.produto_id " +
+                        "WHERE i.pedido_id > ? ORDER BY i.pedido_id";
+                try (PreparedStatement pstmt = statements.preparar(sql)) {
+                    pstmt.setLong(1, ultimoPedido);
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        while (rs.next()) {
+                            acrescentar(statements, rs.getLong(1), rs.getLong(2), rs.getLong(3), rs.getInt(4), rs.getDouble(5));
+                        }
+                    }
+                }
+                return null;
+            });
+            return linhas - antes;
+        } finally {
+            trava.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Filtra e agrega por 'agrupamento', com a mesma ordenação e limite do
+     * MotorRelatorios. A coluna "pedidos" conta pedidos distintos por grupo.
+     */
+    public List<MotorRelatorios.LinhaRelatorio> agregar(MotorRelatorios.Agrupamento agrupamento, Filtro filtro, int limite) {
+        trava.readLock().lock();
+        try {
+            int[] grupo;
+            List<String> nomes;
+            switch (agrupamento) {
+                case CLIENTE:
+                    grupo = cliente;
+                    nomes = nomesClientes;
+                    break;
+                case ESTADO:
+                    grupo = estado;
+                    nomes = estados.valores;
+                    break;
+                case CIDADE:
+                    grupo = cidade;
+                    nomes = cidades.valores;
+                    break;
+                case PAIS:
+                    grupo = pais;
+                    nomes = paises.valores;
+                    break;
+                default:
+                    grupo = produto;
+                    nomes = nomesProdutos;
+            }
+            Parcial total = varrer(grupo, nomes.size(), filtro == null ? new Filtro() : filtro);
+
+            Integer[] ordem = new Integer[nomes.size()];
+            int usados = 0;
+            for (int g = 0; g < ordem.length; g++) {
+                if (total.pedidos[g] > 0) {
+                    ordem[usados++] = g;
+                }
+            }
+            Arrays.sort(ordem, 0, usados, agrupamento == MotorRelatorios.Agrupamento.MAIS_VENDIDOS
+                    ? (a, b) -> total.quantidades[a] != total.quantidades[b]
+                    ? Long.compare(total.quantidades[b], total.quantidades[a])
+                    : Long.compare(total.centavos[b], total.centavos[a])
+                    : (a, b) -> Long.compare(total.centavos[b], total.centavos[a]));
+
+            List<MotorRelatorios.LinhaRelatorio> resultado = new ArrayList<>();
+            for (int k = 0; k < Math.min(usados, limite); k++) {
+                int g = ordem[k];
+                resultado.add(new MotorRelatorios.LinhaRelatorio(nomes.get(g), total.pedidos[g], total.quantidades[g], total.centavos[g] / 100.0));
+            }
+            return resultado;
+        } finally {
+            trava.readLock().unlock();
+        }
+    }
+
+    /**
+     * Valores distintos de estado presentes no snapshot (para filtros na tela).
+     */
+    public List<String> getEstados() {
+        trava.readLock().lock();
+        try {
+            return new ArrayList<>(estados.valores);
+        } finally {
+            trava.readLock().unlock();
+        }
+    }
+
+    public int getLinhas() {
+        trava.readLock().lock();
+        try {
+            return linhas;
+        } finally {
+            trava.readLock().unlock();
+        }
+    }
+
+    /**
+     * Memória aproximada ocupada pelas colunas (capacidade alocada) e pelos dicionários.
+     */
+    public long getBytesEmMemoria() {
+        trava.readLock().lock();
+        try {
+            long colunas = (long) pedidoId.length * (8 + 4 * 6 + 8);
+            long dimensoes = (long) estadoDoCliente.length * 12
+                    + (codigoCliente.size() + codigoProduto.size()) * 64L
+                    + estados.bytesEstimados() + cidades.bytesEstimados() + paises.bytesEstimados();
+            for (String nome : nomesClientes) {
+                dimensoes += 40 + 2L * nome.length();
+            }
+            for (String nome : nomesProdutos) {
+                dimensoes += 40 + 2L * nome.length();
+            }
+            return colunas + dimensoes;
+        } finally {
+            trava.readLock().unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d linhas, %.1f MB", getLinhas(), getBytesEmMemoria() / (1024.0 * 1024.0));
+    }
+
+    // Varre os blocos em paralelo; cada bloco acumula em arrays próprios, somados ao final
+    private Parcial varrer(int[] grupo, int grupos, Filtro filtro) {
+        int filtroEstado = filtro.estado == null ? -1 : estados.buscar(filtro.estado);
+        int filtroCidade = filtro.cidade == null ? -1 : cidades.buscar(filtro.cidade);
+        int filtroPais = filtro.pais == null ? -1 : paises.buscar(filtro.pais);
+        Integer codigoFiltroCliente = filtro.clienteId < 0 ? Integer.valueOf(-1) : codigoCliente.get(filtro.clienteId);
+        Integer codigoFiltroProduto = filtro.produtoId < 0 ? Integer.valueOf(-1) : codigoProduto.get(filtro.produtoId);
+        if ((filtro.estado != null && filtroEstado < 0) || (filtro.cidade != null && filtroCidade < 0)
+                || (filtro.pais != null && filtroPais < 0) || codigoFiltroCliente == null || codigoFiltroProduto == null) {
+            return new Parcial(grupos); // valor filtrado inexistente: nenhuma linha casa
+        }
+        int filtroCliente = codigoFiltroCliente;
+        int filtroProduto = codigoFiltroProduto;
+
+        int[] limites = limitesBlocos();
+        // Cópias locais das colunas para o laço interno
+        long[] colPedido = pedidoId;
+        int[] colCliente = cliente, colProduto = produto, colEstado = estado, colCidade = cidade, colPais = pais;
+        int[] colQuantidade = quantidade;
+        long[] colCentavos = centavos;
+        return IntStream.range(0, limites.length - 1).parallel()
+                .mapToObj(b -> {
+                    Parcial parcial = new Parcial(grupos);
+                    long[] ultimoPedidoDoGrupo = new long[grupos];
+                    for (int i = limites[b]; i < limites[b + 1]; i++) {
+                        if ((filtroEstado >= 0 && colEstado[i] != filtroEstado)
+                                || (filtroCidade >= 0 && colCidade[i] != filtroCidade)
+                                || (filtroPais >= 0 && colPais[i] != filtroPais)
+                                || (filtroCliente >= 0 && colCliente[i] != filtroCliente)
+                                || (filtroProduto >= 0 && colProduto[i] != filtroProduto)) {
+                            continue;
+                        }
+                        int g = grupo[i];
+                        parcial.quantidades[g] += colQuantidade[i];
+                        parcial.centavos[g] += colCentavos[i];
+                        // As linhas de um pedido são contíguas: conta o pedido na primeira linha do grupo
+                        if (ultimoPedidoDoGrupo[g] != colPedido[i]) {
+                            ultimoPedidoDoGrupo[g] = colPedido[i];
+                            parcial.pedidos[g]++;
+                        }
+                    }
+                    return parcial;
+                })
+                .reduce(Parcial::somar)
+                .orElseGet(() -> new Parcial(grupos));
+    }
+
+    // Blocos de ~LINHAS_POR_BLOCO linhas, com fronteiras no início de um pedido (um pedido nunca é dividido)
+    private int[] limitesBlocos() {
+        int[] limites = new int[linhas / LINHAS_POR_BLOCO + 2];
+        int quantidadeLimites = 1;
+        int inicio = 0;
+        while (inicio < linhas) {
+            int fim = Math.min(linhas, inicio + LINHAS_POR_BLOCO);
+            while (fim < linhas && pedidoId[fim] == pedidoId[fim - 1]) {
+                fim++;
+            }
+            limites[quantidadeLimites++] = fim;
+            inicio = fim;
+        }
+        return Arrays.copyOf(limites, quantidadeLimites);
+    }
+
+    private void acrescentar(CacheStatements statements, long pedido, long clienteId, long produtoId, int qtd, double preco) throws SQLException {
+        Integer codigoDoCliente = codigoCliente.get(clienteId);
+        Integer codigoDoProduto = codigoProduto.get(produtoId);
+        if (codigoDoCliente == null || codigoDoProduto == null) {
+            // Cliente/produto criado após a leitura das dimensões
+            carregarDimensoes(statements);
+            codigoDoCliente = codigoCliente.get(clienteId);
+            codigoDoProduto = codigoProduto.get(produtoId);
+            if (codigoDoCliente == null || codigoDoProduto == null) {
+                return;
+            }
+        }
+        if (linhas == pedidoId.length) {
+            int capacidade = pedidoId.length + (pedidoId.length >> 1);
+            pedidoId = Arrays.copyOf(pedidoId, capacidade);
+            cliente = Arrays.copyOf(cliente, capacidade);
+            produto = Arrays.copyOf(produto, capacidade);
+            estado = Arrays.copyOf(estado, capacidade);
+            cidade = Arrays.copyOf(cidade, capacidade);
+            pais = Arrays.copyOf(pais, capacidade);
+            quantidade = Arrays.copyOf(quantidade, capacidade);
+            centavos = Arrays.copyOf(centavos, capacidade);
+        }
+        pedidoId[linhas] = pedido;
+        cliente[linhas] = codigoDoCliente;
+        produto[linhas] = codigoDoProduto;
+        estado[linhas] = estadoDoCliente[codigoDoCliente];
+        cidade[linhas] = cidadeDoCliente[codigoDoCliente];
+        pais[linhas] = paisDoCliente[codigoDoCliente];
+        quantidade[linhas] = qtd;
+        centavos[linhas] = Math.round(qtd * preco * 100);
+        linhas++;
+        ultimoPedido = pedido;
+    }
+
+    // Lê os clientes e produtos criados desde a última carga
+    private void carregarDimensoes(CacheStatements statements) throws SQLException {
+        try (PreparedStatement pstmt = statements.preparar("SELECT id, nome, cidade, estado, pais FROM clientes WHERE id > ? ORDER BY id")) {
+            pstmt.setLong(1, ultimoCliente);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    int codigo = nomesClientes.size();
+                    if (codigo == estadoDoCliente.length) {
+                        int capacidade = codigo + (codigo >> 1);
+                        estadoDoCliente = Arrays.copyOf(estadoDoCliente, capacidade);
+                        cidadeDoCliente = Arrays.copyOf(cidadeDoCliente, capacidade);
+                        paisDoCliente = Arrays.copyOf(paisDoCliente, capacidade);
+                    }
+                    ultimoCliente = rs.getLong(1);
+                    codigoCliente.put(ultimoCliente, codigo);
+                    nomesClientes.add(rs.getString(2));
+                    cidadeDoCliente[codigo] = cidades.codificar(rs.getString(3));
+                    estadoDoCliente[codigo] = estados.codificar(rs.getString(4));
+                    paisDoCliente[codigo] = paises.codificar(rs.getString(5));
+                }
+            }
+        }
+        try (PreparedStatement pstmt = statements.preparar("SELECT id, nome FROM produtos WHERE id > ? ORDER BY id")) {
+            pstmt.setLong(1, ultimoProduto);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    ultimoProduto = rs.getLong(1);
+                    codigoProduto.put(ultimoProduto, nomesProdutos.size());
+                    nomesProdutos.add(rs.getString(2));
+                }
+            }
+        }
+    }
+
+    private void limpar() {
+        linhas = 0;
+        pedidoId = new long[CAPACIDADE_INICIAL];
+        cliente = new int[CAPACIDADE_INICIAL];
+        produto = new int[CAPACIDADE_INICIAL];
+        estado = new int[CAPACIDADE_INICIAL];
+        cidade = new int[CAPACIDADE_INICIAL];
+        pais = new int[CAPACIDADE_INICIAL];
+        quantidade = new int[CAPACIDADE_INICIAL];
+        centavos = new long[CAPACIDADE_INICIAL];
+        codigoCliente.clear();
+        codigoProduto.clear();
+        nomesClientes.clear();
+        nomesProdutos.clear();
+        estadoDoCliente = new int[CAPACIDADE_INICIAL];
+        cidadeDoCliente = new int[CAPACIDADE_INICIAL];
+        paisDoCliente = new int[CAPACIDADE_INICIAL];
+        estados.codigos.clear();
+        estados.valores.clear();
+        cidades.codigos.clear();
+        cidades.valores.clear();
+        paises.codigos.clear();
+        paises.valores.clear();
+        ultimoPedido = 0;
+        ultimoCliente = 0;
+        ultimoProduto = 0;
+    }
+}
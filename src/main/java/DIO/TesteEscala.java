@@ -0,0 +1,197 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Teste de escala: para cada tamanho (número de pedidos) gera um banco novo com o
+ * GeradorDados e mede as operações comuns do ERP pelo ERPController: carga das
+ * abas, relatórios, exportação CSV e exclusões. Cada operação roda uma vez para
+ * aquecer e depois 'repeticoes' vezes; a tabela final mostra a mediana em ms.
+ *
+ * Uso: java TesteEscala [--tamanhos 10000,100000,1000000] [--repeticoes 5]
+ *      [--diretorio dir] [opções do GeradorDados]
+ *
+ * Sem --clientes, cada banco tem um cliente para cada 10 pedidos. Sem --diretorio
+ * os bancos são criados num diretório temporário e apagados ao final.
+ */
+class TesteEscala {
+
+    /**
+     * Operação medida; 'execucao' numera as chamadas (0 é o aquecimento).
+     */
+    private interface Operacao {
+        void executar(ERPController controller, Dados dados, int execucao) throws Exception;
+    }
+
+    // Ids lidos do banco antes das medições, para as operações que precisam de alvos
+    private static class Dados {
+        long[] pedidos;
+        long clienteComPedidos;
+        long produtoEmUso;
+        Path diretorio;
+    }
+
+    private static final Map<String, Operacao> OPERACOES = new LinkedHashMap<>();
+
+    static {
+        OPERACOES.put("Aba Clientes", (c, d, i) -> {
+            long[] ids = c.getIdsClientes();
+            c.getClientesPagina(ids.length == 0 ? 0 : ids[0] - 1, ModeloTabelaPaginada.TAMANHO_PAGINA);
+        });
+        OPERACOES.put("Aba Produtos", (c, d, i) -> {
+            long[] ids = c.getIdsProdutos();
+            c.getProdutosPagina(ids.length == 0 ? 0 : ids[0] - 1, ModeloTabelaPaginada.TAMANHO_PAGINA);
+        });
+        OPERACOES.put("Aba Pedidos", (c, d, i) -> {
+            long[] ids = c.getIdsPedidos();
+            c.getResumosPedidosPagina(ids.length == 0 ? 0 : ids[0] - 1, ModeloTabelaPaginada.TAMANHO_PAGINA);
+        });
+        for (MotorRelatorios.Agrupamento agrupamento : new MotorRelatorios.Agrupamento[]{
+                MotorRelatorios.Agrupamento.CLIENTE, MotorRelatorios.Agrupamento.ESTADO, MotorRelatorios.Agrupamento.PRODUTO}) {
+            OPERACOES.put("Relatório: " + agrupamento.titulo.toLowerCase(), (c, d, i) -> {
+                c.getTotalGeral();
+                c.getRelatorio(agrupamento, 20);
+            });
+        }
+        OPERACOES.put("Exportação CSV", (c, d, i) -> {
+            File arquivo = d.diretorio.resolve("relatorio.csv").toFile();
+            c.exportarRelatorioCSV(arquivo, null, null);
+            Files.deleteIfExists(arquivo.toPath());
+        });
+        OPERACOES.put("Exclusão de pedido", (c, d, i) -> {
+            // Um pedido diferente a cada execução, a partir do fim
+            if (i < d.pedidos.length) {
+                c.removerPedido(d.pedidos[d.pedidos.length - 1 - i]);
+            }
+        });
+        OPERACOES.put("Exclusão de produto em uso (recusada)", (c, d, i) -> c.removerProduto(d.produtoEmUso));
+        OPERACOES.put("Exclusão de cliente com pedidos (recusada)", (c, d, i) -> c.removerCliente(d.clienteComPedidos));
+    }
+
+    public static void main(String[] args) throws Exception {
+        long[] tamanhos = {10_000, 100_000, 1_000_000};
+        int repeticoes = 5;
+        String diretorio = null;
+        boolean clientesInformados = false;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--tamanhos":
+                    tamanhos = Arrays.stream(args[i + 1].split(",")).mapToLong(t -> Long.parseLong(t.trim())).toArray();
+                    break;
+                case "--repeticoes":
+                    repeticoes = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--diretorio":
+                    diretorio = args[i + 1];
+                    break;
+                case "--clientes":
+                    clientesInformados = true;
+                    break;
+                default:
+                    break;
+            }
+        }
+        Path pasta = diretorio != null ? Files.createDirectories(Path.of(diretorio)) : Files.createTempDirectory("erp-escala");
+
+        List<double[]> colunas = new ArrayList<>();
+        for (long tamanho : tamanhos) {
+            GeradorDados.Configuracao configuracao = GeradorDados.Configuracao.ler(args);
+            configuracao.pedidos = tamanho;
+            if (!clientesInformados) {
+                configuracao.clientes = Math.max(100, tamanho / 10);
+            }
+            colunas.add(medirTamanho(pasta, configuracao, repeticoes));
+        }
+        if (diretorio == null) {
+            apagar(pasta);
+        }
+        imprimirTabela(tamanhos, colunas);
+    }
+
+    // Gera o banco do tamanho pedido e devolve [tempo de geração, mediana de cada operação] em ms
+    private static double[] medirTamanho(Path pasta, GeradorDados.Configuracao configuracao, int repeticoes) throws Exception {
+        Path banco = pasta.resolve("escala-" + configuracao.pedidos + ".db");
+        apagarBanco(banco);
+        String url = "jdbc:sqlite:" + banco.toAbsolutePath();
+        System.out.println("Gerando " + configuracao + "...");
+
+        double[] resultados = new double[OPERACOES.size() + 1];
+        long inicio = System.nanoTime();
+        GeradorDados.Resultado gerado;
+        try (GerenciadorConexoes conexoes = new GerenciadorConexoes(url, 1, CacheStatements.CAPACIDADE_PADRAO)) {
+            new MigracoesEsquema(conexoes).aplicarPendentes();
+            gerado = new GeradorDados(conexoes, configuracao).gerar();
+        }
+        resultados[0] = (System.nanoTime() - inicio) / 1e6;
+
+        ERPController controller = new ERPController(url);
+        try {
+            Dados dados = new Dados();
+            dados.diretorio = pasta;
+            dados.pedidos = controller.getIdsPedidos();
+            List<ResumoPedido> primeiros = controller.getResumosPedidosPagina(0, 1);
+            dados.clienteComPedidos = primeiros.isEmpty() ? 0 : primeiros.get(0).getClienteId();
+            dados.produtoEmUso = gerado.produtoMaisPopular;
+
+            int coluna = 1;
+            for (Map.Entry<String, Operacao> operacao : OPERACOES.entrySet()) {
+                double[] tempos = new double[repeticoes];
+                for (int execucao = 0; execucao <= repeticoes; execucao++) {
+                    long t = System.nanoTime();
+                    operacao.getValue().executar(controller, dados, execucao);
+                    if (execucao > 0) {
+                        tempos[execucao - 1] = (System.nanoTime() - t) / 1e6;
+                    }
+                }
+                Arrays.sort(tempos);
+                resultados[coluna++] = tempos[tempos.length / 2];
+            }
+        } finally {
+            controller.fecharConexao();
+        }
+        return resultados;
+    }
+
+    private static void imprimirTabela(long[] tamanhos, List<double[]> colunas) {
+        List<String> nomes = new ArrayList<>();
+        nomes.add("Geração do banco");
+        nomes.addAll(OPERACOES.keySet());
+        int largura = nomes.stream().mapToInt(String::length).max().orElse(10) + 2;
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%n%-" + largura + "s", "Operação (mediana, ms)"));
+        for (long tamanho : tamanhos) {
+            sb.append(String.format("%16s", String.format("%,d pedidos", tamanho)));
+        }
+        sb.append(System.lineSeparator());
+        for (int linha = 0; linha < nomes.size(); linha++) {
+            sb.append(String.format("%-" + largura + "s", nomes.get(linha)));
+            for (double[] coluna : colunas) {
+                sb.append(String.format("%16s", String.format("%,.1f", coluna[linha])));
+            }
+            sb.append(System.lineSeparator());
+        }
+        System.out.print(sb);
+    }
+
+    private static void apagarBanco(Path banco) throws IOException {
+        Files.deleteIfExists(banco);
+        Files.deleteIfExists(Path.of(banco + "-wal"));
+        Files.deleteIfExists(Path.of(banco + "-shm"));
+    }
+
+    private static void apagar(Path pasta) throws IOException {
+        try (var arquivos = Files.list(pasta)) {
+            for (Path arquivo : (Iterable<Path>) arquivos::iterator) {
+                Files.deleteIfExists(arquivo);
+            }
+        }
+        Files.deleteIfExists(pasta);
+    }
+}